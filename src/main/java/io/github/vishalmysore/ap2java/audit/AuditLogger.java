@@ -6,7 +6,11 @@ import java.util.Map;
 /**
  * Interface for audit logging in the AP2 protocol.
  * Implementations should provide secure, tamper-evident logging
- * for all payment-related operations.
+ * for all payment-related operations. Implementations should take their
+ * timestamps from an injected {@link java.time.Clock}, such as
+ * {@link io.github.vishalmysore.ap2java.util.CachedClock#systemUTC()},
+ * so that audit trails can be tested with a
+ * {@link io.github.vishalmysore.ap2java.util.ManualClock}.
  */
 public interface AuditLogger {
     
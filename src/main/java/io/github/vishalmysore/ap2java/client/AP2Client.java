@@ -9,8 +9,14 @@ import io.github.vishalmysore.ap2java.payment.PaymentProcessor;
 import io.github.vishalmysore.a2a.domain.AgentCard;
 import io.github.vishalmysore.a2a.domain.Message;
 import io.github.vishalmysore.a2a.domain.Task;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -25,8 +31,19 @@ public class AP2Client {
     private static final String METHOD_CANCEL_PAYMENT = "cancelPayment";
     private static final String METHOD_CHECK_STATUS = "checkPaymentStatus";
     
+    private static final String ERROR_RATE_LIMITED = "RATE_LIMITED";
+    private static final String ERROR_DUPLICATE_MESSAGE = "DUPLICATE_MESSAGE";
+    private static final String ANONYMOUS_AGENT = "anonymous";
+    private static final MessageParamBinder<PaymentIdParams> PAYMENT_ID_BINDER =
+            MessageParamBinder.forType(PaymentIdParams.class);
+    
     private final PaymentProcessor paymentProcessor;
     private final PaymentEnabledAgentCard agentCard;
+    private final TokenBucketRateLimiter rateLimiter;
+    private final MethodRegistry methodRegistry;
+    private final TaskRegistry taskRegistry;
+    private final TaskEventStream taskEventStream;
+    private final MessageDeduplicator deduplicator;
     
     /**
      * Constructor.
@@ -35,8 +52,90 @@ public class AP2Client {
      * @param agentCard        The payment-enabled agent card.
      */
     public AP2Client(PaymentProcessor paymentProcessor, PaymentEnabledAgentCard agentCard) {
+        this(paymentProcessor, agentCard, null);
+    }
+    
+    /**
+     * Constructor with rate limiting of incoming messages.
+     *
+     * @param paymentProcessor The payment processor implementation.
+     * @param agentCard        The payment-enabled agent card.
+     * @param rateLimiter      The limiter applied per requesting agent and method, or null for none.
+     */
+    public AP2Client(PaymentProcessor paymentProcessor, PaymentEnabledAgentCard agentCard,
+                     TokenBucketRateLimiter rateLimiter) {
+        this(paymentProcessor, agentCard, rateLimiter, null);
+    }
+    
+    /**
+     * Constructor with rate limiting and task tracking.
+     *
+     * @param paymentProcessor The payment processor implementation.
+     * @param agentCard        The payment-enabled agent card.
+     * @param rateLimiter      The limiter applied per requesting agent and method, or null for none.
+     * @param taskRegistry     The registry that keeps the tasks created by this client, or null for none.
+     */
+    public AP2Client(PaymentProcessor paymentProcessor, PaymentEnabledAgentCard agentCard,
+                     TokenBucketRateLimiter rateLimiter, TaskRegistry taskRegistry) {
+        this(paymentProcessor, agentCard, rateLimiter, taskRegistry, null);
+    }
+    
+    /**
+     * Constructor with rate limiting, task tracking and replay protection.
+     *
+     * @param paymentProcessor The payment processor implementation.
+     * @param agentCard        The payment-enabled agent card.
+     * @param rateLimiter      The limiter applied per requesting agent and method, or null for none.
+     * @param taskRegistry     The registry that keeps the tasks created by this client, or null for none.
+     * @param deduplicator     The detector of repeated message IDs, or null to process every message.
+     */
+    public AP2Client(PaymentProcessor paymentProcessor, PaymentEnabledAgentCard agentCard,
+                     TokenBucketRateLimiter rateLimiter, TaskRegistry taskRegistry,
+                     MessageDeduplicator deduplicator) {
         this.paymentProcessor = paymentProcessor;
         this.agentCard = agentCard;
+        this.rateLimiter = rateLimiter;
+        this.taskRegistry = taskRegistry;
+        this.deduplicator = deduplicator;
+        this.taskEventStream = agentCard != null && agentCard.getCapabilities() != null
+                && agentCard.getCapabilities().isStreaming() ? new TaskEventStream() : null;
+        this.methodRegistry = new MethodRegistry();
+        registerBuiltInMethods();
+    }
+    
+    /**
+     * Registers the payment operations served by every client.
+     */
+    private void registerBuiltInMethods() {
+        methodRegistry.register(MethodHandler.of(METHOD_CREATE_PAYMENT,
+                MessageParamBinder.forType(PaymentRequest.class), this::createPayment));
+        methodRegistry.register(MethodHandler.of(METHOD_AUTHORIZE_PAYMENT,
+                MessageParamBinder.forType(AuthorizationParams.class),
+                params -> authorizePayment(params.getPaymentId(), params.getAuthToken())));
+        methodRegistry.register(MethodHandler.of(METHOD_CAPTURE_PAYMENT,
+                PAYMENT_ID_BINDER, params -> capturePayment(params.getPaymentId())));
+        methodRegistry.register(MethodHandler.of(METHOD_CANCEL_PAYMENT,
+                PAYMENT_ID_BINDER, params -> cancelPayment(params.getPaymentId())));
+        methodRegistry.register(MethodHandler.of(METHOD_CHECK_STATUS,
+                PAYMENT_ID_BINDER, params -> checkPaymentStatus(params.getPaymentId())));
+    }
+    
+    /**
+     * Registers a custom JSON-RPC method, replacing any existing handler with the same name.
+     *
+     * @param handler The handler for the method.
+     */
+    public void registerMethod(MethodHandler<?> handler) {
+        methodRegistry.register(handler);
+    }
+    
+    /**
+     * Get the registry of JSON-RPC methods served by this client.
+     *
+     * @return The method registry.
+     */
+    public MethodRegistry getMethodRegistry() {
+        return methodRegistry;
     }
     
     /**
@@ -104,6 +203,57 @@ public class AP2Client {
         return agentCard;
     }
     
+    /**
+     * Look up a task created by this client.
+     *
+     * @param taskId The task ID.
+     * @return The task, or null if it is unknown, has expired or no task registry is configured.
+     */
+    public EnhancedTask getTask(String taskId) {
+        return taskRegistry != null ? taskRegistry.get(taskId) : null;
+    }
+    
+    /**
+     * Check whether this client streams task status events, as advertised by the
+     * streaming capability of its agent card.
+     *
+     * @return true if streaming is enabled.
+     */
+    public boolean isStreamingEnabled() {
+        return taskEventStream != null;
+    }
+    
+    /**
+     * Subscribe to the status events of a task. The task ID is the ID of the message that
+     * creates it, so callers can subscribe before sending the message.
+     *
+     * @param taskId The task ID.
+     * @return The subscription.
+     * @throws IllegalStateException if streaming is not enabled.
+     */
+    public TaskEventStream.Subscription subscribe(String taskId) {
+        TaskEventStream stream = requireStreaming();
+        EnhancedTask task = getTask(taskId);
+        return task != null ? stream.subscribe(task) : stream.subscribe(taskId);
+    }
+    
+    /**
+     * Subscribe to the status events of every task.
+     *
+     * @return The subscription.
+     * @throws IllegalStateException if streaming is not enabled.
+     */
+    public TaskEventStream.Subscription subscribeAll() {
+        return requireStreaming().subscribeAll();
+    }
+    
+    private TaskEventStream requireStreaming() {
+        if (taskEventStream == null) {
+            throw new IllegalStateException("Streaming is not enabled for this agent");
+        }
+        return taskEventStream;
+    }
+    
     /**
      * Process a message from another agent.
      * This method is intended to be used when integrating with the a2ajava messaging system.
@@ -114,168 +264,283 @@ public class AP2Client {
     public Task processMessage(Message message) {
         log.info("Processing message: {}", message);
         
-        // Convert to enhanced message if it's not already
-        EnhancedMessage enhancedMessage;
-        if (message instanceof EnhancedMessage) {
-            enhancedMessage = (EnhancedMessage) message;
-        } else {
-            enhancedMessage = new EnhancedMessage();
-            // Copy properties from original message
-            enhancedMessage.setId(message.getId());
-            enhancedMessage.setRole(message.getRole());
-            enhancedMessage.setParts(message.getParts());
-            enhancedMessage.setMetadata(message.getMetadata());
+        EnhancedMessage enhancedMessage = toEnhancedMessage(message);
+        EnhancedTask known = knownTask(enhancedMessage.getId());
+        if (known != null) {
+            return known;
         }
+        EnhancedTask throttled = throttle(enhancedMessage);
+        if (throttled != null) {
+            return throttled;
+        }
+        if (isDuplicate(enhancedMessage.getId())) {
+            return duplicateTask(enhancedMessage.getId());
+        }
+        EnhancedTask task = newTask(enhancedMessage.getId());
         
-        // Create a task to track the operation
-        EnhancedTask task = new EnhancedTask();
-        task.setId(enhancedMessage.getId());
-        
-        // Process the message based on its method
-        String method = enhancedMessage.getMethod();
+        dispatch(enhancedMessage, task, null);
+        return task;
+    }
+    
+    /**
+     * Process a JSON-RPC batch of messages.
+     * Independent calls run concurrently, while calls in the batch that operate on the
+     * same payment ID run one after another in batch order. A failing call only fails
+     * its own task.
+     *
+     * @param messages The messages in the batch.
+     * @return The tasks for the batch, in the same order as the messages.
+     */
+    public List<Task> processMessages(List<? extends Message> messages) {
+        log.info("Processing batch of {} messages", messages.size());
         
-        if (METHOD_CREATE_PAYMENT.equals(method)) {
-            // Extract payment request from message
-            PaymentRequest paymentRequest = extractPaymentRequest(message);
-            
-            // Create the payment
-            createPayment(paymentRequest)
-                    .thenAccept(response -> {
-                        // Update task with response
-                        task.setCompleted(true);
-                        task.setResult(response);
-                    })
-                    .exceptionally(ex -> {
-                        // Handle error
-                        task.setCompleted(true);
-                        task.setError(ex.getMessage());
-                        return null;
-                    });
-        } else if (METHOD_AUTHORIZE_PAYMENT.equals(method)) {
-            // Extract parameters from message
-            String paymentId = extractString(message, "paymentId");
-            String authToken = extractString(message, "authToken");
-            
-            // Authorize the payment
-            authorizePayment(paymentId, authToken)
-                    .thenAccept(response -> {
-                        // Update task with response
-                        task.setCompleted(true);
-                        task.setResult(response);
-                    })
-                    .exceptionally(ex -> {
-                        // Handle error
-                        task.setCompleted(true);
-                        task.setError(ex.getMessage());
-                        return null;
-                    });
-        } else if (METHOD_CAPTURE_PAYMENT.equals(method)) {
-            // Extract parameters from message
-            String paymentId = extractString(message, "paymentId");
+        List<Task> tasks = new ArrayList<>(messages.size());
+        Map<String, CompletableFuture<Void>> lastCallByPayment = new HashMap<>();
+        for (Message message : messages) {
+            EnhancedMessage enhancedMessage = toEnhancedMessage(message);
+            EnhancedTask known = knownTask(message.getId());
+            if (known != null) {
+                tasks.add(known);
+                continue;
+            }
+            EnhancedTask throttled = throttle(enhancedMessage);
+            if (throttled != null) {
+                tasks.add(throttled);
+                continue;
+            }
+            if (isDuplicate(message.getId())) {
+                tasks.add(duplicateTask(message.getId()));
+                continue;
+            }
+            EnhancedTask task = newTask(message.getId());
+            tasks.add(task);
             
-            // Capture the payment
-            capturePayment(paymentId)
-                    .thenAccept(response -> {
-                        // Update task with response
-                        task.setCompleted(true);
-                        task.setResult(response);
-                    })
-                    .exceptionally(ex -> {
-                        // Handle error
-                        task.setCompleted(true);
-                        task.setError(ex.getMessage());
-                        return null;
-                    });
-        } else if (METHOD_CANCEL_PAYMENT.equals(method)) {
-            // Extract parameters from message
-            String paymentId = extractString(message, "paymentId");
-            
-            // Cancel the payment
-            cancelPayment(paymentId)
-                    .thenAccept(response -> {
-                        // Update task with response
-                        task.setCompleted(true);
-                        task.setResult(response);
-                    })
-                    .exceptionally(ex -> {
-                        // Handle error
-                        task.setCompleted(true);
-                        task.setError(ex.getMessage());
-                        return null;
-                    });
-        } else if (METHOD_CHECK_STATUS.equals(method)) {
-            // Extract parameters from message
-            String paymentId = extractString(message, "paymentId");
-            
-            // Check payment status
-            checkPaymentStatus(paymentId)
-                    .thenAccept(response -> {
-                        // Update task with response
-                        task.setCompleted(true);
-                        task.setResult(response);
-                    })
-                    .exceptionally(ex -> {
-                        // Handle error
-                        task.setCompleted(true);
-                        task.setError(ex.getMessage());
-                        return null;
-                    });
-        } else {
-            // Unsupported method
-            task.setCompleted(true);
-            task.setError("Unsupported method: " + method);
+            String paymentId = extractPaymentId(enhancedMessage);
+            CompletableFuture<Void> predecessor = paymentId != null ? lastCallByPayment.get(paymentId) : null;
+            CompletableFuture<Void> done = dispatch(enhancedMessage, task, predecessor);
+            if (paymentId != null) {
+                lastCallByPayment.put(paymentId, done);
+            }
         }
-        
+        return tasks;
+    }
+    
+    /**
+     * Finds the task of a message that was already processed. A retry is answered with the
+     * outcome of the first delivery before the rate limit is applied, so retries do not
+     * spend the requesting agent's tokens.
+     *
+     * @param messageId The message ID.
+     * @return The original task, or null if the message is not known to have been processed.
+     */
+    private EnhancedTask knownTask(String messageId) {
+        if (deduplicator == null || messageId == null) {
+            return null;
+        }
+        EnhancedTask original = getTask(messageId);
+        if (original != null) {
+            log.warn("Ignoring duplicate message: {}", messageId);
+        }
+        return original;
+    }
+    
+    /**
+     * Applies the rate limit of the requesting agent. This runs before deduplication, so a
+     * throttled message is not recorded as received and can be retried with the same ID.
+     * The throttled task is neither registered nor streamed, so it never replaces the task
+     * of an earlier delivery of the same message.
+     *
+     * @param message The message.
+     * @return A task failed with RATE_LIMITED, or null if the call may proceed.
+     */
+    private EnhancedTask throttle(EnhancedMessage message) {
+        if (rateLimiter == null) {
+            return null;
+        }
+        String method = message.getMethod();
+        String agentId = extractRequestingAgentId(message);
+        long retryAfterMillis = rateLimiter.tryAcquire(agentId, method);
+        if (retryAfterMillis <= 0) {
+            return null;
+        }
+        log.warn("Rate limit exceeded for agent {} calling {}", agentId, method);
+        Map<String, Object> errorData = new HashMap<>();
+        errorData.put("requestingAgentId", agentId);
+        errorData.put("method", method);
+        errorData.put("retryAfterMillis", retryAfterMillis);
+        EnhancedTask task = new EnhancedTask();
+        task.setId(message.getId());
+        task.fail(ERROR_RATE_LIMITED,
+                "Rate limit exceeded for " + method + ", retry after " + retryAfterMillis + " ms", errorData);
         return task;
     }
     
     /**
-     * Helper method to extract a payment request from a message.
+     * Checks whether a message was already received within the deduplication window.
      *
-     * @param message The message containing the payment request.
-     * @return The extracted payment request.
+     * @param messageId The message ID.
+     * @return true if the message must not be processed again.
      */
-    private PaymentRequest extractPaymentRequest(Message message) {
-        // Convert to enhanced message if it's not already
-        EnhancedMessage enhancedMessage;
+    private boolean isDuplicate(String messageId) {
+        if (deduplicator == null || messageId == null || !deduplicator.isDuplicate(messageId)) {
+            return false;
+        }
+        log.warn("Ignoring duplicate message: {}", messageId);
+        return true;
+    }
+    
+    /**
+     * Answers a duplicate message. The original task is returned when it is still known,
+     * so a retried message sees the outcome of the first delivery.
+     *
+     * @param messageId The message ID.
+     * @return The original task, or a task failed with DUPLICATE_MESSAGE.
+     */
+    private EnhancedTask duplicateTask(String messageId) {
+        EnhancedTask original = getTask(messageId);
+        if (original != null) {
+            return original;
+        }
+        EnhancedTask task = new EnhancedTask();
+        task.setId(messageId);
+        task.fail(ERROR_DUPLICATE_MESSAGE, "Duplicate message: " + messageId,
+                Collections.singletonMap("messageId", messageId));
+        return task;
+    }
+    
+    /**
+     * Creates a task to track an operation, registering it if a task registry is configured.
+     *
+     * @param id The task ID, taken from the message.
+     * @return The task.
+     */
+    private EnhancedTask newTask(String id) {
+        EnhancedTask task = new EnhancedTask();
+        task.setId(id);
+        if (taskRegistry != null && id != null) {
+            taskRegistry.register(task);
+        }
+        if (taskEventStream != null) {
+            taskEventStream.publish(task, TaskStatusEvent.State.SUBMITTED);
+            task.onComplete(completed ->
+                    taskEventStream.publish(completed, TaskEventStream.terminalState(completed)));
+        }
+        return task;
+    }
+    
+    /**
+     * Converts a message to an enhanced message if it's not already one. This is the only
+     * copy made; handlers bind their parameters straight from the enhanced message.
+     *
+     * @param message The message.
+     * @return The enhanced message.
+     */
+    private EnhancedMessage toEnhancedMessage(Message message) {
         if (message instanceof EnhancedMessage) {
-            enhancedMessage = (EnhancedMessage) message;
-        } else {
-            enhancedMessage = new EnhancedMessage();
-            // Copy properties from original message
-            enhancedMessage.setId(message.getId());
-            enhancedMessage.setRole(message.getRole());
-            enhancedMessage.setParts(message.getParts());
-            enhancedMessage.setMetadata(message.getMetadata());
+            return (EnhancedMessage) message;
+        }
+        EnhancedMessage enhancedMessage = new EnhancedMessage();
+        // Copy properties from original message
+        enhancedMessage.setId(message.getId());
+        enhancedMessage.setRole(message.getRole());
+        enhancedMessage.setParts(message.getParts());
+        enhancedMessage.setMetadata(message.getMetadata());
+        return enhancedMessage;
+    }
+    
+    /**
+     * Runs the handler for a message and completes its task with the outcome.
+     *
+     * @param message     The message to dispatch.
+     * @param task        The task to complete.
+     * @param predecessor A call that must finish before this one starts, or null.
+     * @return A future that completes, always normally, once the task is completed.
+     */
+    private CompletableFuture<Void> dispatch(EnhancedMessage message, EnhancedTask task,
+                                             CompletableFuture<Void> predecessor) {
+        // Process the message based on its method
+        String method = message.getMethod();
+        
+        MethodHandler<?> handler = methodRegistry.get(method);
+        if (handler == null) {
+            // Unsupported method
+            task.fail("Unsupported method: " + method);
+            return CompletableFuture.completedFuture(null);
         }
         
-        // In a real implementation, this would deserialize the message payload
-        // into a PaymentRequest object. For simplicity, we return a dummy object.
-        return PaymentRequest.builder().build();
+        CompletableFuture<PaymentResponse> response = predecessor != null
+                ? predecessor.thenCompose(ignored -> handle(handler, message, task))
+                : handle(handler, message, task);
+        return response
+                .thenAccept(task::complete)
+                .exceptionally(ex -> {
+                    task.fail(ex.getMessage());
+                    return null;
+                });
     }
     
     /**
-     * Helper method to extract a string parameter from a message.
+     * Runs a handler, announcing that the task is in progress to any streaming subscribers.
      *
-     * @param message The message containing the parameter.
-     * @param key     The parameter key.
-     * @return The extracted string value.
+     * @param handler The handler for the message's method.
+     * @param message The message.
+     * @param task    The task tracking the call.
+     * @return A future with the payment response.
      */
-    private String extractString(Message message, String key) {
-        // Convert to enhanced message if it's not already
-        EnhancedMessage enhancedMessage;
-        if (message instanceof EnhancedMessage) {
-            enhancedMessage = (EnhancedMessage) message;
-        } else {
-            enhancedMessage = new EnhancedMessage();
-            // Copy properties from original message
-            enhancedMessage.setId(message.getId());
-            enhancedMessage.setRole(message.getRole());
-            enhancedMessage.setParts(message.getParts());
-            enhancedMessage.setMetadata(message.getMetadata());
+    private CompletableFuture<PaymentResponse> handle(MethodHandler<?> handler, EnhancedMessage message,
+                                                      EnhancedTask task) {
+        if (taskEventStream != null) {
+            taskEventStream.publish(task, TaskStatusEvent.State.WORKING);
+        }
+        return handler.handle(message);
+    }
+    
+    /**
+     * Helper method to find the payment a message operates on, used to order batch calls.
+     * The parameters are bound as the handlers bind them, so a payment ID sent in a JSON
+     * text part orders the call too.
+     *
+     * @param message The message.
+     * @return The payment ID, or null if the message does not name one.
+     */
+    private String extractPaymentId(EnhancedMessage message) {
+        try {
+            return PAYMENT_ID_BINDER.apply(message).getPaymentId();
+        } catch (IllegalArgumentException e) {
+            // The handler fails the call with the same binding error
+            return null;
+        }
+    }
+    
+    /**
+     * Helper method to find the requesting agent of a message, used as the rate limiting key.
+     * Messages that do not name an agent share a single anonymous bucket.
+     *
+     * @param message The message.
+     * @return The requesting agent ID.
+     */
+    private String extractRequestingAgentId(EnhancedMessage message) {
+        Object agentId = message.getParams() != null ? message.getParams().get("requestingAgentId") : null;
+        if (agentId == null && message.getMetadata() != null) {
+            agentId = message.getMetadata().get("requestingAgentId");
         }
-        // In a real implementation, this would extract the parameter from the message.
-        // For simplicity, we return a dummy value.
-        return "dummy-value";
+        return agentId != null ? agentId.toString() : ANONYMOUS_AGENT;
+    }
+    
+    /**
+     * Bound parameters of calls that operate on an existing payment.
+     */
+    @Data
+    static class PaymentIdParams {
+        private String paymentId;
+    }
+    
+    /**
+     * Bound parameters of an authorizePayment call.
+     */
+    @Data
+    static class AuthorizationParams {
+        private String paymentId;
+        private String authToken;
     }
-}
\ No newline at end of file
+}
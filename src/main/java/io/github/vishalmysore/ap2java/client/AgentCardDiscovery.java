@@ -0,0 +1,227 @@
+package io.github.vishalmysore.ap2java.client;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.github.vishalmysore.ap2java.domain.PaymentEnabledAgentCard;
+import io.github.vishalmysore.ap2java.server.AP2HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Discovers the agent cards of other agents and caches them.
+ * <p>
+ * Cards are fetched from {@code /.well-known/agent.json} on the agent's base URL. Each card
+ * is kept for the {@code max-age} the agent sends, or a default time to live, in a cache
+ * bounded to the most recently used agents. Once most of that time has passed, the next
+ * lookup refreshes the card in the background and still answers from the cache. Refreshes
+ * send the card's ETag, so an unchanged card costs a 304 with no body. If an expired card
+ * cannot be refreshed, the stale card is served rather than failing the caller.
+ * Concurrent lookups of the same agent share one request.
+ */
+@Slf4j
+public class AgentCardDiscovery {
+
+    /**
+     * Fraction of the time to live after which lookups start a background refresh.
+     */
+    private static final double REFRESH_AHEAD_FRACTION = 0.8;
+
+    private static final ObjectReader CARD_READER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .readerFor(PaymentEnabledAgentCard.class);
+
+    private final OkHttpClient httpClient;
+    private final Duration defaultTtl;
+    private final Clock clock;
+    private final Map<String, CachedCard> cache;
+    private final ConcurrentHashMap<String, CompletableFuture<CachedCard>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a discovery client.
+     *
+     * @param httpClient The HTTP client used to fetch cards.
+     * @param maxCards   The maximum number of cards to cache; the least recently used is evicted first.
+     * @param defaultTtl How long to keep a card whose response has no max-age.
+     */
+    public AgentCardDiscovery(OkHttpClient httpClient, int maxCards, Duration defaultTtl) {
+        this(httpClient, maxCards, defaultTtl, Clock.systemUTC());
+    }
+
+    AgentCardDiscovery(OkHttpClient httpClient, int maxCards, Duration defaultTtl, Clock clock) {
+        this.httpClient = httpClient;
+        this.defaultTtl = defaultTtl;
+        this.clock = clock;
+        this.cache = new LinkedHashMap<String, CachedCard>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedCard> eldest) {
+                return size() > maxCards;
+            }
+        };
+    }
+
+    /**
+     * Gets the agent card of an agent, from the cache when it is fresh.
+     *
+     * @param agentUrl The base URL of the agent.
+     * @return A future with the card. It fails only if the card cannot be fetched and no
+     *         earlier copy is cached.
+     */
+    public CompletableFuture<PaymentEnabledAgentCard> getAgentCard(String agentUrl) {
+        CachedCard cached;
+        synchronized (cache) {
+            cached = cache.get(agentUrl);
+        }
+
+        Instant now = clock.instant();
+        if (cached != null && now.isBefore(cached.expiresAt)) {
+            if (!now.isBefore(cached.refreshAt)) {
+                refresh(agentUrl, cached);
+            }
+            return CompletableFuture.completedFuture(cached.card);
+        }
+
+        return refresh(agentUrl, cached).handle((fetched, ex) -> {
+            if (ex == null) {
+                return fetched.card;
+            }
+            if (cached == null) {
+                throw new CompletionException(ex);
+            }
+            log.warn("Failed to refresh agent card of {}, serving stale card: {}", agentUrl, ex.getMessage());
+            return cached.card;
+        });
+    }
+
+    /**
+     * Drops the cached card of an agent, so the next lookup fetches it again.
+     *
+     * @param agentUrl The base URL of the agent.
+     */
+    public void invalidate(String agentUrl) {
+        synchronized (cache) {
+            cache.remove(agentUrl);
+        }
+    }
+
+    /**
+     * Gets the number of cached cards.
+     *
+     * @return The number of cached cards.
+     */
+    public int getCachedCount() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Fetches a card, joining a fetch of the same agent that is already running.
+     *
+     * @param agentUrl The base URL of the agent.
+     * @param previous The cached card to revalidate, or null.
+     * @return A future with the refreshed cache entry.
+     */
+    private CompletableFuture<CachedCard> refresh(String agentUrl, CachedCard previous) {
+        CompletableFuture<CachedCard> fetch = new CompletableFuture<>();
+        CompletableFuture<CachedCard> running = inFlight.putIfAbsent(agentUrl, fetch);
+        if (running != null) {
+            return running;
+        }
+
+        Request request;
+        try {
+            Request.Builder builder = new Request.Builder()
+                    .url(HttpUrl.get(agentUrl).resolve(AP2HttpServer.AGENT_CARD_PATH));
+            if (previous != null && previous.etag != null) {
+                builder.header("If-None-Match", previous.etag);
+            }
+            request = builder.build();
+        } catch (IllegalArgumentException e) {
+            inFlight.remove(agentUrl, fetch);
+            fetch.completeExceptionally(e);
+            return fetch;
+        }
+
+        httpClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                inFlight.remove(agentUrl, fetch);
+                fetch.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    CachedCard fetched = toCachedCard(agentUrl, response, previous);
+                    synchronized (cache) {
+                        cache.put(agentUrl, fetched);
+                    }
+                    // Leave the in-flight map before completing, so callers woken by
+                    // the completion start a new fetch rather than join this one
+                    inFlight.remove(agentUrl, fetch);
+                    fetch.complete(fetched);
+                } catch (IOException | RuntimeException e) {
+                    inFlight.remove(agentUrl, fetch);
+                    fetch.completeExceptionally(e);
+                }
+            }
+        });
+        return fetch;
+    }
+
+    private CachedCard toCachedCard(String agentUrl, Response response, CachedCard previous) throws IOException {
+        Instant now = clock.instant();
+        long maxAge = response.cacheControl().maxAgeSeconds();
+        Duration ttl = maxAge >= 0 ? Duration.ofSeconds(maxAge) : defaultTtl;
+        String etag = response.header("ETag");
+
+        if (response.code() == 304 && previous != null) {
+            log.debug("Agent card of {} not modified", agentUrl);
+            return new CachedCard(previous.card, etag != null ? etag : previous.etag, now, ttl);
+        }
+        if (!response.isSuccessful()) {
+            throw new IOException("Unexpected status " + response.code() + " fetching agent card of " + agentUrl);
+        }
+        ResponseBody body = response.body();
+        if (body == null) {
+            throw new IOException("Empty agent card from " + agentUrl);
+        }
+        PaymentEnabledAgentCard card = CARD_READER.readValue(body.byteStream());
+        log.debug("Fetched agent card of {}", agentUrl);
+        return new CachedCard(card, etag, now, ttl);
+    }
+
+    /**
+     * A cached card with its validator and freshness deadlines.
+     */
+    private static class CachedCard {
+        private final PaymentEnabledAgentCard card;
+        private final String etag;
+        private final Instant refreshAt;
+        private final Instant expiresAt;
+
+        CachedCard(PaymentEnabledAgentCard card, String etag, Instant fetchedAt, Duration ttl) {
+            this.card = card;
+            this.etag = etag;
+            this.refreshAt = fetchedAt.plusMillis((long) (ttl.toMillis() * REFRESH_AHEAD_FRACTION));
+            this.expiresAt = fetchedAt.plus(ttl);
+        }
+    }
+}
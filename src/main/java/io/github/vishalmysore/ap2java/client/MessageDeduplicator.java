@@ -0,0 +1,193 @@
+package io.github.vishalmysore.ap2java.client;
+
+import io.github.vishalmysore.ap2java.util.BloomFilter;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Detects messages that arrive more than once within a time window, keyed by message ID.
+ * <p>
+ * A pair of Bloom filters covers the whole window at a few bits per ID: new IDs go into the
+ * current filter, and every window the previous filter is cleared and the two swap, so an
+ * ID stays visible for at least one full window. A message whose ID is in neither filter
+ * is new. Otherwise the ID is confirmed against an exact set of the most recent IDs,
+ * bounded so that memory stays flat however many messages arrive.
+ * <p>
+ * When the exact set has had to drop IDs that are still inside the window, a filter hit it
+ * cannot confirm is treated as a duplicate: for payments, rejecting a fresh message at the
+ * filters' false positive rate is safer than charging twice. A rejected sender can retry
+ * with a new message ID.
+ */
+public class MessageDeduplicator {
+
+    private final Duration window;
+    private final int maxExactIds;
+    private final long expectedPerWindow;
+    private final double falsePositiveRate;
+    private final Clock clock;
+
+    private final ConcurrentHashMap<String, Long> exactIds = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<SeenId> seenOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger exactSize = new AtomicInteger();
+    private final AtomicLong lastEvictedSeenAt = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong duplicateCount = new AtomicLong();
+
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+    private volatile long rotateAt;
+
+    /**
+     * Creates a deduplicator.
+     *
+     * @param window            How long a message ID is remembered.
+     * @param expectedPerWindow The number of messages expected per window, used to size the filters.
+     * @param maxExactIds       The maximum number of IDs kept in the exact set.
+     * @param falsePositiveRate The filters' false positive rate at the expected load.
+     */
+    public MessageDeduplicator(Duration window, long expectedPerWindow, int maxExactIds, double falsePositiveRate) {
+        this(window, expectedPerWindow, maxExactIds, falsePositiveRate, Clock.systemUTC());
+    }
+
+    MessageDeduplicator(Duration window, long expectedPerWindow, int maxExactIds, double falsePositiveRate,
+                        Clock clock) {
+        this.window = window;
+        this.maxExactIds = maxExactIds;
+        this.expectedPerWindow = expectedPerWindow;
+        this.falsePositiveRate = falsePositiveRate;
+        this.clock = clock;
+        this.current = new BloomFilter(expectedPerWindow, falsePositiveRate);
+        this.previous = new BloomFilter(expectedPerWindow, falsePositiveRate);
+        this.rotateAt = clock.millis() + window.toMillis();
+    }
+
+    /**
+     * Records a message ID and checks whether it was already seen within the window.
+     *
+     * @param messageId The message ID.
+     * @return true if the message is a duplicate and should not be processed again.
+     */
+    public boolean isDuplicate(String messageId) {
+        long now = clock.millis();
+        rotateIfDue(now);
+        expireExactIds(now);
+
+        BloomFilter filter = current;
+        boolean seen = previous.mightContain(messageId) | !filter.put(messageId);
+        if (!seen) {
+            // Definitely new, unless a concurrent call with the same ID recorded it first
+            if (exactIds.putIfAbsent(messageId, now) == null) {
+                trackExact(messageId, now);
+                return false;
+            }
+            duplicateCount.incrementAndGet();
+            return true;
+        }
+
+        Long seenAt = exactIds.putIfAbsent(messageId, now);
+        if (seenAt != null) {
+            if (now - seenAt < window.toMillis()) {
+                duplicateCount.incrementAndGet();
+                return true;
+            }
+            // Seen before the window, so this is a fresh use of the ID
+            if (exactIds.replace(messageId, seenAt, now)) {
+                seenOrder.add(new SeenId(messageId, now));
+            }
+            return false;
+        }
+        trackExact(messageId, now);
+        long lastEvicted = lastEvictedSeenAt.get();
+        if (lastEvicted != Long.MIN_VALUE && now - lastEvicted < window.toMillis()) {
+            // The exact set dropped IDs from this window, so the filters' answer stands
+            duplicateCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of IDs in the exact set.
+     *
+     * @return The number of tracked IDs.
+     */
+    public int getTrackedCount() {
+        return exactIds.size();
+    }
+
+    /**
+     * Gets the number of duplicates detected.
+     *
+     * @return The number of duplicates.
+     */
+    public long getDuplicateCount() {
+        return duplicateCount.get();
+    }
+
+    private void trackExact(String messageId, long now) {
+        seenOrder.add(new SeenId(messageId, now));
+        exactSize.incrementAndGet();
+        SeenId oldest;
+        while (exactSize.get() > maxExactIds && (oldest = seenOrder.poll()) != null) {
+            // Entries whose ID has since been re-recorded or expired no longer count
+            if (exactIds.remove(oldest.messageId, oldest.seenAt)) {
+                exactSize.decrementAndGet();
+                lastEvictedSeenAt.accumulateAndGet(oldest.seenAt, Math::max);
+            }
+        }
+    }
+
+    /**
+     * Drops IDs that have left the window from the exact set, oldest first.
+     */
+    private void expireExactIds(long now) {
+        long cutoff = now - window.toMillis();
+        SeenId oldest;
+        while ((oldest = seenOrder.peek()) != null && oldest.seenAt <= cutoff) {
+            if (seenOrder.remove(oldest) && exactIds.remove(oldest.messageId, oldest.seenAt)) {
+                exactSize.decrementAndGet();
+            }
+        }
+    }
+
+    private void rotateIfDue(long now) {
+        if (now < rotateAt) {
+            return;
+        }
+        synchronized (this) {
+            if (now < rotateAt) {
+                return;
+            }
+            long windowMillis = window.toMillis();
+            if (now - rotateAt >= windowMillis) {
+                // Idle for more than a whole window: both filters are out of date
+                current = new BloomFilter(expectedPerWindow, falsePositiveRate);
+                previous = new BloomFilter(expectedPerWindow, falsePositiveRate);
+                rotateAt = now + windowMillis;
+            } else {
+                BloomFilter expired = previous;
+                expired.clear();
+                previous = current;
+                current = expired;
+                rotateAt += windowMillis;
+            }
+        }
+    }
+
+    /**
+     * An ID in the exact set, in arrival order.
+     */
+    private static class SeenId {
+        private final String messageId;
+        private final long seenAt;
+
+        SeenId(String messageId, long seenAt) {
+            this.messageId = messageId;
+            this.seenAt = seenAt;
+        }
+    }
+}
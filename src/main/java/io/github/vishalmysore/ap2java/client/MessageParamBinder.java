@@ -0,0 +1,94 @@
+package io.github.vishalmysore.ap2java.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import io.github.vishalmysore.a2a.domain.Part;
+import io.github.vishalmysore.a2a.domain.TextPart;
+import io.github.vishalmysore.ap2java.domain.EnhancedMessage;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+/**
+ * Binds the parameters of an {@link EnhancedMessage} to a typed object in a single pass.
+ * Parameters are taken from {@link EnhancedMessage#getParams()} when present, otherwise
+ * from the first text part holding a JSON object. Each binder holds an {@link ObjectReader}
+ * built once for its target type; values are streamed as tokens straight into the target
+ * without building an intermediate map or tree.
+ *
+ * @param <T> The type the parameters are bound to
+ */
+public final class MessageParamBinder<T> implements Function<EnhancedMessage, T> {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .configure(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS, true);
+
+    private static final String EMPTY_OBJECT = "{}";
+
+    private final ObjectReader reader;
+
+    private MessageParamBinder(Class<T> type) {
+        this.reader = MAPPER.readerFor(type);
+    }
+
+    /**
+     * Creates a binder for the given type.
+     *
+     * @param type The type to bind parameters to.
+     * @param <T>  The type to bind parameters to.
+     * @return The binder.
+     */
+    public static <T> MessageParamBinder<T> forType(Class<T> type) {
+        return new MessageParamBinder<>(type);
+    }
+
+    /**
+     * Binds the message parameters. A message without parameters binds to an empty object.
+     *
+     * @param message The message to bind.
+     * @return The bound parameters.
+     * @throws IllegalArgumentException if the parameters cannot be bound to the target type
+     */
+    @Override
+    public T apply(EnhancedMessage message) {
+        try {
+            if (message.getParams() != null && !message.getParams().isEmpty()) {
+                TokenBuffer tokens = new TokenBuffer(MAPPER, false);
+                MAPPER.writeValue(tokens, message.getParams());
+                try (JsonParser parser = tokens.asParser(MAPPER)) {
+                    return reader.readValue(parser);
+                }
+            }
+            String json = findJsonPart(message);
+            return reader.readValue(json != null ? json : EMPTY_OBJECT);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid parameters for message " + message.getId()
+                    + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Finds the first text part of a message that holds a JSON object.
+     *
+     * @param message The message.
+     * @return The JSON text, or null if there is none.
+     */
+    private static String findJsonPart(EnhancedMessage message) {
+        if (message.getParts() == null) {
+            return null;
+        }
+        for (Part part : message.getParts()) {
+            if (part instanceof TextPart) {
+                String text = ((TextPart) part).getText();
+                if (text != null && text.trim().startsWith("{")) {
+                    return text;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.vishalmysore.ap2java.client;
+
+import io.github.vishalmysore.ap2java.domain.EnhancedMessage;
+import io.github.vishalmysore.ap2java.domain.PaymentResponse;
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * A JSON-RPC method served by {@link AP2Client}.
+ * A handler pairs the binding of the message parameters, declared once,
+ * with the operation invoked on the bound parameters.
+ *
+ * @param <P> The type the message parameters are bound to
+ */
+public final class MethodHandler<P> {
+
+    @Getter
+    private final String method;
+    private final Function<EnhancedMessage, P> binder;
+    private final Function<P, CompletableFuture<PaymentResponse>> invoker;
+
+    private MethodHandler(String method, Function<EnhancedMessage, P> binder,
+                          Function<P, CompletableFuture<PaymentResponse>> invoker) {
+        if (method == null || binder == null || invoker == null) {
+            throw new IllegalArgumentException("Method name, binder and invoker are required");
+        }
+        this.method = method;
+        this.binder = binder;
+        this.invoker = invoker;
+    }
+
+    /**
+     * Creates a handler.
+     *
+     * @param method  The JSON-RPC method name.
+     * @param binder  Binds the message parameters to the operation's input.
+     * @param invoker Runs the operation on the bound input.
+     * @param <P>     The type the message parameters are bound to.
+     * @return The handler.
+     */
+    public static <P> MethodHandler<P> of(String method, Function<EnhancedMessage, P> binder,
+                                          Function<P, CompletableFuture<PaymentResponse>> invoker) {
+        return new MethodHandler<>(method, binder, invoker);
+    }
+
+    /**
+     * Binds the message and invokes the operation.
+     * Binding and invocation failures are returned as a failed future rather than thrown.
+     *
+     * @param message The message to handle.
+     * @return A future with the payment response.
+     */
+    public CompletableFuture<PaymentResponse> handle(EnhancedMessage message) {
+        try {
+            return invoker.apply(binder.apply(message));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
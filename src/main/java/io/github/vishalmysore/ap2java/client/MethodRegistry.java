@@ -0,0 +1,53 @@
+package io.github.vishalmysore.ap2java.client;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps JSON-RPC method names to their handlers, so dispatching a message
+ * costs a single hash lookup. Methods can be registered or replaced at runtime.
+ */
+public class MethodRegistry {
+
+    private final ConcurrentHashMap<String, MethodHandler<?>> handlers = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a handler, replacing any existing handler for the same method.
+     *
+     * @param handler The handler to register.
+     * @return The handler previously registered for the method, or null if none.
+     */
+    public MethodHandler<?> register(MethodHandler<?> handler) {
+        return handlers.put(handler.getMethod(), handler);
+    }
+
+    /**
+     * Removes the handler for a method.
+     *
+     * @param method The method name.
+     * @return The removed handler, or null if none was registered.
+     */
+    public MethodHandler<?> unregister(String method) {
+        return method != null ? handlers.remove(method) : null;
+    }
+
+    /**
+     * Looks up the handler for a method.
+     *
+     * @param method The method name.
+     * @return The handler, or null if the method is not supported.
+     */
+    public MethodHandler<?> get(String method) {
+        return method != null ? handlers.get(method) : null;
+    }
+
+    /**
+     * Gets the names of all registered methods.
+     *
+     * @return An unmodifiable view of the method names.
+     */
+    public Set<String> getMethods() {
+        return Collections.unmodifiableSet(handlers.keySet());
+    }
+}
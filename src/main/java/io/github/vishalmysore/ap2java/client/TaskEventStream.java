@@ -0,0 +1,305 @@
+package io.github.vishalmysore.ap2java.client;
+
+import io.github.vishalmysore.ap2java.domain.EnhancedTask;
+import io.github.vishalmysore.ap2java.domain.PaymentResponse;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fans task status events out to streaming subscribers.
+ * <p>
+ * Each subscriber has its own bounded buffer, so a slow subscriber never holds up the
+ * publisher or other subscribers. When a buffer is full the oldest non-terminal event is
+ * dropped: a later status supersedes an earlier one, and the terminal event is what a
+ * subscriber must not miss. Publishing to a task nobody watches costs one map lookup.
+ */
+public class TaskEventStream {
+
+    /**
+     * Default number of events buffered per subscriber.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 16;
+
+    private final int bufferSize;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ConcurrentHashMap<String, List<Subscription>> subscribersByTask = new ConcurrentHashMap<>();
+    private final List<Subscription> allTaskSubscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a stream with the default per-subscriber buffer size.
+     */
+    public TaskEventStream() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a stream.
+     *
+     * @param bufferSize The number of events buffered per subscriber.
+     */
+    public TaskEventStream(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be positive");
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Subscribes to the events of one task. The subscription finishes after the task's
+     * terminal event has been taken.
+     *
+     * @param taskId The task ID.
+     * @return The subscription.
+     */
+    public Subscription subscribe(String taskId) {
+        Subscription subscription = new Subscription(this, taskId, bufferSize);
+        subscribersByTask.computeIfAbsent(taskId, id -> new CopyOnWriteArrayList<>()).add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Subscribes to the events of a known task. If the task has already completed, the
+     * subscription receives its terminal event straight away.
+     *
+     * @param task The task.
+     * @return The subscription.
+     */
+    public Subscription subscribe(EnhancedTask task) {
+        Subscription subscription = subscribe(task.getId());
+        if (task.isCompleted()) {
+            unsubscribe(subscription);
+            subscription.offer(eventFor(task, terminalState(task)));
+        }
+        return subscription;
+    }
+    
+    /**
+     * Subscribes to the events of every task. The subscription stays open until closed.
+     *
+     * @return The subscription.
+     */
+    public Subscription subscribeAll() {
+        Subscription subscription = new Subscription(this, null, bufferSize);
+        allTaskSubscribers.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Publishes a lifecycle event for a task.
+     *
+     * @param task  The task.
+     * @param state The state the task has reached.
+     */
+    public void publish(EnhancedTask task, TaskStatusEvent.State state) {
+        List<Subscription> subscribers = state.isTerminal()
+                ? subscribersByTask.remove(task.getId())
+                : subscribersByTask.get(task.getId());
+        if (subscribers == null && allTaskSubscribers.isEmpty()) {
+            return;
+        }
+
+        TaskStatusEvent event = eventFor(task, state);
+        if (subscribers != null) {
+            for (Subscription subscription : subscribers) {
+                subscription.offer(event);
+            }
+        }
+        for (Subscription subscription : allTaskSubscribers) {
+            subscription.offer(event);
+        }
+    }
+
+    /**
+     * Gets the terminal state of a completed task.
+     *
+     * @param task The completed task.
+     * @return FAILED if the task has an error, COMPLETED otherwise.
+     */
+    public static TaskStatusEvent.State terminalState(EnhancedTask task) {
+        return task.getError() != null ? TaskStatusEvent.State.FAILED : TaskStatusEvent.State.COMPLETED;
+    }
+
+    private TaskStatusEvent eventFor(EnhancedTask task, TaskStatusEvent.State state) {
+        PaymentResponse result = task.getResult();
+        return new TaskStatusEvent(sequence.incrementAndGet(), task.getId(), state,
+                result != null ? result.getPaymentId() : null,
+                result != null ? result.getStatus() : null,
+                task.getError(), System.currentTimeMillis());
+    }
+
+    /**
+     * Gets the number of open subscriptions.
+     *
+     * @return The subscriber count.
+     */
+    public int getSubscriberCount() {
+        int count = allTaskSubscribers.size();
+        for (List<Subscription> subscribers : subscribersByTask.values()) {
+            count += subscribers.size();
+        }
+        return count;
+    }
+
+    private void unsubscribe(Subscription subscription) {
+        if (subscription.taskId == null) {
+            allTaskSubscribers.remove(subscription);
+            return;
+        }
+        subscribersByTask.computeIfPresent(subscription.taskId, (id, subscribers) -> {
+            subscribers.remove(subscription);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    /**
+     * A subscriber's view of the stream, with its own bounded buffer.
+     */
+    public static class Subscription implements AutoCloseable {
+        private final TaskEventStream stream;
+        private final String taskId;
+        private final int capacity;
+        private final ArrayDeque<TaskStatusEvent> buffer;
+        private boolean closed;
+        private boolean terminalReceived;
+        private long droppedCount;
+        private Runnable listener;
+
+        Subscription(TaskEventStream stream, String taskId, int capacity) {
+            this.stream = stream;
+            this.taskId = taskId;
+            this.capacity = capacity;
+            this.buffer = new ArrayDeque<>(capacity);
+        }
+
+        void offer(TaskStatusEvent event) {
+            Runnable toNotify;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (buffer.size() == capacity) {
+                    dropOldest();
+                }
+                buffer.addLast(event);
+                if (taskId != null && event.getState().isTerminal()) {
+                    terminalReceived = true;
+                }
+                notifyAll();
+                toNotify = listener;
+            }
+            // Outside the lock, so the listener may poll straight away
+            if (toNotify != null) {
+                toNotify.run();
+            }
+        }
+
+        /**
+         * Registers a listener that is called whenever an event arrives or the subscription
+         * is closed, so a subscriber can drain the buffer with {@link #poll()} instead of
+         * parking a thread in {@link #poll(long, TimeUnit)}. The listener runs on the
+         * publishing thread and must not block; it is called at once if events are already
+         * waiting.
+         *
+         * @param listener The listener, replacing any registered before.
+         */
+        public void onEvent(Runnable listener) {
+            boolean pending;
+            synchronized (this) {
+                this.listener = listener;
+                pending = !buffer.isEmpty() || closed || terminalReceived;
+            }
+            if (pending) {
+                listener.run();
+            }
+        }
+
+        /**
+         * Drops the oldest non-terminal event, or the oldest event if all are terminal.
+         */
+        private void dropOldest() {
+            Iterator<TaskStatusEvent> iterator = buffer.iterator();
+            while (iterator.hasNext()) {
+                if (!iterator.next().getState().isTerminal()) {
+                    iterator.remove();
+                    droppedCount++;
+                    return;
+                }
+            }
+            buffer.pollFirst();
+            droppedCount++;
+        }
+
+        /**
+         * Takes the next event, waiting up to the given time for one to arrive.
+         *
+         * @param timeout The maximum time to wait.
+         * @param unit    The unit of the timeout.
+         * @return The next event, or null if none arrived in time or the subscription is finished.
+         * @throws InterruptedException if the current thread is interrupted while waiting.
+         */
+        public synchronized TaskStatusEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (buffer.isEmpty() && !closed && !terminalReceived) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return buffer.pollFirst();
+        }
+
+        /**
+         * Takes the next event without waiting.
+         *
+         * @return The next event, or null if none is buffered.
+         */
+        public synchronized TaskStatusEvent poll() {
+            return buffer.pollFirst();
+        }
+
+        /**
+         * Checks whether no more events will be returned: the subscription was closed, or
+         * the task's terminal event has been taken.
+         *
+         * @return true if the subscription is finished.
+         */
+        public synchronized boolean isFinished() {
+            return closed || (terminalReceived && buffer.isEmpty());
+        }
+
+        /**
+         * Gets the number of events dropped because this subscriber fell behind.
+         *
+         * @return The dropped event count.
+         */
+        public synchronized long getDroppedCount() {
+            return droppedCount;
+        }
+
+        @Override
+        public void close() {
+            Runnable toNotify;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                buffer.clear();
+                notifyAll();
+                toNotify = listener;
+                listener = null;
+            }
+            stream.unsubscribe(this);
+            if (toNotify != null) {
+                toNotify.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package io.github.vishalmysore.ap2java.client;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import io.github.vishalmysore.ap2java.domain.EnhancedTask;
+import io.github.vishalmysore.ap2java.domain.PaymentResponse;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Keeps track of the tasks created by {@link AP2Client}.
+ * <p>
+ * Active tasks live in a bounded concurrent map and expire a fixed time after they
+ * were registered. Because every task gets the same time to live, registration order is
+ * also expiry order, so eviction just drains the head of a queue. When a journal file is
+ * configured, every change is appended to it as one JSON line instead of rewriting all
+ * tasks, and the journal is replayed on startup. The journal is compacted to the live
+ * tasks once it grows well past them, which keeps replay time bounded.
+ */
+@Slf4j
+public class TaskRegistry implements Closeable {
+
+    private static final String OP_PUT = "PUT";
+    private static final String OP_COMPLETE = "COMPLETE";
+    private static final String OP_REMOVE = "REMOVE";
+    private static final String INTERRUPTED_ERROR = "Task interrupted by restart";
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .registerModule(new SimpleModule()
+                    .addSerializer(Instant.class, new JsonSerializer<Instant>() {
+                        @Override
+                        public void serialize(Instant value, JsonGenerator gen, SerializerProvider serializers)
+                                throws IOException {
+                            gen.writeString(value.toString());
+                        }
+                    })
+                    .addDeserializer(Instant.class, new JsonDeserializer<Instant>() {
+                        @Override
+                        public Instant deserialize(JsonParser parser, DeserializationContext context)
+                                throws IOException {
+                            return Instant.parse(parser.getValueAsString());
+                        }
+                    }));
+    private static final ObjectWriter RECORD_WRITER = MAPPER.writerFor(JournalRecord.class);
+    private static final ObjectReader RECORD_READER = MAPPER.readerFor(JournalRecord.class);
+
+    private final int maxTasks;
+    private final long ttlMillis;
+    private final Clock clock;
+    private final Path journalPath;
+    private final ConcurrentHashMap<String, Entry> tasks = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> expiryQueue = new ConcurrentLinkedQueue<>();
+    private final Object journalLock = new Object();
+    private BufferedWriter journal;
+    private long journalRecords;
+
+    /**
+     * Creates an in-memory registry without persistence.
+     *
+     * @param maxTasks The maximum number of tasks kept.
+     * @param ttl      How long a task is kept after it is registered.
+     */
+    public TaskRegistry(int maxTasks, Duration ttl) {
+        this(maxTasks, ttl, null, Clock.systemUTC());
+    }
+
+    /**
+     * Creates a registry that journals changes to the given file, replaying it first if it exists.
+     *
+     * @param maxTasks    The maximum number of tasks kept.
+     * @param ttl         How long a task is kept after it is registered.
+     * @param journalPath The journal file.
+     * @throws UncheckedIOException if the journal cannot be read or opened.
+     */
+    public TaskRegistry(int maxTasks, Duration ttl, Path journalPath) {
+        this(maxTasks, ttl, journalPath, Clock.systemUTC());
+    }
+
+    /**
+     * Creates a registry.
+     *
+     * @param maxTasks    The maximum number of tasks kept.
+     * @param ttl         How long a task is kept after it is registered.
+     * @param journalPath The journal file, or null to keep tasks in memory only.
+     * @param clock       The clock used for expiry.
+     */
+    TaskRegistry(int maxTasks, Duration ttl, Path journalPath, Clock clock) {
+        if (maxTasks < 1 || ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("maxTasks and ttl must be positive");
+        }
+        this.maxTasks = maxTasks;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+        this.journalPath = journalPath;
+        if (journalPath != null) {
+            try {
+                replay();
+                compact();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open task journal " + journalPath, e);
+            }
+        }
+    }
+
+    /**
+     * Registers a task. Its completion is journaled when it happens.
+     *
+     * @param task The task to register.
+     */
+    public void register(EnhancedTask task) {
+        Entry entry = new Entry(task, clock.millis() + ttlMillis);
+        Entry previous = tasks.put(task.getId(), entry);
+        if (previous != null) {
+            previous.removed = true;
+        }
+        expiryQueue.add(entry);
+        append(JournalRecord.put(task.getId(), entry.expiresAtMillis));
+        task.onComplete(completed -> {
+            if (!entry.removed) {
+                append(JournalRecord.complete(completed));
+            }
+        });
+        evict();
+    }
+
+    /**
+     * Looks up a task.
+     *
+     * @param taskId The task ID.
+     * @return The task, or null if it is unknown or has expired.
+     */
+    public EnhancedTask get(String taskId) {
+        Entry entry = taskId != null ? tasks.get(taskId) : null;
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis <= clock.millis()) {
+            evict();
+            return null;
+        }
+        return entry.task;
+    }
+
+    /**
+     * Removes a task.
+     *
+     * @param taskId The task ID.
+     * @return The removed task, or null if it was not registered.
+     */
+    public EnhancedTask remove(String taskId) {
+        Entry entry = taskId != null ? tasks.remove(taskId) : null;
+        if (entry == null) {
+            return null;
+        }
+        entry.removed = true;
+        append(JournalRecord.remove(taskId));
+        return entry.task;
+    }
+
+    /**
+     * Gets the number of tasks currently kept.
+     *
+     * @return The task count.
+     */
+    public int size() {
+        return tasks.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (journalLock) {
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+        }
+    }
+
+    /**
+     * Drops expired tasks, then the oldest tasks while over capacity.
+     */
+    private void evict() {
+        long now = clock.millis();
+        Entry head;
+        while ((head = expiryQueue.peek()) != null
+                && (head.removed || head.expiresAtMillis <= now || tasks.size() > maxTasks)) {
+            if (expiryQueue.remove(head) && !head.removed && tasks.remove(head.task.getId(), head)) {
+                head.removed = true;
+                append(JournalRecord.remove(head.task.getId()));
+            }
+        }
+    }
+
+    private void append(JournalRecord record) {
+        if (journalPath == null) {
+            return;
+        }
+        synchronized (journalLock) {
+            if (journal == null) {
+                return;
+            }
+            try {
+                journal.write(RECORD_WRITER.writeValueAsString(record));
+                journal.newLine();
+                journal.flush();
+                journalRecords++;
+                if (journalRecords > Math.max(MIN_COMPACTION_RECORDS, 4L * maxTasks)) {
+                    compact();
+                }
+            } catch (IOException e) {
+                log.error("Failed to append to task journal {}", journalPath, e);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the tasks kept in the journal. Tasks that were still running when the
+     * journal was written cannot resume, so they are restored as failed.
+     */
+    private void replay() throws IOException {
+        if (!Files.exists(journalPath)) {
+            return;
+        }
+        long now = clock.millis();
+        Map<String, JournalRecord> pending = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JournalRecord record;
+                try {
+                    record = RECORD_READER.readValue(line);
+                } catch (IOException e) {
+                    // A torn final line from a crash; everything before it is intact
+                    log.warn("Skipping unreadable task journal record: {}", line);
+                    continue;
+                }
+                switch (record.getOp()) {
+                    case OP_PUT:
+                        pending.put(record.getId(), record);
+                        break;
+                    case OP_COMPLETE:
+                        JournalRecord put = pending.get(record.getId());
+                        if (put != null) {
+                            record.setExpiresAt(put.getExpiresAt());
+                            pending.put(record.getId(), record);
+                        }
+                        break;
+                    case OP_REMOVE:
+                        pending.remove(record.getId());
+                        break;
+                    default:
+                        log.warn("Unknown task journal operation: {}", record.getOp());
+                }
+            }
+        }
+        for (JournalRecord record : pending.values()) {
+            if (record.getExpiresAt() <= now) {
+                continue;
+            }
+            EnhancedTask task = new EnhancedTask();
+            task.setId(record.getId());
+            if (OP_PUT.equals(record.getOp())) {
+                task.fail(INTERRUPTED_ERROR);
+            } else if (record.getError() != null || record.getErrorCode() != null) {
+                task.fail(record.getErrorCode(), record.getError(), record.getErrorData());
+            } else {
+                task.complete(record.getResult());
+            }
+            Entry entry = new Entry(task, record.getExpiresAt());
+            tasks.put(task.getId(), entry);
+            expiryQueue.add(entry);
+        }
+        evict();
+        log.info("Replayed {} tasks from journal {}", tasks.size(), journalPath);
+    }
+
+    /**
+     * Rewrites the journal so that it only holds the live tasks, then reopens it for appending.
+     */
+    private void compact() throws IOException {
+        synchronized (journalLock) {
+            if (journal != null) {
+                journal.close();
+            }
+            Path compacted = journalPath.resolveSibling(journalPath.getFileName() + ".compact");
+            long records = 0;
+            try (BufferedWriter writer = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+                for (Entry entry : expiryQueue) {
+                    if (entry.removed) {
+                        continue;
+                    }
+                    writer.write(RECORD_WRITER.writeValueAsString(
+                            JournalRecord.put(entry.task.getId(), entry.expiresAtMillis)));
+                    writer.newLine();
+                    records++;
+                    if (entry.task.isCompleted()) {
+                        writer.write(RECORD_WRITER.writeValueAsString(JournalRecord.complete(entry.task)));
+                        writer.newLine();
+                        records++;
+                    }
+                }
+            }
+            Files.move(compacted, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journal = Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            journalRecords = records;
+        }
+    }
+
+    /**
+     * A registered task and when it expires.
+     */
+    private static class Entry {
+        private final EnhancedTask task;
+        private final long expiresAtMillis;
+        private volatile boolean removed;
+
+        Entry(EnhancedTask task, long expiresAtMillis) {
+            this.task = task;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    /**
+     * One line of the task journal.
+     */
+    @Data
+    @NoArgsConstructor
+    static class JournalRecord {
+        private String op;
+        private String id;
+        private long expiresAt;
+        private PaymentResponse result;
+        private String error;
+        private String errorCode;
+        private Map<String, Object> errorData;
+
+        static JournalRecord put(String id, long expiresAt) {
+            JournalRecord record = new JournalRecord();
+            record.op = OP_PUT;
+            record.id = id;
+            record.expiresAt = expiresAt;
+            return record;
+        }
+
+        static JournalRecord complete(EnhancedTask task) {
+            JournalRecord record = new JournalRecord();
+            record.op = OP_COMPLETE;
+            record.id = task.getId();
+            record.result = task.getResult();
+            record.error = task.getError();
+            record.errorCode = task.getErrorCode();
+            record.errorData = task.getErrorData();
+            return record;
+        }
+
+        static JournalRecord remove(String id) {
+            JournalRecord record = new JournalRecord();
+            record.op = OP_REMOVE;
+            record.id = id;
+            return record;
+        }
+    }
+}
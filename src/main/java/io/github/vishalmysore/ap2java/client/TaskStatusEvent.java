@@ -0,0 +1,120 @@
+package io.github.vishalmysore.ap2java.client;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.github.vishalmysore.ap2java.domain.PaymentStatus;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An incremental status update for a task, as streamed to subscribers.
+ * An event is immutable and renders its server-sent event frame only once,
+ * so fanning it out to many subscribers shares the same bytes.
+ */
+@Getter
+@ToString(exclude = "sseFrame")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TaskStatusEvent {
+
+    /**
+     * The SSE event name used for task status events.
+     */
+    public static final String SSE_EVENT_NAME = "task-status";
+
+    private static final ObjectWriter WRITER = new ObjectMapper().writerFor(TaskStatusEvent.class);
+
+    /**
+     * Stage of a task's lifecycle.
+     */
+    public enum State {
+        /**
+         * The task has been created for an incoming message.
+         */
+        SUBMITTED,
+
+        /**
+         * The payment operation is running.
+         */
+        WORKING,
+
+        /**
+         * The payment operation finished and the task has a result.
+         */
+        COMPLETED,
+
+        /**
+         * The task finished with an error.
+         */
+        FAILED;
+
+        /**
+         * Checks whether no further events follow this state.
+         *
+         * @return true for COMPLETED and FAILED
+         */
+        public boolean isTerminal() {
+            return this == COMPLETED || this == FAILED;
+        }
+    }
+
+    private final long sequence;
+    private final String taskId;
+    private final State state;
+    private final String paymentId;
+    private final PaymentStatus paymentStatus;
+    private final String error;
+    private final long timestamp;
+
+    @JsonIgnore
+    @Getter(lombok.AccessLevel.NONE)
+    private volatile byte[] sseFrame;
+
+    /**
+     * Creates an event.
+     *
+     * @param sequence      Position of the event in the stream, used as the SSE event ID.
+     * @param taskId        The ID of the task.
+     * @param state         The lifecycle state reached.
+     * @param paymentId     The payment ID, if known.
+     * @param paymentStatus The payment status, if known.
+     * @param error         The error message for failed tasks.
+     * @param timestamp     When the state was reached, in epoch milliseconds.
+     */
+    public TaskStatusEvent(long sequence, String taskId, State state, String paymentId,
+                           PaymentStatus paymentStatus, String error, long timestamp) {
+        this.sequence = sequence;
+        this.taskId = taskId;
+        this.state = state;
+        this.paymentId = paymentId;
+        this.paymentStatus = paymentStatus;
+        this.error = error;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Renders the event as a UTF-8 server-sent event frame. The frame is built on first
+     * use and shared by every later caller.
+     *
+     * @return The frame bytes; callers must not modify them.
+     */
+    public byte[] toSseFrame() {
+        byte[] frame = sseFrame;
+        if (frame == null) {
+            String data;
+            try {
+                data = WRITER.writeValueAsString(this);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Failed to serialize task status event", e);
+            }
+            frame = ("id: " + sequence + "\nevent: " + SSE_EVENT_NAME + "\ndata: " + data + "\n\n")
+                    .getBytes(StandardCharsets.UTF_8);
+            sseFrame = frame;
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,163 @@
+package io.github.vishalmysore.ap2java.client;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limiter keyed by requesting agent and JSON-RPC method.
+ * Buckets refill lazily from elapsed time when they are touched, so no timer
+ * threads are needed. Keys are spread across independently locked stripes to keep
+ * contention low, and each stripe holds a bounded LRU of buckets so tracking state
+ * stays fixed no matter how many distinct agents call in. An evicted bucket simply
+ * starts over full the next time its key is seen.
+ */
+public class TokenBucketRateLimiter {
+
+    /**
+     * Default number of stripes.
+     */
+    static final int DEFAULT_STRIPES = 64;
+
+    private final Limit defaultLimit;
+    private final Map<String, Limit> methodLimits;
+    private final Stripe[] stripes;
+    private final LongSupplier nanoTime;
+
+    /**
+     * Creates a limiter that applies the same limit to every method.
+     *
+     * @param defaultLimit The limit applied per agent and method
+     * @param maxTrackedKeys The maximum number of agent/method buckets kept in memory
+     */
+    public TokenBucketRateLimiter(Limit defaultLimit, int maxTrackedKeys) {
+        this(defaultLimit, Collections.emptyMap(), maxTrackedKeys, DEFAULT_STRIPES, System::nanoTime);
+    }
+
+    /**
+     * Creates a limiter.
+     *
+     * @param defaultLimit The limit applied to methods without an override
+     * @param methodLimits Per-method overrides of the default limit
+     * @param maxTrackedKeys The maximum number of agent/method buckets kept in memory
+     * @param stripeCount The number of independently locked stripes
+     * @param nanoTime The monotonic time source used for refills
+     */
+    public TokenBucketRateLimiter(Limit defaultLimit, Map<String, Limit> methodLimits,
+                                  int maxTrackedKeys, int stripeCount, LongSupplier nanoTime) {
+        if (defaultLimit == null || maxTrackedKeys < 1 || stripeCount < 1) {
+            throw new IllegalArgumentException("A default limit, key bound and stripe count are required");
+        }
+        this.defaultLimit = defaultLimit;
+        this.methodLimits = new HashMap<>(methodLimits);
+        this.nanoTime = nanoTime;
+        int perStripe = Math.max(1, maxTrackedKeys / stripeCount);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    /**
+     * Takes one token from the bucket for the given agent and method.
+     *
+     * @param agentId The ID of the requesting agent
+     * @param method The JSON-RPC method being called
+     * @return 0 if the call is permitted, otherwise the number of milliseconds
+     *         until a token will be available
+     */
+    public long tryAcquire(String agentId, String method) {
+        Limit limit = method != null ? methodLimits.getOrDefault(method, defaultLimit) : defaultLimit;
+        String key = agentId + '\u0000' + method;
+        int hash = key.hashCode();
+        Stripe stripe = stripes[((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % stripes.length];
+        long now = nanoTime.getAsLong();
+
+        synchronized (stripe) {
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(limit.getCapacity(), now);
+                stripe.buckets.put(key, bucket);
+            } else {
+                double refilled = (now - bucket.lastRefillNanos) * limit.tokensPerNano;
+                bucket.tokens = Math.min(limit.getCapacity(), bucket.tokens + refilled);
+                bucket.lastRefillNanos = now;
+            }
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            double missingNanos = (1 - bucket.tokens) / limit.tokensPerNano;
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis((long) Math.ceil(missingNanos)));
+        }
+    }
+
+    /**
+     * Gets the number of agent/method buckets currently tracked.
+     *
+     * @return The tracked bucket count
+     */
+    public int getTrackedKeyCount() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                count += stripe.buckets.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * A token-bucket limit: a burst capacity and a steady refill rate.
+     */
+    public static class Limit {
+        @Getter
+        private final double capacity;
+        @Getter
+        private final double refillPerSecond;
+        private final double tokensPerNano;
+
+        /**
+         * Creates a limit.
+         *
+         * @param capacity The maximum number of calls allowed in a burst
+         * @param refillPerSecond The number of calls replenished per second
+         */
+        public Limit(double capacity, double refillPerSecond) {
+            if (capacity < 1 || refillPerSecond <= 0) {
+                throw new IllegalArgumentException("Capacity must be at least 1 and refill rate positive");
+            }
+            this.capacity = capacity;
+            this.refillPerSecond = refillPerSecond;
+            this.tokensPerNano = refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+        }
+    }
+
+    private static class Bucket {
+        private double tokens;
+        private long lastRefillNanos;
+
+        Bucket(double tokens, long lastRefillNanos) {
+            this.tokens = tokens;
+            this.lastRefillNanos = lastRefillNanos;
+        }
+    }
+
+    private static class Stripe {
+        private final LinkedHashMap<String, Bucket> buckets;
+
+        Stripe(int maxKeys) {
+            this.buckets = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                    return size() > maxKeys;
+                }
+            };
+        }
+    }
+}
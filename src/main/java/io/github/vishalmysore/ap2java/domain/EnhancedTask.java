@@ -1,53 +1,178 @@
 package io.github.vishalmysore.ap2java.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.github.vishalmysore.a2a.domain.Task;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
 /**
  * An enhanced version of the Task class from a2ajava that adds methods required by AP2.
+ * <p>
+ * Completion is backed by a {@link CompletableFuture}: the outcome fields are written
+ * before the future completes, so anyone who observes completion through
+ * {@link #await()}, {@link #getCompletion()} or a listener also sees the result or error.
+ * Callers can block, with or without a timeout, or chain callbacks instead of polling
+ * {@link #isCompleted()}.
  */
 @Getter
 @Setter
 public class EnhancedTask extends Task {
-    
-    private boolean completed;
-    private String error;
-    private PaymentResponse result;
-    
-    /**
-     * Sets whether the task is completed.
-     * 
+
+    private volatile String error;
+    private volatile PaymentResponse result;
+
+    /**
+     * Machine-readable code for the error, e.g. RATE_LIMITED.
+     */
+    private volatile String errorCode;
+
+    /**
+     * Structured details about the error, keyed by field name.
+     */
+    private volatile Map<String, Object> errorData;
+
+    @JsonIgnore
+    private final CompletableFuture<EnhancedTask> completion = new CompletableFuture<>();
+
+    /**
+     * Completes the task successfully. Only the first completion takes effect.
+     *
+     * @param result the payment response result
+     * @return true if this call completed the task, false if it was already completed
+     */
+    public synchronized boolean complete(PaymentResponse result) {
+        if (completion.isDone()) {
+            return false;
+        }
+        this.result = result;
+        return completion.complete(this);
+    }
+
+    /**
+     * Completes the task with an error. Only the first completion takes effect.
+     *
+     * @param error the error message
+     * @return true if this call completed the task, false if it was already completed
+     */
+    public synchronized boolean fail(String error) {
+        if (completion.isDone()) {
+            return false;
+        }
+        this.error = error;
+        return completion.complete(this);
+    }
+
+    /**
+     * Completes the task with a structured error.
+     *
+     * @param errorCode the machine-readable error code
+     * @param error the error message
+     * @param errorData structured details about the error
+     * @return true if this call completed the task, false if it was already completed
+     */
+    public synchronized boolean fail(String errorCode, String error, Map<String, Object> errorData) {
+        if (completion.isDone()) {
+            return false;
+        }
+        this.errorCode = errorCode;
+        this.errorData = errorData;
+        return fail(error);
+    }
+
+    /**
+     * Gets a future that completes with this task once the task is completed.
+     * The future always completes normally; check {@link #getError()} for failures.
+     * Completing the returned future does not complete the task.
+     *
+     * @return the completion future
+     */
+    @JsonIgnore
+    public CompletableFuture<EnhancedTask> getCompletion() {
+        return completion.copy();
+    }
+
+    /**
+     * Registers a callback to run once the task is completed. If the task is already
+     * completed the callback runs immediately on the calling thread.
+     *
+     * @param listener the callback, given this task
+     */
+    public void onComplete(Consumer<EnhancedTask> listener) {
+        completion.thenAccept(listener);
+    }
+
+    /**
+     * Waits for the task to complete.
+     *
+     * @return this task
+     */
+    public EnhancedTask await() {
+        return completion.join();
+    }
+
+    /**
+     * Waits up to the given time for the task to complete.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if the task completed, false if the timeout elapsed first
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            completion.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            // The completion future is only ever completed normally
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Sets whether the task is completed. Marking the task completed releases
+     * anyone waiting on it; a completed task cannot be reopened.
+     *
      * @param completed true if the task is completed, false otherwise
      */
     public void setCompleted(boolean completed) {
-        this.completed = completed;
+        if (completed) {
+            completion.complete(this);
+        }
     }
-    
+
     /**
      * Returns whether the task is completed.
-     * 
+     *
      * @return true if the task is completed, false otherwise
      */
     public boolean isCompleted() {
-        return completed;
+        return completion.isDone();
     }
-    
+
     /**
      * Sets an error message for the task.
-     * 
+     *
      * @param error the error message
      */
     public void setError(String error) {
         this.error = error;
     }
-    
+
     /**
      * Sets the result of the task.
-     * 
+     *
      * @param result the payment response result
      */
     public void setResult(PaymentResponse result) {
         this.result = result;
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package io.github.vishalmysore.ap2java.domain;
 
+import com.fasterxml.jackson.annotation.JsonAlias;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -26,6 +27,7 @@ public class PaymentRequest {
     /**
      * The currency code for the payment (e.g., USD, EUR).
      */
+    @JsonAlias("currency")
     private String currencyCode;
     
     /**
@@ -38,6 +40,12 @@ public class PaymentRequest {
      */
     private String receivingAgentId;
     
+    /**
+     * The merchant category of the purchase (e.g., books, travel), checked against the
+     * category rules of an Intent Mandate.
+     */
+    private String category;
+    
     /**
      * Description or purpose of the payment.
      */
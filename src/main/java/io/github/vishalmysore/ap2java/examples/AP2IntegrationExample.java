@@ -14,6 +14,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Example demonstrating integration of AP2 with the a2ajava agent system.
@@ -43,14 +44,18 @@ public class AP2IntegrationExample {
             // Check if task is EnhancedTask
             if (task instanceof EnhancedTask) {
                 EnhancedTask enhancedTask = (EnhancedTask) task;
-                log.info("Task status: {}", enhancedTask.isCompleted() ? "Completed" : "In Progress");
+                
+                // Wait for the payment to be processed
+                if (enhancedTask.await(5, TimeUnit.SECONDS)) {
+                    log.info("Task completed with result: {}, error: {}",
+                            enhancedTask.getResult(), enhancedTask.getError());
+                } else {
+                    log.info("Task status: In Progress");
+                }
             } else {
                 log.info("Task status: Unknown (not an EnhancedTask)");
             }
             
-            // In a real implementation, we would wait for the task to complete
-            // and then process the result
-            
         } catch (Exception e) {
             log.error("Error in AP2 integration example", e);
         }
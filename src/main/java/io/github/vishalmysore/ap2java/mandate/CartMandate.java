@@ -1,11 +1,13 @@
 package io.github.vishalmysore.ap2java.mandate;
 
 import io.github.vishalmysore.ap2java.credentials.VerifiableCredential;
+import io.github.vishalmysore.ap2java.util.CachedClock;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 
 import java.math.BigDecimal;
+import java.time.Clock;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -16,7 +18,7 @@ import java.util.List;
  * A simplified version of the CartMandate class for the AP2 protocol.
  * This class represents the approval of a specific cart of items for purchase.
  */
-public class CartMandate {
+public class CartMandate implements SignableMandate {
     
     /**
      * Simple cart item representation
@@ -64,16 +66,18 @@ public class CartMandate {
     private BigDecimal amount;
     private String currencyCode;
     private List<CartItem> items;
-    @Setter
     @Getter
     private String intentMandateId;
     private VerifiableCredential credential;
+    @ToString.Exclude
+    private volatile String signingDigest;
+    // A copy of items as it was when the digest was taken
+    @ToString.Exclude
+    private volatile List<CartItem> signedItems;
 
     @Getter
-    @Setter
     private  String cartId;
     @Getter
-    @Setter
     private  String userId;
 
     @Getter
@@ -115,7 +119,8 @@ public class CartMandate {
         this.intentMandateId = intentMandateId;
         this.items = items != null ? items : new ArrayList<>();
         this.currencyCode = currencyCode;
-        this.createdAt = Instant.now();
+        // Stamped from the same clock as isValid(), so a new mandate is valid at once
+        this.createdAt = CachedClock.systemUTC().instant();
         this.expiresAt = expiresAt;
         this.amount = calculateTotalAmount();
     }
@@ -135,6 +140,7 @@ public class CartMandate {
 
     public void setId(String id) {
         this.id = id;
+        this.signingDigest = null;
     }
 
     public String getRequestingAgentId() {
@@ -143,6 +149,7 @@ public class CartMandate {
 
     public void setRequestingAgentId(String requestingAgentId) {
         this.requestingAgentId = requestingAgentId;
+        this.signingDigest = null;
     }
 
     public String getReceivingAgentId() {
@@ -151,6 +158,7 @@ public class CartMandate {
 
     public void setReceivingAgentId(String receivingAgentId) {
         this.receivingAgentId = receivingAgentId;
+        this.signingDigest = null;
     }
 
     public Instant getCreatedAt() {
@@ -159,6 +167,7 @@ public class CartMandate {
 
     public void setCreatedAt(Instant createdAt) {
         this.createdAt = createdAt;
+        this.signingDigest = null;
     }
 
     public Instant getExpiresAt() {
@@ -167,6 +176,7 @@ public class CartMandate {
 
     public void setExpiresAt(Instant expiresAt) {
         this.expiresAt = expiresAt;
+        this.signingDigest = null;
     }
 
     public BigDecimal getAmount() {
@@ -175,6 +185,7 @@ public class CartMandate {
 
     public void setAmount(BigDecimal amount) {
         this.amount = amount;
+        this.signingDigest = null;
     }
 
     public String getCurrencyCode() {
@@ -183,6 +194,7 @@ public class CartMandate {
 
     public void setCurrencyCode(String currencyCode) {
         this.currencyCode = currencyCode;
+        this.signingDigest = null;
     }
     
     public List<CartItem> getItems() {
@@ -192,6 +204,7 @@ public class CartMandate {
     public void setItems(List<CartItem> items) {
         this.items = items != null ? items : new ArrayList<>();
         this.amount = calculateTotalAmount();
+        this.signingDigest = null;
     }
     
     public String getIntentMandateId() {
@@ -208,23 +221,86 @@ public class CartMandate {
         this.credential = credential;
     }
     
+    public void setIntentMandateId(String intentMandateId) {
+        this.intentMandateId = intentMandateId;
+        this.signingDigest = null;
+    }
+    
+    public void setCartId(String cartId) {
+        this.cartId = cartId;
+        this.signingDigest = null;
+    }
+    
+    public void setUserId(String userId) {
+        this.userId = userId;
+        this.signingDigest = null;
+    }
+    
+    @Override
+    public String mandateType() {
+        return "CartMandate";
+    }
+    
+    @Override
+    public byte[] canonicalBytes() {
+        return MandateDigest.canonicalBytes(this);
+    }
+    
+    /**
+     * Gets the digest of the signed content, computing it on first use. The item list
+     * can be edited in place; the digest is then computed again on the next call.
+     * 
+     * @return the hex-encoded SHA-256 digest
+     */
+    @Override
+    public String signingDigest() {
+        String digest = signingDigest;
+        if (digest == null || !items.equals(signedItems)) {
+            signedItems = new ArrayList<>(items);
+            digest = MandateDigest.of(canonicalBytes());
+            signingDigest = digest;
+        }
+        return digest;
+    }
+    
     /**
-     * Checks if this mandate is valid for the current time.
+     * Checks if this mandate is valid for the current time, read from
+     * {@link CachedClock#systemUTC()}.
      * 
      * @return true if the mandate is valid, false otherwise
      */
     public boolean isValid() {
-        Instant now = Instant.now();
-        return now.isAfter(createdAt) && now.isBefore(expiresAt);
+        return isValid(CachedClock.systemUTC());
     }
     
     /**
-     * Checks if this mandate is expired.
+     * Checks if this mandate is valid at the current time of a clock.
+     * 
+     * @param clock the clock to read
+     * @return true if the mandate is valid, false otherwise
+     */
+    public boolean isValid(Clock clock) {
+        long now = clock.millis();
+        return now >= createdAt.toEpochMilli() && now < expiresAt.toEpochMilli();
+    }
+    
+    /**
+     * Checks if this mandate is expired, reading the time from {@link CachedClock#systemUTC()}.
      * 
      * @return true if the mandate is expired, false otherwise
      */
     public boolean isExpired() {
-        return Instant.now().isAfter(expiresAt);
+        return isExpired(CachedClock.systemUTC());
+    }
+    
+    /**
+     * Checks if this mandate is expired at the current time of a clock.
+     * 
+     * @param clock the clock to read
+     * @return true if the mandate is expired, false otherwise
+     */
+    public boolean isExpired(Clock clock) {
+        return clock.millis() > expiresAt.toEpochMilli();
     }
     
 
@@ -3,152 +3,522 @@ package io.github.vishalmysore.ap2java.mandate;
 import io.github.vishalmysore.ap2java.domain.PaymentRequest;
 import io.github.vishalmysore.ap2java.security.SignatureService;
 import io.github.vishalmysore.ap2java.credentials.VerifiableCredential;
+import io.github.vishalmysore.ap2java.util.CachedClock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Default implementation of MandateVerifier that verifies mandates
  * according to the AP2 protocol rules.
+ * 
+ * An Intent Mandate may govern thousands of payments, so once its signature and expiry
+ * have been checked the result is cached against the mandate's ID and content digest.
+ * Later payments under the same, unchanged mandate only run the request-specific checks,
+ * against the mandate's {@link IntentPolicy}, which is compiled once per content digest and
+ * currency. A cached result is never trusted past the mandate's expiry, and
+ * {@link #invalidateMandate(String)} drops it immediately. With a {@link RevocationIndex}
+ * set, revoked mandates are rejected before the cache or any signature is consulted.
+ * 
+ * {@link #verifyChain} runs every structural cross-check of the three mandates first, then
+ * checks the remaining signatures in parallel on a verification pool, stopping at the
+ * first invalid one.
+ * 
+ * Every outcome is a shared {@link VerificationResult} with a reason code and is counted
+ * in {@link #getStats()}. Rejections are only logged once enabled with
+ * {@link #setRejectionLogLimit(int)}, and then at a bounded rate.
  */
 public class DefaultMandateVerifier implements MandateVerifier {
     private static final Logger logger = LoggerFactory.getLogger(DefaultMandateVerifier.class);
     
+    /**
+     * Default number of Intent Mandates whose verification results are cached.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
+    
     private final SignatureService signatureService;
+    private final VerificationCache verificationCache;
+    private final IntentPolicyCache policyCache;
+    private final Clock clock;
+    private final ExecutorService verificationPool;
+    private final VerificationStats stats = new VerificationStats();
+    private final RejectionLog rejectionLog = new RejectionLog(logger, System::nanoTime);
+    private volatile RevocationIndex revocationIndex;
     
     public DefaultMandateVerifier(SignatureService signatureService) {
+        this(signatureService, DEFAULT_CACHE_SIZE);
+    }
+    
+    /**
+     * Creates a verifier with a verification cache of the given size.
+     * 
+     * @param signatureService The service used to check signatures
+     * @param maxCachedMandates The maximum number of Intent Mandates to cache results for
+     */
+    public DefaultMandateVerifier(SignatureService signatureService, int maxCachedMandates) {
+        this(signatureService, maxCachedMandates, null, CachedClock.systemUTC());
+    }
+    
+    /**
+     * Creates a verifier that checks chain signatures on the given pool.
+     * 
+     * @param signatureService The service used to check signatures
+     * @param maxCachedMandates The maximum number of Intent Mandates to cache results for
+     * @param verificationPool The pool for parallel signature checks, or null for a shared
+     *                         pool sized to the available processors. The caller owns the pool.
+     */
+    public DefaultMandateVerifier(SignatureService signatureService, int maxCachedMandates,
+                                  ExecutorService verificationPool) {
+        this(signatureService, maxCachedMandates, verificationPool, CachedClock.systemUTC());
+    }
+    
+    DefaultMandateVerifier(SignatureService signatureService, int maxCachedMandates, Clock clock) {
+        this(signatureService, maxCachedMandates, null, clock);
+    }
+    
+    /**
+     * Creates a verifier that reads the time for expiry checks, cached results and
+     * constraints from the given clock.
+     * 
+     * @param signatureService The service used to check signatures
+     * @param maxCachedMandates The maximum number of Intent Mandates to cache results for
+     * @param verificationPool The pool for parallel signature checks, or null for the shared pool
+     * @param clock The clock to read, {@link CachedClock#systemUTC()} by default
+     */
+    public DefaultMandateVerifier(SignatureService signatureService, int maxCachedMandates,
+                                  ExecutorService verificationPool, Clock clock) {
         this.signatureService = signatureService;
+        this.verificationCache = new VerificationCache(maxCachedMandates);
+        this.policyCache = new IntentPolicyCache(maxCachedMandates);
+        this.verificationPool = verificationPool;
+        this.clock = clock;
+    }
+    
+    /**
+     * Drops any cached verification result for a mandate, so that it is fully verified
+     * again on next use. Call this when a mandate is revoked.
+     * 
+     * @param mandateId The ID of the mandate
+     */
+    public void invalidateMandate(String mandateId) {
+        if (mandateId != null) {
+            verificationCache.invalidate(mandateId);
+            policyCache.invalidate(mandateId);
+        }
     }
     
     @Override
     public boolean verifyIntentMandate(IntentMandate mandate, PaymentRequest request) {
+        return checkIntentMandate(mandate, request).isValid();
+    }
+    
+    @Override
+    public boolean verifyCartMandate(CartMandate cartMandate, IntentMandate intentMandate, PaymentRequest request) {
+        return checkCartMandate(cartMandate, intentMandate, request).isValid();
+    }
+    
+    @Override
+    public boolean verifyPaymentMandate(PaymentMandate paymentMandate, CartMandate cartMandate, PaymentRequest request) {
+        return checkPaymentMandate(paymentMandate, cartMandate, request).isValid();
+    }
+    
+    @Override
+    public boolean verifyChain(IntentMandate intentMandate, CartMandate cartMandate,
+                               PaymentMandate paymentMandate, PaymentRequest request) {
+        return checkChain(intentMandate, cartMandate, paymentMandate, request).isValid();
+    }
+    
+    @Override
+    public VerificationResult checkIntentMandate(IntentMandate mandate, PaymentRequest request) {
         logger.debug("Verifying Intent Mandate: {} for request: {}", 
                     mandate.getId(), request.getExternalReference());
         
-        // Check signature
-        if (!verifySignature(mandate)) {
-            logger.error("Intent Mandate signature verification failed: {}", mandate.getId());
-            return false;
+        if (isRevoked(mandate.getId())) {
+            return reject(VerificationResult.Reason.REVOKED, mandate.getId(), null, null);
         }
         
-        // Check expiry
-        if (mandate.isExpired()) {
-            logger.error("Intent Mandate has expired: {}", mandate.getId());
-            return false;
+        // Reuse an earlier signature and expiry check of this exact mandate content
+        String digest = mandate.getId() != null ? mandate.signingDigest() : null;
+        long now = clock.millis();
+        if (digest != null && verificationCache.isVerified(mandate.getId(), digest, now)) {
+            logger.debug("Intent Mandate {} verified from cache", mandate.getId());
+        } else {
+            // Check signature
+            if (!verifySignature(mandate)) {
+                return reject(VerificationResult.Reason.SIGNATURE_INVALID, mandate.getId(), null, null);
+            }
+            
+            // Check expiry
+            if (mandate.isExpired(clock)) {
+                return reject(VerificationResult.Reason.EXPIRED, mandate.getId(), mandate.getExpiresAt(), null);
+            }
+            
+            if (digest != null) {
+                verificationCache.put(mandate.getId(), digest, mandate.getExpiresAt().toEpochMilli(), now);
+            }
         }
         
         // Check if the mandate permits this payment
-        String merchantId = request.getReceivingAgentId();
-        BigDecimal amount = request.getAmount();
-        String category = null; // In a real system, this would be looked up
+        VerificationResult permitted = checkPermits(mandate, request, null);
+        return permitted.isValid() ? accept() : permitted;
+    }
+    
+    @Override
+    public VerificationResult checkCartMandate(CartMandate cartMandate, IntentMandate intentMandate,
+                                               PaymentRequest request) {
+        logger.debug("Verifying Cart Mandate: {} for request: {}", 
+                    cartMandate.getId(), request.getExternalReference());
         
-        boolean permitted = mandate.permits(merchantId, amount, category);
+        if (isRevoked(cartMandate.getId())) {
+            return reject(VerificationResult.Reason.REVOKED, cartMandate.getId(), null, null);
+        }
+        
+        // Check signature
+        if (!verifySignature(cartMandate)) {
+            return reject(VerificationResult.Reason.SIGNATURE_INVALID, cartMandate.getId(), null, null);
+        }
         
-        if (!permitted) {
-            logger.error("Intent Mandate does not permit this payment: {} -> merchant: {}, amount: {}", 
-                         mandate.getId(), merchantId, amount);
+        // Check expiry
+        if (cartMandate.isExpired(clock)) {
+            return reject(VerificationResult.Reason.EXPIRED, cartMandate.getId(), cartMandate.getExpiresAt(), null);
         }
         
-        return permitted;
+        VerificationResult structure = checkCartStructure(cartMandate, intentMandate, request);
+        if (structure.isValid()) {
+            structure = checkConstraints(intentMandate, request, cartMandate);
+        }
+        return structure.isValid() ? accept() : structure;
     }
     
     @Override
-    public boolean verifyCartMandate(CartMandate cartMandate, IntentMandate intentMandate, PaymentRequest request) {
-        logger.debug("Verifying Cart Mandate: {} for request: {}", 
-                    cartMandate.getId(), request.getExternalReference());
+    public VerificationResult checkPaymentMandate(PaymentMandate paymentMandate, CartMandate cartMandate,
+                                                  PaymentRequest request) {
+        logger.debug("Verifying Payment Mandate: {} for request: {}", 
+                    paymentMandate.getId(), request.getExternalReference());
+        
+        if (isRevoked(paymentMandate.getId())) {
+            return reject(VerificationResult.Reason.REVOKED, paymentMandate.getId(), null, null);
+        }
         
         // Check signature
-        if (!verifySignature(cartMandate)) {
-            logger.error("Cart Mandate signature verification failed: {}", cartMandate.getId());
-            return false;
+        if (!verifySignature(paymentMandate)) {
+            return reject(VerificationResult.Reason.SIGNATURE_INVALID, paymentMandate.getId(), null, null);
         }
         
         // Check expiry
-        if (cartMandate.isExpired()) {
-            logger.error("Cart Mandate has expired: {}", cartMandate.getId());
-            return false;
+        if (paymentMandate.isExpired(clock)) {
+            return reject(VerificationResult.Reason.EXPIRED, paymentMandate.getId(), paymentMandate.getExpiresAt(), null);
         }
         
+        VerificationResult structure = checkPaymentStructure(paymentMandate, cartMandate, request);
+        return structure.isValid() ? accept() : structure;
+    }
+    
+    @Override
+    public VerificationResult checkChain(IntentMandate intentMandate, CartMandate cartMandate,
+                                         PaymentMandate paymentMandate, PaymentRequest request) {
+        logger.debug("Verifying mandate chain: {} -> {} -> {}",
+                    intentMandate.getId(), cartMandate.getId(), paymentMandate.getId());
+        
+        // Cheap cross-checks first, so a mismatched chain costs no signature work
+        VerificationResult structure = checkChainStructure(intentMandate, cartMandate, paymentMandate, request);
+        if (!structure.isValid()) {
+            return structure;
+        }
+        
+        String intentDigest = intentMandate.getId() != null ? intentMandate.signingDigest() : null;
+        long now = clock.millis();
+        boolean intentCached = intentDigest != null
+                && verificationCache.isVerified(intentMandate.getId(), intentDigest, now);
+        
+        List<Object> unsigned = new ArrayList<>(3);
+        if (!intentCached) {
+            unsigned.add(intentMandate);
+        }
+        unsigned.add(cartMandate);
+        unsigned.add(paymentMandate);
+        VerificationResult signatures = verifySignaturesInParallel(unsigned);
+        if (!signatures.isValid()) {
+            return signatures;
+        }
+        
+        if (!intentCached && intentDigest != null) {
+            verificationCache.put(intentMandate.getId(), intentDigest, intentMandate.getExpiresAt().toEpochMilli(), now);
+        }
+        return accept();
+    }
+    
+    /**
+     * Gets the verification outcome counters of this verifier.
+     * 
+     * @return The counters by reason
+     */
+    public VerificationStats getStats() {
+        return stats;
+    }
+    
+    /**
+     * Turns on logging of rejected mandates, at most the given number of lines per second.
+     * Rejections over the limit are only counted. Logging is off by default; the outcome
+     * counters from {@link #getStats()} are always kept.
+     * 
+     * @param maxPerSecond The maximum number of rejections logged per second, or 0 for none
+     */
+    public void setRejectionLogLimit(int maxPerSecond) {
+        rejectionLog.setMaxPerSecond(maxPerSecond);
+    }
+    
+    /**
+     * Sets the index of revoked mandates to check first. Without one, revocation is not
+     * checked.
+     * 
+     * @param revocationIndex The index, or null to stop checking revocation
+     */
+    public void setRevocationIndex(RevocationIndex revocationIndex) {
+        this.revocationIndex = revocationIndex;
+    }
+    
+    /**
+     * Checks that an Intent Mandate permits the merchant and amount of a request, and that
+     * the payment satisfies its constraint rules.
+     */
+    private VerificationResult checkPermits(IntentMandate mandate, PaymentRequest request, CartMandate cart) {
+        String merchantId = request.getReceivingAgentId();
+        BigDecimal amount = request.getAmount();
+        String category = request.getCategory();
+        
+        if (!permits(mandate, merchantId, amount, category, request.getCurrencyCode())) {
+            return reject(VerificationResult.Reason.NOT_PERMITTED, mandate.getId(), merchantId, amount);
+        }
+        return checkConstraints(mandate, request, cart);
+    }
+    
+    /**
+     * Evaluates the compiled policy of an Intent Mandate. A mandate without an ID, or a
+     * request without an amount or a known currency, is evaluated field by field instead.
+     */
+    private boolean permits(IntentMandate mandate, String merchantId, BigDecimal amount, String category,
+                            String currencyCode) {
+        IntentPolicy policy = mandate.getId() != null && amount != null && currencyCode != null
+                ? policyCache.get(mandate, mandate.signingDigest(), currencyCode, clock.millis())
+                : null;
+        return policy != null
+                ? policy.permits(merchantId, amount, category)
+                : mandate.permits(merchantId, amount, category);
+    }
+    
+    /**
+     * Gets the number of Intent Mandates whose compiled policies are cached.
+     * 
+     * @return The number of cached policies
+     */
+    int getCachedPolicyCount() {
+        return policyCache.size();
+    }
+    
+    /**
+     * Checks the constraint rules of an Intent Mandate. Cart item rules are only checked
+     * when a cart is given. A request that does not name its category breaks any category
+     * rule, since it cannot be shown to satisfy it.
+     */
+    private VerificationResult checkConstraints(IntentMandate mandate, PaymentRequest request, CartMandate cart) {
+        MandateConstraints constraints = mandate.getCompiledConstraints();
+        if (constraints == null) {
+            return VerificationResult.VALID;
+        }
+        if (request.getCategory() == null && constraints.constrainsCategory()) {
+            return reject(VerificationResult.Reason.CONSTRAINT_VIOLATED, mandate.getId(), "category unknown", null);
+        }
+        String violation = constraints.firstViolation(request, cart, request.getCategory(), clock.instant());
+        if (violation != null) {
+            return reject(VerificationResult.Reason.CONSTRAINT_VIOLATED, mandate.getId(), violation, null);
+        }
+        return VerificationResult.VALID;
+    }
+    
+    /**
+     * Checks a Cart Mandate against its Intent Mandate and the request, without its signature.
+     */
+    private VerificationResult checkCartStructure(CartMandate cartMandate, IntentMandate intentMandate,
+                                                  PaymentRequest request) {
         // Verify that the Cart Mandate references the correct Intent Mandate
         if (!cartMandate.getIntentMandateId().equals(intentMandate.getId())) {
-            logger.error("Cart Mandate references incorrect Intent Mandate: {} vs {}", 
-                         cartMandate.getIntentMandateId(), intentMandate.getId());
-            return false;
+            return reject(VerificationResult.Reason.MANDATE_LINK_MISMATCH, cartMandate.getId(),
+                          cartMandate.getIntentMandateId(), intentMandate.getId());
         }
         
         // Verify that the merchant matches
         if (!cartMandate.getMerchantId().equals(request.getReceivingAgentId())) {
-            logger.error("Cart Mandate merchant does not match request: {} vs {}", 
-                         cartMandate.getMerchantId(), request.getReceivingAgentId());
-            return false;
+            return reject(VerificationResult.Reason.MERCHANT_MISMATCH, cartMandate.getId(),
+                          cartMandate.getMerchantId(), request.getReceivingAgentId());
         }
         
         // Verify amount
         if (cartMandate.getTotalAmount().compareTo(request.getAmount()) != 0) {
-            logger.error("Cart Mandate amount does not match request: {} vs {}", 
-                         cartMandate.getTotalAmount(), request.getAmount());
-            return false;
+            return reject(VerificationResult.Reason.AMOUNT_MISMATCH, cartMandate.getId(),
+                          cartMandate.getTotalAmount(), request.getAmount());
         }
         
         // Verify currency
         if (!cartMandate.getCurrencyCode().equals(request.getCurrencyCode())) {
-            logger.error("Cart Mandate currency does not match request: {} vs {}", 
-                         cartMandate.getCurrencyCode(), request.getCurrencyCode());
-            return false;
+            return reject(VerificationResult.Reason.CURRENCY_MISMATCH, cartMandate.getId(),
+                          cartMandate.getCurrencyCode(), request.getCurrencyCode());
         }
         
-        return true;
+        return VerificationResult.VALID;
     }
     
-    @Override
-    public boolean verifyPaymentMandate(PaymentMandate paymentMandate, CartMandate cartMandate, PaymentRequest request) {
-        logger.debug("Verifying Payment Mandate: {} for request: {}", 
-                    paymentMandate.getId(), request.getExternalReference());
-        
-        // Check signature
-        if (!verifySignature(paymentMandate)) {
-            logger.error("Payment Mandate signature verification failed: {}", paymentMandate.getId());
-            return false;
-        }
-        
-        // Check expiry
-        if (paymentMandate.isExpired()) {
-            logger.error("Payment Mandate has expired: {}", paymentMandate.getId());
-            return false;
-        }
-        
+    /**
+     * Checks a Payment Mandate against its Cart Mandate and the request, without its signature.
+     */
+    private VerificationResult checkPaymentStructure(PaymentMandate paymentMandate, CartMandate cartMandate,
+                                                     PaymentRequest request) {
         // Verify that the Payment Mandate references the correct Cart Mandate
         if (!paymentMandate.getCartMandateId().equals(cartMandate.getId())) {
-            logger.error("Payment Mandate references incorrect Cart Mandate: {} vs {}", 
-                         paymentMandate.getCartMandateId(), cartMandate.getId());
-            return false;
+            return reject(VerificationResult.Reason.MANDATE_LINK_MISMATCH, paymentMandate.getId(),
+                          paymentMandate.getCartMandateId(), cartMandate.getId());
         }
         
         // Verify amount
         if (paymentMandate.getAmount().compareTo(request.getAmount()) != 0) {
-            logger.error("Payment Mandate amount does not match request: {} vs {}", 
-                         paymentMandate.getAmount(), request.getAmount());
-            return false;
+            return reject(VerificationResult.Reason.AMOUNT_MISMATCH, paymentMandate.getId(),
+                          paymentMandate.getAmount(), request.getAmount());
         }
         
         // Verify currency
         if (!paymentMandate.getCurrencyCode().equals(request.getCurrencyCode())) {
-            logger.error("Payment Mandate currency does not match request: {} vs {}", 
-                         paymentMandate.getCurrencyCode(), request.getCurrencyCode());
-            return false;
+            return reject(VerificationResult.Reason.CURRENCY_MISMATCH, paymentMandate.getId(),
+                          paymentMandate.getCurrencyCode(), request.getCurrencyCode());
         }
         
         // Check payment method if specified in the request
         if (request.getPaymentMethod() != null && 
             !request.getPaymentMethod().equals(paymentMandate.getPaymentMethodId())) {
-            logger.error("Payment Mandate method does not match request: {} vs {}", 
-                         paymentMandate.getPaymentMethodId(), request.getPaymentMethod());
-            return false;
+            return reject(VerificationResult.Reason.PAYMENT_METHOD_MISMATCH, paymentMandate.getId(),
+                          paymentMandate.getPaymentMethodId(), request.getPaymentMethod());
         }
         
-        return true;
+        return VerificationResult.VALID;
+    }
+    
+    /**
+     * Runs every check of a mandate chain that needs no cryptography: revocation, expiry, the
+     * links between the mandates, and the merchant, amount, currency and payment method of the request.
+     */
+    private VerificationResult checkChainStructure(IntentMandate intentMandate, CartMandate cartMandate,
+                                                   PaymentMandate paymentMandate, PaymentRequest request) {
+        if (isRevoked(intentMandate.getId())) {
+            return reject(VerificationResult.Reason.REVOKED, intentMandate.getId(), null, null);
+        }
+        if (isRevoked(cartMandate.getId())) {
+            return reject(VerificationResult.Reason.REVOKED, cartMandate.getId(), null, null);
+        }
+        if (isRevoked(paymentMandate.getId())) {
+            return reject(VerificationResult.Reason.REVOKED, paymentMandate.getId(), null, null);
+        }
+        if (intentMandate.isExpired(clock)) {
+            return reject(VerificationResult.Reason.EXPIRED, intentMandate.getId(), intentMandate.getExpiresAt(), null);
+        }
+        if (cartMandate.isExpired(clock)) {
+            return reject(VerificationResult.Reason.EXPIRED, cartMandate.getId(), cartMandate.getExpiresAt(), null);
+        }
+        if (paymentMandate.isExpired(clock)) {
+            return reject(VerificationResult.Reason.EXPIRED, paymentMandate.getId(), paymentMandate.getExpiresAt(), null);
+        }
+        
+        VerificationResult result = checkCartStructure(cartMandate, intentMandate, request);
+        if (result.isValid()) {
+            result = checkPaymentStructure(paymentMandate, cartMandate, request);
+        }
+        if (result.isValid()) {
+            result = checkPermits(intentMandate, request, cartMandate);
+        }
+        return result;
+    }
+    
+    /**
+     * Checks signatures concurrently. As soon as one is invalid, the checks still queued
+     * are cancelled and the running ones interrupted.
+     */
+    private VerificationResult verifySignaturesInParallel(List<Object> mandates) {
+        CompletionService<Integer> completion = new ExecutorCompletionService<>(pool());
+        List<Future<Integer>> checks = new ArrayList<>(mandates.size());
+        try {
+            for (int i = 0; i < mandates.size(); i++) {
+                Object mandate = mandates.get(i);
+                int index = i;
+                // Each check yields -1 if valid, otherwise the index of its mandate
+                checks.add(completion.submit(() -> verifySignature(mandate) ? -1 : index));
+            }
+            for (int i = 0; i < checks.size(); i++) {
+                int invalid = completion.take().get();
+                if (invalid >= 0) {
+                    return reject(VerificationResult.Reason.SIGNATURE_INVALID, mandateId(mandates.get(invalid)), null, null);
+                }
+            }
+            return VerificationResult.VALID;
+        } catch (ExecutionException e) {
+            logger.debug("Mandate chain signature verification failed", e.getCause());
+            return reject(VerificationResult.Reason.VERIFICATION_ERROR, null, e.getCause(), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return reject(VerificationResult.Reason.VERIFICATION_ERROR, null, e, null);
+        } finally {
+            for (Future<Integer> check : checks) {
+                check.cancel(true);
+            }
+        }
+    }
+    
+    private boolean isRevoked(String mandateId) {
+        RevocationIndex index = revocationIndex;
+        return index != null && index.isRevoked(mandateId);
+    }
+    
+    private static String mandateId(Object mandate) {
+        return mandate instanceof SignableMandate ? ((SignableMandate) mandate).getId() : null;
+    }
+    
+    private VerificationResult accept() {
+        return stats.record(VerificationResult.VALID);
+    }
+    
+    /**
+     * Counts a rejection, logs it if rejection logging is on, and returns its shared result.
+     */
+    private VerificationResult reject(VerificationResult.Reason reason, String mandateId,
+                                      Object actual, Object expected) {
+        rejectionLog.reject(reason, mandateId, actual, expected);
+        return stats.record(VerificationResult.of(reason));
+    }
+    
+    private ExecutorService pool() {
+        return verificationPool != null ? verificationPool : SharedPool.INSTANCE;
+    }
+    
+    /**
+     * Verification pool shared by verifiers that were not given one, created on first use.
+     */
+    private static class SharedPool {
+        private static final AtomicInteger THREADS = new AtomicInteger();
+        private static final ExecutorService INSTANCE = Executors.newFixedThreadPool(
+                Math.max(2, Runtime.getRuntime().availableProcessors()), runnable -> {
+                    Thread thread = new Thread(runnable, "mandate-verifier-" + THREADS.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
     }
     
     @Override
@@ -157,14 +527,17 @@ public class DefaultMandateVerifier implements MandateVerifier {
             return false;
         }
         
-        if (mandate instanceof IntentMandate ||
-            mandate instanceof CartMandate ||
-            mandate instanceof PaymentMandate) {
-            
-            return signatureService.verifyCredential((VerifiableCredential) mandate);
+        if (mandate instanceof SignableMandate) {
+            // The cheap binding check runs first; the mandate's digest is cached
+            SignableMandate signable = (SignableMandate) mandate;
+            VerifiableCredential credential = signable.getCredential();
+            return credential != null
+                    && MandateCredential.isBoundTo(credential, signable)
+                    && signatureService.verifyCredential(credential);
         }
         
-        logger.error("Unknown mandate type: {}", mandate.getClass().getName());
+        // Callers report the rejection as SIGNATURE_INVALID through the rejection log
+        logger.debug("Unknown mandate type: {}", mandate.getClass().getName());
         return false;
     }
 }
\ No newline at end of file
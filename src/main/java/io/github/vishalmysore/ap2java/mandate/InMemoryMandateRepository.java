@@ -0,0 +1,366 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import io.github.vishalmysore.ap2java.util.CachedClock;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * A {@link MandateRepository} that keeps mandates in memory, indexed for the lookups made
+ * while processing payments.
+ * <p>
+ * Every mandate type is held in a concurrent map by ID, and Payment Mandates also by payment
+ * reference. Intent Mandates are indexed by requesting agent, and by requesting agent and
+ * merchant, in sets sorted by expiry. {@link #findActiveIntentMandateForAgent} walks such a set
+ * from the latest expiry down and stops at the first expired entry, so it finds the valid
+ * mandate that stays valid longest in O(log n), however many expired mandates are still held.
+ * An Intent Mandate without a merchant permits any merchant, and is found for every merchant.
+ * <p>
+ * Reads take no locks. Writes to one mandate are serialized by its map entry, so writes to
+ * different mandates never wait for each other. The index holds the agent, merchant and
+ * validity period of a mandate as they were when it was stored; a mandate changed afterwards
+ * must be stored again to be re-indexed.
+ * <p>
+ * Revoked mandates can still be found by ID, but are never returned as active. A revocation
+ * is permanent, even if the mandate is stored again.
+ */
+@Slf4j
+public class InMemoryMandateRepository implements MandateRepository {
+
+    private final Clock clock;
+    private final ConcurrentHashMap<String, IndexEntry> intentMandates = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CartMandate> cartMandates = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, PaymentMandate> paymentMandates = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, PaymentMandate> paymentMandatesByReference = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, NavigableSet<IndexEntry>> intentsByAgent = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<IndexKey, NavigableSet<IndexEntry>> intentsByAgentAndMerchant =
+            new ConcurrentHashMap<>();
+    private final Set<String> revokedMandateIds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a repository that judges validity by {@link CachedClock#systemUTC()}.
+     */
+    public InMemoryMandateRepository() {
+        this(CachedClock.systemUTC());
+    }
+
+    /**
+     * Creates a repository.
+     *
+     * @param clock The clock used to decide which Intent Mandates are active
+     */
+    public InMemoryMandateRepository(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public String storeIntentMandate(IntentMandate mandate) {
+        String id = requireId(mandate.getId());
+        IndexEntry entry = new IndexEntry(mandate);
+        intentMandates.compute(id, (key, previous) -> {
+            if (previous != null) {
+                unindex(previous);
+            }
+            if (!revokedMandateIds.contains(id)) {
+                index(entry);
+            }
+            return entry;
+        });
+        return id;
+    }
+
+    @Override
+    public String storeCartMandate(CartMandate mandate) {
+        String id = requireId(mandate.getId());
+        cartMandates.put(id, mandate);
+        return id;
+    }
+
+    @Override
+    public String storePaymentMandate(PaymentMandate mandate) {
+        String id = requireId(mandate.getId());
+        paymentMandates.compute(id, (key, previous) -> {
+            if (previous != null && previous.getPaymentReference() != null) {
+                paymentMandatesByReference.remove(previous.getPaymentReference(), previous);
+            }
+            if (mandate.getPaymentReference() != null) {
+                paymentMandatesByReference.put(mandate.getPaymentReference(), mandate);
+            }
+            return mandate;
+        });
+        return id;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Of the mandates that are valid now and not revoked, this returns the one that expires last.
+     */
+    @Override
+    public IntentMandate findActiveIntentMandateForAgent(String agentId, String merchantId) {
+        if (agentId == null) {
+            return null;
+        }
+        long now = clock.millis();
+        if (merchantId == null) {
+            IndexEntry best = findActive(intentsByAgent.get(agentId), now);
+            return best != null ? best.mandate : null;
+        }
+        IndexEntry forMerchant = findActive(intentsByAgentAndMerchant.get(new IndexKey(agentId, merchantId)), now);
+        IndexEntry forAnyMerchant = findActive(intentsByAgentAndMerchant.get(new IndexKey(agentId, null)), now);
+        if (forMerchant == null) {
+            return forAnyMerchant != null ? forAnyMerchant.mandate : null;
+        }
+        if (forAnyMerchant == null || IndexEntry.ORDER.compare(forMerchant, forAnyMerchant) >= 0) {
+            return forMerchant.mandate;
+        }
+        return forAnyMerchant.mandate;
+    }
+
+    /**
+     * Finds an Intent Mandate by ID.
+     *
+     * @param mandateId The ID of the Intent Mandate
+     * @return The Intent Mandate, or null if not found
+     */
+    public IntentMandate findIntentMandate(String mandateId) {
+        IndexEntry entry = mandateId != null ? intentMandates.get(mandateId) : null;
+        return entry != null ? entry.mandate : null;
+    }
+
+    @Override
+    public CartMandate findCartMandate(String mandateId) {
+        return mandateId != null ? cartMandates.get(mandateId) : null;
+    }
+
+    @Override
+    public PaymentMandate findPaymentMandate(String mandateId) {
+        return mandateId != null ? paymentMandates.get(mandateId) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Follows the Payment Mandate of the payment to its Cart Mandate, and that to its Intent Mandate.
+     */
+    @Override
+    public IntentMandate findIntentMandateForPayment(String paymentId) {
+        CartMandate cartMandate = findCartMandateForPayment(paymentId);
+        return cartMandate != null ? findIntentMandate(cartMandate.getIntentMandateId()) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Follows the Payment Mandate of the payment to the Cart Mandate it references.
+     */
+    @Override
+    public CartMandate findCartMandateForPayment(String paymentId) {
+        PaymentMandate paymentMandate = findPaymentMandateForPayment(paymentId);
+        return paymentMandate != null ? findCartMandate(paymentMandate.getParentMandateId()) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The payment ID is matched against the payment reference of the stored Payment Mandates.
+     */
+    @Override
+    public PaymentMandate findPaymentMandateForPayment(String paymentId) {
+        return paymentId != null ? paymentMandatesByReference.get(paymentId) : null;
+    }
+
+    @Override
+    public boolean revokeMandate(String mandateId, String reason) {
+        if (mandateId == null) {
+            return false;
+        }
+        boolean known = intentMandates.containsKey(mandateId)
+                || cartMandates.containsKey(mandateId)
+                || paymentMandates.containsKey(mandateId);
+        if (!known || !revokedMandateIds.add(mandateId)) {
+            return false;
+        }
+        intentMandates.computeIfPresent(mandateId, (key, entry) -> {
+            unindex(entry);
+            return entry;
+        });
+        log.info("Revoked mandate {}: {}", mandateId, reason);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A removed mandate that was revoked stays revoked.
+     */
+    @Override
+    public boolean removeMandate(String mandateId) {
+        if (mandateId == null) {
+            return false;
+        }
+        boolean[] removed = new boolean[1];
+        // Unindex inside the map entry's lock, so a concurrent store of the same ID cannot interleave
+        intentMandates.computeIfPresent(mandateId, (key, entry) -> {
+            unindex(entry);
+            removed[0] = true;
+            return null;
+        });
+        if (removed[0]) {
+            return true;
+        }
+        if (cartMandates.remove(mandateId) != null) {
+            return true;
+        }
+        paymentMandates.computeIfPresent(mandateId, (key, mandate) -> {
+            if (mandate.getPaymentReference() != null) {
+                paymentMandatesByReference.remove(mandate.getPaymentReference(), mandate);
+            }
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Checks whether a mandate has been revoked.
+     *
+     * @param mandateId The ID of the mandate
+     * @return true if the mandate was revoked through this repository
+     */
+    public boolean isRevoked(String mandateId) {
+        return mandateId != null && revokedMandateIds.contains(mandateId);
+    }
+
+    /**
+     * Gets the number of stored mandates of all types.
+     *
+     * @return The mandate count
+     */
+    public int size() {
+        return intentMandates.size() + cartMandates.size() + paymentMandates.size();
+    }
+
+    private void index(IndexEntry entry) {
+        if (entry.agentId == null) {
+            return;
+        }
+        intentsByAgent.computeIfAbsent(entry.agentId, key -> new ConcurrentSkipListSet<>(IndexEntry.ORDER))
+                .add(entry);
+        intentsByAgentAndMerchant.computeIfAbsent(new IndexKey(entry.agentId, entry.merchantId),
+                key -> new ConcurrentSkipListSet<>(IndexEntry.ORDER)).add(entry);
+    }
+
+    private void unindex(IndexEntry entry) {
+        if (entry.agentId == null) {
+            return;
+        }
+        NavigableSet<IndexEntry> byAgent = intentsByAgent.get(entry.agentId);
+        if (byAgent != null) {
+            byAgent.remove(entry);
+        }
+        NavigableSet<IndexEntry> byAgentAndMerchant =
+                intentsByAgentAndMerchant.get(new IndexKey(entry.agentId, entry.merchantId));
+        if (byAgentAndMerchant != null) {
+            byAgentAndMerchant.remove(entry);
+        }
+    }
+
+    /**
+     * Finds the entry that expires last among those valid at a time.
+     */
+    private IndexEntry findActive(NavigableSet<IndexEntry> entries, long now) {
+        if (entries == null) {
+            return null;
+        }
+        Iterator<IndexEntry> latestFirst = entries.descendingIterator();
+        while (latestFirst.hasNext()) {
+            IndexEntry entry = latestFirst.next();
+            if (entry.expiresAtMillis <= now) {
+                // Everything further down has expired too
+                return null;
+            }
+            if (entry.createdAtMillis <= now
+                    && intentMandates.get(entry.mandateId) == entry
+                    && !revokedMandateIds.contains(entry.mandateId)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static String requireId(String id) {
+        if (id == null) {
+            throw new IllegalArgumentException("Mandate ID is required");
+        }
+        return id;
+    }
+
+    /**
+     * An agent and merchant pair; a null merchant stands for mandates that permit any merchant.
+     */
+    private static final class IndexKey {
+        private final String agentId;
+        private final String merchantId;
+
+        IndexKey(String agentId, String merchantId) {
+            this.agentId = agentId;
+            this.merchantId = merchantId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof IndexKey)) {
+                return false;
+            }
+            IndexKey other = (IndexKey) o;
+            return agentId.equals(other.agentId) && Objects.equals(merchantId, other.merchantId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * agentId.hashCode() + Objects.hashCode(merchantId);
+        }
+    }
+
+    /**
+     * An Intent Mandate as indexed when it was stored, ordered by expiry and then ID.
+     */
+    private static final class IndexEntry {
+
+        static final Comparator<IndexEntry> ORDER = Comparator
+                .comparingLong((IndexEntry entry) -> entry.expiresAtMillis)
+                .thenComparing(entry -> entry.mandateId);
+
+        private final IntentMandate mandate;
+        private final String mandateId;
+        private final String agentId;
+        private final String merchantId;
+        private final long createdAtMillis;
+        private final long expiresAtMillis;
+
+        IndexEntry(IntentMandate mandate) {
+            this.mandate = mandate;
+            this.mandateId = mandate.getId();
+            this.agentId = mandate.getRequestingAgentId();
+            this.merchantId = mandate.getReceivingAgentId();
+            this.createdAtMillis = toMillis(mandate.getCreatedAt(), Long.MIN_VALUE);
+            this.expiresAtMillis = toMillis(mandate.getExpiresAt(), Long.MAX_VALUE);
+        }
+
+        private static long toMillis(Instant instant, long absent) {
+            return instant != null ? instant.toEpochMilli() : absent;
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package io.github.vishalmysore.ap2java.mandate;
 
 import io.github.vishalmysore.ap2java.credentials.VerifiableCredential;
+import io.github.vishalmysore.ap2java.util.CachedClock;
 import lombok.Getter;
-import lombok.Setter;
 import lombok.ToString;
 
 import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 @ToString
@@ -15,7 +18,7 @@ import java.util.List;
  * This class represents a long-standing permission for an agent to make payments
  * with certain constraints.
  */
-public class IntentMandate {
+public class IntentMandate implements SignableMandate {
     
     private String id;
     private String requestingAgentId;
@@ -24,20 +27,34 @@ public class IntentMandate {
     private Instant expiresAt;
     private boolean requiresHumanApproval;
     private BigDecimal maxAmountPerPayment;
+    private BigDecimal maxTotalAmount;
+    private Duration budgetWindow;
     private List<String> allowedCategories;
     private VerifiableCredential credential;
+    @ToString.Exclude
+    private volatile String signingDigest;
+    // A copy of allowedCategories as it was when the digest was taken
+    @ToString.Exclude
+    private volatile List<String> signedAllowedCategories;
+    private String constraints;
+    @ToString.Exclude
+    private MandateConstraints compiledConstraints;
 
-    @Setter
+    /**
+     * Informational only: {@link #permits} and {@link IntentPolicy} enforce
+     * {@link #getMaxAmountPerPayment()}.
+     */
     @Getter
     private double maxPrice;
 
-    @Setter
     @Getter
     private String userId; // Optional user ID associated with the mandate
-    @Setter
     @Getter
     private String category; // Optional category for the mandate;
-    @Setter
+    /**
+     * Informational only: {@link #permits} and {@link IntentPolicy} enforce
+     * {@link #getMaxAmountPerPayment()}.
+     */
     @Getter
     private double maxAmount; // Optional maximum amount for the mandate;
 
@@ -45,6 +62,7 @@ public class IntentMandate {
         this.userId = userId;
         this.category = category;
         this.maxAmount = maxAmount;
+        this.allowedCategories = Collections.emptyList();
     }
     /**
      * Default constructor
@@ -69,8 +87,9 @@ public class IntentMandate {
         this.receivingAgentId = receivingAgentId;
         this.maxAmountPerPayment = maxAmountPerPayment;
         this.requiresHumanApproval = requiresHumanApproval;
-        this.createdAt = Instant.now();
-        this.expiresAt = Instant.now().plusSeconds(3600 * 24 * 30); // 30 days by default
+        // Stamped from the same clock as isValid(), so a new mandate is valid at once
+        this.createdAt = CachedClock.systemUTC().instant();
+        this.expiresAt = createdAt.plusSeconds(3600 * 24 * 30); // 30 days by default
         this.allowedCategories = Collections.emptyList();
     }
 
@@ -82,6 +101,7 @@ public class IntentMandate {
 
     public void setId(String id) {
         this.id = id;
+        this.signingDigest = null;
     }
 
     public String getRequestingAgentId() {
@@ -90,6 +110,7 @@ public class IntentMandate {
 
     public void setRequestingAgentId(String requestingAgentId) {
         this.requestingAgentId = requestingAgentId;
+        this.signingDigest = null;
     }
 
     public String getReceivingAgentId() {
@@ -98,6 +119,7 @@ public class IntentMandate {
 
     public void setReceivingAgentId(String receivingAgentId) {
         this.receivingAgentId = receivingAgentId;
+        this.signingDigest = null;
     }
 
     public Instant getCreatedAt() {
@@ -106,6 +128,7 @@ public class IntentMandate {
 
     public void setCreatedAt(Instant createdAt) {
         this.createdAt = createdAt;
+        this.signingDigest = null;
     }
 
     public Instant getExpiresAt() {
@@ -114,6 +137,7 @@ public class IntentMandate {
 
     public void setExpiresAt(Instant expiresAt) {
         this.expiresAt = expiresAt;
+        this.signingDigest = null;
     }
 
     public boolean requiresHumanApproval() {
@@ -122,6 +146,7 @@ public class IntentMandate {
 
     public void setRequiresHumanApproval(boolean requiresHumanApproval) {
         this.requiresHumanApproval = requiresHumanApproval;
+        this.signingDigest = null;
     }
 
     public BigDecimal getMaxAmountPerPayment() {
@@ -130,6 +155,36 @@ public class IntentMandate {
 
     public void setMaxAmountPerPayment(BigDecimal maxAmountPerPayment) {
         this.maxAmountPerPayment = maxAmountPerPayment;
+        this.signingDigest = null;
+    }
+    
+    /**
+     * Gets the limit on the total of all payments under this mandate, enforced by
+     * {@code SpendBudgetTracker}.
+     * 
+     * @return the cumulative limit, or null for none
+     */
+    public BigDecimal getMaxTotalAmount() {
+        return maxTotalAmount;
+    }
+    
+    public void setMaxTotalAmount(BigDecimal maxTotalAmount) {
+        this.maxTotalAmount = maxTotalAmount;
+        this.signingDigest = null;
+    }
+    
+    /**
+     * Gets the rolling window the cumulative limit applies to.
+     * 
+     * @return the window, or null if the limit covers the whole life of the mandate
+     */
+    public Duration getBudgetWindow() {
+        return budgetWindow;
+    }
+    
+    public void setBudgetWindow(Duration budgetWindow) {
+        this.budgetWindow = budgetWindow;
+        this.signingDigest = null;
     }
     
     public List<String> getAllowedCategories() {
@@ -138,6 +193,7 @@ public class IntentMandate {
     
     public void setAllowedCategories(List<String> allowedCategories) {
         this.allowedCategories = allowedCategories != null ? allowedCategories : Collections.emptyList();
+        this.signingDigest = null;
     }
     
     public VerifiableCredential getCredential() {
@@ -149,26 +205,127 @@ public class IntentMandate {
     }
     
     /**
-     * Checks if this mandate is valid for the current time.
+     * Gets the additional rules of this mandate, in the language described by
+     * {@link MandateConstraints}.
+     * 
+     * @return the constraint rules, or null if there are none
+     */
+    public String getConstraints() {
+        return constraints;
+    }
+    
+    /**
+     * Sets the additional rules of this mandate. The rules are parsed immediately.
+     * 
+     * @param constraints the constraint rules, or null for none
+     * @throws IllegalArgumentException if a rule is not valid
+     */
+    public void setConstraints(String constraints) {
+        this.compiledConstraints = constraints != null ? MandateConstraints.parse(constraints) : null;
+        this.constraints = constraints;
+        this.signingDigest = null;
+    }
+    
+    /**
+     * Gets the parsed form of the additional rules of this mandate.
+     * 
+     * @return the parsed constraints, or null if there are none
+     */
+    public MandateConstraints getCompiledConstraints() {
+        return compiledConstraints;
+    }
+    
+    public void setMaxPrice(double maxPrice) {
+        this.maxPrice = maxPrice;
+        this.signingDigest = null;
+    }
+    
+    public void setUserId(String userId) {
+        this.userId = userId;
+        this.signingDigest = null;
+    }
+    
+    public void setCategory(String category) {
+        this.category = category;
+        this.signingDigest = null;
+    }
+    
+    public void setMaxAmount(double maxAmount) {
+        this.maxAmount = maxAmount;
+        this.signingDigest = null;
+    }
+    
+    @Override
+    public String mandateType() {
+        return "IntentMandate";
+    }
+    
+    @Override
+    public byte[] canonicalBytes() {
+        return MandateDigest.canonicalBytes(this);
+    }
+    
+    /**
+     * Gets the digest of the signed content, computing it on first use. The allowed categories
+     * can be edited in place; the digest is then computed again on the next call.
+     * 
+     * @return the hex-encoded SHA-256 digest
+     */
+    @Override
+    public String signingDigest() {
+        String digest = signingDigest;
+        if (digest == null || !allowedCategories.equals(signedAllowedCategories)) {
+            signedAllowedCategories = new ArrayList<>(allowedCategories);
+            digest = MandateDigest.of(canonicalBytes());
+            signingDigest = digest;
+        }
+        return digest;
+    }
+    
+    /**
+     * Checks if this mandate is valid for the current time, read from
+     * {@link CachedClock#systemUTC()}.
      * 
      * @return true if the mandate is valid, false otherwise
      */
     public boolean isValid() {
-        Instant now = Instant.now();
-        return now.isAfter(createdAt) && now.isBefore(expiresAt);
+        return isValid(CachedClock.systemUTC());
+    }
+    
+    /**
+     * Checks if this mandate is valid at the current time of a clock.
+     * 
+     * @param clock the clock to read
+     * @return true if the mandate is valid, false otherwise
+     */
+    public boolean isValid(Clock clock) {
+        long now = clock.millis();
+        return now >= createdAt.toEpochMilli() && now < expiresAt.toEpochMilli();
     }
     
     /**
-     * Checks if this mandate is expired.
+     * Checks if this mandate is expired, reading the time from {@link CachedClock#systemUTC()}.
      * 
      * @return true if the mandate is expired, false otherwise
      */
     public boolean isExpired() {
-        return Instant.now().isAfter(expiresAt);
+        return isExpired(CachedClock.systemUTC());
+    }
+    
+    /**
+     * Checks if this mandate is expired at the current time of a clock.
+     * 
+     * @param clock the clock to read
+     * @return true if the mandate is expired, false otherwise
+     */
+    public boolean isExpired(Clock clock) {
+        return clock.millis() > expiresAt.toEpochMilli();
     }
     
     /**
      * Checks if this mandate permits a payment with the given parameters.
+     * To check many payments against the same mandate, compile it once with
+     * {@link IntentPolicyCompiler} instead.
      * 
      * @param merchantId the merchant ID for the payment
      * @param amount the amount of the payment
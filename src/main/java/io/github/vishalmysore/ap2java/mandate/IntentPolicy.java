@@ -0,0 +1,212 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import io.github.vishalmysore.ap2java.util.SymbolTable;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Collection;
+import java.util.Currency;
+
+/**
+ * The spending rules of an Intent Mandate, compiled once into an immutable form that can
+ * be evaluated for every payment without allocating.
+ * <p>
+ * The merchant and categories are replaced by IDs from shared symbol tables, allowed
+ * categories become a bit set, and the per-payment limit becomes a count of minor units
+ * (e.g. cents) of the policy's currency. {@link #permits(int, long, int)} gives the same
+ * answer as {@link IntentMandate#permits(String, BigDecimal, String)} for the mandate it
+ * was compiled from. Later changes to that mandate are not seen; compile it again.
+ * <p>
+ * Payment amounts in major units are compared with the limit as decimals rather than
+ * converted, which gives the same answer without allocating.
+ */
+public final class IntentPolicy {
+
+    /**
+     * Category ID meaning the payment has no category, which every policy permits.
+     */
+    public static final int NO_CATEGORY = -1;
+
+    /**
+     * Category ID for a category that no policy names.
+     */
+    public static final int UNKNOWN_CATEGORY = -2;
+
+    private static final int ANY_MERCHANT = -1;
+
+    private final String mandateId;
+    private final SymbolTable merchants;
+    private final SymbolTable categories;
+    private final int merchantId;
+    private final BigDecimal maxAmount;
+    private final long maxAmountMinor;
+    private final int scale;
+    private final long[] categoryBits;
+
+    private IntentPolicy(String mandateId, SymbolTable merchants, SymbolTable categories, int merchantId,
+                         BigDecimal maxAmount, long maxAmountMinor, int scale, long[] categoryBits) {
+        this.mandateId = mandateId;
+        this.merchants = merchants;
+        this.categories = categories;
+        this.merchantId = merchantId;
+        this.maxAmount = maxAmount;
+        this.maxAmountMinor = maxAmountMinor;
+        this.scale = scale;
+        this.categoryBits = categoryBits;
+    }
+
+    /**
+     * Compiles the rules of an Intent Mandate.
+     *
+     * @param mandate The mandate
+     * @param currency The currency payments under the mandate are made in
+     * @param merchants The symbol table of merchant IDs
+     * @param categories The symbol table of category names
+     * @return The compiled policy
+     */
+    static IntentPolicy compile(IntentMandate mandate, Currency currency,
+                                SymbolTable merchants, SymbolTable categories) {
+        int scale = Math.max(0, currency.getDefaultFractionDigits());
+
+        int merchantId = mandate.getReceivingAgentId() != null
+                ? merchants.intern(mandate.getReceivingAgentId()) : ANY_MERCHANT;
+
+        // Round the limit down, so a limit finer than the currency never lets more through
+        BigDecimal maxAmount = mandate.getMaxAmountPerPayment() != null
+                ? mandate.getMaxAmountPerPayment().setScale(scale, RoundingMode.DOWN)
+                : null;
+        long maxAmountMinor = maxAmount != null ? clamp(maxAmount.unscaledValue()) : Long.MAX_VALUE;
+
+        long[] categoryBits = new long[0];
+        Collection<String> allowed = mandate.getAllowedCategories();
+        if (allowed != null && !allowed.isEmpty()) {
+            int maxId = 0;
+            int[] ids = new int[allowed.size()];
+            int i = 0;
+            for (String category : allowed) {
+                ids[i] = categories.intern(category);
+                maxId = Math.max(maxId, ids[i++]);
+            }
+            categoryBits = new long[(maxId >>> 6) + 1];
+            for (int id : ids) {
+                categoryBits[id >>> 6] |= 1L << id;
+            }
+        }
+
+        return new IntentPolicy(mandate.getId(), merchants, categories, merchantId, maxAmount,
+                maxAmountMinor, scale, categoryBits);
+    }
+
+    /**
+     * Checks whether the policy permits a payment, using IDs from the policy's symbol tables.
+     * This does not allocate.
+     *
+     * @param merchantId The merchant ID, or {@link SymbolTable#NOT_FOUND} for an unknown merchant
+     * @param amountMinor The amount in minor units of the policy's currency
+     * @param categoryId The category ID, {@link #NO_CATEGORY} or {@link #UNKNOWN_CATEGORY}
+     * @return true if the payment is permitted, false otherwise
+     */
+    public boolean permits(int merchantId, long amountMinor, int categoryId) {
+        return amountMinor <= maxAmountMinor && permitsMerchantAndCategory(merchantId, categoryId);
+    }
+
+    /**
+     * Checks whether the policy permits a payment. The strings are looked up in the policy's
+     * symbol tables, which does not allocate.
+     *
+     * @param merchantId The merchant ID
+     * @param amountMinor The amount in minor units of the policy's currency
+     * @param category The payment category, or null
+     * @return true if the payment is permitted, false otherwise
+     */
+    public boolean permits(String merchantId, long amountMinor, String category) {
+        return permits(merchants.idOf(merchantId), amountMinor, categoryId(category));
+    }
+
+    /**
+     * Checks whether the policy permits a payment with an amount in major units. The amount
+     * is compared with the limit rounded down to the currency's minor unit, which agrees with
+     * {@link #toMinorUnits} rounding the amount up, and does not allocate.
+     *
+     * @param merchantId The merchant ID
+     * @param amount The amount of the payment
+     * @param category The payment category, or null
+     * @return true if the payment is permitted, false otherwise
+     */
+    public boolean permits(String merchantId, BigDecimal amount, String category) {
+        if (maxAmount != null && amount.compareTo(maxAmount) > 0) {
+            return false;
+        }
+        return permitsMerchantAndCategory(merchants.idOf(merchantId), categoryId(category));
+    }
+
+    /**
+     * Converts an amount to minor units of the policy's currency. Fractions of a minor unit
+     * round up, so they can never slip under the limit.
+     *
+     * @param amount The amount
+     * @return The amount in minor units, or {@link Long#MAX_VALUE} if it does not fit
+     */
+    public long toMinorUnits(BigDecimal amount) {
+        return clamp(amount.setScale(scale, RoundingMode.UP).unscaledValue());
+    }
+
+    /**
+     * Gets the ID of a category in the policy's symbol table.
+     *
+     * @param category The category, or null
+     * @return The category ID, {@link #NO_CATEGORY} for null, or {@link #UNKNOWN_CATEGORY}
+     */
+    public int categoryId(String category) {
+        return categoryId(categories, category);
+    }
+
+    static int categoryId(SymbolTable categories, String category) {
+        if (category == null) {
+            return NO_CATEGORY;
+        }
+        int id = categories.idOf(category);
+        return id != SymbolTable.NOT_FOUND ? id : UNKNOWN_CATEGORY;
+    }
+
+    public String getMandateId() {
+        return mandateId;
+    }
+
+    public long getMaxAmountMinor() {
+        return maxAmountMinor;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * Gets the symbol table that merchant IDs of this policy come from.
+     *
+     * @return The merchant symbol table
+     */
+    SymbolTable getMerchants() {
+        return merchants;
+    }
+
+    private static long clamp(BigInteger minor) {
+        if (minor.bitLength() < 64) {
+            return minor.longValue();
+        }
+        return minor.signum() > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+    }
+
+    private boolean permitsMerchantAndCategory(int merchantId, int categoryId) {
+        if (this.merchantId != ANY_MERCHANT && this.merchantId != merchantId) {
+            return false;
+        }
+        return categoryId == NO_CATEGORY || categoryBits.length == 0 || allowsCategory(categoryId);
+    }
+
+    private boolean allowsCategory(int categoryId) {
+        int word = categoryId >>> 6;
+        return categoryId >= 0 && word < categoryBits.length && (categoryBits[word] & (1L << categoryId)) != 0;
+    }
+}
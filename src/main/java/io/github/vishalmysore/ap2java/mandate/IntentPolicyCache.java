@@ -0,0 +1,102 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the compiled {@link IntentPolicy} of each Intent Mandate, keyed by mandate ID,
+ * content digest and payment currency, so a mandate that governs many payments is compiled
+ * once. A changed mandate or another currency gets a new policy. Entries are kept no longer
+ * than the mandate's expiry, and are dropped as soon as the mandate is invalidated.
+ * <p>
+ * Each policy is compiled with symbol tables of its own, holding only its mandate's merchant
+ * and categories, so they are dropped with the entry instead of collecting every merchant
+ * and category the verifier has ever seen.
+ */
+class IntentPolicyCache {
+
+    private final int maxEntries;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries The maximum number of mandates to remember policies for
+     */
+    IntentPolicyCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Gets the policy of a mandate for payments in a currency, compiling it if needed.
+     *
+     * @param mandate The mandate, which must have an ID
+     * @param digest The content digest of the mandate
+     * @param currencyCode The ISO 4217 code of the payment currency
+     * @param nowMillis The current time in epoch milliseconds
+     * @return The policy, or null if the currency is not a known currency
+     */
+    IntentPolicy get(IntentMandate mandate, String digest, String currencyCode, long nowMillis) {
+        Entry entry = entries.get(mandate.getId());
+        if (entry != null && entry.digest.equals(digest) && entry.currencyCode.equals(currencyCode)) {
+            return entry.policy;
+        }
+
+        IntentPolicy policy;
+        try {
+            policy = new IntentPolicyCompiler().compile(mandate, currencyCode);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        long validUntilMillis = mandate.getExpiresAt() != null ? mandate.getExpiresAt().toEpochMilli() : Long.MAX_VALUE;
+        if (entries.size() >= maxEntries && !entries.containsKey(mandate.getId())) {
+            removeExpired(nowMillis);
+            if (entries.size() >= maxEntries) {
+                // Full of live entries: the mandate is simply compiled again next time
+                return policy;
+            }
+        }
+        entries.put(mandate.getId(), new Entry(digest, currencyCode, policy, validUntilMillis));
+        return policy;
+    }
+
+    /**
+     * Drops the policy of a mandate.
+     *
+     * @param mandateId The mandate ID
+     */
+    void invalidate(String mandateId) {
+        entries.remove(mandateId);
+    }
+
+    /**
+     * Gets the number of remembered policies.
+     *
+     * @return The number of entries
+     */
+    int size() {
+        return entries.size();
+    }
+
+    private void removeExpired(long nowMillis) {
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (nowMillis >= entry.getValue().validUntilMillis) {
+                entries.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static class Entry {
+        private final String digest;
+        private final String currencyCode;
+        private final IntentPolicy policy;
+        private final long validUntilMillis;
+
+        Entry(String digest, String currencyCode, IntentPolicy policy, long validUntilMillis) {
+            this.digest = digest;
+            this.currencyCode = currencyCode;
+            this.policy = policy;
+            this.validUntilMillis = validUntilMillis;
+        }
+    }
+}
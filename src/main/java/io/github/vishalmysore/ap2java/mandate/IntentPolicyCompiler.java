@@ -0,0 +1,51 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import io.github.vishalmysore.ap2java.util.SymbolTable;
+
+import java.util.Currency;
+
+/**
+ * Compiles Intent Mandates into {@link IntentPolicy} instances.
+ * <p>
+ * Policies from the same compiler share its merchant and category symbol tables, so a
+ * caller can resolve a merchant or category to an ID once and evaluate it against many
+ * policies with {@link IntentPolicy#permits(int, long, int)}.
+ */
+public class IntentPolicyCompiler {
+
+    private final SymbolTable merchants = new SymbolTable();
+    private final SymbolTable categories = new SymbolTable();
+
+    /**
+     * Compiles the rules of an Intent Mandate.
+     *
+     * @param mandate The mandate
+     * @param currencyCode The ISO 4217 code of the currency payments are made in
+     * @return The compiled policy
+     * @throws IllegalArgumentException if the currency code is not a known currency
+     */
+    public IntentPolicy compile(IntentMandate mandate, String currencyCode) {
+        return IntentPolicy.compile(mandate, Currency.getInstance(currencyCode), merchants, categories);
+    }
+
+    /**
+     * Gets the ID of a merchant for {@link IntentPolicy#permits(int, long, int)}.
+     *
+     * @param merchantId The merchant ID
+     * @return The merchant's symbol ID, or {@link SymbolTable#NOT_FOUND} if no policy names it
+     */
+    public int merchantId(String merchantId) {
+        return merchants.idOf(merchantId);
+    }
+
+    /**
+     * Gets the ID of a category for {@link IntentPolicy#permits(int, long, int)}.
+     *
+     * @param category The category, or null
+     * @return The category ID, {@link IntentPolicy#NO_CATEGORY} for null, or
+     *         {@link IntentPolicy#UNKNOWN_CATEGORY} if no policy names it
+     */
+    public int categoryId(String category) {
+        return IntentPolicy.categoryId(categories, category);
+    }
+}
@@ -0,0 +1,310 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.vishalmysore.ap2java.credentials.CredentialProof;
+import io.github.vishalmysore.ap2java.credentials.CredentialSubject;
+import io.github.vishalmysore.ap2java.credentials.VerifiableCredential;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts mandates to and from JSON for storage.
+ * <p>
+ * Every field is written explicitly rather than through bean introspection, so derived
+ * getters such as {@code isValid} are not stored and linked mandate objects are left out;
+ * a linked mandate is stored on its own and found again by ID. Credentials are restored
+ * with the same field values, so their signatures still verify.
+ */
+final class MandateCodec {
+
+    static final ObjectMapper MAPPER = new ObjectMapper()
+            .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {
+    };
+
+    private MandateCodec() {
+    }
+
+    /**
+     * Converts a mandate to JSON.
+     *
+     * @param mandate An Intent, Cart or Payment Mandate
+     * @return The JSON object, with a {@code mandateType} member
+     */
+    static ObjectNode encode(SignableMandate mandate) {
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put("mandateType", mandate.mandateType());
+        if (mandate instanceof IntentMandate) {
+            encodeIntent((IntentMandate) mandate, node);
+        } else if (mandate instanceof CartMandate) {
+            encodeCart((CartMandate) mandate, node);
+        } else if (mandate instanceof PaymentMandate) {
+            encodePayment((PaymentMandate) mandate, node);
+        } else {
+            throw new IllegalArgumentException("Unknown mandate type: " + mandate.getClass().getName());
+        }
+        putCredential(node, mandate.getCredential());
+        return node;
+    }
+
+    /**
+     * Converts JSON written by {@link #encode} back to a mandate.
+     *
+     * @param node The JSON object
+     * @return The mandate
+     */
+    static SignableMandate decode(JsonNode node) {
+        String mandateType = text(node, "mandateType");
+        SignableMandate mandate;
+        if ("IntentMandate".equals(mandateType)) {
+            mandate = decodeIntent(node);
+        } else if ("CartMandate".equals(mandateType)) {
+            mandate = decodeCart(node);
+        } else if ("PaymentMandate".equals(mandateType)) {
+            mandate = decodePayment(node);
+        } else {
+            throw new IllegalArgumentException("Unknown mandate type: " + mandateType);
+        }
+        mandate.setCredential(credential(node.get("credential")));
+        return mandate;
+    }
+
+    private static void encodeIntent(IntentMandate mandate, ObjectNode node) {
+        putCommon(node, mandate.getId(), mandate.getRequestingAgentId(), mandate.getReceivingAgentId(),
+                mandate.getCreatedAt(), mandate.getExpiresAt());
+        node.put("requiresHumanApproval", mandate.requiresHumanApproval());
+        putDecimal(node, "maxAmountPerPayment", mandate.getMaxAmountPerPayment());
+        putDecimal(node, "maxTotalAmount", mandate.getMaxTotalAmount());
+        putString(node, "budgetWindow", mandate.getBudgetWindow());
+        if (mandate.getAllowedCategories() != null) {
+            ArrayNode categories = node.putArray("allowedCategories");
+            mandate.getAllowedCategories().forEach(categories::add);
+        }
+        putString(node, "constraints", mandate.getConstraints());
+        putString(node, "userId", mandate.getUserId());
+        putString(node, "category", mandate.getCategory());
+        node.put("maxPrice", mandate.getMaxPrice());
+        node.put("maxAmount", mandate.getMaxAmount());
+    }
+
+    private static IntentMandate decodeIntent(JsonNode node) {
+        IntentMandate mandate = new IntentMandate();
+        mandate.setId(text(node, "id"));
+        mandate.setRequestingAgentId(text(node, "requestingAgentId"));
+        mandate.setReceivingAgentId(text(node, "receivingAgentId"));
+        mandate.setCreatedAt(instant(node, "createdAt"));
+        mandate.setExpiresAt(instant(node, "expiresAt"));
+        mandate.setRequiresHumanApproval(node.path("requiresHumanApproval").asBoolean());
+        mandate.setMaxAmountPerPayment(decimal(node, "maxAmountPerPayment"));
+        mandate.setMaxTotalAmount(decimal(node, "maxTotalAmount"));
+        String budgetWindow = text(node, "budgetWindow");
+        mandate.setBudgetWindow(budgetWindow != null ? Duration.parse(budgetWindow) : null);
+        JsonNode categories = node.get("allowedCategories");
+        if (categories != null) {
+            List<String> allowedCategories = new ArrayList<>(categories.size());
+            categories.forEach(category -> allowedCategories.add(category.asText()));
+            mandate.setAllowedCategories(allowedCategories);
+        } else {
+            mandate.setAllowedCategories(null);
+        }
+        mandate.setConstraints(text(node, "constraints"));
+        mandate.setUserId(text(node, "userId"));
+        mandate.setCategory(text(node, "category"));
+        mandate.setMaxPrice(node.path("maxPrice").asDouble());
+        mandate.setMaxAmount(node.path("maxAmount").asDouble());
+        return mandate;
+    }
+
+    private static void encodeCart(CartMandate mandate, ObjectNode node) {
+        putCommon(node, mandate.getId(), mandate.getRequestingAgentId(), mandate.getReceivingAgentId(),
+                mandate.getCreatedAt(), mandate.getExpiresAt());
+        putDecimal(node, "amount", mandate.getAmount());
+        putString(node, "currencyCode", mandate.getCurrencyCode());
+        putString(node, "intentMandateId", mandate.getIntentMandateId());
+        putString(node, "cartId", mandate.getCartId());
+        putString(node, "userId", mandate.getUserId());
+        if (mandate.getItems() != null) {
+            ArrayNode items = node.putArray("items");
+            for (CartMandate.CartItem item : mandate.getItems()) {
+                ObjectNode itemNode = items.addObject();
+                putString(itemNode, "id", item.getId());
+                putString(itemNode, "description", item.getDescription());
+                putDecimal(itemNode, "price", item.getPrice());
+                itemNode.put("quantity", item.getQuantity());
+            }
+        }
+    }
+
+    private static CartMandate decodeCart(JsonNode node) {
+        CartMandate mandate = new CartMandate();
+        mandate.setId(text(node, "id"));
+        mandate.setRequestingAgentId(text(node, "requestingAgentId"));
+        mandate.setReceivingAgentId(text(node, "receivingAgentId"));
+        mandate.setCreatedAt(instant(node, "createdAt"));
+        mandate.setExpiresAt(instant(node, "expiresAt"));
+        mandate.setCurrencyCode(text(node, "currencyCode"));
+        mandate.setIntentMandateId(text(node, "intentMandateId"));
+        mandate.setCartId(text(node, "cartId"));
+        mandate.setUserId(text(node, "userId"));
+        JsonNode items = node.get("items");
+        if (items != null) {
+            List<CartMandate.CartItem> cartItems = new ArrayList<>(items.size());
+            for (JsonNode item : items) {
+                cartItems.add(new CartMandate.CartItem(text(item, "id"), text(item, "description"),
+                        decimal(item, "price"), item.path("quantity").asInt()));
+            }
+            mandate.setItems(cartItems);
+        }
+        // Set after the items, which recompute the amount
+        mandate.setAmount(decimal(node, "amount"));
+        return mandate;
+    }
+
+    private static void encodePayment(PaymentMandate mandate, ObjectNode node) {
+        putCommon(node, mandate.getId(), mandate.getRequestingAgentId(), mandate.getReceivingAgentId(),
+                mandate.getCreatedAt(), mandate.getExpiresAt());
+        putDecimal(node, "amount", mandate.getAmount());
+        putString(node, "currencyCode", mandate.getCurrencyCode());
+        putString(node, "paymentReference", mandate.getPaymentReference());
+        putString(node, "parentMandateId", mandate.getParentMandateId());
+        if (mandate.getPaymentDetails() != null) {
+            node.set("paymentDetails", MAPPER.valueToTree(mandate.getPaymentDetails()));
+        }
+        putString(node, "status", mandate.getStatus());
+        putString(node, "paymentMethodId", mandate.getPaymentMethodId());
+        putString(node, "userId", mandate.getUserId());
+        putString(node, "paymentMethod", mandate.getPaymentMethod());
+    }
+
+    private static PaymentMandate decodePayment(JsonNode node) {
+        PaymentMandate mandate = new PaymentMandate();
+        mandate.setId(text(node, "id"));
+        mandate.setRequestingAgentId(text(node, "requestingAgentId"));
+        mandate.setReceivingAgentId(text(node, "receivingAgentId"));
+        mandate.setCreatedAt(instant(node, "createdAt"));
+        mandate.setExpiresAt(instant(node, "expiresAt"));
+        mandate.setAmount(decimal(node, "amount"));
+        mandate.setCurrencyCode(text(node, "currencyCode"));
+        mandate.setPaymentReference(text(node, "paymentReference"));
+        mandate.setParentMandateId(text(node, "parentMandateId"));
+        JsonNode paymentDetails = node.get("paymentDetails");
+        mandate.setPaymentDetails(paymentDetails != null ? MAPPER.convertValue(paymentDetails, MAP_TYPE) : null);
+        String status = text(node, "status");
+        mandate.setStatus(status != null ? PaymentMandate.PaymentStatus.valueOf(status) : null);
+        mandate.setPaymentMethodId(text(node, "paymentMethodId"));
+        mandate.setUserId(text(node, "userId"));
+        mandate.setPaymentMethod(text(node, "paymentMethod"));
+        return mandate;
+    }
+
+    private static void putCommon(ObjectNode node, String id, String requestingAgentId, String receivingAgentId,
+                                  Instant createdAt, Instant expiresAt) {
+        putString(node, "id", id);
+        putString(node, "requestingAgentId", requestingAgentId);
+        putString(node, "receivingAgentId", receivingAgentId);
+        putString(node, "createdAt", createdAt);
+        putString(node, "expiresAt", expiresAt);
+    }
+
+    private static void putCredential(ObjectNode node, VerifiableCredential credential) {
+        if (credential == null) {
+            return;
+        }
+        ObjectNode credentialNode = node.putObject("credential");
+        putString(credentialNode, "id", credential.getId());
+        putString(credentialNode, "issuer", credential.getIssuer());
+        putString(credentialNode, "type", credential.getType());
+        putString(credentialNode, "issuanceDate", credential.getIssuanceDate());
+        CredentialSubject subject = credential.getSubject();
+        if (subject != null) {
+            ObjectNode subjectNode = credentialNode.putObject("subject");
+            putString(subjectNode, "id", subject.getId());
+            if (subject.getClaims() != null) {
+                subjectNode.set("claims", MAPPER.valueToTree(subject.getClaims()));
+            }
+        }
+        CredentialProof proof = credential.getProof();
+        if (proof != null) {
+            ObjectNode proofNode = credentialNode.putObject("proof");
+            putString(proofNode, "type", proof.getType());
+            putString(proofNode, "created", proof.getCreated());
+            putString(proofNode, "verificationMethod", proof.getVerificationMethod());
+            putString(proofNode, "proofPurpose", proof.getProofPurpose());
+            putString(proofNode, "signature", proof.getSignature());
+            proofNode.set("additionalAttributes", MAPPER.valueToTree(proof.getAdditionalAttributes()));
+        }
+    }
+
+    private static VerifiableCredential credential(JsonNode node) {
+        if (node == null) {
+            return null;
+        }
+        CredentialSubject subject = null;
+        JsonNode subjectNode = node.get("subject");
+        if (subjectNode != null) {
+            JsonNode claims = subjectNode.get("claims");
+            subject = new CredentialSubject(text(subjectNode, "id"),
+                    claims != null ? MAPPER.convertValue(claims, MAP_TYPE) : null);
+        }
+        CredentialProof proof = null;
+        JsonNode proofNode = node.get("proof");
+        if (proofNode != null) {
+            proof = new CredentialProof(text(proofNode, "type"), instant(proofNode, "created"),
+                    text(proofNode, "verificationMethod"), text(proofNode, "proofPurpose"),
+                    text(proofNode, "signature"));
+            JsonNode attributes = proofNode.get("additionalAttributes");
+            if (attributes != null) {
+                MAPPER.convertValue(attributes, MAP_TYPE).forEach(proof::addAttribute);
+            }
+        }
+        return new StoredCredential(text(node, "id"), text(node, "issuer"), text(node, "type"),
+                instant(node, "issuanceDate"), subject, proof);
+    }
+
+    private static void putString(ObjectNode node, String name, Object value) {
+        if (value != null) {
+            node.put(name, value.toString());
+        }
+    }
+
+    private static void putDecimal(ObjectNode node, String name, BigDecimal value) {
+        // As a string, so the scale survives the round trip exactly
+        putString(node, name, value);
+    }
+
+    private static String text(JsonNode node, String name) {
+        JsonNode value = node.get(name);
+        return value != null && !value.isNull() ? value.asText() : null;
+    }
+
+    private static Instant instant(JsonNode node, String name) {
+        String value = text(node, name);
+        return value != null ? Instant.parse(value) : null;
+    }
+
+    private static BigDecimal decimal(JsonNode node, String name) {
+        String value = text(node, name);
+        return value != null ? new BigDecimal(value) : null;
+    }
+
+    /**
+     * A credential read back from storage, whatever its original class.
+     */
+    private static class StoredCredential extends VerifiableCredential {
+        StoredCredential(String id, String issuer, String type, Instant issuanceDate,
+                         CredentialSubject subject, CredentialProof proof) {
+            super(id, issuer, type, issuanceDate, subject, proof);
+        }
+    }
+}
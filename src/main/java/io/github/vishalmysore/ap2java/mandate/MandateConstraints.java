@@ -0,0 +1,587 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import io.github.vishalmysore.ap2java.domain.PaymentRequest;
+
+import java.math.BigDecimal;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Additional spending rules attached to an Intent Mandate, written in a small constraint
+ * language and parsed once into a list of specialized rule nodes.
+ * <p>
+ * Rules are separated by newlines or semicolons, and every rule must hold. Blank lines and
+ * lines starting with {@code #} are ignored. The rules are:
+ * <pre>
+ * time between 09:00 and 17:30 [zone Europe/Berlin]   time of day, may wrap past midnight
+ * day in MON,TUE,WED [zone Europe/Berlin]             day of the week
+ * currency in USD,EUR                                 payment currency
+ * amount &lt;= 100.00 [USD]                               amount, for one currency or all;
+ *                                                     also &lt;, &gt;= and &gt;
+ * merchant in|not in merchant-1,merchant-2            receiving agent
+ * category in|not in books,travel                     payment category
+ * items &lt;= 10                                         number of cart items
+ * item.quantity &lt;= 3                                  quantity of every cart item
+ * item.price &lt;= 50.00                                 unit price of every cart item
+ * item.id in|not in sku-1,sku-2                       ID of every cart item
+ * </pre>
+ * Times and days are in UTC unless a zone is given. Cart item rules only apply when a
+ * Cart Mandate is being checked, and category rules only when a category is known;
+ * callers that cannot name the category should check {@link #constrainsCategory()}.
+ * <p>
+ * The parsed rules are sorted by evaluation cost, so cheap comparisons reject a payment
+ * before time zone arithmetic or cart item scans run. Evaluation does not allocate, apart
+ * from the offset lookup for time rules in zones with daylight saving time.
+ */
+public final class MandateConstraints {
+
+    private static final int SECONDS_PER_DAY = 86_400;
+
+    private final String source;
+    private final Rule[] rules;
+    private final boolean constrainsCategory;
+
+    private MandateConstraints(String source, Rule[] rules) {
+        this.source = source;
+        this.rules = rules;
+        this.constrainsCategory = Arrays.stream(rules).anyMatch(rule -> rule instanceof CategoryRule);
+    }
+
+    /**
+     * Parses constraint rules.
+     *
+     * @param source The rules
+     * @return The parsed constraints
+     * @throws IllegalArgumentException if a rule is not valid
+     */
+    public static MandateConstraints parse(String source) {
+        List<Rule> rules = new ArrayList<>();
+        String[] lines = source.split("[;\\n]");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                rules.add(parseRule(line));
+            } catch (IllegalArgumentException | DateTimeException e) {
+                throw new IllegalArgumentException("Invalid constraint '" + line + "': " + e.getMessage(), e);
+            }
+        }
+        // Cheapest first; the sort is stable, so equal-cost rules keep their written order
+        rules.sort(Comparator.comparingInt(Rule::cost));
+        return new MandateConstraints(source, rules.toArray(new Rule[0]));
+    }
+
+    /**
+     * Checks whether a payment satisfies every rule.
+     *
+     * @param request The payment request
+     * @param cart The Cart Mandate being paid, or null to skip cart item rules
+     * @param category The payment category, or null to skip category rules
+     * @param now The time of the payment
+     * @return true if every rule holds
+     */
+    public boolean permits(PaymentRequest request, CartMandate cart, String category, Instant now) {
+        return firstViolation(request, cart, category, now) == null;
+    }
+
+    /**
+     * Finds the first rule, in evaluation order, that a payment breaks.
+     *
+     * @param request The payment request
+     * @param cart The Cart Mandate being paid, or null to skip cart item rules
+     * @param category The payment category, or null to skip category rules
+     * @param now The time of the payment
+     * @return The text of the broken rule, or null if every rule holds
+     */
+    public String firstViolation(PaymentRequest request, CartMandate cart, String category, Instant now) {
+        for (Rule rule : rules) {
+            if (!rule.test(request, cart, category, now)) {
+                return rule.text;
+            }
+        }
+        return null;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Checks whether any rule restricts the payment category.
+     *
+     * @return true if there is a category rule
+     */
+    public boolean constrainsCategory() {
+        return constrainsCategory;
+    }
+
+    /**
+     * Gets the number of rules.
+     *
+     * @return The number of rules
+     */
+    public int size() {
+        return rules.length;
+    }
+
+    /**
+     * Gets the rules in evaluation order.
+     *
+     * @return The text of each rule
+     */
+    public List<String> getRules() {
+        List<String> texts = new ArrayList<>(rules.length);
+        for (Rule rule : rules) {
+            texts.add(rule.text);
+        }
+        return Collections.unmodifiableList(texts);
+    }
+
+    @Override
+    public String toString() {
+        return "MandateConstraints" + getRules();
+    }
+
+    private static Rule parseRule(String text) {
+        String[] words = text.split("\\s+");
+        String subject = words[0].toLowerCase(Locale.ROOT);
+        switch (subject) {
+            case "time":
+                return parseTime(text, words);
+            case "day":
+                return parseDays(text, words);
+            case "currency":
+                return new CurrencyRule(text, parseList(words, 1, true));
+            case "amount":
+                expectLength(words, 3, 4);
+                return new AmountRule(text, Comparison.parse(words[1]), new BigDecimal(words[2]),
+                        words.length == 4 ? words[3].toUpperCase(Locale.ROOT) : null);
+            case "merchant":
+                return new MerchantRule(text, isNegated(words), parseList(words, 1, false));
+            case "category":
+                return new CategoryRule(text, isNegated(words), parseList(words, 1, false));
+            case "items":
+                expectLength(words, 3, 3);
+                expect(words[1], "<=");
+                return new ItemCountRule(text, Integer.parseInt(words[2]));
+            case "item.quantity":
+                expectLength(words, 3, 3);
+                expect(words[1], "<=");
+                return new ItemQuantityRule(text, Integer.parseInt(words[2]));
+            case "item.price":
+                expectLength(words, 3, 3);
+                expect(words[1], "<=");
+                return new ItemPriceRule(text, new BigDecimal(words[2]));
+            case "item.id":
+                return new ItemIdRule(text, isNegated(words), parseList(words, 1, false));
+            default:
+                throw new IllegalArgumentException("unknown rule '" + words[0] + "'");
+        }
+    }
+
+    private static Rule parseTime(String text, String[] words) {
+        // time between HH:mm and HH:mm [zone ZONE]
+        expectLength(words, 5, 7);
+        expect(words[1], "between");
+        expect(words[3], "and");
+        int from = secondOfDay(words[2]);
+        int to = secondOfDay(words[4]);
+        return new TimeOfDayRule(text, from, to, parseZone(words, 5));
+    }
+
+    private static Rule parseDays(String text, String[] words) {
+        // day in MON,TUE [zone ZONE]
+        int zoneAt = indexOf(words, "zone");
+        String[] listWords = zoneAt < 0 ? words : Arrays.copyOf(words, zoneAt);
+        int days = 0;
+        for (String day : parseList(listWords, 1, true)) {
+            days |= 1 << dayOfWeek(day).ordinal();
+        }
+        return new DayOfWeekRule(text, days, zoneAt < 0 ? ZoneOffset.UTC : parseZone(words, zoneAt));
+    }
+
+    private static ZoneId parseZone(String[] words, int at) {
+        if (words.length <= at) {
+            return ZoneOffset.UTC;
+        }
+        expectLength(words, at + 2, at + 2);
+        expect(words[at], "zone");
+        return ZoneId.of(words[at + 1]);
+    }
+
+    /**
+     * Parses "in a,b" or "not in a, b" starting at the given word.
+     */
+    private static Set<String> parseList(String[] words, int at, boolean upperCase) {
+        if (at < words.length && words[at].equalsIgnoreCase("not")) {
+            at++;
+        }
+        if (at >= words.length || !words[at].equalsIgnoreCase("in")) {
+            throw new IllegalArgumentException("expected 'in' or 'not in'");
+        }
+        String list = String.join("", Arrays.copyOfRange(words, at + 1, words.length));
+        Set<String> values = new HashSet<>();
+        for (String value : list.split(",")) {
+            if (!value.isEmpty()) {
+                values.add(upperCase ? value.toUpperCase(Locale.ROOT) : value);
+            }
+        }
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException("expected a list of values");
+        }
+        return values;
+    }
+
+    private static boolean isNegated(String[] words) {
+        return words.length > 1 && words[1].equalsIgnoreCase("not");
+    }
+
+    private static int secondOfDay(String time) {
+        try {
+            return LocalTime.parse(time).toSecondOfDay();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("expected a time such as 09:30, got '" + time + "'");
+        }
+    }
+
+    private static DayOfWeek dayOfWeek(String day) {
+        for (DayOfWeek value : DayOfWeek.values()) {
+            if (value.name().equals(day) || value.name().substring(0, 3).equals(day)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("unknown day '" + day + "'");
+    }
+
+    private static int indexOf(String[] words, String word) {
+        for (int i = 0; i < words.length; i++) {
+            if (words[i].equalsIgnoreCase(word)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void expect(String word, String expected) {
+        if (!word.equalsIgnoreCase(expected)) {
+            throw new IllegalArgumentException("expected '" + expected + "', got '" + word + "'");
+        }
+    }
+
+    private static void expectLength(String[] words, int min, int max) {
+        if (words.length < min || words.length > max) {
+            throw new IllegalArgumentException("wrong number of words");
+        }
+    }
+
+    /**
+     * An amount comparison.
+     */
+    private enum Comparison {
+        LESS, LESS_OR_EQUAL, GREATER_OR_EQUAL, GREATER;
+
+        static Comparison parse(String operator) {
+            switch (operator) {
+                case "<":
+                    return LESS;
+                case "<=":
+                    return LESS_OR_EQUAL;
+                case ">=":
+                    return GREATER_OR_EQUAL;
+                case ">":
+                    return GREATER;
+                default:
+                    throw new IllegalArgumentException("unknown comparison '" + operator + "'");
+            }
+        }
+
+        boolean holds(int comparison) {
+            switch (this) {
+                case LESS:
+                    return comparison < 0;
+                case LESS_OR_EQUAL:
+                    return comparison <= 0;
+                case GREATER_OR_EQUAL:
+                    return comparison >= 0;
+                default:
+                    return comparison > 0;
+            }
+        }
+    }
+
+    /**
+     * A parsed rule. Lower costs are evaluated first.
+     */
+    private abstract static class Rule {
+        final String text;
+
+        Rule(String text) {
+            this.text = text;
+        }
+
+        abstract int cost();
+
+        abstract boolean test(PaymentRequest request, CartMandate cart, String category, Instant now);
+    }
+
+    private static final class CurrencyRule extends Rule {
+        private final Set<String> currencies;
+
+        CurrencyRule(String text, Set<String> currencies) {
+            super(text);
+            this.currencies = currencies;
+        }
+
+        @Override
+        int cost() {
+            return 1;
+        }
+
+        @Override
+        boolean test(PaymentRequest request, CartMandate cart, String category, Instant now) {
+            return request.getCurrencyCode() != null && currencies.contains(request.getCurrencyCode());
+        }
+    }
+
+    private static final class MerchantRule extends Rule {
+        private final boolean negated;
+        private final Set<String> merchants;
+
+        MerchantRule(String text, boolean negated, Set<String> merchants) {
+            super(text);
+            this.negated = negated;
+            this.merchants = merchants;
+        }
+
+        @Override
+        int cost() {
+            return 1;
+        }
+
+        @Override
+        boolean test(PaymentRequest request, CartMandate cart, String category, Instant now) {
+            String merchant = request.getReceivingAgentId();
+            return merchant != null && merchants.contains(merchant) != negated;
+        }
+    }
+
+    private static final class CategoryRule extends Rule {
+        private final boolean negated;
+        private final Set<String> categories;
+
+        CategoryRule(String text, boolean negated, Set<String> categories) {
+            super(text);
+            this.negated = negated;
+            this.categories = categories;
+        }
+
+        @Override
+        int cost() {
+            return 1;
+        }
+
+        @Override
+        boolean test(PaymentRequest request, CartMandate cart, String category, Instant now) {
+            return category == null || categories.contains(category) != negated;
+        }
+    }
+
+    private static final class AmountRule extends Rule {
+        private final Comparison comparison;
+        private final BigDecimal limit;
+        private final String currency;
+
+        AmountRule(String text, Comparison comparison, BigDecimal limit, String currency) {
+            super(text);
+            this.comparison = comparison;
+            this.limit = limit;
+            this.currency = currency;
+        }
+
+        @Override
+        int cost() {
+            return 2;
+        }
+
+        @Override
+        boolean test(PaymentRequest request, CartMandate cart, String category, Instant now) {
+            if (currency != null && !currency.equals(request.getCurrencyCode())) {
+                // A limit for another currency
+                return true;
+            }
+            return request.getAmount() != null && comparison.holds(request.getAmount().compareTo(limit));
+        }
+    }
+
+    /**
+     * Base for rules on the local time of the payment. The offset of a fixed-offset zone
+     * is resolved once; other zones are looked up per payment.
+     */
+    private abstract static class LocalTimeRule extends Rule {
+        private final ZoneRules zoneRules;
+        private final int fixedOffset;
+
+        LocalTimeRule(String text, ZoneId zone) {
+            super(text);
+            this.zoneRules = zone.getRules();
+            this.fixedOffset = zoneRules.isFixedOffset() ? zoneRules.getOffset(Instant.EPOCH).getTotalSeconds() : 0;
+        }
+
+        @Override
+        int cost() {
+            return zoneRules.isFixedOffset() ? 3 : 4;
+        }
+
+        long localEpochSecond(Instant now) {
+            int offset = zoneRules.isFixedOffset() ? fixedOffset : zoneRules.getOffset(now).getTotalSeconds();
+            return now.getEpochSecond() + offset;
+        }
+    }
+
+    private static final class TimeOfDayRule extends LocalTimeRule {
+        private final int from;
+        private final int to;
+
+        TimeOfDayRule(String text, int from, int to, ZoneId zone) {
+            super(text, zone);
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        boolean test(PaymentRequest request, CartMandate cart, String category, Instant now) {
+            int second = (int) Math.floorMod(localEpochSecond(now), (long) SECONDS_PER_DAY);
+            if (from <= to) {
+                return second >= from && second < to;
+            }
+            // The window wraps past midnight
+            return second >= from || second < to;
+        }
+    }
+
+    private static final class DayOfWeekRule extends LocalTimeRule {
+        private final int days;
+
+        DayOfWeekRule(String text, int days, ZoneId zone) {
+            super(text, zone);
+            this.days = days;
+        }
+
+        @Override
+        boolean test(PaymentRequest request, CartMandate cart, String category, Instant now) {
+            long epochDay = Math.floorDiv(localEpochSecond(now), (long) SECONDS_PER_DAY);
+            // 1970-01-01 was a Thursday, the fourth day of the week from Monday
+            int dayOfWeek = (int) Math.floorMod(epochDay + 3, 7L);
+            return (days & (1 << dayOfWeek)) != 0;
+        }
+    }
+
+    /**
+     * Base for rules on cart items, which are skipped when there is no cart to check.
+     */
+    private abstract static class ItemRule extends Rule {
+        ItemRule(String text) {
+            super(text);
+        }
+
+        @Override
+        int cost() {
+            return 10;
+        }
+
+        @Override
+        boolean test(PaymentRequest request, CartMandate cart, String category, Instant now) {
+            if (cart == null || cart.getItems() == null) {
+                return true;
+            }
+            List<CartMandate.CartItem> items = cart.getItems();
+            for (int i = 0; i < items.size(); i++) {
+                if (!test(items.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        abstract boolean test(CartMandate.CartItem item);
+    }
+
+    private static final class ItemCountRule extends Rule {
+        private final int maxItems;
+
+        ItemCountRule(String text, int maxItems) {
+            super(text);
+            this.maxItems = maxItems;
+        }
+
+        @Override
+        int cost() {
+            return 5;
+        }
+
+        @Override
+        boolean test(PaymentRequest request, CartMandate cart, String category, Instant now) {
+            return cart == null || cart.getItems() == null || cart.getItems().size() <= maxItems;
+        }
+    }
+
+    private static final class ItemQuantityRule extends ItemRule {
+        private final int maxQuantity;
+
+        ItemQuantityRule(String text, int maxQuantity) {
+            super(text);
+            this.maxQuantity = maxQuantity;
+        }
+
+        @Override
+        boolean test(CartMandate.CartItem item) {
+            return item.getQuantity() <= maxQuantity;
+        }
+    }
+
+    private static final class ItemPriceRule extends ItemRule {
+        private final BigDecimal maxPrice;
+
+        ItemPriceRule(String text, BigDecimal maxPrice) {
+            super(text);
+            this.maxPrice = maxPrice;
+        }
+
+        @Override
+        boolean test(CartMandate.CartItem item) {
+            return item.getPrice() != null && item.getPrice().compareTo(maxPrice) <= 0;
+        }
+    }
+
+    private static final class ItemIdRule extends ItemRule {
+        private final boolean negated;
+        private final Set<String> ids;
+
+        ItemIdRule(String text, boolean negated, Set<String> ids) {
+            super(text);
+            this.negated = negated;
+            this.ids = ids;
+        }
+
+        @Override
+        boolean test(CartMandate.CartItem item) {
+            return item.getId() != null && ids.contains(item.getId()) != negated;
+        }
+    }
+}
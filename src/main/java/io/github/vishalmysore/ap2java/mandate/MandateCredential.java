@@ -0,0 +1,79 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import io.github.vishalmysore.ap2java.credentials.CredentialSubject;
+import io.github.vishalmysore.ap2java.credentials.VerifiableCredential;
+import io.github.vishalmysore.ap2java.security.SignatureService;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A verifiable credential that signs a mandate.
+ * <p>
+ * The credential subject is the mandate ID, with claims for the mandate type and the
+ * signing digest of its content. Signing the credential therefore signs the mandate, and
+ * a credential only verifies a mandate if it is {@linkplain #isBoundTo bound} to it.
+ */
+public class MandateCredential extends VerifiableCredential {
+
+    /** The credential type. */
+    public static final String TYPE = "MandateCredential";
+    /** The claim holding the mandate type. */
+    public static final String MANDATE_TYPE_CLAIM = "mandateType";
+    /** The claim holding the signing digest of the mandate. */
+    public static final String MANDATE_DIGEST_CLAIM = "mandateDigest";
+
+    /**
+     * Creates an unsigned credential for the current content of a mandate.
+     *
+     * @param mandate The mandate
+     * @param issuer The entity that signs the mandate
+     * @param issuanceDate When the credential is issued
+     */
+    public MandateCredential(SignableMandate mandate, String issuer, Instant issuanceDate) {
+        super("urn:ap2:mandate:" + mandate.getId(), issuer, TYPE, issuanceDate, subject(mandate), null);
+    }
+
+    /**
+     * Signs a mandate: creates a credential for its current content, signs it and sets it
+     * on the mandate.
+     *
+     * @param mandate The mandate to sign
+     * @param issuer The entity that signs the mandate
+     * @param signatureService The service that signs the credential
+     * @param keyId The ID of the signing key
+     * @return The signed credential
+     */
+    public static VerifiableCredential sign(SignableMandate mandate, String issuer,
+                                            SignatureService signatureService, String keyId) {
+        VerifiableCredential credential = signatureService.signCredential(
+                new MandateCredential(mandate, issuer, Instant.now()), keyId);
+        mandate.setCredential(credential);
+        return credential;
+    }
+
+    /**
+     * Checks whether a credential was issued for the current content of a mandate. This
+     * does not check the signature of the credential.
+     *
+     * @param credential The credential
+     * @param mandate The mandate
+     * @return true if the credential names the mandate and its current signing digest
+     */
+    public static boolean isBoundTo(VerifiableCredential credential, SignableMandate mandate) {
+        CredentialSubject subject = credential.getSubject();
+        return subject != null
+                && mandate.getId() != null
+                && mandate.getId().equals(subject.getId())
+                && mandate.mandateType().equals(subject.getClaim(MANDATE_TYPE_CLAIM))
+                && mandate.signingDigest().equals(subject.getClaim(MANDATE_DIGEST_CLAIM));
+    }
+
+    private static CredentialSubject subject(SignableMandate mandate) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(MANDATE_TYPE_CLAIM, mandate.mandateType());
+        claims.put(MANDATE_DIGEST_CLAIM, mandate.signingDigest());
+        return new CredentialSubject(mandate.getId(), claims);
+    }
+}
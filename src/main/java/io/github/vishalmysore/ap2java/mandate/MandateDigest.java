@@ -0,0 +1,134 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import io.github.vishalmysore.ap2java.util.CanonicalJson;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serializes mandates canonically and computes the digests that their credentials sign.
+ * <p>
+ * Each mandate type becomes a {@link CanonicalJson} object of the fields that verification
+ * depends on, plus a {@code mandateType} member so that mandates of different types never
+ * share a digest. Fields that are null are left out. Any change to an included field
+ * changes the digest. The credential, lifecycle state and linked mandate objects are not
+ * part of the signed content.
+ */
+final class MandateDigest {
+
+    private MandateDigest() {
+    }
+
+    /**
+     * Serializes the signed content of an Intent Mandate.
+     *
+     * @param mandate The mandate
+     * @return The canonical UTF-8 bytes
+     */
+    static byte[] canonicalBytes(IntentMandate mandate) {
+        Map<String, Object> members = new HashMap<>();
+        put(members, "mandateType", mandate.mandateType());
+        put(members, "id", mandate.getId());
+        put(members, "requestingAgentId", mandate.getRequestingAgentId());
+        put(members, "receivingAgentId", mandate.getReceivingAgentId());
+        put(members, "createdAt", mandate.getCreatedAt());
+        put(members, "expiresAt", mandate.getExpiresAt());
+        put(members, "requiresHumanApproval", mandate.requiresHumanApproval());
+        put(members, "maxAmountPerPayment", mandate.getMaxAmountPerPayment());
+        put(members, "maxTotalAmount", mandate.getMaxTotalAmount());
+        put(members, "budgetWindow", mandate.getBudgetWindow());
+        put(members, "allowedCategories", mandate.getAllowedCategories());
+        put(members, "constraints", mandate.getConstraints());
+        put(members, "userId", mandate.getUserId());
+        put(members, "category", mandate.getCategory());
+        put(members, "maxPrice", mandate.getMaxPrice());
+        put(members, "maxAmount", mandate.getMaxAmount());
+        return CanonicalJson.serialize(members);
+    }
+
+    /**
+     * Serializes the signed content of a Cart Mandate.
+     *
+     * @param mandate The mandate
+     * @return The canonical UTF-8 bytes
+     */
+    static byte[] canonicalBytes(CartMandate mandate) {
+        Map<String, Object> members = new HashMap<>();
+        put(members, "mandateType", mandate.mandateType());
+        put(members, "id", mandate.getId());
+        put(members, "requestingAgentId", mandate.getRequestingAgentId());
+        put(members, "receivingAgentId", mandate.getReceivingAgentId());
+        put(members, "createdAt", mandate.getCreatedAt());
+        put(members, "expiresAt", mandate.getExpiresAt());
+        put(members, "amount", mandate.getAmount());
+        put(members, "currencyCode", mandate.getCurrencyCode());
+        put(members, "intentMandateId", mandate.getIntentMandateId());
+        put(members, "cartId", mandate.getCartId());
+        put(members, "userId", mandate.getUserId());
+        List<Map<String, Object>> items = new ArrayList<>(mandate.getItems().size());
+        for (CartMandate.CartItem item : mandate.getItems()) {
+            Map<String, Object> itemMembers = new HashMap<>();
+            put(itemMembers, "id", item.getId());
+            put(itemMembers, "description", item.getDescription());
+            put(itemMembers, "price", item.getPrice());
+            put(itemMembers, "quantity", item.getQuantity());
+            items.add(itemMembers);
+        }
+        put(members, "items", items);
+        return CanonicalJson.serialize(members);
+    }
+
+    /**
+     * Serializes the signed content of a Payment Mandate.
+     *
+     * @param mandate The mandate
+     * @return The canonical UTF-8 bytes
+     */
+    static byte[] canonicalBytes(PaymentMandate mandate) {
+        Map<String, Object> members = new HashMap<>();
+        put(members, "mandateType", mandate.mandateType());
+        put(members, "id", mandate.getId());
+        put(members, "requestingAgentId", mandate.getRequestingAgentId());
+        put(members, "receivingAgentId", mandate.getReceivingAgentId());
+        put(members, "createdAt", mandate.getCreatedAt());
+        put(members, "expiresAt", mandate.getExpiresAt());
+        put(members, "amount", mandate.getAmount());
+        put(members, "currencyCode", mandate.getCurrencyCode());
+        put(members, "paymentReference", mandate.getPaymentReference());
+        put(members, "parentMandateId", mandate.getParentMandateId());
+        put(members, "paymentDetails", mandate.getPaymentDetails());
+        put(members, "paymentMethod", mandate.getPaymentMethod());
+        put(members, "userId", mandate.getUserId());
+        return CanonicalJson.serialize(members);
+    }
+
+    /**
+     * Computes the digest of canonical bytes.
+     *
+     * @param canonicalBytes The serialized mandate
+     * @return The hex-encoded SHA-256 digest
+     */
+    static String of(byte[] canonicalBytes) {
+        return HexFormat.of().formatHex(sha256().digest(canonicalBytes));
+    }
+
+    private static void put(Map<String, Object> members, String name, Object value) {
+        if (value != null) {
+            members.put(name, value);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import io.github.vishalmysore.ap2java.util.CachedClock;
+import io.github.vishalmysore.ap2java.util.TimingWheel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Removes or archives mandates once they expire.
+ * <p>
+ * Expired mandates are already rejected at verification time, but without a sweeper they
+ * stay in the repository for good. The sweeper keeps the expiry of every scheduled mandate
+ * in a {@link TimingWheel}, so scheduling and cancelling are O(1) and lock-free, and a
+ * sweep costs O(1) per tick plus O(1) per expired mandate, however many mandates are
+ * scheduled. No timer is created per mandate.
+ * <p>
+ * An expired mandate's ID is handed to a handler, typically
+ * {@code repository::removeMandate}; an archiving handler can copy the mandate elsewhere
+ * first. Use {@link #tracking} to schedule every mandate a repository stores. Mandates
+ * stored before the sweeper was attached must be scheduled explicitly.
+ * <p>
+ * Removing a mandate from a {@link SegmentFileMandateRepository} appends a removal record,
+ * so the disk space of expired mandates is only returned by
+ * {@link SegmentFileMandateRepository#compact()}. Run it from time to time, for example
+ * after a sweep has removed many mandates.
+ */
+@Slf4j
+public class MandateExpirySweeper implements AutoCloseable {
+
+    /**
+     * Default width of a wheel tick; mandates are handled at most this long after they expire.
+     */
+    public static final Duration DEFAULT_TICK = Duration.ofSeconds(1);
+
+    /**
+     * Slots per wheel level.
+     */
+    static final int WHEEL_SIZE = 512;
+
+    /**
+     * Wheel levels; with 1 second ticks four levels cover more than two thousand years.
+     */
+    static final int LEVELS = 4;
+
+    private final Consumer<String> onExpiry;
+    private final Clock clock;
+    private final Duration tick;
+    private final TimingWheel<String> wheel;
+    private ScheduledExecutorService sweeper;
+
+    /**
+     * Creates a sweeper that reads the shared cached UTC clock and ticks every
+     * {@link #DEFAULT_TICK}.
+     *
+     * @param onExpiry Called with the ID of each mandate that expires
+     */
+    public MandateExpirySweeper(Consumer<String> onExpiry) {
+        this(onExpiry, CachedClock.systemUTC(), DEFAULT_TICK);
+    }
+
+    /**
+     * Creates a sweeper.
+     *
+     * @param onExpiry Called with the ID of each mandate that expires
+     * @param clock    The clock that decides which mandates have expired
+     * @param tick     The width of a wheel tick and the interval between sweeps
+     */
+    public MandateExpirySweeper(Consumer<String> onExpiry, Clock clock, Duration tick) {
+        if (tick.toMillis() < 1) {
+            throw new IllegalArgumentException("tick must be at least one millisecond");
+        }
+        this.onExpiry = onExpiry;
+        this.clock = clock;
+        this.tick = tick;
+        this.wheel = new TimingWheel<>(tick.toMillis(), WHEEL_SIZE, LEVELS, clock.millis());
+    }
+
+    /**
+     * Schedules a mandate to be handled when it expires, replacing any expiry scheduled
+     * for its ID before.
+     *
+     * @param mandate The mandate
+     * @return true if the mandate was scheduled, false if it has no ID or never expires
+     */
+    public boolean schedule(SignableMandate mandate) {
+        if (mandate == null || mandate.getId() == null) {
+            return false;
+        }
+        if (mandate.getExpiresAt() == null) {
+            // Stored again without an expiry, so an earlier one no longer applies
+            wheel.cancel(mandate.getId());
+            return false;
+        }
+        wheel.schedule(mandate.getId(), mandate.getExpiresAt().toEpochMilli());
+        return true;
+    }
+
+    /**
+     * Cancels the scheduled expiry of a mandate.
+     *
+     * @param mandateId The ID of the mandate
+     * @return true if the mandate was scheduled and had not expired yet
+     */
+    public boolean cancel(String mandateId) {
+        return mandateId != null && wheel.cancel(mandateId);
+    }
+
+    /**
+     * Hands every mandate that has expired by now to the handler. Called every tick once
+     * {@link #start started}; tests call it directly.
+     *
+     * @return The number of mandates that expired
+     */
+    public int sweep() {
+        int expired = wheel.advance(clock.millis(), mandateId -> {
+            try {
+                onExpiry.accept(mandateId);
+            } catch (RuntimeException e) {
+                log.warn("Failed to handle expired mandate {}", mandateId, e);
+            }
+        });
+        if (expired > 0) {
+            log.debug("Swept {} expired mandates", expired);
+        }
+        return expired;
+    }
+
+    /**
+     * Starts sweeping every tick on a background daemon thread. Does nothing if already started.
+     */
+    public synchronized void start() {
+        if (sweeper != null) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mandate-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = tick.toMillis();
+        sweeper.scheduleAtFixedRate(this::sweep, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the number of mandates waiting to expire.
+     *
+     * @return The scheduled mandate count
+     */
+    public int getScheduledCount() {
+        return wheel.size();
+    }
+
+    /**
+     * Wraps a repository so that every mandate it stores is scheduled here, and every
+     * mandate removed through it is cancelled.
+     *
+     * @param repository The repository that stores the mandates
+     * @return A repository that schedules the mandates it stores
+     */
+    public MandateRepository tracking(MandateRepository repository) {
+        return new TrackingRepository(repository, this);
+    }
+
+    /**
+     * Stops the background sweeps. Scheduled mandates are kept and can still be swept by hand.
+     */
+    @Override
+    public synchronized void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+    }
+
+    /**
+     * Forwards to another repository and schedules the mandates it stores.
+     */
+    private static class TrackingRepository implements MandateRepository {
+
+        private final MandateRepository repository;
+        private final MandateExpirySweeper sweeper;
+
+        TrackingRepository(MandateRepository repository, MandateExpirySweeper sweeper) {
+            this.repository = repository;
+            this.sweeper = sweeper;
+        }
+
+        @Override
+        public String storeIntentMandate(IntentMandate mandate) {
+            String id = repository.storeIntentMandate(mandate);
+            sweeper.schedule(mandate);
+            return id;
+        }
+
+        @Override
+        public String storeCartMandate(CartMandate mandate) {
+            String id = repository.storeCartMandate(mandate);
+            sweeper.schedule(mandate);
+            return id;
+        }
+
+        @Override
+        public String storePaymentMandate(PaymentMandate mandate) {
+            String id = repository.storePaymentMandate(mandate);
+            sweeper.schedule(mandate);
+            return id;
+        }
+
+        @Override
+        public IntentMandate findActiveIntentMandateForAgent(String agentId, String merchantId) {
+            return repository.findActiveIntentMandateForAgent(agentId, merchantId);
+        }
+
+        @Override
+        public CartMandate findCartMandate(String mandateId) {
+            return repository.findCartMandate(mandateId);
+        }
+
+        @Override
+        public PaymentMandate findPaymentMandate(String mandateId) {
+            return repository.findPaymentMandate(mandateId);
+        }
+
+        @Override
+        public IntentMandate findIntentMandateForPayment(String paymentId) {
+            return repository.findIntentMandateForPayment(paymentId);
+        }
+
+        @Override
+        public CartMandate findCartMandateForPayment(String paymentId) {
+            return repository.findCartMandateForPayment(paymentId);
+        }
+
+        @Override
+        public PaymentMandate findPaymentMandateForPayment(String paymentId) {
+            return repository.findPaymentMandateForPayment(paymentId);
+        }
+
+        @Override
+        public boolean revokeMandate(String mandateId, String reason) {
+            return repository.revokeMandate(mandateId, reason);
+        }
+
+        @Override
+        public boolean removeMandate(String mandateId) {
+            boolean removed = repository.removeMandate(mandateId);
+            if (removed) {
+                sweeper.cancel(mandateId);
+            }
+            return removed;
+        }
+    }
+}
@@ -87,4 +87,16 @@ public interface MandateRepository {
      * @return true if the mandate was revoked, false otherwise
      */
     boolean revokeMandate(String mandateId, String reason);
+    
+    /**
+     * Removes a mandate, for example once it has expired. A removed mandate is no longer
+     * found; whether it stays revoked is up to the implementation.
+     * The default implementation does not support removal and removes nothing.
+     * 
+     * @param mandateId The ID of the mandate to remove
+     * @return true if the mandate was removed, false otherwise
+     */
+    default boolean removeMandate(String mandateId) {
+        return false;
+    }
 }
\ No newline at end of file
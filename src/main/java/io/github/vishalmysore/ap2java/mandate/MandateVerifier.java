@@ -38,10 +38,88 @@ public interface MandateVerifier {
     boolean verifyPaymentMandate(PaymentMandate paymentMandate, CartMandate cartMandate, PaymentRequest request);
     
     /**
-     * Verifies the cryptographic signatures on a mandate.
+     * Verifies a complete mandate chain for a payment: the Intent Mandate, the Cart Mandate
+     * built under it and the Payment Mandate built from the cart.
+     * The default implementation verifies the three mandates one after another.
+     * 
+     * @param intentMandate The Intent Mandate
+     * @param cartMandate The Cart Mandate referencing the Intent Mandate
+     * @param paymentMandate The Payment Mandate referencing the Cart Mandate
+     * @param request The payment request to check against the mandates
+     * @return true if every mandate is valid and together they permit the payment, false otherwise
+     */
+    default boolean verifyChain(IntentMandate intentMandate, CartMandate cartMandate,
+                                PaymentMandate paymentMandate, PaymentRequest request) {
+        return verifyIntentMandate(intentMandate, request)
+                && verifyCartMandate(cartMandate, intentMandate, request)
+                && verifyPaymentMandate(paymentMandate, cartMandate, request);
+    }
+    
+    /**
+     * Verifies an Intent Mandate and reports why it failed.
+     * The default implementation reports failures without a specific reason.
+     * 
+     * @param mandate The Intent Mandate to verify
+     * @param request The payment request to check against the mandate
+     * @return The verification outcome
+     */
+    default VerificationResult checkIntentMandate(IntentMandate mandate, PaymentRequest request) {
+        return toResult(verifyIntentMandate(mandate, request));
+    }
+    
+    /**
+     * Verifies a Cart Mandate and reports why it failed.
+     * The default implementation reports failures without a specific reason.
+     * 
+     * @param cartMandate The Cart Mandate to verify
+     * @param intentMandate The Intent Mandate it references
+     * @param request The payment request to check against the mandate
+     * @return The verification outcome
+     */
+    default VerificationResult checkCartMandate(CartMandate cartMandate, IntentMandate intentMandate,
+                                                PaymentRequest request) {
+        return toResult(verifyCartMandate(cartMandate, intentMandate, request));
+    }
+    
+    /**
+     * Verifies a Payment Mandate and reports why it failed.
+     * The default implementation reports failures without a specific reason.
+     * 
+     * @param paymentMandate The Payment Mandate to verify
+     * @param cartMandate The Cart Mandate it references
+     * @param request The payment request to check against the mandate
+     * @return The verification outcome
+     */
+    default VerificationResult checkPaymentMandate(PaymentMandate paymentMandate, CartMandate cartMandate,
+                                                   PaymentRequest request) {
+        return toResult(verifyPaymentMandate(paymentMandate, cartMandate, request));
+    }
+    
+    /**
+     * Verifies a complete mandate chain and reports why it failed.
+     * The default implementation reports failures without a specific reason.
+     * 
+     * @param intentMandate The Intent Mandate
+     * @param cartMandate The Cart Mandate referencing the Intent Mandate
+     * @param paymentMandate The Payment Mandate referencing the Cart Mandate
+     * @param request The payment request to check against the mandates
+     * @return The verification outcome
+     */
+    default VerificationResult checkChain(IntentMandate intentMandate, CartMandate cartMandate,
+                                          PaymentMandate paymentMandate, PaymentRequest request) {
+        return toResult(verifyChain(intentMandate, cartMandate, paymentMandate, request));
+    }
+    
+    /**
+     * Verifies the cryptographic signatures on a mandate. A mandate is signed by a
+     * {@link MandateCredential} bound to its current content.
      * 
      * @param mandate The mandate to verify
      * @return true if the mandate has a valid signature, false otherwise
      */
     boolean verifySignature(Object mandate);
-}
\ No newline at end of file
+    
+    private static VerificationResult toResult(boolean valid) {
+        return valid ? VerificationResult.VALID : VerificationResult.of(VerificationResult.Reason.UNSPECIFIED);
+    }
+}
@@ -0,0 +1,256 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongPredicate;
+
+/**
+ * A hash table from 64-bit key hashes to record locations, kept in a memory-mapped file.
+ * <p>
+ * The table uses open addressing with linear probing. Each slot holds a key hash and a
+ * location; a hash of 0 marks an empty slot. Only hashes are stored, so callers confirm a
+ * candidate by checking the record it points to, and two keys whose hashes collide simply
+ * occupy two slots. The header also holds a checkpoint: the position in the log up to which
+ * every record is reflected in the table.
+ * <p>
+ * One writer at a time may call {@link #put}, {@link #setCheckpoint} and {@link #grow}, while
+ * any number of threads call {@link #find}. A slot's location is written before its hash
+ * with release semantics, and readers load both with acquire semantics, so a reader never
+ * sees a hash without its location, nor a location before the record it points to.
+ */
+final class MappedHashIndex {
+
+    /**
+     * Returned by {@link #find} when no slot matches.
+     */
+    static final long NOT_FOUND = -1;
+
+    private static final int MAGIC = 0x41503249;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 16;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SIZE_OFFSET = 12;
+    private static final int CHECKPOINT_OFFSET = 16;
+    private static final VarHandle LONGS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private int size;
+
+    private MappedHashIndex(Path path, MappedByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+        this.capacity = buffer.getInt(CAPACITY_OFFSET);
+        this.size = buffer.getInt(SIZE_OFFSET);
+    }
+
+    /**
+     * Maps an existing index file.
+     *
+     * @param path The index file
+     * @return The index, or null if the file does not exist or is not a valid index
+     * @throws IOException if the file cannot be mapped
+     */
+    static MappedHashIndex open(Path path) throws IOException {
+        if (!Files.exists(path) || Files.size(path) < HEADER_BYTES) {
+            return null;
+        }
+        MappedByteBuffer buffer = map(path, Files.size(path));
+        int capacity = buffer.getInt(CAPACITY_OFFSET);
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC
+                || buffer.getInt(VERSION_OFFSET) != VERSION
+                || Integer.bitCount(capacity) != 1
+                || buffer.capacity() != HEADER_BYTES + (long) capacity * SLOT_BYTES) {
+            return null;
+        }
+        return new MappedHashIndex(path, buffer);
+    }
+
+    /**
+     * Creates an empty index file, replacing any file at the path.
+     *
+     * @param path The index file
+     * @param capacity The number of slots, a power of two
+     * @param checkpoint The initial checkpoint
+     * @return The index
+     * @throws IOException if the file cannot be written
+     */
+    static MappedHashIndex create(Path path, int capacity, long checkpoint) throws IOException {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        MappedByteBuffer buffer = map(temp, HEADER_BYTES + (long) capacity * SLOT_BYTES);
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putInt(SIZE_OFFSET, 0);
+        buffer.putLong(CHECKPOINT_OFFSET, checkpoint);
+        buffer.force();
+        // The mapping stays valid after the rename
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new MappedHashIndex(path, buffer);
+    }
+
+    /**
+     * Finds the location of a key.
+     *
+     * @param hash The hash of the key, not 0
+     * @param matches Tells whether the record at a candidate location has the key
+     * @return The location, or {@link #NOT_FOUND}
+     */
+    long find(long hash, LongPredicate matches) {
+        int mask = capacity - 1;
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            long slotHash = (long) LONGS.getAcquire(buffer, hashOffset(slot));
+            if (slotHash == 0) {
+                return NOT_FOUND;
+            }
+            if (slotHash == hash) {
+                long location = (long) LONGS.getAcquire(buffer, locationOffset(slot));
+                if (matches.test(location)) {
+                    return location;
+                }
+            }
+        }
+    }
+
+    /**
+     * Points a key at a location, replacing its earlier location if it has one.
+     *
+     * @param hash The hash of the key, not 0
+     * @param location The new location
+     * @param sameKey Tells whether the record at an existing location has the key
+     */
+    void put(long hash, long location, LongPredicate sameKey) {
+        int mask = capacity - 1;
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            long slotHash = (long) LONGS.getAcquire(buffer, hashOffset(slot));
+            if (slotHash == 0) {
+                LONGS.setRelease(buffer, locationOffset(slot), location);
+                LONGS.setRelease(buffer, hashOffset(slot), hash);
+                buffer.putInt(SIZE_OFFSET, ++size);
+                return;
+            }
+            if (slotHash == hash && sameKey.test((long) LONGS.getAcquire(buffer, locationOffset(slot)))) {
+                LONGS.setRelease(buffer, locationOffset(slot), location);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Checks whether the table is more than half full, when probe sequences start to grow.
+     *
+     * @return true if the index should be grown before the next put
+     */
+    boolean needsGrowth() {
+        return size * 2L > capacity;
+    }
+
+    /**
+     * Copies the table into a new file with twice the slots, which then replaces this one.
+     * This index stays readable, so lookups already running against it can finish.
+     *
+     * @return The grown index
+     * @throws IOException if the new file cannot be written
+     */
+    MappedHashIndex grow() throws IOException {
+        MappedHashIndex grown = create(path.resolveSibling(path.getFileName() + ".grow"),
+                capacity * 2, getCheckpoint());
+        for (int slot = 0; slot < capacity; slot++) {
+            long hash = (long) LONGS.getAcquire(buffer, hashOffset(slot));
+            if (hash != 0) {
+                // Keys are already distinct, so no record needs to be consulted
+                grown.put(hash, (long) LONGS.getAcquire(buffer, locationOffset(slot)), location -> false);
+            }
+        }
+        grown.buffer.force();
+        Files.move(grown.path, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new MappedHashIndex(path, grown.buffer);
+    }
+
+    /**
+     * Renames the index file, replacing any file at the target path. The mapping stays valid.
+     *
+     * @param target The new path of the index file
+     * @return The index at its new path
+     * @throws IOException if the file cannot be renamed
+     */
+    MappedHashIndex moveTo(Path target) throws IOException {
+        Files.move(path, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new MappedHashIndex(target, buffer);
+    }
+
+    /**
+     * Gets the log position up to which every record is reflected in the table.
+     *
+     * @return The checkpoint location
+     */
+    long getCheckpoint() {
+        return buffer.getLong(CHECKPOINT_OFFSET);
+    }
+
+    /**
+     * Records that every record before a log position is reflected in the table.
+     *
+     * @param checkpoint The checkpoint location
+     */
+    void setCheckpoint(long checkpoint) {
+        buffer.putLong(CHECKPOINT_OFFSET, checkpoint);
+    }
+
+    /**
+     * Gets the number of keys in the table.
+     *
+     * @return The key count
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of slots in the table.
+     *
+     * @return The slot count
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Writes the table to disk.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    private static int hashOffset(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private static int locationOffset(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES + 8;
+    }
+
+    private static MappedByteBuffer map(Path path, long bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        }
+    }
+}
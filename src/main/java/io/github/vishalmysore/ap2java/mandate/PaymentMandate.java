@@ -1,11 +1,13 @@
 package io.github.vishalmysore.ap2java.mandate;
 
 import io.github.vishalmysore.ap2java.credentials.VerifiableCredential;
+import io.github.vishalmysore.ap2java.util.CachedClock;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 
 import java.math.BigDecimal;
+import java.time.Clock;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -15,7 +17,7 @@ import java.util.Map;
  * A simplified version of the PaymentMandate class for the AP2 protocol.
  * This class represents the final authorization for a specific payment transaction.
  */
-public class PaymentMandate {
+public class PaymentMandate implements SignableMandate {
     public enum PaymentStatus {
         PENDING,
         AUTHORIZED,
@@ -35,6 +37,11 @@ public class PaymentMandate {
     private String parentMandateId;
     private Map<String, Object> paymentDetails;
     private VerifiableCredential credential;
+    @ToString.Exclude
+    private volatile String signingDigest;
+    // A copy of paymentDetails as it was when the digest was taken
+    @ToString.Exclude
+    private volatile Map<String, Object> signedPaymentDetails;
 
 
     @Getter
@@ -50,11 +57,9 @@ public class PaymentMandate {
     @Setter
     private String paymentMethodId;
     @Getter
-    @Setter
     private String userId; // Optional user ID associated with the mandate
 
     @Getter
-    @Setter
     private String paymentMethod;
 
     public PaymentMandate(String cartMandateId, String paymentMethod, String userId, BigDecimal totalAmount) {
@@ -62,6 +67,7 @@ public class PaymentMandate {
         this.paymentMethod = paymentMethod;
         this.userId = userId;
         this.amount = totalAmount;
+        this.paymentDetails = new HashMap<>();
     }
     /**
      * Default constructor
@@ -95,7 +101,8 @@ public class PaymentMandate {
         this.currencyCode = currencyCode;
         this.parentMandateId = parentMandateId;
         this.paymentDetails = paymentDetails != null ? paymentDetails : new HashMap<>();
-        this.createdAt = Instant.now();
+        // Stamped from the same clock as isValid(), so a new mandate is valid at once
+        this.createdAt = CachedClock.systemUTC().instant();
         this.expiresAt = expiresAt;
     }
 
@@ -107,6 +114,7 @@ public class PaymentMandate {
 
     public void setId(String id) {
         this.id = id;
+        this.signingDigest = null;
     }
 
     public String getRequestingAgentId() {
@@ -115,6 +123,7 @@ public class PaymentMandate {
 
     public void setRequestingAgentId(String requestingAgentId) {
         this.requestingAgentId = requestingAgentId;
+        this.signingDigest = null;
     }
 
     public String getReceivingAgentId() {
@@ -123,6 +132,7 @@ public class PaymentMandate {
 
     public void setReceivingAgentId(String receivingAgentId) {
         this.receivingAgentId = receivingAgentId;
+        this.signingDigest = null;
     }
 
     public Instant getCreatedAt() {
@@ -131,6 +141,7 @@ public class PaymentMandate {
 
     public void setCreatedAt(Instant createdAt) {
         this.createdAt = createdAt;
+        this.signingDigest = null;
     }
 
     public Instant getExpiresAt() {
@@ -139,6 +150,7 @@ public class PaymentMandate {
 
     public void setExpiresAt(Instant expiresAt) {
         this.expiresAt = expiresAt;
+        this.signingDigest = null;
     }
 
     public BigDecimal getAmount() {
@@ -147,6 +159,7 @@ public class PaymentMandate {
 
     public void setAmount(BigDecimal amount) {
         this.amount = amount;
+        this.signingDigest = null;
     }
 
     public String getCurrencyCode() {
@@ -155,6 +168,7 @@ public class PaymentMandate {
 
     public void setCurrencyCode(String currencyCode) {
         this.currencyCode = currencyCode;
+        this.signingDigest = null;
     }
     
     public String getPaymentReference() {
@@ -163,6 +177,7 @@ public class PaymentMandate {
     
     public void setPaymentReference(String paymentReference) {
         this.paymentReference = paymentReference;
+        this.signingDigest = null;
     }
     
     public String getParentMandateId() {
@@ -171,6 +186,7 @@ public class PaymentMandate {
     
     public void setParentMandateId(String parentMandateId) {
         this.parentMandateId = parentMandateId;
+        this.signingDigest = null;
     }
     
     public Map<String, Object> getPaymentDetails() {
@@ -179,6 +195,7 @@ public class PaymentMandate {
     
     public void setPaymentDetails(Map<String, Object> paymentDetails) {
         this.paymentDetails = paymentDetails != null ? paymentDetails : new HashMap<>();
+        this.signingDigest = null;
     }
     
     public VerifiableCredential getCredential() {
@@ -189,23 +206,81 @@ public class PaymentMandate {
         this.credential = credential;
     }
     
+    public void setUserId(String userId) {
+        this.userId = userId;
+        this.signingDigest = null;
+    }
+    
+    public void setPaymentMethod(String paymentMethod) {
+        this.paymentMethod = paymentMethod;
+        this.signingDigest = null;
+    }
+    
+    @Override
+    public String mandateType() {
+        return "PaymentMandate";
+    }
+    
+    @Override
+    public byte[] canonicalBytes() {
+        return MandateDigest.canonicalBytes(this);
+    }
+    
     /**
-     * Checks if this mandate is valid for the current time.
+     * Gets the digest of the signed content, computing it on first use. The payment details
+     * can be edited in place; the digest is then computed again on the next call.
+     * 
+     * @return the hex-encoded SHA-256 digest
+     */
+    @Override
+    public String signingDigest() {
+        String digest = signingDigest;
+        if (digest == null || !paymentDetails.equals(signedPaymentDetails)) {
+            signedPaymentDetails = new HashMap<>(paymentDetails);
+            digest = MandateDigest.of(canonicalBytes());
+            signingDigest = digest;
+        }
+        return digest;
+    }
+    
+    /**
+     * Checks if this mandate is valid for the current time, read from
+     * {@link CachedClock#systemUTC()}.
      * 
      * @return true if the mandate is valid, false otherwise
      */
     public boolean isValid() {
-        Instant now = Instant.now();
-        return now.isAfter(createdAt) && now.isBefore(expiresAt);
+        return isValid(CachedClock.systemUTC());
     }
     
     /**
-     * Checks if this mandate is expired.
+     * Checks if this mandate is valid at the current time of a clock.
+     * 
+     * @param clock the clock to read
+     * @return true if the mandate is valid, false otherwise
+     */
+    public boolean isValid(Clock clock) {
+        long now = clock.millis();
+        return now >= createdAt.toEpochMilli() && now < expiresAt.toEpochMilli();
+    }
+    
+    /**
+     * Checks if this mandate is expired, reading the time from {@link CachedClock#systemUTC()}.
      * 
      * @return true if the mandate is expired, false otherwise
      */
     public boolean isExpired() {
-        return Instant.now().isAfter(expiresAt);
+        return isExpired(CachedClock.systemUTC());
+    }
+    
+    /**
+     * Checks if this mandate is expired at the current time of a clock.
+     * 
+     * @param clock the clock to read
+     * @return true if the mandate is expired, false otherwise
+     */
+    public boolean isExpired(Clock clock) {
+        return clock.millis() > expiresAt.toEpochMilli();
     }
     
     /**
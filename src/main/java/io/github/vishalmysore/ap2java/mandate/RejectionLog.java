@@ -0,0 +1,82 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Logs rejected mandates at most a set number of times per second. Rejections over the
+ * limit are counted and reported in one line when the next second starts. Logging is off
+ * until a limit is set, and while off a rejection costs a single volatile read.
+ */
+class RejectionLog {
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Logger logger;
+    private final LongSupplier nanoTime;
+    private final AtomicLong windowStart;
+    private final AtomicInteger loggedInWindow = new AtomicInteger();
+    private final AtomicLong suppressed = new AtomicLong();
+    private volatile int maxPerSecond;
+
+    RejectionLog(Logger logger, LongSupplier nanoTime) {
+        this.logger = logger;
+        this.nanoTime = nanoTime;
+        this.windowStart = new AtomicLong(nanoTime.getAsLong());
+    }
+
+    /**
+     * Sets how many rejections are logged per second.
+     *
+     * @param maxPerSecond The limit, or 0 to turn logging off
+     */
+    void setMaxPerSecond(int maxPerSecond) {
+        if (maxPerSecond < 0) {
+            throw new IllegalArgumentException("maxPerSecond must not be negative");
+        }
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    int getMaxPerSecond() {
+        return maxPerSecond;
+    }
+
+    /**
+     * Logs a rejection if the limit allows.
+     *
+     * @param reason The reason for the rejection
+     * @param mandateId The rejected mandate
+     * @param actual The offending value, or null
+     * @param expected The value it was checked against, or null
+     */
+    void reject(VerificationResult.Reason reason, String mandateId, Object actual, Object expected) {
+        int limit = maxPerSecond;
+        if (limit == 0) {
+            return;
+        }
+
+        long now = nanoTime.getAsLong();
+        long start = windowStart.get();
+        if (now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+            loggedInWindow.set(0);
+            long dropped = suppressed.getAndSet(0);
+            if (dropped > 0) {
+                logger.warn("Suppressed {} mandate rejection log lines", dropped);
+            }
+        }
+
+        if (loggedInWindow.incrementAndGet() <= limit) {
+            logger.warn("Mandate {} rejected: {} ({} vs {})", mandateId, reason, actual, expected);
+        } else {
+            suppressed.incrementAndGet();
+        }
+    }
+
+    long getSuppressedCount() {
+        return suppressed.get();
+    }
+}
@@ -0,0 +1,236 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import io.github.vishalmysore.ap2java.util.BloomFilter;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-memory index of revoked mandate IDs, checked before any signature work.
+ * <p>
+ * Almost every mandate checked is not revoked, so a Bloom filter answers first: a miss
+ * proves the mandate was never revoked without touching the exact set. Only possible
+ * hits, revoked mandates and the filter's few false positives, are confirmed against an
+ * exact concurrent set. Both lookups are O(1) and need no locking.
+ * <p>
+ * The filter is sized for an expected number of revocations. Once the index holds twice
+ * that many, the filter is rebuilt from the exact set for twice the current number, so
+ * the false positive rate stays bounded. While a rebuilt filter is being filled, misses
+ * are confirmed against the exact set, so a revocation is never missed. Revocations are
+ * never removed; a revoked mandate stays revoked.
+ */
+public class RevocationIndex {
+
+    /**
+     * Default number of revocations the filter is first sized for.
+     */
+    public static final int DEFAULT_EXPECTED_REVOCATIONS = 10_000;
+
+    /**
+     * Default false positive rate of the filter at its expected size.
+     */
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    private final Set<String> revoked = ConcurrentHashMap.newKeySet();
+    private final double falsePositiveRate;
+    private volatile BloomFilter filter;
+    private volatile long filterCapacity;
+    // Odd while grow() has published a new filter that may not hold every revocation yet
+    private volatile long rebuilds;
+
+    /**
+     * Creates an index sized for {@value #DEFAULT_EXPECTED_REVOCATIONS} revocations.
+     */
+    public RevocationIndex() {
+        this(DEFAULT_EXPECTED_REVOCATIONS, DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Creates an index.
+     *
+     * @param expectedRevocations The number of revocations the filter is first sized for
+     * @param falsePositiveRate The false positive rate of the filter at that size
+     */
+    public RevocationIndex(long expectedRevocations, double falsePositiveRate) {
+        this.falsePositiveRate = falsePositiveRate;
+        this.filter = new BloomFilter(expectedRevocations, falsePositiveRate);
+        this.filterCapacity = expectedRevocations;
+    }
+
+    /**
+     * Creates an index holding mandates that were revoked earlier, e.g. loaded from storage.
+     *
+     * @param revokedMandateIds The IDs of the revoked mandates
+     * @return The index
+     */
+    public static RevocationIndex of(Collection<String> revokedMandateIds) {
+        RevocationIndex index = new RevocationIndex(
+                Math.max(DEFAULT_EXPECTED_REVOCATIONS, revokedMandateIds.size()), DEFAULT_FALSE_POSITIVE_RATE);
+        for (String mandateId : revokedMandateIds) {
+            index.revoke(mandateId);
+        }
+        return index;
+    }
+
+    /**
+     * Records a revocation. The mandate counts as revoked for every check that starts
+     * after this method returns.
+     *
+     * @param mandateId The ID of the revoked mandate
+     * @return true if the mandate was not revoked before
+     */
+    public boolean revoke(String mandateId) {
+        if (!revoked.add(mandateId)) {
+            return false;
+        }
+        // A concurrent rebuild may miss the new ID, so put it again into any newer filter
+        BloomFilter current;
+        do {
+            current = filter;
+            current.put(mandateId);
+        } while (current != filter);
+
+        if (revoked.size() > 2 * filterCapacity) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a mandate has been revoked.
+     *
+     * @param mandateId The ID of the mandate, may be null
+     * @return true if the mandate has been revoked
+     */
+    public boolean isRevoked(String mandateId) {
+        if (mandateId == null) {
+            return false;
+        }
+        long stamp = rebuilds;
+        if (filter.mightContain(mandateId)) {
+            return revoked.contains(mandateId);
+        }
+        // A miss only proves anything if no rebuild was filling a new filter meanwhile;
+        // otherwise a revocation put only into the old filter could be missed
+        return ((stamp & 1) != 0 || stamp != rebuilds) && revoked.contains(mandateId);
+    }
+
+    /**
+     * Gets the number of revoked mandates.
+     *
+     * @return The number of revocations recorded
+     */
+    public int size() {
+        return revoked.size();
+    }
+
+    /**
+     * Wraps a repository so that every successful {@link MandateRepository#revokeMandate}
+     * is also recorded in this index.
+     *
+     * @param repository The repository that stores the mandates
+     * @return A repository that updates this index on revocation
+     */
+    public MandateRepository tracking(MandateRepository repository) {
+        return new TrackingRepository(repository, this);
+    }
+
+    /**
+     * Rebuilds the filter from the exact set, sized for twice the current revocations.
+     */
+    private synchronized void grow() {
+        int size = revoked.size();
+        if (size <= 2 * filterCapacity) {
+            return;
+        }
+        long capacity = 2L * size;
+        BloomFilter larger = new BloomFilter(capacity, falsePositiveRate);
+        for (String mandateId : revoked) {
+            larger.put(mandateId);
+        }
+        rebuilds++;
+        filter = larger;
+        filterCapacity = capacity;
+        // A revocation added during the first pass may have been put only into the old filter
+        // before the swap; every such revocation is in the set by now, so a second pass catches it.
+        // Until it is done, isRevoked() confirms misses against the exact set.
+        for (String mandateId : revoked) {
+            larger.put(mandateId);
+        }
+        rebuilds++;
+    }
+
+    /**
+     * Forwards to another repository and records its revocations in an index.
+     */
+    private static class TrackingRepository implements MandateRepository {
+
+        private final MandateRepository repository;
+        private final RevocationIndex index;
+
+        TrackingRepository(MandateRepository repository, RevocationIndex index) {
+            this.repository = repository;
+            this.index = index;
+        }
+
+        @Override
+        public String storeIntentMandate(IntentMandate mandate) {
+            return repository.storeIntentMandate(mandate);
+        }
+
+        @Override
+        public String storeCartMandate(CartMandate mandate) {
+            return repository.storeCartMandate(mandate);
+        }
+
+        @Override
+        public String storePaymentMandate(PaymentMandate mandate) {
+            return repository.storePaymentMandate(mandate);
+        }
+
+        @Override
+        public IntentMandate findActiveIntentMandateForAgent(String agentId, String merchantId) {
+            return repository.findActiveIntentMandateForAgent(agentId, merchantId);
+        }
+
+        @Override
+        public CartMandate findCartMandate(String mandateId) {
+            return repository.findCartMandate(mandateId);
+        }
+
+        @Override
+        public PaymentMandate findPaymentMandate(String mandateId) {
+            return repository.findPaymentMandate(mandateId);
+        }
+
+        @Override
+        public IntentMandate findIntentMandateForPayment(String paymentId) {
+            return repository.findIntentMandateForPayment(paymentId);
+        }
+
+        @Override
+        public CartMandate findCartMandateForPayment(String paymentId) {
+            return repository.findCartMandateForPayment(paymentId);
+        }
+
+        @Override
+        public PaymentMandate findPaymentMandateForPayment(String paymentId) {
+            return repository.findPaymentMandateForPayment(paymentId);
+        }
+
+        @Override
+        public boolean revokeMandate(String mandateId, String reason) {
+            boolean revoked = repository.revokeMandate(mandateId, reason);
+            if (revoked) {
+                index.revoke(mandateId);
+            }
+            return revoked;
+        }
+
+        @Override
+        public boolean removeMandate(String mandateId) {
+            return repository.removeMandate(mandateId);
+        }
+    }
+}
@@ -0,0 +1,949 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.vishalmysore.ap2java.util.CachedClock;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * A {@link MandateRepository} that appends mandates to segment files on disk and finds them
+ * through a memory-mapped hash index, so it can hold far more mandates than fit on the heap.
+ * <p>
+ * Every store, revocation or removal appends one record to the current segment, a fixed-size
+ * memory-mapped file; a full segment is sealed and a new one started. The index maps the
+ * mandate ID, the payment reference of a Payment Mandate, the requesting agent of an Intent
+ * Mandate and the ID of a revoked mandate to the location of the latest matching record.
+ * A lookup of a mandate that is not cached probes the mapped index and reads the record from
+ * the mapped segment, without a system call. Recently read records are kept on the heap in a
+ * bounded LRU cache, as parsed JSON: every lookup decodes a mandate of its own, so callers
+ * can change what they get back without affecting the store or each other.
+ * <p>
+ * The index header holds a checkpoint: the log position up to which the index is complete.
+ * On startup only the records after the checkpoint are read, which normally means none; if
+ * the index file is missing or damaged it is rebuilt from all segments.
+ * <p>
+ * Each Intent Mandate record links to the previous Intent Mandate record of the same agent,
+ * and {@link #findActiveIntentMandateForAgent} follows that chain. Its cost grows with the
+ * number of Intent Mandates the agent has ever been issued, so the hot lookup path should sit
+ * behind an in-memory index such as {@link InMemoryMandateRepository}.
+ * <p>
+ * Reads take no locks; writes are serialized. Records are in the page cache, and survive a
+ * crash of the process, as soon as a write returns; {@link #flush()} also forces them to disk.
+ * Superseded and removed records stay in the segments until {@link #compact()} rewrites them.
+ */
+@Slf4j
+public class SegmentFileMandateRepository implements MandateRepository, Closeable {
+
+    /**
+     * Default size of a segment file.
+     */
+    public static final int DEFAULT_SEGMENT_BYTES = 64 << 20;
+
+    /**
+     * Default number of records cached on the heap.
+     */
+    public static final int DEFAULT_CACHED_RECORDS = 10_000;
+
+    static final int DEFAULT_INDEX_CAPACITY = 1 << 16;
+
+    private static final String INDEX_FILE = "mandates.idx";
+    private static final Pattern SEGMENT_FILE = Pattern.compile("mandates-(\\d{8})\\.seg");
+    private static final Pattern COMPACTED_SEGMENT_FILE = Pattern.compile("mandates-(\\d{8})\\.seg\\.compact");
+    private static final String COMPACT_SUFFIX = ".compact";
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int CACHE_STRIPES = 16;
+    private static final String MANDATE_RECORD = "mandate";
+    private static final String REVOCATION_RECORD = "revocation";
+    private static final String REMOVAL_RECORD = "removal";
+    private static final String ID_KEY = "id:";
+    private static final String AGENT_KEY = "agent:";
+    private static final String PAYMENT_KEY = "payment:";
+    private static final String REVOKED_KEY = "revoked:";
+
+    private final Path directory;
+    private final Clock clock;
+    private final int segmentBytes;
+    private final RecordCache cache;
+    private final Object writeLock = new Object();
+    private volatile MappedHashIndex index;
+    private volatile MappedByteBuffer[] segments;
+    private int firstSegment;
+    private int writeOffset;
+    private boolean closed;
+
+    /**
+     * Opens the repository in a directory, creating it if needed.
+     *
+     * @param directory The directory holding the segment and index files
+     * @throws UncheckedIOException if the files cannot be read or created
+     */
+    public SegmentFileMandateRepository(Path directory) {
+        this(directory, CachedClock.systemUTC(), DEFAULT_SEGMENT_BYTES, DEFAULT_CACHED_RECORDS);
+    }
+
+    /**
+     * Opens the repository in a directory, creating it if needed.
+     *
+     * @param directory The directory holding the segment and index files
+     * @param clock The clock used to decide which Intent Mandates are active
+     * @param segmentBytes The size of new segment files; a record must fit in one segment
+     * @param maxCachedRecords The number of records cached on the heap
+     * @throws UncheckedIOException if the files cannot be read or created
+     */
+    public SegmentFileMandateRepository(Path directory, Clock clock, int segmentBytes, int maxCachedRecords) {
+        this(directory, clock, segmentBytes, maxCachedRecords, DEFAULT_INDEX_CAPACITY);
+    }
+
+    SegmentFileMandateRepository(Path directory, Clock clock, int segmentBytes, int maxCachedRecords,
+                                 int indexCapacity) {
+        if (segmentBytes <= 2 * RECORD_HEADER_BYTES || maxCachedRecords < 0) {
+            throw new IllegalArgumentException("segmentBytes and maxCachedRecords are too small");
+        }
+        this.directory = directory;
+        this.clock = clock;
+        this.segmentBytes = segmentBytes;
+        this.cache = new RecordCache(maxCachedRecords);
+        try {
+            Files.createDirectories(directory);
+            finishCompaction();
+            this.segments = openSegments();
+            MappedHashIndex existing = MappedHashIndex.open(directory.resolve(INDEX_FILE));
+            long checkpointSegment = existing != null ? existing.getCheckpoint() >>> 32 : 0;
+            if (existing != null && (checkpointSegment >= segments.length || checkpointSegment < firstSegment)) {
+                log.warn("Mandate index in {} refers to missing segments", directory);
+                existing = null;
+            }
+            if (existing == null) {
+                log.info("Building mandate index in {}", directory);
+                existing = MappedHashIndex.create(directory.resolve(INDEX_FILE), indexCapacity,
+                        location(firstSegment, 0));
+            }
+            this.index = existing;
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open mandate store " + directory, e);
+        }
+    }
+
+    @Override
+    public String storeIntentMandate(IntentMandate mandate) {
+        return store(mandate);
+    }
+
+    @Override
+    public String storeCartMandate(CartMandate mandate) {
+        return store(mandate);
+    }
+
+    @Override
+    public String storePaymentMandate(PaymentMandate mandate) {
+        return store(mandate);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Of the mandates that are valid now and not revoked, this returns the one that expires last.
+     */
+    @Override
+    public IntentMandate findActiveIntentMandateForAgent(String agentId, String merchantId) {
+        if (agentId == null) {
+            return null;
+        }
+        long now = clock.millis();
+        StoredRecord best = null;
+        Set<String> seen = new HashSet<>();
+        long location = locate(AGENT_KEY + agentId, isIntentOfAgent(agentId));
+        while (location != MappedHashIndex.NOT_FOUND) {
+            StoredRecord record = read(location);
+            // The chain runs newest first, so only the first record of a mandate can be current
+            if (seen.add(record.mandateId)
+                    && record.createdAtMillis <= now && now < record.expiresAtMillis
+                    && (merchantId == null || record.merchantId == null || merchantId.equals(record.merchantId))
+                    && (best == null || record.expiresAtMillis > best.expiresAtMillis)
+                    && locate(ID_KEY + record.mandateId, isMandate(record.mandateId)) == location
+                    && !isRevoked(record.mandateId)) {
+                best = record;
+            }
+            location = record.previousForAgent;
+        }
+        return best != null ? (IntentMandate) best.decodeMandate() : null;
+    }
+
+    /**
+     * Finds an Intent Mandate by ID.
+     *
+     * @param mandateId The ID of the Intent Mandate
+     * @return The Intent Mandate, or null if not found
+     */
+    public IntentMandate findIntentMandate(String mandateId) {
+        SignableMandate mandate = findMandate(mandateId);
+        return mandate instanceof IntentMandate ? (IntentMandate) mandate : null;
+    }
+
+    @Override
+    public CartMandate findCartMandate(String mandateId) {
+        SignableMandate mandate = findMandate(mandateId);
+        return mandate instanceof CartMandate ? (CartMandate) mandate : null;
+    }
+
+    @Override
+    public PaymentMandate findPaymentMandate(String mandateId) {
+        SignableMandate mandate = findMandate(mandateId);
+        return mandate instanceof PaymentMandate ? (PaymentMandate) mandate : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Follows the Payment Mandate of the payment to its Cart Mandate, and that to its Intent Mandate.
+     */
+    @Override
+    public IntentMandate findIntentMandateForPayment(String paymentId) {
+        CartMandate cartMandate = findCartMandateForPayment(paymentId);
+        return cartMandate != null ? findIntentMandate(cartMandate.getIntentMandateId()) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Follows the Payment Mandate of the payment to the Cart Mandate it references.
+     */
+    @Override
+    public CartMandate findCartMandateForPayment(String paymentId) {
+        PaymentMandate paymentMandate = findPaymentMandateForPayment(paymentId);
+        return paymentMandate != null ? findCartMandate(paymentMandate.getParentMandateId()) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The payment ID is matched against the payment reference of the stored Payment Mandates.
+     */
+    @Override
+    public PaymentMandate findPaymentMandateForPayment(String paymentId) {
+        if (paymentId == null) {
+            return null;
+        }
+        long location = locate(PAYMENT_KEY + paymentId, isPaymentFor(paymentId));
+        if (location == MappedHashIndex.NOT_FOUND) {
+            return null;
+        }
+        // The mandate may have been stored again since, with another reference
+        StoredRecord current = findRecord(read(location).mandateId);
+        return current != null && paymentId.equals(current.paymentReference)
+                ? (PaymentMandate) current.decodeMandate() : null;
+    }
+
+    @Override
+    public boolean revokeMandate(String mandateId, String reason) {
+        if (mandateId == null) {
+            return false;
+        }
+        synchronized (writeLock) {
+            ensureOpen();
+            if (findRecord(mandateId) == null || isRevoked(mandateId)) {
+                return false;
+            }
+            ObjectNode envelope = MandateCodec.MAPPER.createObjectNode();
+            envelope.put("record", REVOCATION_RECORD);
+            envelope.put("mandateId", mandateId);
+            envelope.put("reason", reason);
+            envelope.put("revokedAt", clock.instant().toString());
+            append(envelope);
+        }
+        log.info("Revoked mandate {}: {}", mandateId, reason);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Appends a removal record, after which the mandate is no longer found. Its earlier
+     * records stay in the segments until {@link #compact()}, and a removed mandate that was
+     * revoked stays revoked.
+     */
+    @Override
+    public boolean removeMandate(String mandateId) {
+        if (mandateId == null) {
+            return false;
+        }
+        synchronized (writeLock) {
+            ensureOpen();
+            if (findRecord(mandateId) == null) {
+                return false;
+            }
+            ObjectNode envelope = MandateCodec.MAPPER.createObjectNode();
+            envelope.put("record", REMOVAL_RECORD);
+            envelope.put("mandateId", mandateId);
+            append(envelope);
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a mandate has been revoked.
+     *
+     * @param mandateId The ID of the mandate
+     * @return true if the mandate was revoked through this repository
+     */
+    public boolean isRevoked(String mandateId) {
+        return mandateId != null
+                && locate(REVOKED_KEY + mandateId, isRevocationOf(mandateId)) != MappedHashIndex.NOT_FOUND;
+    }
+
+    /**
+     * Forces all records and the index to disk.
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            MappedByteBuffer[] current = segments;
+            current[current.length - 1].force();
+            index.force();
+        }
+    }
+
+    /**
+     * Rewrites the segments without the records that no longer matter: removal records, the
+     * records of removed mandates and mandate records superseded by a later store of the same
+     * ID. Revocations are kept, so a removed mandate that was revoked stays revoked. The index
+     * and the chain of Intent Mandates of each agent are rebuilt over the rewritten records.
+     * <p>
+     * The rewritten segments are numbered after the current ones, so a location never changes
+     * meaning. They and their index are written beside the live files, and an atomic rename of
+     * the index commits them; a crash before that leaves the old files in place, and one after
+     * it is completed when the repository is next opened. Writes wait while a compaction runs.
+     * Lookups do not: those that started before the swap finish against the old segments,
+     * which stay mapped until the next compaction.
+     *
+     * @return The number of records dropped
+     * @throws UncheckedIOException if the rewritten files cannot be written
+     */
+    public int compact() {
+        synchronized (writeLock) {
+            ensureOpen();
+            MappedByteBuffer[] current = segments;
+            int dropped = 0;
+            Compaction compaction = null;
+            try {
+                compaction = new Compaction(current.length, index.capacity());
+                for (int number = firstSegment; number < current.length; number++) {
+                    MappedByteBuffer segment = current[number];
+                    int end = number == current.length - 1 ? writeOffset : segment.capacity();
+                    int offset = 0;
+                    while (offset + RECORD_HEADER_BYTES <= end && segment.getInt(offset) > 0) {
+                        byte[] payload = payload(segment, offset);
+                        StoredRecord record = decode(payload);
+                        if (isLive(location(number, offset), record)) {
+                            compaction.copy(payload, record);
+                        } else {
+                            dropped++;
+                        }
+                        offset += RECORD_HEADER_BYTES + payload.length;
+                    }
+                }
+                MappedByteBuffer[] compacted = compaction.commit(current);
+                // Segments before index, so a lookup that sees the new index finds its records
+                segments = compacted;
+                index = compaction.index;
+                firstSegment = compaction.first;
+                writeOffset = compaction.offset;
+            } catch (IOException e) {
+                if (compaction != null) {
+                    compaction.abandon();
+                }
+                throw new UncheckedIOException("Failed to compact mandate store " + directory, e);
+            }
+            log.info("Compacted mandate store {}: dropped {} records", directory, dropped);
+            return dropped;
+        }
+    }
+
+    /**
+     * Flushes and closes the repository. Mandates can no longer be stored, but lookups
+     * already running finish normally.
+     */
+    @Override
+    public void close() {
+        synchronized (writeLock) {
+            if (!closed) {
+                flush();
+                closed = true;
+            }
+        }
+    }
+
+    private String store(SignableMandate mandate) {
+        String id = mandate.getId();
+        if (id == null) {
+            throw new IllegalArgumentException("Mandate ID is required");
+        }
+        synchronized (writeLock) {
+            ensureOpen();
+            ObjectNode envelope = MandateCodec.MAPPER.createObjectNode();
+            envelope.put("record", MANDATE_RECORD);
+            envelope.set("mandate", MandateCodec.encode(mandate));
+            if (mandate instanceof IntentMandate && ((IntentMandate) mandate).getRequestingAgentId() != null) {
+                String agentId = ((IntentMandate) mandate).getRequestingAgentId();
+                envelope.put("previousForAgent", locate(AGENT_KEY + agentId, isIntentOfAgent(agentId)));
+            }
+            append(envelope);
+        }
+        return id;
+    }
+
+    private SignableMandate findMandate(String mandateId) {
+        StoredRecord record = findRecord(mandateId);
+        return record != null ? record.decodeMandate() : null;
+    }
+
+    private StoredRecord findRecord(String mandateId) {
+        if (mandateId == null) {
+            return null;
+        }
+        long location = locate(ID_KEY + mandateId, isMandate(mandateId));
+        if (location == MappedHashIndex.NOT_FOUND) {
+            return null;
+        }
+        StoredRecord record = read(location);
+        return MANDATE_RECORD.equals(record.kind) ? record : null;
+    }
+
+    private long locate(String key, Predicate<StoredRecord> matches) {
+        return index.find(hash(key), location -> matches.test(read(location)));
+    }
+
+    /**
+     * Appends a record, indexes it and moves the checkpoint past it. Called with the write lock held.
+     */
+    private void append(ObjectNode envelope) {
+        byte[] payload;
+        try {
+            payload = MandateCodec.MAPPER.writeValueAsBytes(envelope);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize mandate record", e);
+        }
+        int recordBytes = RECORD_HEADER_BYTES + payload.length;
+        if (recordBytes > segmentBytes) {
+            throw new IllegalArgumentException("Mandate record of " + payload.length
+                    + " bytes does not fit in a segment of " + segmentBytes + " bytes");
+        }
+        MappedByteBuffer[] current = segments;
+        MappedByteBuffer segment = current[current.length - 1];
+        if (writeOffset + recordBytes > segment.capacity()) {
+            current = roll();
+            segment = current[current.length - 1];
+        }
+        int offset = writeOffset;
+        writeRecord(segment, offset, payload);
+        writeOffset += recordBytes;
+
+        long location = location(current.length - 1, offset);
+        StoredRecord record = decode(payload);
+        cache.put(location, record);
+        apply(location, record);
+        index.setCheckpoint(location(current.length - 1, writeOffset));
+    }
+
+    private void apply(long location, StoredRecord record) {
+        MappedHashIndex current = index;
+        MappedHashIndex indexed = indexRecord(current, location, record, this::read);
+        if (indexed != current) {
+            index = indexed;
+        }
+    }
+
+    /**
+     * Points the index keys of a record at its location, growing the index if it is getting full.
+     *
+     * @param reader Reads the records at the locations already in the index
+     * @return The index, or the grown index that replaces it
+     */
+    private static MappedHashIndex indexRecord(MappedHashIndex current, long location, StoredRecord record,
+                                               LongFunction<StoredRecord> reader) {
+        if (REVOCATION_RECORD.equals(record.kind)) {
+            put(current, REVOKED_KEY + record.mandateId, location, isRevocationOf(record.mandateId), reader);
+        } else if (REMOVAL_RECORD.equals(record.kind)) {
+            put(current, ID_KEY + record.mandateId, location, isMandate(record.mandateId), reader);
+        } else {
+            put(current, ID_KEY + record.mandateId, location, isMandate(record.mandateId), reader);
+            if (record.mandateType == IntentMandate.class && record.agentId != null) {
+                put(current, AGENT_KEY + record.agentId, location, isIntentOfAgent(record.agentId), reader);
+            }
+            if (record.paymentReference != null) {
+                put(current, PAYMENT_KEY + record.paymentReference, location,
+                        isPaymentFor(record.paymentReference), reader);
+            }
+        }
+        if (!current.needsGrowth()) {
+            return current;
+        }
+        try {
+            return current.grow();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to grow mandate index", e);
+        }
+    }
+
+    private static void put(MappedHashIndex current, String key, long location, Predicate<StoredRecord> sameKey,
+                            LongFunction<StoredRecord> reader) {
+        current.put(hash(key), location, existing -> sameKey.test(reader.apply(existing)));
+    }
+
+    /**
+     * Checks whether a record is still needed: it is the current record of a mandate, or the
+     * revocation of one. Called with the write lock held.
+     */
+    private boolean isLive(long location, StoredRecord record) {
+        if (MANDATE_RECORD.equals(record.kind)) {
+            return locate(ID_KEY + record.mandateId, isMandate(record.mandateId)) == location;
+        }
+        if (REVOCATION_RECORD.equals(record.kind)) {
+            return locate(REVOKED_KEY + record.mandateId, isRevocationOf(record.mandateId)) == location;
+        }
+        return false;
+    }
+
+    private StoredRecord read(long location) {
+        StoredRecord record = cache.get(location);
+        if (record == null) {
+            record = decode(payload(segments[(int) (location >>> 32)], (int) location));
+            cache.put(location, record);
+        }
+        return record;
+    }
+
+    /**
+     * Indexes the records written after the checkpoint, and finds where the next record goes.
+     */
+    private void recover() throws IOException {
+        long checkpoint = index.getCheckpoint();
+        int first = (int) (checkpoint >>> 32);
+        int offset = (int) checkpoint;
+        int replayed = 0;
+        MappedByteBuffer[] current = segments;
+        for (int number = first; number < current.length; number++) {
+            MappedByteBuffer segment = current[number];
+            offset = number == first ? offset : 0;
+            while (offset + RECORD_HEADER_BYTES <= segment.capacity()) {
+                int length = segment.getInt(offset);
+                if (length <= 0 || offset + RECORD_HEADER_BYTES + length > segment.capacity()) {
+                    break;
+                }
+                byte[] payload = payload(segment, offset);
+                if (crc(payload) != segment.getInt(offset + 4)) {
+                    log.warn("Ignoring torn mandate record at segment {} offset {}", number, offset);
+                    break;
+                }
+                apply(location(number, offset), decode(payload));
+                offset += RECORD_HEADER_BYTES + length;
+                replayed++;
+            }
+        }
+        writeOffset = offset;
+        // Clear anything after the last good record, so it is not read back after the next write
+        MappedByteBuffer last = current[current.length - 1];
+        if (writeOffset + RECORD_HEADER_BYTES <= last.capacity()) {
+            last.putInt(writeOffset, 0);
+        }
+        index.setCheckpoint(location(current.length - 1, writeOffset));
+        if (replayed > 0) {
+            log.info("Indexed {} mandate records written after the last checkpoint", replayed);
+        }
+    }
+
+    /**
+     * Maps the segment files. Segments before the first one on disk were dropped by a
+     * compaction, and their slots in the returned array are null.
+     */
+    private MappedByteBuffer[] openSegments() throws IOException {
+        List<Path> files = list(SEGMENT_FILE);
+        firstSegment = files.isEmpty() ? 0 : number(files.get(0), SEGMENT_FILE);
+        MappedByteBuffer[] mapped = new MappedByteBuffer[firstSegment + Math.max(1, files.size())];
+        for (int i = 0; i < files.size(); i++) {
+            int number = firstSegment + i;
+            if (number(files.get(i), SEGMENT_FILE) != number) {
+                throw new IOException("Missing mandate segment " + segmentPath(number));
+            }
+            mapped[number] = map(files.get(i), Files.size(files.get(i)));
+        }
+        if (files.isEmpty()) {
+            mapped[0] = map(segmentPath(0), segmentBytes);
+        }
+        return mapped;
+    }
+
+    /**
+     * Completes or rolls back a compaction that was interrupted. While the rewritten index is
+     * still beside the live one the compaction had not committed, and its files are deleted;
+     * otherwise the rewritten segments replace the segments before them.
+     */
+    private void finishCompaction() throws IOException {
+        Path pendingIndex = directory.resolve(INDEX_FILE + COMPACT_SUFFIX);
+        List<Path> compacted = list(COMPACTED_SEGMENT_FILE);
+        if (Files.exists(pendingIndex)) {
+            Files.delete(pendingIndex);
+            for (Path path : compacted) {
+                Files.delete(path);
+            }
+            log.warn("Discarded an unfinished compaction of {}", directory);
+            return;
+        }
+        if (compacted.isEmpty()) {
+            return;
+        }
+        int first = number(compacted.get(0), COMPACTED_SEGMENT_FILE);
+        for (Path path : list(SEGMENT_FILE)) {
+            if (number(path, SEGMENT_FILE) < first) {
+                Files.delete(path);
+            }
+        }
+        // Last first, so that until every segment is renamed the lowest one left is still the first
+        for (int i = compacted.size() - 1; i >= 0; i--) {
+            Path path = compacted.get(i);
+            Files.move(path, segmentPath(number(path, COMPACTED_SEGMENT_FILE)), StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private List<Path> list(Pattern pattern) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(directory)) {
+            listing.filter(path -> pattern.matcher(path.getFileName().toString()).matches())
+                    .sorted()
+                    .forEach(files::add);
+        }
+        return files;
+    }
+
+    private static int number(Path path, Pattern pattern) {
+        Matcher matcher = pattern.matcher(path.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a segment file: " + path);
+        }
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    /**
+     * Seals the current segment and starts a new one. Called with the write lock held.
+     */
+    private MappedByteBuffer[] roll() {
+        MappedByteBuffer[] current = segments;
+        try {
+            current[current.length - 1].force();
+            MappedByteBuffer[] rolled = Arrays.copyOf(current, current.length + 1);
+            rolled[current.length] = map(segmentPath(current.length), segmentBytes);
+            segments = rolled;
+            writeOffset = 0;
+            return rolled;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create mandate segment", e);
+        }
+    }
+
+    private Path segmentPath(int number) {
+        return directory.resolve(String.format("mandates-%08d.seg", number));
+    }
+
+    private Path compactedPath(int number) {
+        return directory.resolve(String.format("mandates-%08d.seg", number) + COMPACT_SUFFIX);
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Mandate repository is closed");
+        }
+    }
+
+    private static MappedByteBuffer map(Path path, long bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        }
+    }
+
+    /**
+     * Writes a record, its length last, so that a reader or a recovery never sees the length
+     * of a record that is not all there.
+     */
+    private static void writeRecord(MappedByteBuffer segment, int offset, byte[] payload) {
+        segment.put(offset + RECORD_HEADER_BYTES, payload);
+        segment.putInt(offset + 4, crc(payload));
+        segment.putInt(offset, payload.length);
+    }
+
+    private static byte[] payload(MappedByteBuffer segment, int offset) {
+        byte[] payload = new byte[segment.getInt(offset)];
+        segment.get(offset + RECORD_HEADER_BYTES, payload);
+        return payload;
+    }
+
+    private static StoredRecord decode(byte[] payload) {
+        try {
+            return new StoredRecord(MandateCodec.MAPPER.readTree(payload));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read mandate record", e);
+        }
+    }
+
+    private static long location(int segment, int offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Hashes an index key with 64-bit FNV-1a and a final avalanche, so that the low bits used
+     * to pick a slot depend on every character. Never returns 0, which marks an empty slot.
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        for (byte b : bytes) {
+            h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h != 0 ? h : 1;
+    }
+
+    private static Predicate<StoredRecord> isMandate(String mandateId) {
+        // A removal takes the place of the mandate under its ID
+        return record -> (MANDATE_RECORD.equals(record.kind) || REMOVAL_RECORD.equals(record.kind))
+                && mandateId.equals(record.mandateId);
+    }
+
+    private static Predicate<StoredRecord> isIntentOfAgent(String agentId) {
+        return record -> record.mandateType == IntentMandate.class && agentId.equals(record.agentId);
+    }
+
+    private static Predicate<StoredRecord> isPaymentFor(String paymentReference) {
+        return record -> record.mandateType == PaymentMandate.class
+                && paymentReference.equals(record.paymentReference);
+    }
+
+    private static Predicate<StoredRecord> isRevocationOf(String mandateId) {
+        return record -> REVOCATION_RECORD.equals(record.kind) && mandateId.equals(record.mandateId);
+    }
+
+    /**
+     * The rewritten segments and index of a compaction in progress. Called with the write lock held.
+     */
+    private final class Compaction {
+        private final int first;
+        private final List<MappedByteBuffer> written = new ArrayList<>();
+        private MappedHashIndex index;
+        private int offset;
+        private boolean committed;
+
+        Compaction(int first, int indexCapacity) throws IOException {
+            this.first = first;
+            this.index = MappedHashIndex.create(directory.resolve(INDEX_FILE + COMPACT_SUFFIX), indexCapacity,
+                    location(first, 0));
+            written.add(map(compactedPath(first), segmentBytes));
+        }
+
+        /**
+         * Appends a live record, linking an Intent Mandate to the previous rewritten Intent
+         * Mandate of its agent.
+         */
+        void copy(byte[] payload, StoredRecord record) throws IOException {
+            if (record.mandateType == IntentMandate.class && record.agentId != null) {
+                ObjectNode envelope = (ObjectNode) MandateCodec.MAPPER.readTree(payload);
+                Predicate<StoredRecord> sameAgent = isIntentOfAgent(record.agentId);
+                envelope.put("previousForAgent",
+                        index.find(hash(AGENT_KEY + record.agentId), location -> sameAgent.test(read(location))));
+                payload = MandateCodec.MAPPER.writeValueAsBytes(envelope);
+            }
+            int recordBytes = RECORD_HEADER_BYTES + payload.length;
+            MappedByteBuffer segment = written.get(written.size() - 1);
+            if (offset + recordBytes > segment.capacity()) {
+                segment.force();
+                segment = map(compactedPath(first + written.size()), segmentBytes);
+                written.add(segment);
+                offset = 0;
+            }
+            writeRecord(segment, offset, payload);
+            long location = location(first + written.size() - 1, offset);
+            offset += recordBytes;
+            index = indexRecord(index, location, record, this::read);
+        }
+
+        /**
+         * Forces the rewritten files to disk, swaps them in and returns the segments to map:
+         * the rewritten ones, and the ones they replace for lookups still running.
+         */
+        MappedByteBuffer[] commit(MappedByteBuffer[] current) throws IOException {
+            index.setCheckpoint(location(first + written.size() - 1, offset));
+            for (MappedByteBuffer segment : written) {
+                segment.force();
+            }
+            index.force();
+            index = index.moveTo(directory.resolve(INDEX_FILE));
+            committed = true;
+            finishCompaction();
+
+            MappedByteBuffer[] compacted = new MappedByteBuffer[first + written.size()];
+            System.arraycopy(current, firstSegment, compacted, firstSegment, first - firstSegment);
+            for (int i = 0; i < written.size(); i++) {
+                compacted[first + i] = written.get(i);
+            }
+            return compacted;
+        }
+
+        void abandon() {
+            if (committed) {
+                // The rewritten files are live but not in use here, so writes stop until the
+                // repository is opened again, which finishes the swap
+                closed = true;
+                return;
+            }
+            try {
+                Files.deleteIfExists(directory.resolve(INDEX_FILE + COMPACT_SUFFIX));
+                for (int i = 0; i < written.size(); i++) {
+                    Files.deleteIfExists(compactedPath(first + i));
+                }
+            } catch (IOException e) {
+                log.warn("Failed to delete the files of an abandoned compaction of {}", directory, e);
+            }
+        }
+
+        private StoredRecord read(long location) {
+            return decode(payload(written.get((int) (location >>> 32) - first), (int) location));
+        }
+    }
+
+    /**
+     * A parsed record, with the fields the index and lookups depend on taken when it was read.
+     * The mandate is kept as JSON, which is never handed out, and decoded again for each caller.
+     */
+    private static final class StoredRecord {
+        private final String kind;
+        private final JsonNode mandateJson;
+        private final Class<? extends SignableMandate> mandateType;
+        private final String mandateId;
+        private final String agentId;
+        private final String merchantId;
+        private final String paymentReference;
+        private final long createdAtMillis;
+        private final long expiresAtMillis;
+        private final long previousForAgent;
+
+        StoredRecord(JsonNode envelope) {
+            this.kind = envelope.path("record").asText();
+            this.previousForAgent = envelope.path("previousForAgent").asLong(MappedHashIndex.NOT_FOUND);
+            if (!MANDATE_RECORD.equals(kind)) {
+                this.mandateJson = null;
+                this.mandateType = null;
+                this.mandateId = envelope.path("mandateId").asText();
+                this.agentId = null;
+                this.merchantId = null;
+                this.paymentReference = null;
+                this.createdAtMillis = Long.MIN_VALUE;
+                this.expiresAtMillis = Long.MIN_VALUE;
+                return;
+            }
+            this.mandateJson = envelope.get("mandate");
+            SignableMandate mandate = MandateCodec.decode(mandateJson);
+            this.mandateType = mandate.getClass();
+            this.mandateId = mandate.getId();
+            if (mandate instanceof IntentMandate) {
+                IntentMandate intentMandate = (IntentMandate) mandate;
+                this.agentId = intentMandate.getRequestingAgentId();
+                this.merchantId = intentMandate.getReceivingAgentId();
+                this.createdAtMillis = toMillis(intentMandate.getCreatedAt(), Long.MIN_VALUE);
+                this.expiresAtMillis = toMillis(intentMandate.getExpiresAt(), Long.MAX_VALUE);
+            } else {
+                this.agentId = null;
+                this.merchantId = null;
+                this.createdAtMillis = Long.MIN_VALUE;
+                this.expiresAtMillis = Long.MIN_VALUE;
+            }
+            this.paymentReference = mandate instanceof PaymentMandate
+                    ? ((PaymentMandate) mandate).getPaymentReference() : null;
+        }
+
+        /**
+         * Decodes the mandate of a mandate record.
+         *
+         * @return A new mandate instance, owned by the caller
+         */
+        SignableMandate decodeMandate() {
+            return MandateCodec.decode(mandateJson);
+        }
+
+        private static long toMillis(Instant instant, long absent) {
+            return instant != null ? instant.toEpochMilli() : absent;
+        }
+    }
+
+    /**
+     * A bounded LRU cache of decoded records by location, split into independently locked stripes.
+     */
+    private static final class RecordCache {
+        private final List<LinkedHashMap<Long, StoredRecord>> stripes = new ArrayList<>(CACHE_STRIPES);
+
+        RecordCache(int maxRecords) {
+            int perStripe = (maxRecords + CACHE_STRIPES - 1) / CACHE_STRIPES;
+            for (int i = 0; i < CACHE_STRIPES; i++) {
+                stripes.add(new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Long, StoredRecord> eldest) {
+                        return size() > perStripe;
+                    }
+                });
+            }
+        }
+
+        StoredRecord get(long location) {
+            LinkedHashMap<Long, StoredRecord> stripe = stripe(location);
+            synchronized (stripe) {
+                return stripe.get(location);
+            }
+        }
+
+        void put(long location, StoredRecord record) {
+            LinkedHashMap<Long, StoredRecord> stripe = stripe(location);
+            synchronized (stripe) {
+                stripe.put(location, record);
+            }
+        }
+
+        private LinkedHashMap<Long, StoredRecord> stripe(long location) {
+            long h = location * 0x9e3779b97f4a7c15L;
+            return stripes.get((int) (h >>> 60));
+        }
+    }
+}
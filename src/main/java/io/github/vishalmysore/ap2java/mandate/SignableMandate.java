@@ -0,0 +1,64 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import io.github.vishalmysore.ap2java.credentials.VerifiableCredential;
+
+import java.time.Instant;
+
+/**
+ * A mandate whose content is signed by a {@link MandateCredential} bound to it.
+ * <p>
+ * The signed content is the canonical serialization of the mandate. Its digest is computed
+ * on first use and cached until a setter changes a signed field, so verifying the same
+ * mandate again costs no serialization work.
+ */
+public interface SignableMandate {
+
+    /**
+     * Gets the ID of the mandate.
+     *
+     * @return The mandate ID
+     */
+    String getId();
+
+    /**
+     * Gets when the mandate expires.
+     *
+     * @return The expiry time, or null if the mandate does not expire
+     */
+    Instant getExpiresAt();
+
+    /**
+     * Gets the name of the mandate type, e.g. "IntentMandate".
+     *
+     * @return The mandate type
+     */
+    String mandateType();
+
+    /**
+     * Serializes the signed content of the mandate canonically.
+     *
+     * @return Deterministic UTF-8 JSON bytes
+     */
+    byte[] canonicalBytes();
+
+    /**
+     * Gets the digest of the canonical serialization.
+     *
+     * @return The hex-encoded SHA-256 digest
+     */
+    String signingDigest();
+
+    /**
+     * Gets the credential that signs the mandate.
+     *
+     * @return The credential, or null if the mandate is unsigned
+     */
+    VerifiableCredential getCredential();
+
+    /**
+     * Sets the credential that signs the mandate.
+     *
+     * @param credential The credential
+     */
+    void setCredential(VerifiableCredential credential);
+}
@@ -0,0 +1,99 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers mandates that passed signature and structural verification, keyed by mandate ID
+ * and content digest. An entry is only trusted until its deadline, which callers set no later
+ * than the mandate's expiry, and is dropped as soon as the mandate is invalidated.
+ */
+class VerificationCache {
+
+    private final int maxEntries;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries The maximum number of mandates to remember
+     */
+    VerificationCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Checks whether a mandate with this exact content was verified and is still trusted.
+     *
+     * @param mandateId The mandate ID
+     * @param digest The content digest of the mandate
+     * @param nowMillis The current time in epoch milliseconds
+     * @return true if the earlier verification result can be reused
+     */
+    boolean isVerified(String mandateId, String digest, long nowMillis) {
+        Entry entry = entries.get(mandateId);
+        if (entry == null) {
+            return false;
+        }
+        if (nowMillis >= entry.validUntilMillis) {
+            entries.remove(mandateId, entry);
+            return false;
+        }
+        return entry.digest.equals(digest);
+    }
+
+    /**
+     * Records a successful verification.
+     *
+     * @param mandateId The mandate ID
+     * @param digest The content digest of the mandate
+     * @param validUntilMillis When the result stops being trusted, in epoch milliseconds
+     * @param nowMillis The current time in epoch milliseconds
+     */
+    void put(String mandateId, String digest, long validUntilMillis, long nowMillis) {
+        if (entries.size() >= maxEntries && !entries.containsKey(mandateId)) {
+            removeExpired(nowMillis);
+            if (entries.size() >= maxEntries) {
+                // Full of live entries: the mandate is simply verified again next time
+                return;
+            }
+        }
+        entries.put(mandateId, new Entry(digest, validUntilMillis));
+    }
+
+    /**
+     * Drops the result for a mandate, for example because it was revoked.
+     *
+     * @param mandateId The mandate ID
+     */
+    void invalidate(String mandateId) {
+        entries.remove(mandateId);
+    }
+
+    /**
+     * Gets the number of remembered mandates.
+     *
+     * @return The number of entries
+     */
+    int size() {
+        return entries.size();
+    }
+
+    private void removeExpired(long nowMillis) {
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (nowMillis >= entry.getValue().validUntilMillis) {
+                entries.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static class Entry {
+        private final String digest;
+        private final long validUntilMillis;
+
+        Entry(String digest, long validUntilMillis) {
+            this.digest = digest;
+            this.validUntilMillis = validUntilMillis;
+        }
+    }
+}
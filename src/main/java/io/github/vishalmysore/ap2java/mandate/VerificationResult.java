@@ -0,0 +1,91 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+/**
+ * Outcome of verifying a mandate or mandate chain.
+ *
+ * There is exactly one instance per reason, so producing a result never allocates and
+ * results can be compared with {@code ==}.
+ */
+public final class VerificationResult {
+
+    /**
+     * Why a verification succeeded or failed.
+     */
+    public enum Reason {
+        /** Every check passed. */
+        VALID,
+        /** A mandate signature is missing or invalid. */
+        SIGNATURE_INVALID,
+        /** A mandate has expired. */
+        EXPIRED,
+        /** A mandate has been revoked. */
+        REVOKED,
+        /** A mandate does not reference the mandate it was built under. */
+        MANDATE_LINK_MISMATCH,
+        /** The cart merchant is not the merchant being paid. */
+        MERCHANT_MISMATCH,
+        /** A mandate amount differs from the requested amount. */
+        AMOUNT_MISMATCH,
+        /** A mandate currency differs from the requested currency. */
+        CURRENCY_MISMATCH,
+        /** The Payment Mandate uses a different payment method than requested. */
+        PAYMENT_METHOD_MISMATCH,
+        /** The Intent Mandate does not permit the merchant or amount. */
+        NOT_PERMITTED,
+        /** A constraint rule of the Intent Mandate does not hold. */
+        CONSTRAINT_VIOLATED,
+        /** Verification could not complete, e.g. it was interrupted. */
+        VERIFICATION_ERROR,
+        /** The verifier gave no reason. */
+        UNSPECIFIED
+    }
+
+    private static final VerificationResult[] RESULTS;
+
+    static {
+        Reason[] reasons = Reason.values();
+        RESULTS = new VerificationResult[reasons.length];
+        for (Reason reason : reasons) {
+            RESULTS[reason.ordinal()] = new VerificationResult(reason);
+        }
+    }
+
+    /**
+     * The successful result.
+     */
+    public static final VerificationResult VALID = of(Reason.VALID);
+
+    private final Reason reason;
+
+    private VerificationResult(Reason reason) {
+        this.reason = reason;
+    }
+
+    /**
+     * Gets the result for a reason.
+     *
+     * @param reason The reason
+     * @return The shared result instance
+     */
+    public static VerificationResult of(Reason reason) {
+        return RESULTS[reason.ordinal()];
+    }
+
+    /**
+     * Checks whether verification succeeded.
+     *
+     * @return true if every check passed
+     */
+    public boolean isValid() {
+        return reason == Reason.VALID;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        return "VerificationResult(" + reason + ")";
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts verification outcomes per reason. Counting is contention-free, so it can stay
+ * on during a burst of rejections.
+ */
+public class VerificationStats {
+
+    private final LongAdder[] counts;
+
+    public VerificationStats() {
+        counts = new LongAdder[VerificationResult.Reason.values().length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Counts an outcome.
+     *
+     * @param result The outcome
+     * @return The same outcome, for chaining
+     */
+    VerificationResult record(VerificationResult result) {
+        counts[result.getReason().ordinal()].increment();
+        return result;
+    }
+
+    /**
+     * Gets the number of outcomes with a reason.
+     *
+     * @param reason The reason
+     * @return The count
+     */
+    public long getCount(VerificationResult.Reason reason) {
+        return counts[reason.ordinal()].sum();
+    }
+
+    /**
+     * Gets the number of failed verifications, whatever the reason.
+     *
+     * @return The count
+     */
+    public long getRejectionCount() {
+        long total = 0;
+        for (VerificationResult.Reason reason : VerificationResult.Reason.values()) {
+            if (reason != VerificationResult.Reason.VALID) {
+                total += counts[reason.ordinal()].sum();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Gets a snapshot of every count.
+     *
+     * @return The counts by reason
+     */
+    public Map<VerificationResult.Reason, Long> snapshot() {
+        Map<VerificationResult.Reason, Long> snapshot = new EnumMap<>(VerificationResult.Reason.class);
+        for (VerificationResult.Reason reason : VerificationResult.Reason.values()) {
+            snapshot.put(reason, counts[reason.ordinal()].sum());
+        }
+        return snapshot;
+    }
+}
@@ -4,14 +4,18 @@ import io.github.vishalmysore.ap2java.domain.Payment;
 import io.github.vishalmysore.ap2java.domain.PaymentRequest;
 import io.github.vishalmysore.ap2java.domain.PaymentResponse;
 import io.github.vishalmysore.ap2java.domain.PaymentStatus;
+import io.github.vishalmysore.ap2java.mandate.IntentMandate;
+import io.github.vishalmysore.ap2java.mandate.MandateRepository;
+import io.github.vishalmysore.ap2java.util.CachedClock;
 import lombok.extern.slf4j.Slf4j;
 
-import java.time.Instant;
+import java.time.Clock;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Sample implementation of the PaymentProcessor interface.
@@ -20,12 +24,78 @@ import java.util.concurrent.CompletableFuture;
 public class SamplePaymentProcessor implements PaymentProcessor {
     
     private final Map<String, Payment> paymentStore = new HashMap<>();
+    private final VelocityEngine velocityEngine;
+    private final Clock clock;
+    private final SpendBudgetTracker budgetTracker;
+    private final MandateRepository mandateRepository;
+    private final Map<String, SpendBudgetTracker.Reservation> reservations = new ConcurrentHashMap<>();
+    
+    /**
+     * Creates a processor without velocity checks.
+     */
+    public SamplePaymentProcessor() {
+        this(null);
+    }
+    
+    /**
+     * Creates a processor that runs velocity checks before creating a payment.
+     *
+     * @param velocityEngine The velocity engine to consult, or null to disable the checks
+     */
+    public SamplePaymentProcessor(VelocityEngine velocityEngine) {
+        this(velocityEngine, CachedClock.systemUTC());
+    }
+    
+    /**
+     * Creates a processor that stamps payment transitions with the time of the given clock.
+     *
+     * @param velocityEngine The velocity engine to consult, or null to disable the checks
+     * @param clock The clock to read, {@link CachedClock#systemUTC()} by default
+     */
+    public SamplePaymentProcessor(VelocityEngine velocityEngine, Clock clock) {
+        this(velocityEngine, clock, null, null);
+    }
+    
+    /**
+     * Creates a processor that also holds payments to the total budget of their Intent Mandate.
+     * The amount is reserved when a payment is authorized, committed when it is captured and
+     * released when it is cancelled. A refund does not return the amount to the budget.
+     *
+     * @param velocityEngine The velocity engine to consult, or null to disable the checks
+     * @param clock The clock to read, {@link CachedClock#systemUTC()} by default
+     * @param budgetTracker The budget tracker, or null to disable the budget checks
+     * @param mandateRepository The repository to find the Intent Mandate of a payment in
+     */
+    public SamplePaymentProcessor(VelocityEngine velocityEngine, Clock clock,
+                                  SpendBudgetTracker budgetTracker, MandateRepository mandateRepository) {
+        this.velocityEngine = velocityEngine;
+        this.clock = clock;
+        this.budgetTracker = budgetTracker;
+        this.mandateRepository = mandateRepository;
+    }
     
     @Override
     public CompletableFuture<PaymentResponse> createPayment(PaymentRequest paymentRequest) {
         return CompletableFuture.supplyAsync(() -> {
             log.info("Creating payment for request: {}", paymentRequest);
             
+            // Reject the payment before it is stored if the agent is over a velocity limit
+            if (velocityEngine != null) {
+                VelocityRule tripped = velocityEngine.tryAcquire(
+                        paymentRequest.getRequestingAgentId(), paymentRequest.getAmount(),
+                        paymentRequest.getCurrencyCode());
+                if (tripped != null) {
+                    Map<String, Object> processorData = new HashMap<>();
+                    processorData.put("velocityRule", tripped.getName());
+                    return PaymentResponse.builder()
+                            .status(PaymentStatus.FAILED)
+                            .errorCode("VELOCITY_LIMIT_EXCEEDED")
+                            .errorMessage("Velocity limit exceeded: " + tripped.getName())
+                            .processorData(processorData)
+                            .build();
+                }
+            }
+            
             // Create a new payment
             Payment payment = Payment.builder()
                     .id(UUID.randomUUID().toString())
@@ -37,7 +107,7 @@ public class SamplePaymentProcessor implements PaymentProcessor {
                     .metadata(paymentRequest.getMetadata())
                     .externalReference(paymentRequest.getExternalReference())
                     .status(PaymentStatus.CREATED)
-                    .createdAt(Instant.now())
+                    .createdAt(clock.instant())
                     .build();
             
             // Store the payment
@@ -68,9 +138,31 @@ public class SamplePaymentProcessor implements PaymentProcessor {
                         .build();
             }
             
+            // Hold the amount against the budget of the Intent Mandate before authorizing
+            if (budgetTracker != null && mandateRepository != null && !reservations.containsKey(paymentId)) {
+                IntentMandate intentMandate = mandateRepository.findIntentMandateForPayment(paymentId);
+                if (intentMandate != null) {
+                    SpendBudgetTracker.Reservation reservation = budgetTracker.reserve(
+                            intentMandate, payment.getAmount(), payment.getCurrencyCode());
+                    if (reservation == null && !reservations.containsKey(paymentId)) {
+                        return PaymentResponse.builder()
+                                .paymentId(paymentId)
+                                .status(PaymentStatus.FAILED)
+                                .errorCode("BUDGET_EXCEEDED")
+                                .errorMessage("Payment exceeds the budget of Intent Mandate " + intentMandate.getId())
+                                .build();
+                    }
+                    // A concurrent authorization of the same payment may have reserved first;
+                    // keep its hold and give this one back, so the amount is held only once
+                    if (reservation != null && reservations.putIfAbsent(paymentId, reservation) != null) {
+                        reservation.release();
+                    }
+                }
+            }
+            
             // Simulate authorization
             payment.setStatus(PaymentStatus.AUTHORIZED);
-            payment.setUpdatedAt(Instant.now());
+            payment.setUpdatedAt(clock.instant());
             paymentStore.put(paymentId, payment);
             
             return PaymentResponse.builder()
@@ -106,9 +198,14 @@ public class SamplePaymentProcessor implements PaymentProcessor {
                         .build();
             }
             
+            SpendBudgetTracker.Reservation reservation = reservations.remove(paymentId);
+            if (reservation != null) {
+                reservation.commit();
+            }
+            
             // Simulate capture
             payment.setStatus(PaymentStatus.COMPLETED);
-            payment.setUpdatedAt(Instant.now());
+            payment.setUpdatedAt(clock.instant());
             paymentStore.put(paymentId, payment);
             
             return PaymentResponse.builder()
@@ -145,9 +242,14 @@ public class SamplePaymentProcessor implements PaymentProcessor {
                         .build();
             }
             
+            SpendBudgetTracker.Reservation reservation = reservations.remove(paymentId);
+            if (reservation != null) {
+                reservation.release();
+            }
+            
             // Simulate cancellation
             payment.setStatus(PaymentStatus.CANCELED);
-            payment.setUpdatedAt(Instant.now());
+            payment.setUpdatedAt(clock.instant());
             paymentStore.put(paymentId, payment);
             
             return PaymentResponse.builder()
@@ -185,7 +287,7 @@ public class SamplePaymentProcessor implements PaymentProcessor {
             
             // Simulate refund
             payment.setStatus(PaymentStatus.REFUNDED);
-            payment.setUpdatedAt(Instant.now());
+            payment.setUpdatedAt(clock.instant());
             
             // Add refund reason to metadata
             if (payment.getMetadata() == null) {
@@ -0,0 +1,92 @@
+package io.github.vishalmysore.ap2java.payment;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free sliding-window counter bucketed by time slice.
+ * Each bucket packs the slice it belongs to into the upper bits of a single
+ * long, so rolling a bucket over to a new slice and adding to it is one CAS.
+ * Memory is fixed at one long per bucket regardless of traffic.
+ */
+class SlidingWindowCounter {
+
+    private static final int VALUE_BITS = 40;
+    private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+    private static final long SLICE_MASK = (1L << (Long.SIZE - VALUE_BITS)) - 1;
+
+    private final AtomicLongArray buckets;
+    private final int bucketCount;
+    private final long sliceMillis;
+
+    /**
+     * Creates a counter covering the given window.
+     *
+     * @param windowMillis The length of the window in milliseconds
+     * @param bucketCount The number of slices the window is divided into
+     */
+    SlidingWindowCounter(long windowMillis, int bucketCount) {
+        this.bucketCount = bucketCount;
+        this.sliceMillis = Math.max(1, windowMillis / bucketCount);
+        this.buckets = new AtomicLongArray(bucketCount);
+    }
+
+    /**
+     * Adds a value to the bucket for the current slice.
+     *
+     * @param nowMillis The current time in epoch milliseconds
+     * @param delta The non-negative amount to add
+     * @return The slice the value was recorded in, for use with {@link #remove}
+     */
+    long add(long nowMillis, long delta) {
+        long slice = (nowMillis / sliceMillis) & SLICE_MASK;
+        int index = (int) (slice % bucketCount);
+        while (true) {
+            long current = buckets.get(index);
+            long base = (current >>> VALUE_BITS) == slice ? current & VALUE_MASK : 0;
+            long updated = (slice << VALUE_BITS) | Math.min(base + delta, VALUE_MASK);
+            if (buckets.compareAndSet(index, current, updated)) {
+                return slice;
+            }
+        }
+    }
+
+    /**
+     * Takes back a value previously recorded with {@link #add}. Does nothing if
+     * the bucket has since rolled over, since the value has already aged out.
+     *
+     * @param slice The slice returned by {@link #add}
+     * @param delta The amount that was added
+     */
+    void remove(long slice, long delta) {
+        int index = (int) (slice % bucketCount);
+        while (true) {
+            long current = buckets.get(index);
+            if ((current >>> VALUE_BITS) != slice) {
+                return;
+            }
+            long updated = (slice << VALUE_BITS) | Math.max(0, (current & VALUE_MASK) - delta);
+            if (buckets.compareAndSet(index, current, updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sums all buckets that fall inside the window ending at the given time.
+     *
+     * @param nowMillis The current time in epoch milliseconds
+     * @return The total recorded within the window
+     */
+    long sum(long nowMillis) {
+        long slice = (nowMillis / sliceMillis) & SLICE_MASK;
+        long total = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            long current = buckets.get(i);
+            long age = (slice - (current >>> VALUE_BITS)) & SLICE_MASK;
+            if (age < bucketCount) {
+                total += current & VALUE_MASK;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,278 @@
+package io.github.vishalmysore.ap2java.payment;
+
+import io.github.vishalmysore.ap2java.mandate.IntentMandate;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Currency;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks cumulative spend against the {@link IntentMandate#getMaxTotalAmount() total limit}
+ * of Intent Mandates, so that many payments each under the per-payment limit cannot add
+ * up to more than the mandate allows.
+ * <p>
+ * A payment reserves its amount when it is authorized. The reservation is committed when
+ * the payment is captured, or released when it is cancelled. Reserved and committed
+ * amounts both count against the limit, so concurrent payments can never over-spend.
+ * All counters are longs in minor units of the budget's currency, updated with CAS and
+ * never locked.
+ * <p>
+ * A mandate with a {@link IntentMandate#getBudgetWindow() budget window} limits spend in
+ * any rolling window of that length, using a {@link SlidingWindowCounter}. As in
+ * {@link VelocityEngine}, a reservation is added first and taken back if it would
+ * exceed the limit, so under contention a payment may be refused that would just have
+ * fit, but never one that does not.
+ */
+@Slf4j
+public class SpendBudgetTracker {
+
+    /**
+     * Number of time slices each budget window is divided into.
+     */
+    static final int BUCKETS_PER_WINDOW = 10;
+
+    private final Clock clock;
+    private final ConcurrentHashMap<String, Budget> budgets = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a tracker that reads the system clock.
+     */
+    public SpendBudgetTracker() {
+        this(Clock.systemUTC());
+    }
+
+    /**
+     * Creates a tracker.
+     *
+     * @param clock The clock used to place spend into budget windows
+     */
+    public SpendBudgetTracker(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Reserves an amount against the budget of an Intent Mandate.
+     * A mandate without a total limit always gets a reservation, which tracks nothing.
+     * The budget takes the currency of its first reservation; reservations in any other
+     * currency are refused.
+     *
+     * @param mandate The Intent Mandate the payment is made under
+     * @param amount The payment amount
+     * @param currencyCode The ISO 4217 currency code of the payment
+     * @return The reservation, or null if the amount does not fit the remaining budget
+     */
+    public Reservation reserve(IntentMandate mandate, BigDecimal amount, String currencyCode) {
+        if (mandate.getMaxTotalAmount() == null) {
+            return new Reservation(null, 0, 0);
+        }
+        Budget budget = budgets.computeIfAbsent(mandate.getId(),
+                id -> new Budget(mandate.getMaxTotalAmount(), Currency.getInstance(currencyCode),
+                        mandate.getBudgetWindow()));
+        if (!budget.currency.getCurrencyCode().equals(currencyCode)) {
+            log.warn("Refusing {} payment against {} budget of mandate {}",
+                    currencyCode, budget.currency, mandate.getId());
+            return null;
+        }
+        long amountMinor = clamp(amount.setScale(budget.scale, RoundingMode.UP).unscaledValue());
+        if (amountMinor < 0) {
+            throw new IllegalArgumentException("Amount must not be negative: " + amount);
+        }
+        long slice = budget.tryReserve(clock.millis(), amountMinor);
+        if (slice < 0) {
+            log.warn("Budget of mandate {} exceeded by payment of {} {}", mandate.getId(), amount, currencyCode);
+            return null;
+        }
+        return new Reservation(budget, amountMinor, slice);
+    }
+
+    /**
+     * Gets the amount reserved or committed against a mandate's budget. For a windowed
+     * budget this is the amount within the current window.
+     *
+     * @param mandateId The ID of the Intent Mandate
+     * @return The amount in minor units, or 0 if the mandate is not tracked
+     */
+    public long getUsedMinor(String mandateId) {
+        Budget budget = budgets.get(mandateId);
+        return budget != null ? budget.used(clock.millis()) : 0;
+    }
+
+    /**
+     * Gets the amount committed against a mandate's budget over the life of the tracker,
+     * whether or not it is still within a budget window.
+     *
+     * @param mandateId The ID of the Intent Mandate
+     * @return The amount in minor units, or 0 if the mandate is not tracked
+     */
+    public long getCommittedMinor(String mandateId) {
+        Budget budget = budgets.get(mandateId);
+        return budget != null ? budget.committed.get() : 0;
+    }
+
+    /**
+     * Gets the amount that can still be reserved against a mandate's budget.
+     *
+     * @param mandateId The ID of the Intent Mandate
+     * @return The amount in minor units, or {@link Long#MAX_VALUE} if the mandate is not tracked
+     */
+    public long getRemainingMinor(String mandateId) {
+        Budget budget = budgets.get(mandateId);
+        return budget != null ? Math.max(0, budget.limitMinor - budget.used(clock.millis())) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Stops tracking a mandate, e.g. once it has expired or been revoked. Outstanding
+     * reservations against it can still be committed or released.
+     *
+     * @param mandateId The ID of the Intent Mandate
+     */
+    public void forget(String mandateId) {
+        budgets.remove(mandateId);
+    }
+
+    /**
+     * Gets the number of mandates whose budgets are being tracked.
+     *
+     * @return The tracked mandate count
+     */
+    public int getTrackedMandateCount() {
+        return budgets.size();
+    }
+
+    private static long clamp(BigInteger minor) {
+        if (minor.bitLength() < 64) {
+            return minor.longValue();
+        }
+        return minor.signum() > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+    }
+
+    /**
+     * An amount held against a budget until the payment is captured or cancelled.
+     * Only the first call to {@link #commit()} or {@link #release()} has any effect.
+     */
+    public static final class Reservation {
+
+        private static final int PENDING = 0;
+        private static final int COMMITTED = 1;
+        private static final int RELEASED = 2;
+
+        private final Budget budget;
+        private final long amountMinor;
+        private final long slice;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        private Reservation(Budget budget, long amountMinor, long slice) {
+            this.budget = budget;
+            this.amountMinor = amountMinor;
+            this.slice = slice;
+        }
+
+        /**
+         * Turns the reservation into spend, when the payment is captured.
+         *
+         * @return true if the reservation was pending
+         */
+        public boolean commit() {
+            if (!state.compareAndSet(PENDING, COMMITTED)) {
+                return false;
+            }
+            if (budget != null) {
+                budget.committed.addAndGet(amountMinor);
+            }
+            return true;
+        }
+
+        /**
+         * Returns the reserved amount to the budget, when the payment is cancelled.
+         *
+         * @return true if the reservation was pending
+         */
+        public boolean release() {
+            if (!state.compareAndSet(PENDING, RELEASED)) {
+                return false;
+            }
+            if (budget != null) {
+                budget.release(slice, amountMinor);
+            }
+            return true;
+        }
+
+        /**
+         * Gets the reserved amount.
+         *
+         * @return The amount in minor units of the budget's currency
+         */
+        public long getAmountMinor() {
+            return amountMinor;
+        }
+    }
+
+    /**
+     * The limit and counters of one mandate.
+     */
+    private static class Budget {
+        private final Currency currency;
+        private final int scale;
+        private final long limitMinor;
+        // Reserved plus committed, for a budget without a window
+        private final AtomicLong used = new AtomicLong();
+        private final AtomicLong committed = new AtomicLong();
+        private final SlidingWindowCounter window;
+
+        Budget(BigDecimal limit, Currency currency, Duration window) {
+            this.currency = currency;
+            this.scale = Math.max(0, currency.getDefaultFractionDigits());
+            // Round the limit down, so a limit finer than the currency never lets more through
+            this.limitMinor = clamp(limit.setScale(scale, RoundingMode.DOWN).unscaledValue());
+            this.window = window != null
+                    ? new SlidingWindowCounter(window.toMillis(), BUCKETS_PER_WINDOW) : null;
+        }
+
+        /**
+         * Reserves an amount if it fits.
+         *
+         * @return The window slice it was recorded in, 0 without a window, or -1 if it does not fit
+         */
+        long tryReserve(long now, long amountMinor) {
+            if (amountMinor > limitMinor) {
+                return -1;
+            }
+            if (window != null) {
+                long slice = window.add(now, amountMinor);
+                if (window.sum(now) > limitMinor) {
+                    window.remove(slice, amountMinor);
+                    return -1;
+                }
+                return slice;
+            }
+            while (true) {
+                long current = used.get();
+                if (amountMinor > limitMinor - current) {
+                    return -1;
+                }
+                if (used.compareAndSet(current, current + amountMinor)) {
+                    return 0;
+                }
+            }
+        }
+
+        void release(long slice, long amountMinor) {
+            if (window != null) {
+                window.remove(slice, amountMinor);
+            } else {
+                used.addAndGet(-amountMinor);
+            }
+        }
+
+        long used(long now) {
+            return window != null ? window.sum(now) : used.get();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package io.github.vishalmysore.ap2java.payment;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evaluates per-agent velocity rules inline on payment creation.
+ * Every tracked agent holds one fixed-size {@link SlidingWindowCounter} per count rule
+ * and, for each currency it pays in, one per amount rule, so a check is a constant
+ * number of CAS operations and memory per agent is bounded.
+ * Agents that have been idle longer than the idle timeout are evicted lazily
+ * while checks are being made; no background thread is used.
+ */
+@Slf4j
+public class VelocityEngine {
+
+    /**
+     * Number of time slices each rule window is divided into.
+     */
+    static final int BUCKETS_PER_WINDOW = 10;
+
+    private final VelocityRule[] rules;
+    private final Clock clock;
+    private final long idleTimeoutMillis;
+    private final ConcurrentHashMap<String, AgentWindows> agents = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, long[]> limitsByCurrency = new ConcurrentHashMap<>();
+    private final long[] countLimits;
+    private final AtomicLong lastSweepMillis;
+
+    /**
+     * Creates an engine that evicts agents after ten minutes of inactivity.
+     *
+     * @param rules The rules to enforce, checked in order
+     */
+    public VelocityEngine(List<VelocityRule> rules) {
+        this(rules, Duration.ofMinutes(10), Clock.systemUTC());
+    }
+
+    /**
+     * Creates an engine.
+     *
+     * @param rules The rules to enforce, checked in order
+     * @param idleTimeout How long an agent may be idle before its counters are dropped;
+     *                    raised to the longest rule window if shorter
+     * @param clock The clock used to place payments into time slices
+     */
+    public VelocityEngine(List<VelocityRule> rules, Duration idleTimeout, Clock clock) {
+        this.rules = rules.toArray(new VelocityRule[0]);
+        this.clock = clock;
+        long longestWindow = 0;
+        for (VelocityRule rule : this.rules) {
+            longestWindow = Math.max(longestWindow, rule.getWindow().toMillis());
+        }
+        this.idleTimeoutMillis = Math.max(idleTimeout.toMillis(), longestWindow);
+        this.countLimits = limits(0);
+        this.lastSweepMillis = new AtomicLong(clock.millis());
+    }
+
+    /**
+     * Records a payment attempt for an agent and checks it against every rule.
+     * If any rule would be exceeded the attempt is not counted. Amounts are summed
+     * per currency, in that currency's minor units.
+     *
+     * @param agentId The ID of the requesting agent; attempts without one are not tracked
+     * @param amount The payment amount, or null to count the payment only
+     * @param currencyCode The ISO 4217 code of the amount, or null to count the payment only
+     * @return The first rule that tripped, or null if the payment is within all limits
+     * @throws IllegalArgumentException if the currency code is not a known ISO 4217 code
+     */
+    public VelocityRule tryAcquire(String agentId, BigDecimal amount, String currencyCode) {
+        if (agentId == null || rules.length == 0) {
+            return null;
+        }
+        boolean countsAmount = amount != null && currencyCode != null;
+        long[] limits = countsAmount
+                ? limitsByCurrency.computeIfAbsent(currencyCode, code -> limits(fractionDigits(code)))
+                : countLimits;
+        long now = clock.millis();
+        sweepIfDue(now);
+
+        AgentWindows windows = agents.computeIfAbsent(agentId, id -> new AgentWindows(rules));
+        windows.lastSeenMillis = now;
+        SlidingWindowCounter[] counters = countsAmount ? windows.forCurrency(currencyCode, rules) : windows.counters;
+        long minorUnits = countsAmount ? toMinorUnits(amount, fractionDigits(currencyCode)) : 0;
+
+        long[] slices = new long[rules.length];
+        for (int i = 0; i < rules.length; i++) {
+            if (counters[i] != null) {
+                slices[i] = counters[i].add(now, delta(rules[i], minorUnits));
+            }
+        }
+        for (int i = 0; i < rules.length; i++) {
+            if (counters[i] != null && counters[i].sum(now) > limits[i]) {
+                for (int j = 0; j < rules.length; j++) {
+                    if (counters[j] != null) {
+                        counters[j].remove(slices[j], delta(rules[j], minorUnits));
+                    }
+                }
+                log.warn("Velocity rule {} tripped for agent {}", rules[i].getName(), agentId);
+                return rules[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Drops the counters of every agent idle for longer than the idle timeout.
+     *
+     * @return The number of agents evicted
+     */
+    public int evictIdle() {
+        long now = clock.millis();
+        lastSweepMillis.set(now);
+        int evicted = 0;
+        for (Map.Entry<String, AgentWindows> entry : agents.entrySet()) {
+            if (now - entry.getValue().lastSeenMillis > idleTimeoutMillis
+                    && agents.remove(entry.getKey(), entry.getValue())) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Gets the number of agents currently being tracked.
+     *
+     * @return The tracked agent count
+     */
+    public int getTrackedAgentCount() {
+        return agents.size();
+    }
+
+    private void sweepIfDue(long now) {
+        long last = lastSweepMillis.get();
+        if (now - last > idleTimeoutMillis && lastSweepMillis.compareAndSet(last, now)) {
+            evictIdle();
+        }
+    }
+
+    private static long delta(VelocityRule rule, long minorUnits) {
+        return rule.getType() == VelocityRule.Type.COUNT ? 1 : minorUnits;
+    }
+
+    private long[] limits(int fractionDigits) {
+        long[] limits = new long[rules.length];
+        for (int i = 0; i < rules.length; i++) {
+            limits[i] = rules[i].limitFor(fractionDigits);
+        }
+        return limits;
+    }
+
+    /**
+     * Gets the number of minor-unit digits of a currency, treating currencies
+     * without minor units (such as gold) as having none.
+     *
+     * @param currencyCode The ISO 4217 currency code
+     * @return The number of fraction digits
+     */
+    static int fractionDigits(String currencyCode) {
+        return Math.max(0, Currency.getInstance(currencyCode).getDefaultFractionDigits());
+    }
+
+    /**
+     * Converts an amount into the minor units of its currency for counting.
+     *
+     * @param amount The amount
+     * @param fractionDigits The number of minor-unit digits of the currency
+     * @return The amount in minor units
+     */
+    static long toMinorUnits(BigDecimal amount, int fractionDigits) {
+        return amount.movePointRight(fractionDigits).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+
+    /**
+     * Counters for a single agent. Count rules share one counter across currencies;
+     * amount rules get a separate counter for each currency.
+     */
+    private static class AgentWindows {
+        /**
+         * The count rule counters, with null in the slots of amount rules.
+         */
+        private final SlidingWindowCounter[] counters;
+        private final ConcurrentHashMap<String, SlidingWindowCounter[]> byCurrency = new ConcurrentHashMap<>();
+        private volatile long lastSeenMillis;
+
+        AgentWindows(VelocityRule[] rules) {
+            counters = new SlidingWindowCounter[rules.length];
+            for (int i = 0; i < rules.length; i++) {
+                if (rules[i].getType() == VelocityRule.Type.COUNT) {
+                    counters[i] = newCounter(rules[i]);
+                }
+            }
+        }
+
+        SlidingWindowCounter[] forCurrency(String currencyCode, VelocityRule[] rules) {
+            return byCurrency.computeIfAbsent(currencyCode, code -> {
+                SlidingWindowCounter[] combined = counters.clone();
+                for (int i = 0; i < rules.length; i++) {
+                    if (combined[i] == null) {
+                        combined[i] = newCounter(rules[i]);
+                    }
+                }
+                return combined;
+            });
+        }
+
+        private static SlidingWindowCounter newCounter(VelocityRule rule) {
+            return new SlidingWindowCounter(rule.getWindow().toMillis(), BUCKETS_PER_WINDOW);
+        }
+    }
+}
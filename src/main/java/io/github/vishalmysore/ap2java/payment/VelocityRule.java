@@ -0,0 +1,98 @@
+package io.github.vishalmysore.ap2java.payment;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+/**
+ * A velocity limit applied per requesting agent, such as
+ * "no more than 10 payments per minute" or "no more than 500.00 per minute".
+ * Amount limits are applied separately for each currency an agent pays in.
+ */
+@Getter
+@ToString
+public class VelocityRule {
+
+    /**
+     * The kind of quantity a rule limits.
+     */
+    public enum Type {
+        /**
+         * Limits the number of payments in the window.
+         */
+        COUNT,
+
+        /**
+         * Limits the summed payment amount in the window.
+         */
+        AMOUNT
+    }
+
+    private final String name;
+    private final Type type;
+    private final Duration window;
+
+    /**
+     * The maximum number of payments for a COUNT rule; zero for an AMOUNT rule.
+     */
+    private final long limit;
+
+    /**
+     * The maximum total amount per currency for an AMOUNT rule; null for a COUNT rule.
+     */
+    private final BigDecimal maxAmount;
+
+    private VelocityRule(String name, Type type, Duration window, long limit, BigDecimal maxAmount) {
+        if (name == null || window == null) {
+            throw new IllegalArgumentException("Rule name and window are required");
+        }
+        if (window.toMillis() <= 0 || limit < 0 || (maxAmount != null && maxAmount.signum() < 0)) {
+            throw new IllegalArgumentException("Window must be positive and limit non-negative");
+        }
+        this.name = name;
+        this.type = type;
+        this.window = window;
+        this.limit = limit;
+        this.maxAmount = maxAmount;
+    }
+
+    /**
+     * Creates a rule limiting the number of payments within a window.
+     *
+     * @param name The name reported when the rule trips
+     * @param maxPayments The maximum number of payments allowed in the window
+     * @param window The length of the sliding window
+     * @return The rule
+     */
+    public static VelocityRule maxPayments(String name, long maxPayments, Duration window) {
+        return new VelocityRule(name, Type.COUNT, window, maxPayments, null);
+    }
+
+    /**
+     * Creates a rule limiting the summed payment amount within a window.
+     * Payments in different currencies are summed separately, each against the same limit.
+     *
+     * @param name The name reported when the rule trips
+     * @param maxAmount The maximum total amount allowed in the window, in major units
+     * @param window The length of the sliding window
+     * @return The rule
+     */
+    public static VelocityRule maxAmount(String name, BigDecimal maxAmount, Duration window) {
+        if (maxAmount == null) {
+            throw new IllegalArgumentException("Maximum amount is required");
+        }
+        return new VelocityRule(name, Type.AMOUNT, window, 0, maxAmount);
+    }
+
+    /**
+     * Gets the limit of this rule in the units its window counts.
+     *
+     * @param fractionDigits The minor-unit digits of the payment currency; ignored for COUNT rules
+     * @return The payment count limit, or the amount limit in minor units
+     */
+    long limitFor(int fractionDigits) {
+        return type == Type.COUNT ? limit : VelocityEngine.toMinorUnits(maxAmount, fractionDigits);
+    }
+}
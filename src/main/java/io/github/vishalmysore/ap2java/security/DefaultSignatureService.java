@@ -0,0 +1,323 @@
+package io.github.vishalmysore.ap2java.security;
+
+import io.github.vishalmysore.ap2java.credentials.CredentialProof;
+import io.github.vishalmysore.ap2java.credentials.CredentialSubject;
+import io.github.vishalmysore.ap2java.credentials.VerifiableCredential;
+import io.github.vishalmysore.ap2java.util.CanonicalJson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Signature service using Ed25519 keys held in memory.
+ *
+ * A proof's verification method names the public key that verifies it. Keys generated by
+ * this service are registered under their key ID, and keys of other parties can be added
+ * with {@link #registerPublicKey(String, PublicKey)}.
+ *
+ * {@link #verifyCredentials(List)} groups a batch by verification method and splits each
+ * group into chunks that are verified in parallel. Every chunk initializes one
+ * {@link Signature} with the group's public key and reuses it for all its credentials.
+ */
+public class DefaultSignatureService implements SignatureService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DefaultSignatureService.class);
+
+    public static final String ALGORITHM = "Ed25519";
+    public static final String PROOF_TYPE = "Ed25519Signature2020";
+    public static final String DEFAULT_PROOF_PURPOSE = "assertionMethod";
+
+    /** Batches smaller than this are verified on the calling thread. */
+    static final int MIN_CHUNK_SIZE = 256;
+
+    private final Map<String, KeyPair> keyPairs = new ConcurrentHashMap<>();
+    private final Map<String, PublicKey> publicKeys = new ConcurrentHashMap<>();
+    private final ExecutorService verificationPool;
+    private final int parallelism;
+
+    public DefaultSignatureService() {
+        this(null, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a service that verifies batches on the given pool.
+     *
+     * @param verificationPool The pool for batch verification, or null for a shared pool
+     *                         sized to the available processors. The caller owns the pool.
+     * @param parallelism The number of threads the pool can run verifications on
+     */
+    public DefaultSignatureService(ExecutorService verificationPool, int parallelism) {
+        this.verificationPool = verificationPool;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    @Override
+    public VerifiableCredential signCredential(VerifiableCredential credential, String keyId) {
+        KeyPair keyPair = keyPairs.get(keyId);
+        if (keyPair == null) {
+            throw new IllegalArgumentException("Unknown signing key: " + keyId);
+        }
+
+        // Keep an unsigned proof prepared with createProof, otherwise sign with a new one
+        CredentialProof proof = credential.getProof();
+        if (proof == null || proof.getSignature() != null) {
+            proof = createProof(keyId, keyId, DEFAULT_PROOF_PURPOSE);
+        }
+        credential.setProof(proof);
+
+        try {
+            Signature signer = Signature.getInstance(ALGORITHM);
+            signer.initSign(keyPair.getPrivate());
+            signer.update(signingInput(credential));
+            String signature = Base64.getUrlEncoder().withoutPadding().encodeToString(signer.sign());
+            credential.setProof(new CredentialProof(proof.getType(), proof.getCreated(),
+                    proof.getVerificationMethod(), proof.getProofPurpose(), signature));
+            return credential;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to sign credential: " + credential.getId(), e);
+        }
+    }
+
+    @Override
+    public boolean verifyCredential(VerifiableCredential credential) {
+        PublicKey publicKey = publicKeyFor(credential);
+        if (publicKey == null) {
+            return false;
+        }
+        try {
+            Signature verifier = Signature.getInstance(ALGORITHM);
+            verifier.initVerify(publicKey);
+            return verify(verifier, publicKey, credential);
+        } catch (GeneralSecurityException e) {
+            logger.error("Failed to verify credential: {}", credential.getId(), e);
+            return false;
+        }
+    }
+
+    @Override
+    public BitSet verifyCredentials(List<? extends VerifiableCredential> credentials) {
+        // Group by key, leaving credentials without a known key unset
+        Map<PublicKey, List<Integer>> groups = new HashMap<>();
+        for (int i = 0; i < credentials.size(); i++) {
+            PublicKey publicKey = publicKeyFor(credentials.get(i));
+            if (publicKey != null) {
+                groups.computeIfAbsent(publicKey, key -> new ArrayList<>()).add(i);
+            }
+        }
+
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, (credentials.size() + parallelism * 4 - 1) / (parallelism * 4));
+        List<Chunk> chunks = new ArrayList<>();
+        for (Map.Entry<PublicKey, List<Integer>> group : groups.entrySet()) {
+            List<Integer> indexes = group.getValue();
+            for (int from = 0; from < indexes.size(); from += chunkSize) {
+                chunks.add(new Chunk(group.getKey(), indexes.subList(from, Math.min(from + chunkSize, indexes.size()))));
+            }
+        }
+
+        BitSet results = new BitSet(credentials.size());
+        if (chunks.size() <= 1 || parallelism == 1) {
+            for (Chunk chunk : chunks) {
+                results.or(verifyChunk(chunk, credentials));
+            }
+            return results;
+        }
+
+        List<CompletableFuture<BitSet>> pending = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks) {
+            pending.add(CompletableFuture.supplyAsync(() -> verifyChunk(chunk, credentials), pool()));
+        }
+        for (CompletableFuture<BitSet> chunkResults : pending) {
+            results.or(chunkResults.join());
+        }
+        return results;
+    }
+
+    @Override
+    public KeyPair generateKeyPair(String keyId) {
+        try {
+            KeyPair keyPair = KeyPairGenerator.getInstance(ALGORITHM).generateKeyPair();
+            keyPairs.put(keyId, keyPair);
+            publicKeys.put(keyId, keyPair.getPublic());
+            return keyPair;
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java 15+ platform supports Ed25519
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates an unsigned proof; {@link #signCredential} fills in the signature.
+     * If the verification method differs from the key ID, it is registered as another
+     * name for the key's public key.
+     */
+    @Override
+    public CredentialProof createProof(String keyId, String method, String purpose) {
+        KeyPair keyPair = keyPairs.get(keyId);
+        if (keyPair == null) {
+            throw new IllegalArgumentException("Unknown signing key: " + keyId);
+        }
+        String verificationMethod = method != null ? method : keyId;
+        publicKeys.put(verificationMethod, keyPair.getPublic());
+        return new CredentialProof(PROOF_TYPE, Instant.now(), verificationMethod,
+                purpose != null ? purpose : DEFAULT_PROOF_PURPOSE, null);
+    }
+
+    /**
+     * Registers the public key that verifies proofs with the given verification method.
+     *
+     * @param verificationMethod The verification method, e.g. "did:example:123#key-1"
+     * @param publicKey The Ed25519 public key
+     */
+    public void registerPublicKey(String verificationMethod, PublicKey publicKey) {
+        publicKeys.put(verificationMethod, publicKey);
+    }
+
+    private PublicKey publicKeyFor(VerifiableCredential credential) {
+        if (credential == null || credential.getProof() == null
+                || credential.getProof().getVerificationMethod() == null
+                || credential.getProof().getSignature() == null) {
+            return null;
+        }
+        return publicKeys.get(credential.getProof().getVerificationMethod());
+    }
+
+    private BitSet verifyChunk(Chunk chunk, List<? extends VerifiableCredential> credentials) {
+        BitSet results = new BitSet();
+        try {
+            Signature verifier = Signature.getInstance(ALGORITHM);
+            verifier.initVerify(chunk.publicKey);
+            for (int index : chunk.indexes) {
+                if (verify(verifier, chunk.publicKey, credentials.get(index))) {
+                    results.set(index);
+                }
+            }
+        } catch (GeneralSecurityException e) {
+            logger.error("Failed to verify credentials for key: {}", chunk.publicKey, e);
+        }
+        return results;
+    }
+
+    /**
+     * Verifies one credential with an initialized verifier, which is left ready for the next.
+     */
+    private boolean verify(Signature verifier, PublicKey publicKey, VerifiableCredential credential)
+            throws InvalidKeyException {
+        byte[] signature;
+        try {
+            signature = Base64.getUrlDecoder().decode(credential.getProof().getSignature());
+        } catch (IllegalArgumentException e) {
+            logger.debug("Malformed signature on credential: {}", credential.getId());
+            return false;
+        }
+        try {
+            verifier.update(signingInput(credential));
+            return verifier.verify(signature);
+        } catch (SignatureException e) {
+            logger.debug("Invalid signature on credential: {}", credential.getId());
+            verifier.initVerify(publicKey);
+            return false;
+        }
+    }
+
+    /**
+     * Builds the bytes that are signed: every credential field and every proof field except
+     * the signature, each prefixed by its length so that adjacent values cannot run together.
+     * Claim values are written as canonical JSON, so their JSON type is signed and nested
+     * objects sign the same whatever order their map iterates in.
+     */
+    static byte[] signingInput(VerifiableCredential credential) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        write(out, credential.getId());
+        write(out, credential.getIssuer());
+        write(out, credential.getType());
+        write(out, credential.getIssuanceDate());
+        CredentialSubject subject = credential.getSubject();
+        if (subject != null) {
+            write(out, subject.getId());
+            Map<String, Object> claims = new TreeMap<>(subject.getClaims());
+            write(out, claims.size());
+            for (Map.Entry<String, Object> claim : claims.entrySet()) {
+                write(out, claim.getKey());
+                writeBytes(out, CanonicalJson.serializeValue(claim.getValue()));
+            }
+        } else {
+            write(out, null);
+        }
+        CredentialProof proof = credential.getProof();
+        write(out, proof.getType());
+        write(out, proof.getCreated());
+        write(out, proof.getVerificationMethod());
+        write(out, proof.getProofPurpose());
+        return out.toByteArray();
+    }
+
+    private static void write(ByteArrayOutputStream out, Object value) {
+        if (value == null) {
+            out.write(0);
+            return;
+        }
+        writeBytes(out, value.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeBytes(ByteArrayOutputStream out, byte[] bytes) {
+        out.write(1);
+        out.write(bytes.length >>> 24);
+        out.write(bytes.length >>> 16);
+        out.write(bytes.length >>> 8);
+        out.write(bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private ExecutorService pool() {
+        return verificationPool != null ? verificationPool : SharedPool.INSTANCE;
+    }
+
+    /**
+     * Credentials of one batch that share a public key.
+     */
+    private static class Chunk {
+        private final PublicKey publicKey;
+        private final List<Integer> indexes;
+
+        Chunk(PublicKey publicKey, List<Integer> indexes) {
+            this.publicKey = publicKey;
+            this.indexes = indexes;
+        }
+    }
+
+    /**
+     * Verification pool shared by services that were not given one, created on first use.
+     */
+    private static class SharedPool {
+        private static final AtomicInteger THREADS = new AtomicInteger();
+        private static final ExecutorService INSTANCE = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(), runnable -> {
+                    Thread thread = new Thread(runnable, "signature-verifier-" + THREADS.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+}
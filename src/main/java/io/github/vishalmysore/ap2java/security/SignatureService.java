@@ -4,6 +4,8 @@ import io.github.vishalmysore.ap2java.credentials.VerifiableCredential;
 import io.github.vishalmysore.ap2java.credentials.CredentialProof;
 
 import java.security.KeyPair;
+import java.util.BitSet;
+import java.util.List;
 
 /**
  * Service for handling cryptographic signatures and verification
@@ -28,6 +30,23 @@ public interface SignatureService {
      */
     boolean verifyCredential(VerifiableCredential credential);
     
+    /**
+     * Verifies the signatures on a batch of credentials.
+     * The default implementation verifies the credentials one at a time.
+     * 
+     * @param credentials The credentials to verify
+     * @return A bitmap with bit i set if the signature on credential i is valid
+     */
+    default BitSet verifyCredentials(List<? extends VerifiableCredential> credentials) {
+        BitSet results = new BitSet(credentials.size());
+        for (int i = 0; i < credentials.size(); i++) {
+            if (verifyCredential(credentials.get(i))) {
+                results.set(i);
+            }
+        }
+        return results;
+    }
+    
     /**
      * Generates a new key pair for signing and verification.
      * 
@@ -0,0 +1,613 @@
+package io.github.vishalmysore.ap2java.server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeType;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.vishalmysore.a2a.domain.Task;
+import io.github.vishalmysore.ap2java.client.AP2Client;
+import io.github.vishalmysore.ap2java.client.TaskEventStream;
+import io.github.vishalmysore.ap2java.client.TaskStatusEvent;
+import io.github.vishalmysore.ap2java.domain.EnhancedMessage;
+import io.github.vishalmysore.ap2java.domain.EnhancedTask;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embeddable HTTP endpoint that serves an {@link AP2Client} over JSON-RPC 2.0.
+ * <p>
+ * Routes:
+ * <ul>
+ *   <li>{@code POST /} - a JSON-RPC request or batch, answered once the tasks complete</li>
+ *   <li>{@code GET /.well-known/agent.json} - the agent card, served from bytes serialized
+ *       once, gzipped on request and answered with 304 when the client's ETag matches</li>
+ *   <li>{@code GET /tasks/{taskId}/events} - task status events as server-sent events,
+ *       when the agent card advertises streaming</li>
+ * </ul>
+ * Every call is given its own message and task ID by the server; the JSON-RPC {@code id}
+ * is only echoed back. The task ID is returned as {@code taskId} in the result, or in the
+ * error data of a failed call.
+ * Request bodies are parsed straight from the input stream. Handler threads never wait
+ * for a payment processor: the response is written by a pool thread once the task
+ * completes, so a small pool serves many concurrent calls. Every response has a known
+ * length or is chunked, so connections are kept alive between requests.
+ * <p>
+ * Event streams do not hold a thread either: events are pushed from the subscription's
+ * callback to a fixed pool that writes whatever is buffered and returns. The number of
+ * open streams is capped; further subscribers are answered with 503.
+ */
+@Slf4j
+public class AP2HttpServer implements Closeable {
+
+    /**
+     * Path of the agent card, as fetched by agent discovery.
+     */
+    public static final String AGENT_CARD_PATH = "/.well-known/agent.json";
+
+    /**
+     * How long agents may cache the agent card before revalidating it.
+     */
+    public static final int AGENT_CARD_MAX_AGE_SECONDS = 300;
+
+    private static final String TASKS_PATH = "/tasks/";
+    private static final String EVENTS_SUFFIX = "/events";
+    private static final String JSON_CONTENT_TYPE = "application/json";
+
+    private static final int PARSE_ERROR = -32700;
+    private static final int INVALID_REQUEST = -32600;
+    private static final int METHOD_NOT_FOUND = -32601;
+    private static final int INVALID_PARAMS = -32602;
+    private static final int SERVER_ERROR = -32000;
+
+    /**
+     * Default maximum number of open event streams.
+     */
+    public static final int DEFAULT_MAX_STREAMS = 10_000;
+
+    private static final long KEEP_ALIVE_MILLIS = 15_000;
+    private static final int STREAM_RETRY_AFTER_SECONDS = 5;
+    private static final byte[] KEEP_ALIVE_FRAME = ": keep-alive\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new SimpleModule().addSerializer(Instant.class, ToStringSerializer.instance));
+
+    private final AP2Client client;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService streamExecutor;
+    private final Duration responseTimeout;
+    private final int maxStreams;
+    private final AtomicInteger openStreams = new AtomicInteger();
+    private final Set<EventStream> streams = ConcurrentHashMap.newKeySet();
+    private volatile AgentCardResponse agentCardResponse;
+
+    /**
+     * Creates a server on the given port of all interfaces.
+     *
+     * @param client The client that processes the calls.
+     * @param port   The port, or 0 for any free port.
+     */
+    public AP2HttpServer(AP2Client client, int port) {
+        this(client, new InetSocketAddress(port), Runtime.getRuntime().availableProcessors() * 2,
+                Duration.ofSeconds(30));
+    }
+
+    /**
+     * Creates a server.
+     *
+     * @param client          The client that processes the calls.
+     * @param address         The address to bind to.
+     * @param threads         The number of threads that parse requests and write responses.
+     * @param responseTimeout How long a call may run before it is answered with an error.
+     *                        The task keeps running and can still be followed through its events.
+     */
+    public AP2HttpServer(AP2Client client, InetSocketAddress address, int threads, Duration responseTimeout) {
+        this(client, address, threads, responseTimeout, DEFAULT_MAX_STREAMS);
+    }
+
+    /**
+     * Creates a server.
+     *
+     * @param client          The client that processes the calls.
+     * @param address         The address to bind to.
+     * @param threads         The number of threads that parse requests and write responses,
+     *                        and the number that write event streams.
+     * @param responseTimeout How long a call may run before it is answered with an error.
+     *                        The task keeps running and can still be followed through its events.
+     * @param maxStreams      The maximum number of open event streams.
+     */
+    public AP2HttpServer(AP2Client client, InetSocketAddress address, int threads, Duration responseTimeout,
+                         int maxStreams) {
+        if (maxStreams < 1) {
+            throw new IllegalArgumentException("maxStreams must be positive");
+        }
+        this.client = client;
+        this.responseTimeout = responseTimeout;
+        this.maxStreams = maxStreams;
+        refreshAgentCard();
+        this.executor = Executors.newFixedThreadPool(threads, namedThreads("ap2-http"));
+        this.streamExecutor = Executors.newScheduledThreadPool(threads, namedThreads("ap2-http-stream"));
+        try {
+            this.server = HttpServer.create(address, 1024);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to bind AP2 server to " + address, e);
+        }
+        server.setExecutor(executor);
+        server.createContext("/", this::handleRpc);
+        server.createContext(AGENT_CARD_PATH, this::handleAgentCard);
+        server.createContext(TASKS_PATH, this::handleTaskEvents);
+    }
+
+    /**
+     * Starts accepting connections.
+     */
+    public void start() {
+        server.start();
+        log.info("AP2 server listening on port {}", getPort());
+    }
+
+    /**
+     * Serializes the agent card again. The card is serialized once and served from the
+     * cached bytes, so call this after modifying the client's agent card.
+     */
+    public void refreshAgentCard() {
+        agentCardResponse = AgentCardResponse.of(client.getAgentCard(), MAPPER.writer());
+    }
+
+    /**
+     * Gets the number of open event streams.
+     *
+     * @return The open stream count.
+     */
+    public int getOpenStreamCount() {
+        return openStreams.get();
+    }
+
+    /**
+     * Gets the port the server is bound to.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server, closing open event streams.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        for (EventStream stream : streams) {
+            stream.close();
+        }
+        streamExecutor.shutdownNow();
+        executor.shutdown();
+    }
+
+    private void handleRpc(HttpExchange exchange) throws IOException {
+        if (!"/".equals(exchange.getRequestURI().getPath())) {
+            sendStatus(exchange, 404);
+            return;
+        }
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", "POST");
+            sendStatus(exchange, 405);
+            return;
+        }
+
+        JsonNode body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = MAPPER.readTree(in);
+        } catch (JsonProcessingException e) {
+            sendJson(exchange, error(null, PARSE_ERROR, "Parse error", null));
+            return;
+        }
+
+        if (body != null && body.isArray()) {
+            handleBatch(exchange, (ArrayNode) body);
+            return;
+        }
+
+        Call call = toCall(body);
+        if (call.response != null) {
+            sendJson(exchange, call.response);
+            return;
+        }
+        EnhancedTask task = (EnhancedTask) client.processMessage(call.message);
+        if (call.isNotification()) {
+            // Notifications are not answered, so there is nothing to wait for
+            sendStatus(exchange, 204);
+            return;
+        }
+        respondWhenDone(task).whenCompleteAsync(
+                (completed, ex) -> sendJsonQuietly(exchange, toResponse(call.id, task, ex)), executor);
+    }
+
+    private void handleBatch(HttpExchange exchange, ArrayNode batch) throws IOException {
+        if (batch.isEmpty()) {
+            sendJson(exchange, error(null, INVALID_REQUEST, "Invalid Request", null));
+            return;
+        }
+
+        List<Call> calls = new ArrayList<>(batch.size());
+        List<Call> dispatched = new ArrayList<>(batch.size());
+        List<EnhancedMessage> messages = new ArrayList<>(batch.size());
+        for (JsonNode node : batch) {
+            Call call = toCall(node);
+            calls.add(call);
+            if (call.response == null) {
+                dispatched.add(call);
+                messages.add(call.message);
+            }
+        }
+
+        List<Task> tasks = client.processMessages(messages);
+        CompletableFuture<?>[] done = new CompletableFuture<?>[tasks.size()];
+        for (int i = 0; i < tasks.size(); i++) {
+            EnhancedTask task = (EnhancedTask) tasks.get(i);
+            dispatched.get(i).task = task;
+            done[i] = respondWhenDone(task).exceptionally(ex -> null);
+        }
+
+        CompletableFuture.allOf(done).whenCompleteAsync((ignored, ex) -> {
+            ArrayNode responses = MAPPER.createArrayNode();
+            for (Call call : calls) {
+                if (call.response != null) {
+                    responses.add(call.response);
+                } else if (!call.isNotification()) {
+                    Throwable failure = call.task.isCompleted() ? null : new TimeoutException();
+                    responses.add(toResponse(call.id, call.task, failure));
+                }
+            }
+            if (responses.isEmpty()) {
+                sendStatusQuietly(exchange, 204);
+            } else {
+                sendJsonQuietly(exchange, responses);
+            }
+        }, executor);
+    }
+
+    private void handleAgentCard(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+            sendStatus(exchange, 405);
+            return;
+        }
+
+        AgentCardResponse card = agentCardResponse;
+        boolean gzip = acceptsGzip(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+        exchange.getResponseHeaders().set("ETag", gzip ? card.getGzipEtag() : card.getEtag());
+        exchange.getResponseHeaders().set("Cache-Control", "max-age=" + AGENT_CARD_MAX_AGE_SECONDS);
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        if (card.matches(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            sendStatus(exchange, 304);
+            return;
+        }
+
+        byte[] body = card.getBody();
+        if (gzip) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            body = card.getGzipBody();
+        }
+        exchange.getResponseHeaders().set("Content-Type", JSON_CONTENT_TYPE);
+        boolean head = "HEAD".equals(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(200, head ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (!head) {
+                out.write(body);
+            }
+        }
+    }
+
+    private void handleTaskEvents(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (!"GET".equals(exchange.getRequestMethod()) || !path.endsWith(EVENTS_SUFFIX)
+                || path.length() <= TASKS_PATH.length() + EVENTS_SUFFIX.length()) {
+            sendStatus(exchange, 404);
+            return;
+        }
+        if (!client.isStreamingEnabled()) {
+            sendStatus(exchange, 501);
+            return;
+        }
+
+        if (openStreams.incrementAndGet() > maxStreams) {
+            openStreams.decrementAndGet();
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(STREAM_RETRY_AFTER_SECONDS));
+            sendStatus(exchange, 503);
+            return;
+        }
+
+        String taskId = path.substring(TASKS_PATH.length(), path.length() - EVENTS_SUFFIX.length());
+        EventStream stream = new EventStream(exchange, client.subscribe(taskId));
+        streams.add(stream);
+        try {
+            stream.open();
+        } catch (IOException | RuntimeException e) {
+            stream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Validates a JSON-RPC request and converts it to a message.
+     *
+     * @param node The request.
+     * @return The call, holding either a message to dispatch or an error response.
+     */
+    private Call toCall(JsonNode node) {
+        Call call = new Call();
+        if (node == null || !node.isObject()) {
+            call.response = error(null, INVALID_REQUEST, "Invalid Request", null);
+            return call;
+        }
+        call.id = node.get("id");
+        JsonNode method = node.get("method");
+        JsonNode params = node.get("params");
+        if (!"2.0".equals(node.path("jsonrpc").asText()) || method == null || !method.isTextual()
+                || (call.id != null && !call.id.isTextual() && !call.id.isNumber() && !call.id.isNull())) {
+            call.response = error(call.id, INVALID_REQUEST, "Invalid Request", null);
+            return call;
+        }
+        if (client.getMethodRegistry().get(method.asText()) == null) {
+            call.response = error(call.id, METHOD_NOT_FOUND, "Method not found: " + method.asText(), null);
+            return call;
+        }
+        if (params != null && params.getNodeType() != JsonNodeType.OBJECT) {
+            call.response = error(call.id, INVALID_PARAMS, "Params must be an object", null);
+            return call;
+        }
+
+        EnhancedMessage message = new EnhancedMessage();
+        // The JSON-RPC id is chosen by the client and only unique per connection, so it is
+        // echoed in the response but never used to identify the message or its task
+        message.setId(UUID.randomUUID().toString());
+        message.setMethod(method.asText());
+        message.setParams(params != null ? MAPPER.convertValue(params, Map.class) : null);
+        call.message = message;
+        return call;
+    }
+
+    private CompletableFuture<EnhancedTask> respondWhenDone(EnhancedTask task) {
+        return task.getCompletion().orTimeout(responseTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private JsonNode toResponse(JsonNode id, EnhancedTask task, Throwable failure) {
+        if (failure != null) {
+            ObjectNode data = MAPPER.createObjectNode().put("taskId", task.getId());
+            return error(id, SERVER_ERROR,
+                    "Task did not complete within " + responseTimeout.toMillis() + " ms", data);
+        }
+        if (task.getError() != null) {
+            ObjectNode data = MAPPER.createObjectNode().put("taskId", task.getId());
+            if (task.getErrorCode() != null) {
+                data.put("errorCode", task.getErrorCode());
+            }
+            if (task.getErrorData() != null) {
+                data.set("errorData", MAPPER.valueToTree(task.getErrorData()));
+            }
+            return error(id, SERVER_ERROR, task.getError(), data);
+        }
+        JsonNode result = MAPPER.valueToTree(task.getResult());
+        if (result.isObject()) {
+            ((ObjectNode) result).put("taskId", task.getId());
+        }
+        ObjectNode response = MAPPER.createObjectNode().put("jsonrpc", "2.0");
+        response.set("id", id);
+        response.set("result", result);
+        return response;
+    }
+
+    private static ObjectNode error(JsonNode id, int code, String message, JsonNode data) {
+        ObjectNode error = MAPPER.createObjectNode()
+                .put("code", code)
+                .put("message", message);
+        if (data != null) {
+            error.set("data", data);
+        }
+        ObjectNode response = MAPPER.createObjectNode().put("jsonrpc", "2.0");
+        response.set("id", id != null ? id : MAPPER.nullNode());
+        response.set("error", error);
+        return response;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static void sendJson(HttpExchange exchange, JsonNode body) throws IOException {
+        byte[] bytes = MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", JSON_CONTENT_TYPE);
+        boolean head = "HEAD".equals(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(200, head ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (!head) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private static void sendStatus(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+        exchange.close();
+    }
+
+    private static void sendJsonQuietly(HttpExchange exchange, JsonNode body) {
+        try {
+            sendJson(exchange, body);
+        } catch (IOException e) {
+            log.debug("Failed to write response: {}", e.getMessage());
+            exchange.close();
+        }
+    }
+
+    private static void sendStatusQuietly(HttpExchange exchange, int status) {
+        try {
+            sendStatus(exchange, status);
+        } catch (IOException e) {
+            log.debug("Failed to write response: {}", e.getMessage());
+            exchange.close();
+        }
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * An open event stream. The subscription signals it when events arrive and a timer
+     * signals it when a keep-alive is due; each signal schedules one drain on the stream
+     * pool unless a drain is already pending, so drains of a stream never overlap.
+     */
+    private class EventStream implements Runnable {
+        private final HttpExchange exchange;
+        private final TaskEventStream.Subscription subscription;
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean keepAliveDue;
+        private OutputStream out;
+        private ScheduledFuture<?> keepAlive;
+
+        EventStream(HttpExchange exchange, TaskEventStream.Subscription subscription) {
+            this.exchange = exchange;
+            this.subscription = subscription;
+        }
+
+        void open() throws IOException {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            out = exchange.getResponseBody();
+            keepAlive = streamExecutor.scheduleWithFixedDelay(() -> {
+                keepAliveDue = true;
+                signal();
+            }, KEEP_ALIVE_MILLIS, KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS);
+            subscription.onEvent(this::signal);
+        }
+
+        void signal() {
+            if (pending.getAndIncrement() == 0) {
+                try {
+                    streamExecutor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // The server is closing
+                    close();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                drain();
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            if (closed.get()) {
+                return;
+            }
+            try {
+                boolean written = false;
+                for (TaskStatusEvent event = subscription.poll(); event != null; event = subscription.poll()) {
+                    out.write(event.toSseFrame());
+                    written = true;
+                }
+                if (subscription.isFinished()) {
+                    close();
+                    return;
+                }
+                if (keepAliveDue) {
+                    keepAliveDue = false;
+                    if (!written) {
+                        out.write(KEEP_ALIVE_FRAME);
+                        written = true;
+                    }
+                }
+                if (written) {
+                    out.flush();
+                }
+            } catch (IOException e) {
+                log.debug("Event stream closed by client: {}", e.getMessage());
+                close();
+            }
+        }
+
+        void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            if (keepAlive != null) {
+                keepAlive.cancel(false);
+            }
+            subscription.close();
+            // Ends the chunked body, flushing what was written
+            exchange.close();
+            streams.remove(this);
+            openStreams.decrementAndGet();
+        }
+    }
+
+    /**
+     * A call in a request, either dispatched as a message or already answered.
+     */
+    private static class Call {
+        private JsonNode id;
+        private EnhancedMessage message;
+        private JsonNode response;
+        private EnhancedTask task;
+
+        private boolean isNotification() {
+            return id == null;
+        }
+    }
+}
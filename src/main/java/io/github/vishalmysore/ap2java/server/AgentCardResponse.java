@@ -0,0 +1,111 @@
+package io.github.vishalmysore.ap2java.server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.github.vishalmysore.a2a.domain.AgentCard;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An agent card serialized once, ready to be written to any number of responses.
+ * <p>
+ * Holds the UTF-8 JSON, a gzip variant and a strong ETag for each, derived from the
+ * SHA-256 of the JSON. The gzip ETag carries a {@code -gzip} suffix because a strong
+ * validator must differ between byte-different representations. The card is a mutable object graph, so a snapshot does not follow later
+ * changes; take a new one after modifying the card.
+ */
+final class AgentCardResponse {
+
+    private final byte[] body;
+    private final byte[] gzipBody;
+    private final String etag;
+    private final String gzipEtag;
+
+    private AgentCardResponse(byte[] body, byte[] gzipBody, String etag) {
+        this.body = body;
+        this.gzipBody = gzipBody;
+        this.etag = etag;
+        this.gzipEtag = etag.substring(0, etag.length() - 1) + "-gzip\"";
+    }
+
+    /**
+     * Serializes an agent card.
+     *
+     * @param card   The agent card.
+     * @param writer The writer to serialize it with.
+     * @return The serialized card.
+     */
+    static AgentCardResponse of(AgentCard card, ObjectWriter writer) {
+        try {
+            byte[] body = writer.writeValueAsBytes(card);
+            return new AgentCardResponse(body, gzip(body), strongEtag(body));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize agent card", e);
+        }
+    }
+
+    byte[] getBody() {
+        return body;
+    }
+
+    byte[] getGzipBody() {
+        return gzipBody;
+    }
+
+    String getEtag() {
+        return etag;
+    }
+
+    String getGzipEtag() {
+        return gzipEtag;
+    }
+
+    /**
+     * Checks whether an If-None-Match header names this version of the card in either
+     * encoding. As the header requires, weak validators compare equal to the strong ETags.
+     *
+     * @param ifNoneMatch The header value, or null.
+     * @return true if the client already has this version.
+     */
+    boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag) || tag.equals(gzipEtag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String strongEtag(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package io.github.vishalmysore.ap2java.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe Bloom filter over strings.
+ * <p>
+ * Answers "definitely not added" or "probably added" using a fixed bit array, a few bits
+ * per element whatever the length of the strings. The filter is sized for an expected
+ * number of insertions and a target false positive rate; adding more elements than
+ * expected raises the false positive rate. Bits are set with compare-and-set, so
+ * concurrent adds and lookups need no locking.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * Creates a Bloom filter.
+     *
+     * @param expectedInsertions The number of elements the filter is sized for.
+     * @param falsePositiveRate  The false positive rate at that size, between 0 and 1.
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expectedInsertions must be positive");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (bits + 63) / 64);
+        this.words = new AtomicLongArray(words);
+        this.bitCount = (long) words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * Adds an element.
+     *
+     * @param value The element.
+     * @return true if the filter changed, so the element was definitely not added before.
+     */
+    public boolean put(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+        boolean changed = false;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word = words.get(index);
+            while ((word & mask) == 0) {
+                if (words.compareAndSet(index, word, word | mask)) {
+                    changed = true;
+                    break;
+                }
+                word = words.get(index);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Checks whether an element might have been added.
+     *
+     * @param value The element.
+     * @return false if the element was definitely not added, true if it probably was.
+     */
+    public boolean mightContain(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes every element.
+     */
+    public void clear() {
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, 0);
+        }
+    }
+
+    /**
+     * Gets the size of the bit array.
+     *
+     * @return The number of bits.
+     */
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    /**
+     * Gets the number of bits set per element.
+     *
+     * @return The number of hash functions.
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-8 bytes, finished with a mixer so that similar strings,
+     * such as sequential IDs, spread over the whole bit array.
+     */
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
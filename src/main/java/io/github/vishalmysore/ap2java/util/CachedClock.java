@@ -0,0 +1,137 @@
+package io.github.vishalmysore.ap2java.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A clock that reads its source once per tick and hands out the cached instant in between.
+ * <p>
+ * A background daemon thread refreshes the cached value, so {@link #instant()} and
+ * {@link #millis()} are a single volatile read and never allocate. The price is precision:
+ * the time returned may lag the source by up to one tick. Use it on hot paths such as
+ * expiry checks and payment transitions, where a millisecond does not matter; inject a
+ * {@link ManualClock} in tests instead.
+ */
+public final class CachedClock extends Clock implements AutoCloseable {
+
+    private final Clock source;
+    private final ScheduledExecutorService ticker;
+    private volatile Instant now;
+
+    /**
+     * Creates a clock that caches the time of a source clock.
+     *
+     * @param source The clock to read once per tick
+     * @param tick   How often to refresh the cached time
+     */
+    public CachedClock(Clock source, Duration tick) {
+        if (tick.isNegative() || tick.isZero()) {
+            throw new IllegalArgumentException("tick must be positive");
+        }
+        this.source = source;
+        this.now = source.instant();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cached-clock");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long nanos = tick.toNanos();
+        ticker.scheduleAtFixedRate(this::tick, nanos, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the shared clock that caches {@link Clock#systemUTC()} and ticks every millisecond.
+     * Its thread is started on first use and cannot be stopped.
+     *
+     * @return The shared cached UTC clock
+     */
+    public static CachedClock systemUTC() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * Refreshes the cached time from the source.
+     */
+    void tick() {
+        now = source.instant();
+    }
+
+    @Override
+    public Instant instant() {
+        return now;
+    }
+
+    @Override
+    public long millis() {
+        return now.toEpochMilli();
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return source.getZone();
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return zone.equals(getZone()) ? this : new ZonedView(this, zone);
+    }
+
+    /**
+     * Stops refreshing the cached time. The clock keeps returning the last cached value.
+     *
+     * @throws IllegalStateException if this is the shared clock
+     */
+    @Override
+    public void close() {
+        if (this == Shared.INSTANCE) {
+            throw new IllegalStateException("The shared clock cannot be closed");
+        }
+        ticker.shutdownNow();
+    }
+
+    /**
+     * The same cached time seen in another zone.
+     */
+    private static final class ZonedView extends Clock {
+
+        private final CachedClock clock;
+        private final ZoneId zone;
+
+        ZonedView(CachedClock clock, ZoneId zone) {
+            this.clock = clock;
+            this.zone = zone;
+        }
+
+        @Override
+        public Instant instant() {
+            return clock.instant();
+        }
+
+        @Override
+        public long millis() {
+            return clock.millis();
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return zone;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return clock.withZone(zone);
+        }
+    }
+
+    /**
+     * Holds the shared clock, so that its thread starts only when it is first used.
+     */
+    private static class Shared {
+        private static final CachedClock INSTANCE = new CachedClock(Clock.systemUTC(), Duration.ofMillis(1));
+    }
+}
@@ -0,0 +1,194 @@
+package io.github.vishalmysore.ap2java.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes values as canonical JSON in the style of the JSON Canonicalization Scheme
+ * (RFC 8785): no whitespace, object members sorted by their UTF-16 code units, minimal
+ * string escaping and ECMAScript number formatting, so that equal content always gives
+ * the same bytes.
+ * <p>
+ * {@link #serialize(Map)} writes amounts ({@link BigDecimal}) as strings with trailing
+ * zeros removed, so that they keep their exact value and 10.50 and 10.5 serialize alike.
+ * {@link #serializeValue(Object)} writes them as numbers instead, so that a number reads
+ * the same whatever Java type it was parsed into. Instants are written as ISO-8601
+ * strings. Other values are written as the string of their {@code toString()}.
+ */
+public final class CanonicalJson {
+
+    private CanonicalJson() {
+    }
+
+    /**
+     * Serializes an object.
+     *
+     * @param members The members of the object, in any order
+     * @return The canonical UTF-8 bytes
+     */
+    public static byte[] serialize(Map<String, ?> members) {
+        StringBuilder out = new StringBuilder(256);
+        write(out, members, true);
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Serializes any value, writing every number as a JSON number. The JSON type of the value
+     * is part of the output, so 100 and "100" differ, while numbers of equal value, such as
+     * an Integer 100, a Double 100.0 and a BigDecimal 100.00, serialize alike.
+     *
+     * @param value The value, which may be null
+     * @return The canonical UTF-8 bytes
+     */
+    public static byte[] serializeValue(Object value) {
+        StringBuilder out = new StringBuilder(64);
+        write(out, value, false);
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void write(StringBuilder out, Object value, boolean amountsAsStrings) {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof Boolean) {
+            out.append(value);
+        } else if (value instanceof BigDecimal && amountsAsStrings) {
+            writeString(out, ((BigDecimal) value).stripTrailingZeros().toPlainString());
+        } else if (value instanceof BigDecimal) {
+            out.append(formatNumber((BigDecimal) value));
+        } else if (value instanceof Double || value instanceof Float) {
+            out.append(formatNumber(((Number) value).doubleValue()));
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte || value instanceof BigInteger) {
+            out.append(amountsAsStrings ? value.toString() : formatNumber(new BigDecimal(value.toString())));
+        } else if (value instanceof Map) {
+            writeObject(out, (Map<?, ?>) value, amountsAsStrings);
+        } else if (value instanceof Collection) {
+            out.append('[');
+            boolean first = true;
+            for (Object element : (Collection<?>) value) {
+                if (!first) {
+                    out.append(',');
+                }
+                write(out, element, amountsAsStrings);
+                first = false;
+            }
+            out.append(']');
+        } else {
+            writeString(out, value.toString());
+        }
+    }
+
+    private static void writeObject(StringBuilder out, Map<?, ?> members, boolean amountsAsStrings) {
+        // String.compareTo orders by UTF-16 code units, as the scheme requires
+        Map<String, Object> sorted = new TreeMap<>();
+        for (Map.Entry<?, ?> member : members.entrySet()) {
+            sorted.put(String.valueOf(member.getKey()), member.getValue());
+        }
+        out.append('{');
+        boolean first = true;
+        for (Map.Entry<String, Object> member : sorted.entrySet()) {
+            if (!first) {
+                out.append(',');
+            }
+            writeString(out, member.getKey());
+            out.append(':');
+            write(out, member.getValue(), amountsAsStrings);
+            first = false;
+        }
+        out.append('}');
+    }
+
+    private static void writeString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\b':
+                    out.append("\\b");
+                    break;
+                case '\f':
+                    out.append("\\f");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Formats a number as ECMAScript's Number.prototype.toString does.
+     *
+     * @param value The number
+     * @return The shortest JSON form of the number
+     * @throws IllegalArgumentException if the number is NaN or infinite
+     */
+    public static String formatNumber(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("JSON cannot represent " + value);
+        }
+        return formatNumber(new BigDecimal(Double.toString(value)));
+    }
+
+    /**
+     * Formats an exact decimal the way {@link #formatNumber(double)} formats a double, keeping
+     * every digit, so a decimal and a double of the same value give the same text.
+     *
+     * @param value The number
+     * @return The shortest JSON form of the number
+     */
+    public static String formatNumber(BigDecimal value) {
+        if (value.signum() == 0) {
+            return "0";
+        }
+        BigDecimal decimal = value.abs().stripTrailingZeros();
+        String digits = decimal.unscaledValue().toString();
+        int k = digits.length();
+        // The value is 0.digits times ten to the power n
+        int n = k - decimal.scale();
+
+        StringBuilder out = new StringBuilder(24);
+        if (value.signum() < 0) {
+            out.append('-');
+        }
+        if (k <= n && n <= 21) {
+            out.append(digits);
+            out.append("0".repeat(n - k));
+        } else if (0 < n && n <= 21) {
+            out.append(digits, 0, n).append('.').append(digits, n, k);
+        } else if (-6 < n && n <= 0) {
+            out.append("0.").append("0".repeat(-n)).append(digits);
+        } else {
+            int exponent = n - 1;
+            out.append(digits.charAt(0));
+            if (k > 1) {
+                out.append('.').append(digits, 1, k);
+            }
+            out.append('e').append(exponent > 0 ? '+' : '-').append(Math.abs(exponent));
+        }
+        return out.toString();
+    }
+}
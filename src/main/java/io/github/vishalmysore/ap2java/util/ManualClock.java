@@ -0,0 +1,82 @@
+package io.github.vishalmysore.ap2java.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * A clock that only moves when told to, for deterministic tests of time-dependent code.
+ * It is safe to read and advance from different threads. Clocks obtained with
+ * {@link #withZone} share the time of the clock they came from.
+ */
+public class ManualClock extends Clock {
+
+    private final ZoneId zone;
+    private final ManualClock base;
+    private volatile Instant instant;
+
+    /**
+     * Creates a UTC clock stopped at an instant.
+     *
+     * @param instant The initial time
+     */
+    public ManualClock(Instant instant) {
+        this(instant, ZoneOffset.UTC);
+    }
+
+    /**
+     * Creates a clock stopped at an instant.
+     *
+     * @param instant The initial time
+     * @param zone    The time zone of the clock
+     */
+    public ManualClock(Instant instant, ZoneId zone) {
+        this.instant = instant;
+        this.zone = zone;
+        this.base = this;
+    }
+
+    private ManualClock(ManualClock base, ZoneId zone) {
+        this.base = base;
+        this.zone = zone;
+    }
+
+    /**
+     * Moves the clock forward, or backward for a negative duration.
+     *
+     * @param duration How far to move the clock
+     */
+    public void advance(Duration duration) {
+        synchronized (base) {
+            base.instant = base.instant.plus(duration);
+        }
+    }
+
+    /**
+     * Sets the time of the clock.
+     *
+     * @param instant The new time
+     */
+    public void setInstant(Instant instant) {
+        synchronized (base) {
+            base.instant = instant;
+        }
+    }
+
+    @Override
+    public Instant instant() {
+        return base.instant;
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return zone.equals(this.zone) ? this : new ManualClock(base, zone);
+    }
+}
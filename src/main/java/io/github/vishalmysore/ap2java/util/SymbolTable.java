@@ -0,0 +1,59 @@
+package io.github.vishalmysore.ap2java.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread-safe dictionary that assigns each distinct string a small dense integer ID.
+ * <p>
+ * IDs start at 0 and are never reused, so they can index arrays or bit sets. Looking up
+ * a string that was already interned does not allocate; looking up an unknown one returns
+ * {@link #NOT_FOUND} without adding it, so lookups on untrusted input cannot grow the table.
+ */
+public class SymbolTable {
+
+    /**
+     * Returned by {@link #idOf(String)} for strings that were never interned.
+     */
+    public static final int NOT_FOUND = -1;
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * Gets the ID of a string, assigning the next free ID if it is new.
+     *
+     * @param symbol The string.
+     * @return The ID of the string.
+     */
+    public int intern(String symbol) {
+        Integer id = ids.get(symbol);
+        if (id != null) {
+            return id;
+        }
+        return ids.computeIfAbsent(symbol, key -> nextId.getAndIncrement());
+    }
+
+    /**
+     * Gets the ID of a string without adding it.
+     *
+     * @param symbol The string, or null.
+     * @return The ID of the string, or {@link #NOT_FOUND} if it was never interned.
+     */
+    public int idOf(String symbol) {
+        if (symbol == null) {
+            return NOT_FOUND;
+        }
+        Integer id = ids.get(symbol);
+        return id != null ? id : NOT_FOUND;
+    }
+
+    /**
+     * Gets the number of interned strings.
+     *
+     * @return The number of IDs assigned.
+     */
+    public int size() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,293 @@
+package io.github.vishalmysore.ap2java.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel that tracks deadlines for a large number of keys without a
+ * timer per key.
+ * <p>
+ * Time is divided into ticks. Level 0 is a ring of slots one tick wide; each higher level is
+ * a ring of slots as wide as a full turn of the level below. A key is put in the slot of the
+ * lowest level whose range covers its deadline, and when a lower level completes a turn, the
+ * next slot of the level above is emptied and its keys are put into lower levels. So
+ * {@link #schedule} and {@link #cancel} are O(1), and {@link #advance} costs O(1) per tick
+ * plus O(1) per key for each level it passes through.
+ * <p>
+ * {@link #schedule} and {@link #cancel} may be called from any thread and take no locks: they
+ * only queue the change, which is applied to the wheel by the next {@link #advance}. Calls to
+ * {@link #advance} are serialized. A key expires at the first tick after its deadline, so
+ * never early and at most one tick late.
+ *
+ * @param <K> The key type
+ */
+public final class TimingWheel<K> {
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final int levels;
+    // spans[n] is the width of a slot at level n, in ticks
+    private final long[] spans;
+    private final List<List<Bucket<K>>> wheels;
+    private final ConcurrentHashMap<K, Entry<K>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry<K>> additions = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Entry<K>> cancellations = new ConcurrentLinkedQueue<>();
+    private final Object advanceLock = new Object();
+    private long currentTick;
+    private long placed;
+
+    /**
+     * Creates a wheel.
+     *
+     * @param tickMillis The width of a tick in milliseconds
+     * @param wheelSize The number of slots per level
+     * @param levels The number of levels; deadlines further away than {@code wheelSize^levels}
+     *               ticks are held in the top level until they come into range
+     * @param startMillis The current time in epoch milliseconds
+     */
+    public TimingWheel(long tickMillis, int wheelSize, int levels, long startMillis) {
+        if (tickMillis < 1 || wheelSize < 2 || levels < 1) {
+            throw new IllegalArgumentException("tickMillis, wheelSize and levels must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.levels = levels;
+        this.spans = new long[levels + 1];
+        spans[0] = 1;
+        for (int level = 1; level <= levels; level++) {
+            spans[level] = Math.multiplyExact(spans[level - 1], wheelSize);
+        }
+        this.wheels = new ArrayList<>(levels);
+        for (int level = 0; level < levels; level++) {
+            List<Bucket<K>> wheel = new ArrayList<>(wheelSize);
+            for (int slot = 0; slot < wheelSize; slot++) {
+                wheel.add(new Bucket<>());
+            }
+            wheels.add(wheel);
+        }
+        this.currentTick = Math.floorDiv(startMillis, tickMillis);
+    }
+
+    /**
+     * Schedules a key to expire after a deadline, replacing any deadline it already has.
+     *
+     * @param key The key
+     * @param deadlineMillis The deadline in epoch milliseconds
+     * @return true if the key was already scheduled
+     */
+    public boolean schedule(K key, long deadlineMillis) {
+        Entry<K> entry = new Entry<>(key, Math.floorDiv(deadlineMillis, tickMillis) + 1);
+        Entry<K> previous = entries.put(key, entry);
+        if (previous != null && previous.cancel()) {
+            cancellations.add(previous);
+        }
+        additions.add(entry);
+        return previous != null;
+    }
+
+    /**
+     * Cancels the deadline of a key.
+     *
+     * @param key The key
+     * @return true if the key was scheduled and had not expired yet
+     */
+    public boolean cancel(K key) {
+        Entry<K> entry = entries.remove(key);
+        if (entry != null && entry.cancel()) {
+            cancellations.add(entry);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a key is scheduled.
+     *
+     * @param key The key
+     * @return true if the key is scheduled and has not expired yet
+     */
+    public boolean isScheduled(K key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Gets the number of scheduled keys.
+     *
+     * @return The key count
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Moves the wheel forward to a time and expires every key whose deadline has passed.
+     *
+     * @param nowMillis The current time in epoch milliseconds
+     * @param expired Called with each expired key, on the calling thread
+     * @return The number of keys that expired
+     */
+    public int advance(long nowMillis, Consumer<? super K> expired) {
+        List<Entry<K>> due = new ArrayList<>();
+        synchronized (advanceLock) {
+            Entry<K> entry;
+            while ((entry = cancellations.poll()) != null) {
+                if (entry.bucket != null) {
+                    entry.bucket.remove(entry);
+                    placed--;
+                }
+            }
+            while ((entry = additions.poll()) != null) {
+                if (entry.isPending()) {
+                    place(entry, due);
+                }
+            }
+            long targetTick = Math.floorDiv(nowMillis, tickMillis);
+            while (currentTick < targetTick) {
+                if (placed == 0) {
+                    // Nothing left in the wheel, so skip the empty ticks
+                    currentTick = targetTick;
+                    break;
+                }
+                currentTick++;
+                cascade(due);
+                drain(wheels.get(0).get(slot(currentTick, 0)), due);
+            }
+        }
+        int count = 0;
+        for (Entry<K> entry : due) {
+            // Skip keys cancelled or scheduled again since they were placed
+            if (entry.expire() && entries.remove(entry.key, entry)) {
+                expired.accept(entry.key);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Empties the slots of the higher levels that start at the current tick into lower levels,
+     * highest level first.
+     */
+    private void cascade(List<Entry<K>> due) {
+        int top = 0;
+        while (top + 1 < levels && currentTick % spans[top + 1] == 0) {
+            top++;
+        }
+        for (int level = top; level >= 1; level--) {
+            Bucket<K> bucket = wheels.get(level).get(slot(currentTick, level));
+            List<Entry<K>> cascaded = new ArrayList<>();
+            drain(bucket, cascaded);
+            for (Entry<K> entry : cascaded) {
+                place(entry, due);
+            }
+        }
+    }
+
+    private void place(Entry<K> entry, List<Entry<K>> due) {
+        long delta = entry.tick - currentTick;
+        if (delta <= 0) {
+            due.add(entry);
+            return;
+        }
+        int level = 0;
+        while (level + 1 < levels && delta >= spans[level + 1]) {
+            level++;
+        }
+        // Beyond the range of the top level: park it in the furthest slot and place it again later
+        long tick = Math.min(entry.tick, currentTick + spans[levels] - 1);
+        wheels.get(level).get(slot(tick, level)).add(entry);
+        placed++;
+    }
+
+    private void drain(Bucket<K> bucket, List<Entry<K>> into) {
+        Entry<K> entry;
+        while ((entry = bucket.poll()) != null) {
+            placed--;
+            into.add(entry);
+        }
+    }
+
+    private int slot(long tick, int level) {
+        return (int) ((tick / spans[level]) % wheelSize);
+    }
+
+    /**
+     * A scheduled key, linked into at most one bucket.
+     */
+    private static final class Entry<K> {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Entry> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Entry.class, "state");
+
+        private final K key;
+        private final long tick;
+        private volatile int state;
+        // Only touched under the advance lock
+        private Bucket<K> bucket;
+        private Entry<K> prev;
+        private Entry<K> next;
+
+        Entry(K key, long tick) {
+            this.key = key;
+            this.tick = tick;
+        }
+
+        boolean isPending() {
+            return state == PENDING;
+        }
+
+        boolean cancel() {
+            return STATE.compareAndSet(this, PENDING, CANCELLED);
+        }
+
+        boolean expire() {
+            return STATE.compareAndSet(this, PENDING, EXPIRED);
+        }
+    }
+
+    /**
+     * A doubly linked list of entries, so that an entry can be unlinked in O(1).
+     */
+    private static final class Bucket<K> {
+
+        private final Entry<K> head = new Entry<>(null, 0);
+
+        Bucket() {
+            head.prev = head;
+            head.next = head;
+        }
+
+        void add(Entry<K> entry) {
+            entry.bucket = this;
+            entry.prev = head.prev;
+            entry.next = head;
+            head.prev.next = entry;
+            head.prev = entry;
+        }
+
+        void remove(Entry<K> entry) {
+            entry.prev.next = entry.next;
+            entry.next.prev = entry.prev;
+            entry.prev = null;
+            entry.next = null;
+            entry.bucket = null;
+        }
+
+        Entry<K> poll() {
+            Entry<K> first = head.next;
+            if (first == head) {
+                return null;
+            }
+            remove(first);
+            return first;
+        }
+    }
+}
@@ -3,18 +3,31 @@ package io.github.vishalmysore.ap2java.client;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 import io.github.vishalmysore.a2a.domain.AgentCard;
 import io.github.vishalmysore.a2a.domain.Message;
 import io.github.vishalmysore.a2a.domain.Task;
+import io.github.vishalmysore.a2a.domain.TextPart;
+import io.github.vishalmysore.ap2java.domain.EnhancedCapabilities;
 import io.github.vishalmysore.ap2java.domain.EnhancedMessage;
 import io.github.vishalmysore.ap2java.domain.EnhancedTask;
 import io.github.vishalmysore.ap2java.domain.PaymentEnabledAgentCard;
@@ -76,6 +89,11 @@ public class AP2ClientMessageTest {
         
         assertNotNull(task);
         assertEquals("msg-123", task.getId());
+        
+        ArgumentCaptor<PaymentRequest> captor = ArgumentCaptor.forClass(PaymentRequest.class);
+        verify(mockPaymentProcessor).createPayment(captor.capture());
+        assertEquals(0, new BigDecimal("100.0").compareTo(captor.getValue().getAmount()));
+        assertEquals("USD", captor.getValue().getCurrencyCode());
     }
     
     @Test
@@ -93,6 +111,7 @@ public class AP2ClientMessageTest {
         
         assertNotNull(task);
         assertEquals("msg-456", task.getId());
+        verify(mockPaymentProcessor).authorizePayment("payment-123", "auth-123");
     }
     
     @Test
@@ -109,6 +128,7 @@ public class AP2ClientMessageTest {
         
         assertNotNull(task);
         assertEquals("msg-789", task.getId());
+        verify(mockPaymentProcessor).capturePayment("payment-123");
     }
     
     @Test
@@ -166,4 +186,263 @@ public class AP2ClientMessageTest {
         assertNotNull(task);
         assertEquals("msg-104", task.getId());
     }
-}
\ No newline at end of file
+    
+    @Test
+    void testProcessMessageRateLimited() {
+        AP2Client limitedClient = new AP2Client(mockPaymentProcessor, mockAgentCard,
+                new TokenBucketRateLimiter(new TokenBucketRateLimiter.Limit(1, 1), 100));
+        
+        Map<String, Object> params = new HashMap<>();
+        params.put("paymentId", "payment-123");
+        params.put("requestingAgentId", "agent-1");
+        
+        EnhancedMessage first = new EnhancedMessage();
+        first.setId("msg-201");
+        first.setMethod("checkPaymentStatus");
+        first.setParams(params);
+        EnhancedMessage second = new EnhancedMessage();
+        second.setId("msg-202");
+        second.setMethod("checkPaymentStatus");
+        second.setParams(params);
+        
+        EnhancedTask firstTask = (EnhancedTask) limitedClient.processMessage(first);
+        EnhancedTask secondTask = (EnhancedTask) limitedClient.processMessage(second);
+        
+        assertNull(firstTask.getErrorCode());
+        assertTrue(secondTask.isCompleted());
+        assertEquals("RATE_LIMITED", secondTask.getErrorCode());
+        assertEquals("agent-1", secondTask.getErrorData().get("requestingAgentId"));
+        assertEquals("checkPaymentStatus", secondTask.getErrorData().get("method"));
+        assertTrue((Long) secondTask.getErrorData().get("retryAfterMillis") > 0);
+    }
+    
+    @Test
+    void testProcessMessageCustomMethod() {
+        PaymentResponse refunded = PaymentResponse.builder()
+                .paymentId("payment-123")
+                .status(PaymentStatus.REFUNDED)
+                .build();
+        ap2Client.registerMethod(MethodHandler.of("refundPayment",
+                message -> (String) message.getParams().get("paymentId"),
+                paymentId -> CompletableFuture.completedFuture(refunded)));
+        
+        EnhancedMessage message = new EnhancedMessage();
+        message.setId("msg-301");
+        message.setMethod("refundPayment");
+        Map<String, Object> params = new HashMap<>();
+        params.put("paymentId", "payment-123");
+        message.setParams(params);
+        
+        EnhancedTask task = (EnhancedTask) ap2Client.processMessage(message);
+        
+        assertTrue(ap2Client.getMethodRegistry().getMethods().contains("refundPayment"));
+        assertTrue(task.isCompleted());
+        assertSame(refunded, task.getResult());
+    }
+    
+    @Test
+    void testProcessMessageBindingFailure() {
+        ap2Client.registerMethod(MethodHandler.of("failingMethod",
+                message -> {
+                    throw new IllegalArgumentException("missing paymentId");
+                },
+                params -> CompletableFuture.completedFuture(null)));
+        
+        EnhancedMessage message = new EnhancedMessage();
+        message.setId("msg-302");
+        message.setMethod("failingMethod");
+        
+        EnhancedTask task = (EnhancedTask) ap2Client.processMessage(message);
+        
+        assertTrue(task.isCompleted());
+        assertTrue(task.getError().contains("missing paymentId"));
+    }
+    
+    @Test
+    void testProcessMessagesOrdersCallsOnSamePayment() {
+        CompletableFuture<PaymentResponse> authorization = new CompletableFuture<>();
+        when(mockPaymentProcessor.authorizePayment("payment-1", "auth-1")).thenReturn(authorization);
+        
+        List<Task> tasks = ap2Client.processMessages(Arrays.asList(
+                paymentMessage("msg-401", "authorizePayment", "payment-1"),
+                paymentMessage("msg-402", "capturePayment", "payment-1"),
+                paymentMessage("msg-403", "checkPaymentStatus", "payment-2")));
+        
+        assertEquals(3, tasks.size());
+        assertEquals("msg-401", tasks.get(0).getId());
+        assertEquals("msg-402", tasks.get(1).getId());
+        assertEquals("msg-403", tasks.get(2).getId());
+        
+        // The independent call has run, the capture waits for the authorization
+        assertTrue(((EnhancedTask) tasks.get(2)).isCompleted());
+        verify(mockPaymentProcessor, never()).capturePayment("payment-1");
+        
+        authorization.complete(PaymentResponse.builder().paymentId("payment-1").status(PaymentStatus.AUTHORIZED).build());
+        
+        verify(mockPaymentProcessor).capturePayment("payment-1");
+        assertTrue(((EnhancedTask) tasks.get(0)).isCompleted());
+        assertTrue(((EnhancedTask) tasks.get(1)).isCompleted());
+    }
+    
+    @Test
+    void testProcessMessagesOrdersCallsWithTextPartParams() {
+        CompletableFuture<PaymentResponse> authorization = new CompletableFuture<>();
+        when(mockPaymentProcessor.authorizePayment("payment-1", "auth-1")).thenReturn(authorization);
+        TextPart part = new TextPart();
+        part.setText("{\"paymentId\": \"payment-1\"}");
+        EnhancedMessage capture = new EnhancedMessage();
+        capture.setId("msg-452");
+        capture.setMethod("capturePayment");
+        capture.setParts(Collections.singletonList(part));
+        
+        List<Task> tasks = ap2Client.processMessages(Arrays.asList(
+                paymentMessage("msg-451", "authorizePayment", "payment-1"), capture));
+        
+        verify(mockPaymentProcessor, never()).capturePayment("payment-1");
+        authorization.complete(PaymentResponse.builder().paymentId("payment-1").status(PaymentStatus.AUTHORIZED).build());
+        verify(mockPaymentProcessor).capturePayment("payment-1");
+        assertTrue(((EnhancedTask) tasks.get(1)).isCompleted());
+    }
+    
+    @Test
+    void testProcessMessagesIsolatesErrors() {
+        when(mockPaymentProcessor.cancelPayment("payment-1")).thenThrow(new IllegalStateException("processor down"));
+        
+        List<Task> tasks = ap2Client.processMessages(Arrays.asList(
+                paymentMessage("msg-501", "cancelPayment", "payment-1"),
+                paymentMessage("msg-502", "unsupportedMethod", "payment-2"),
+                paymentMessage("msg-503", "checkPaymentStatus", "payment-3")));
+        
+        EnhancedTask failed = (EnhancedTask) tasks.get(0);
+        EnhancedTask unsupported = (EnhancedTask) tasks.get(1);
+        EnhancedTask succeeded = (EnhancedTask) tasks.get(2);
+        assertTrue(failed.getError().contains("processor down"));
+        assertTrue(unsupported.getError().contains("Unsupported method"));
+        assertNull(succeeded.getError());
+        assertNotNull(succeeded.getResult());
+    }
+    
+    private EnhancedMessage paymentMessage(String id, String method, String paymentId) {
+        EnhancedMessage message = new EnhancedMessage();
+        message.setId(id);
+        message.setMethod(method);
+        Map<String, Object> params = new HashMap<>();
+        params.put("paymentId", paymentId);
+        params.put("authToken", "auth-1");
+        message.setParams(params);
+        return message;
+    }
+    
+    @Test
+    void testProcessMessageRegistersTask() {
+        AP2Client trackingClient = new AP2Client(mockPaymentProcessor, mockAgentCard, null,
+                new TaskRegistry(100, Duration.ofMinutes(5)));
+        
+        Task task = trackingClient.processMessage(paymentMessage("msg-601", "checkPaymentStatus", "payment-1"));
+        
+        assertSame(task, trackingClient.getTask("msg-601"));
+        assertNull(ap2Client.getTask("msg-601"));
+    }
+    
+    @Test
+    void testStreamingTaskEvents() throws InterruptedException {
+        PaymentEnabledAgentCard streamingCard = new PaymentEnabledAgentCard();
+        EnhancedCapabilities capabilities = new EnhancedCapabilities();
+        capabilities.setStreaming(true);
+        streamingCard.setCapabilities(capabilities);
+        AP2Client streamingClient = new AP2Client(mockPaymentProcessor, streamingCard);
+        assertTrue(streamingClient.isStreamingEnabled());
+        assertFalse(ap2Client.isStreamingEnabled());
+        assertThrows(IllegalStateException.class, () -> ap2Client.subscribe("msg-701"));
+        
+        TaskEventStream.Subscription subscription = streamingClient.subscribe("msg-701");
+        streamingClient.processMessage(paymentMessage("msg-701", "checkPaymentStatus", "payment-1"));
+        
+        assertEquals(TaskStatusEvent.State.SUBMITTED, subscription.poll(1, TimeUnit.SECONDS).getState());
+        assertEquals(TaskStatusEvent.State.WORKING, subscription.poll(1, TimeUnit.SECONDS).getState());
+        TaskStatusEvent completed = subscription.poll(1, TimeUnit.SECONDS);
+        assertEquals(TaskStatusEvent.State.COMPLETED, completed.getState());
+        assertEquals("test-payment-123", completed.getPaymentId());
+        assertTrue(subscription.isFinished());
+    }
+    
+    @Test
+    void testDuplicateMessageIsNotProcessedTwice() {
+        MessageDeduplicator deduplicator = new MessageDeduplicator(Duration.ofMinutes(10), 1000, 1000, 0.001);
+        AP2Client trackingClient = new AP2Client(mockPaymentProcessor, mockAgentCard, null,
+                new TaskRegistry(100, Duration.ofMinutes(5)), deduplicator);
+        AP2Client untrackedClient = new AP2Client(mockPaymentProcessor, mockAgentCard, null, null,
+                new MessageDeduplicator(Duration.ofMinutes(10), 1000, 1000, 0.001));
+        
+        Task first = trackingClient.processMessage(paymentMessage("msg-801", "checkPaymentStatus", "payment-1"));
+        Task retried = trackingClient.processMessage(paymentMessage("msg-801", "checkPaymentStatus", "payment-1"));
+        untrackedClient.processMessage(paymentMessage("msg-802", "checkPaymentStatus", "payment-1"));
+        EnhancedTask rejected = (EnhancedTask) untrackedClient.processMessages(
+                List.of(paymentMessage("msg-802", "checkPaymentStatus", "payment-1"))).get(0);
+        
+        assertSame(first, retried);
+        assertEquals("DUPLICATE_MESSAGE", rejected.getErrorCode());
+        verify(mockPaymentProcessor, times(2)).checkPaymentStatus("payment-1");
+    }
+    
+    @Test
+    void testThrottledMessageCanBeRetried() {
+        AtomicLong nanos = new AtomicLong();
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(new TokenBucketRateLimiter.Limit(1, 1),
+                Collections.emptyMap(), 100, 1, nanos::get);
+        AP2Client limitedClient = new AP2Client(mockPaymentProcessor, mockAgentCard, rateLimiter,
+                new TaskRegistry(100, Duration.ofMinutes(5)),
+                new MessageDeduplicator(Duration.ofMinutes(10), 1000, 1000, 0.001));
+        
+        limitedClient.processMessage(paymentMessage("msg-901", "checkPaymentStatus", "payment-1"));
+        EnhancedTask throttled = (EnhancedTask) limitedClient.processMessage(
+                paymentMessage("msg-902", "checkPaymentStatus", "payment-1"));
+        EnhancedTask throttledInBatch = (EnhancedTask) limitedClient.processMessages(
+                List.of(paymentMessage("msg-903", "checkPaymentStatus", "payment-1"))).get(0);
+        assertEquals("RATE_LIMITED", throttled.getErrorCode());
+        assertEquals("RATE_LIMITED", throttledInBatch.getErrorCode());
+        
+        nanos.addAndGet((Long) throttled.getErrorData().get("retryAfterMillis") * 1_000_000L);
+        EnhancedTask retried = (EnhancedTask) limitedClient.processMessage(
+                paymentMessage("msg-902", "checkPaymentStatus", "payment-1"));
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        EnhancedTask retriedInBatch = (EnhancedTask) limitedClient.processMessages(
+                List.of(paymentMessage("msg-903", "checkPaymentStatus", "payment-1"))).get(0);
+        
+        assertNotSame(throttled, retried);
+        assertTrue(retried.isCompleted());
+        assertNull(retried.getErrorCode());
+        assertNull(retriedInBatch.getErrorCode());
+        assertSame(retried, limitedClient.getTask("msg-902"));
+        verify(mockPaymentProcessor, times(3)).checkPaymentStatus("payment-1");
+    }
+    
+    @Test
+    void testThrottledRetryKeepsTheOriginalOutcome() {
+        AtomicLong nanos = new AtomicLong();
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(new TokenBucketRateLimiter.Limit(2, 1),
+                Collections.emptyMap(), 100, 1, nanos::get);
+        AP2Client limitedClient = new AP2Client(mockPaymentProcessor, mockAgentCard, rateLimiter,
+                new TaskRegistry(100, Duration.ofMinutes(5)),
+                new MessageDeduplicator(Duration.ofMinutes(10), 1000, 1000, 0.001));
+        
+        Task first = limitedClient.processMessage(paymentMessage("msg-1001", "checkPaymentStatus", "payment-1"));
+        for (int i = 0; i < 3; i++) {
+            // Retries are answered from the original task without spending tokens
+            assertSame(first, limitedClient.processMessage(
+                    paymentMessage("msg-1001", "checkPaymentStatus", "payment-1")));
+            assertSame(first, limitedClient.processMessages(
+                    List.of(paymentMessage("msg-1001", "checkPaymentStatus", "payment-1"))).get(0));
+        }
+        EnhancedTask second = (EnhancedTask) limitedClient.processMessage(
+                paymentMessage("msg-1002", "checkPaymentStatus", "payment-1"));
+        EnhancedTask throttled = (EnhancedTask) limitedClient.processMessage(
+                paymentMessage("msg-1003", "checkPaymentStatus", "payment-1"));
+        
+        assertNull(second.getErrorCode());
+        assertEquals("RATE_LIMITED", throttled.getErrorCode());
+        assertNull(limitedClient.getTask("msg-1003"));
+        assertSame(first, limitedClient.getTask("msg-1001"));
+        verify(mockPaymentProcessor, times(2)).checkPaymentStatus("payment-1");
+    }
+}
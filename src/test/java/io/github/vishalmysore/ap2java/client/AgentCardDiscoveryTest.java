@@ -0,0 +1,176 @@
+package io.github.vishalmysore.ap2java.client;
+
+import com.sun.net.httpserver.HttpServer;
+import io.github.vishalmysore.ap2java.domain.PaymentEnabledAgentCard;
+import io.github.vishalmysore.ap2java.util.ManualClock;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the AgentCardDiscovery class against a local stand-in for an agent.
+ */
+public class AgentCardDiscoveryTest {
+
+    private HttpServer agent;
+    private String agentUrl;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private final AtomicReference<String> cardJson = new AtomicReference<>(card("Merchant Agent", "USD"));
+    private final AtomicReference<String> cacheControl = new AtomicReference<>();
+    private volatile int failWith;
+
+    private ManualClock clock;
+    private OkHttpClient httpClient;
+    private AgentCardDiscovery discovery;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        agent = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        agent.createContext("/.well-known/agent.json", exchange -> {
+            requests.incrementAndGet();
+            if (failWith != 0) {
+                exchange.sendResponseHeaders(failWith, -1);
+                exchange.close();
+                return;
+            }
+            String body = cardJson.get();
+            String etag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (cacheControl.get() != null) {
+                exchange.getResponseHeaders().set("Cache-Control", cacheControl.get());
+            }
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        agent.start();
+        agentUrl = "http://127.0.0.1:" + agent.getAddress().getPort();
+
+        clock = new ManualClock(Instant.parse("2025-01-01T00:00:00Z"));
+        httpClient = new OkHttpClient();
+        discovery = new AgentCardDiscovery(httpClient, 10, Duration.ofMinutes(10), clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        agent.stop(0);
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    @Test
+    void testCardIsCached() {
+        PaymentEnabledAgentCard card = discovery.getAgentCard(agentUrl).join();
+
+        assertEquals("Merchant Agent", card.getName());
+        assertArrayEquals(new String[]{"USD"}, card.getSupportedCurrencies());
+        assertSame(card, discovery.getAgentCard(agentUrl).join());
+        assertEquals(1, requests.get());
+        assertEquals(1, discovery.getCachedCount());
+    }
+
+    @Test
+    void testExpiredCardIsRevalidated() {
+        PaymentEnabledAgentCard card = discovery.getAgentCard(agentUrl).join();
+
+        clock.advance(Duration.ofMinutes(11));
+        assertSame(card, discovery.getAgentCard(agentUrl).join());
+        assertEquals(2, requests.get());
+        assertEquals(1, notModified.get());
+
+        cardJson.set(card("Merchant Agent", "EUR"));
+        clock.advance(Duration.ofMinutes(11));
+        PaymentEnabledAgentCard changed = discovery.getAgentCard(agentUrl).join();
+        assertArrayEquals(new String[]{"EUR"}, changed.getSupportedCurrencies());
+    }
+
+    @Test
+    void testCardIsRefreshedInBackgroundBeforeExpiry() throws InterruptedException {
+        PaymentEnabledAgentCard card = discovery.getAgentCard(agentUrl).join();
+        cardJson.set(card("Merchant Agent", "GBP"));
+
+        clock.advance(Duration.ofMinutes(9));
+        assertSame(card, discovery.getAgentCard(agentUrl).join());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        PaymentEnabledAgentCard refreshed = card;
+        while (refreshed == card && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            refreshed = discovery.getAgentCard(agentUrl).join();
+        }
+        assertArrayEquals(new String[]{"GBP"}, refreshed.getSupportedCurrencies());
+    }
+
+    @Test
+    void testMaxAgeOverridesDefaultTtl() {
+        cacheControl.set("max-age=60");
+        discovery.getAgentCard(agentUrl).join();
+
+        clock.advance(Duration.ofSeconds(61));
+        discovery.getAgentCard(agentUrl).join();
+
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void testStaleCardServedOnError() {
+        PaymentEnabledAgentCard card = discovery.getAgentCard(agentUrl).join();
+
+        failWith = 503;
+        clock.advance(Duration.ofMinutes(11));
+
+        assertSame(card, discovery.getAgentCard(agentUrl).join());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void testErrorWithoutCachedCard() {
+        failWith = 500;
+
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> discovery.getAgentCard(agentUrl).join());
+        assertInstanceOf(IOException.class, e.getCause());
+        assertEquals(0, discovery.getCachedCount());
+    }
+
+    @Test
+    void testCacheIsBounded() {
+        AgentCardDiscovery small = new AgentCardDiscovery(httpClient, 1, Duration.ofMinutes(10), clock);
+        small.getAgentCard(agentUrl).join();
+        small.getAgentCard(agentUrl.replace("127.0.0.1", "localhost")).join();
+
+        assertEquals(1, small.getCachedCount());
+
+        small.invalidate(agentUrl.replace("127.0.0.1", "localhost"));
+        assertEquals(0, small.getCachedCount());
+    }
+
+    private static String card(String name, String currency) {
+        return "{\"name\":\"" + name + "\",\"url\":\"https://merchant.example\",\"version\":\"1.0.0\","
+                + "\"supportedCurrencies\":[\"" + currency + "\"],\"canReceivePayments\":true}";
+    }
+}
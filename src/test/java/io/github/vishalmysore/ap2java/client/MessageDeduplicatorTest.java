@@ -0,0 +1,96 @@
+package io.github.vishalmysore.ap2java.client;
+
+import io.github.vishalmysore.ap2java.util.ManualClock;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the MessageDeduplicator class.
+ */
+public class MessageDeduplicatorTest {
+
+    private final ManualClock clock =
+            new ManualClock(Instant.parse("2025-01-01T00:00:00Z"));
+
+    @Test
+    void testDuplicateWithinWindow() {
+        MessageDeduplicator deduplicator = new MessageDeduplicator(Duration.ofMinutes(5), 1000, 1000, 0.001, clock);
+
+        assertFalse(deduplicator.isDuplicate("msg-1"));
+        assertFalse(deduplicator.isDuplicate("msg-2"));
+        clock.advance(Duration.ofMinutes(4));
+        assertTrue(deduplicator.isDuplicate("msg-1"));
+        assertEquals(1, deduplicator.getDuplicateCount());
+    }
+
+    @Test
+    void testIdsForgottenAfterWindow() {
+        MessageDeduplicator deduplicator = new MessageDeduplicator(Duration.ofMinutes(5), 1000, 1000, 0.001, clock);
+        deduplicator.isDuplicate("msg-1");
+
+        // Crosses a filter rotation, so the ID is only in the previous filter
+        clock.advance(Duration.ofMinutes(6));
+        assertFalse(deduplicator.isDuplicate("msg-1"));
+        assertEquals(1, deduplicator.getTrackedCount());
+
+        clock.advance(Duration.ofMinutes(11));
+        assertFalse(deduplicator.isDuplicate("msg-1"));
+        assertEquals(1, deduplicator.getTrackedCount());
+    }
+
+    @Test
+    void testExactSetIsBounded() {
+        MessageDeduplicator deduplicator = new MessageDeduplicator(Duration.ofMinutes(5), 10_000, 100, 0.0001, clock);
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(deduplicator.isDuplicate("msg-" + i));
+        }
+
+        assertEquals(100, deduplicator.getTrackedCount());
+        // Confirmed by the exact set
+        assertTrue(deduplicator.isDuplicate("msg-999"));
+        // Dropped from the exact set but still inside the window, so the filters decide
+        assertTrue(deduplicator.isDuplicate("msg-0"));
+        assertFalse(deduplicator.isDuplicate("msg-new"));
+    }
+
+    @Test
+    void testConcurrentDeliveriesProcessedOnce() throws InterruptedException {
+        MessageDeduplicator deduplicator = new MessageDeduplicator(Duration.ofMinutes(5), 10_000, 10_000, 0.001);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        try {
+            for (int t = 0; t < threads; t++) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                        for (int i = 0; i < 1000; i++) {
+                            if (!deduplicator.isDuplicate("msg-" + i)) {
+                                accepted.incrementAndGet();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            start.countDown();
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1000, accepted.get());
+        assertEquals((threads - 1) * 1000, deduplicator.getDuplicateCount());
+    }
+}
@@ -0,0 +1,72 @@
+package io.github.vishalmysore.ap2java.client;
+
+import io.github.vishalmysore.a2a.domain.TextPart;
+import io.github.vishalmysore.ap2java.domain.EnhancedMessage;
+import io.github.vishalmysore.ap2java.domain.PaymentRequest;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the MessageParamBinder class.
+ */
+public class MessageParamBinderTest {
+
+    private final MessageParamBinder<PaymentRequest> binder = MessageParamBinder.forType(PaymentRequest.class);
+
+    @Test
+    void testBindFromParams() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("amount", "99.99");
+        params.put("currency", "USD");
+        params.put("requestingAgentId", "agent-123");
+        params.put("receivingAgentId", "merchant-456");
+        params.put("unknownField", "ignored");
+        EnhancedMessage message = new EnhancedMessage();
+        message.setParams(params);
+
+        PaymentRequest request = binder.apply(message);
+
+        assertEquals(new BigDecimal("99.99"), request.getAmount());
+        assertEquals("USD", request.getCurrencyCode());
+        assertEquals("agent-123", request.getRequestingAgentId());
+        assertEquals("merchant-456", request.getReceivingAgentId());
+    }
+
+    @Test
+    void testBindFromJsonTextPart() {
+        TextPart part = new TextPart();
+        part.setText("{\"amount\": 12.50, \"currencyCode\": \"EUR\", \"metadata\": {\"orderId\": \"o-1\"}}");
+        EnhancedMessage message = new EnhancedMessage();
+        message.setParts(Collections.singletonList(part));
+
+        PaymentRequest request = binder.apply(message);
+
+        assertEquals(new BigDecimal("12.50"), request.getAmount());
+        assertEquals("EUR", request.getCurrencyCode());
+        assertEquals("o-1", request.getMetadata().get("orderId"));
+    }
+
+    @Test
+    void testBindEmptyMessage() {
+        PaymentRequest request = binder.apply(new EnhancedMessage());
+
+        assertNotNull(request);
+        assertNull(request.getAmount());
+    }
+
+    @Test
+    void testBindInvalidParams() {
+        EnhancedMessage message = new EnhancedMessage();
+        message.setId("msg-1");
+        message.setParams(Collections.singletonMap("amount", "not-a-number"));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> binder.apply(message));
+        assertTrue(e.getMessage().contains("msg-1"));
+    }
+}
@@ -0,0 +1,154 @@
+package io.github.vishalmysore.ap2java.client;
+
+import io.github.vishalmysore.ap2java.domain.EnhancedTask;
+import io.github.vishalmysore.ap2java.domain.PaymentResponse;
+import io.github.vishalmysore.ap2java.domain.PaymentStatus;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the TaskEventStream class.
+ */
+public class TaskEventStreamTest {
+
+    @Test
+    void testTaskLifecycleEvents() throws InterruptedException {
+        TaskEventStream stream = new TaskEventStream();
+        EnhancedTask task = task("task-1");
+        TaskEventStream.Subscription subscription = stream.subscribe("task-1");
+
+        stream.publish(task, TaskStatusEvent.State.SUBMITTED);
+        stream.publish(task, TaskStatusEvent.State.WORKING);
+        task.complete(PaymentResponse.builder().paymentId("payment-1").status(PaymentStatus.CREATED).build());
+        stream.publish(task, TaskStatusEvent.State.COMPLETED);
+
+        assertEquals(TaskStatusEvent.State.SUBMITTED, subscription.poll(1, TimeUnit.SECONDS).getState());
+        assertEquals(TaskStatusEvent.State.WORKING, subscription.poll(1, TimeUnit.SECONDS).getState());
+        TaskStatusEvent completed = subscription.poll(1, TimeUnit.SECONDS);
+        assertEquals(TaskStatusEvent.State.COMPLETED, completed.getState());
+        assertEquals("payment-1", completed.getPaymentId());
+        assertEquals(PaymentStatus.CREATED, completed.getPaymentStatus());
+
+        assertTrue(subscription.isFinished());
+        assertNull(subscription.poll(1, TimeUnit.SECONDS));
+        assertEquals(0, stream.getSubscriberCount());
+    }
+
+    @Test
+    void testSlowSubscriberDropsIntermediateEvents() throws InterruptedException {
+        TaskEventStream stream = new TaskEventStream(2);
+        EnhancedTask task = task("task-1");
+        TaskEventStream.Subscription subscription = stream.subscribe("task-1");
+
+        for (int i = 0; i < 5; i++) {
+            stream.publish(task, TaskStatusEvent.State.WORKING);
+        }
+        task.fail("declined");
+        stream.publish(task, TaskStatusEvent.State.FAILED);
+
+        assertEquals(4, subscription.getDroppedCount());
+        assertEquals(TaskStatusEvent.State.WORKING, subscription.poll(1, TimeUnit.SECONDS).getState());
+        TaskStatusEvent failed = subscription.poll(1, TimeUnit.SECONDS);
+        assertEquals(TaskStatusEvent.State.FAILED, failed.getState());
+        assertEquals("declined", failed.getError());
+    }
+
+    @Test
+    void testFanOutSharesFrame() throws InterruptedException {
+        TaskEventStream stream = new TaskEventStream();
+        EnhancedTask task = task("task-1");
+        List<TaskEventStream.Subscription> subscriptions = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            subscriptions.add(stream.subscribe("task-1"));
+        }
+        TaskEventStream.Subscription everything = stream.subscribeAll();
+
+        stream.publish(task, TaskStatusEvent.State.WORKING);
+
+        TaskStatusEvent first = subscriptions.get(0).poll(1, TimeUnit.SECONDS);
+        for (TaskEventStream.Subscription subscription : subscriptions.subList(1, subscriptions.size())) {
+            TaskStatusEvent event = subscription.poll(1, TimeUnit.SECONDS);
+            assertSame(first.toSseFrame(), event.toSseFrame());
+        }
+        assertSame(first, everything.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testSubscribeToCompletedTask() throws InterruptedException {
+        TaskEventStream stream = new TaskEventStream();
+        EnhancedTask task = task("task-1");
+        task.fail("declined");
+
+        TaskEventStream.Subscription subscription = stream.subscribe(task);
+
+        assertEquals(TaskStatusEvent.State.FAILED, subscription.poll(1, TimeUnit.SECONDS).getState());
+        assertTrue(subscription.isFinished());
+    }
+
+    @Test
+    void testSseFrame() {
+        TaskStatusEvent event = new TaskStatusEvent(7, "task-1", TaskStatusEvent.State.COMPLETED,
+                "payment-1", PaymentStatus.COMPLETED, null, 1000L);
+
+        String frame = new String(event.toSseFrame(), StandardCharsets.UTF_8);
+
+        assertTrue(frame.startsWith("id: 7\nevent: task-status\ndata: {"));
+        assertTrue(frame.contains("\"state\":\"COMPLETED\""));
+        assertFalse(frame.contains("\"error\""));
+        assertTrue(frame.endsWith("}\n\n"));
+    }
+
+    @Test
+    void testClosedSubscriptionIsRemoved() {
+        TaskEventStream stream = new TaskEventStream();
+        TaskEventStream.Subscription subscription = stream.subscribe("task-1");
+        assertEquals(1, stream.getSubscriberCount());
+
+        subscription.close();
+
+        assertTrue(subscription.isFinished());
+        assertEquals(0, stream.getSubscriberCount());
+    }
+
+    @Test
+    void testListenerIsSignalledWithoutBlocking() {
+        TaskEventStream stream = new TaskEventStream();
+        EnhancedTask task = task("task-1");
+        TaskEventStream.Subscription subscription = stream.subscribe("task-1");
+        stream.publish(task, TaskStatusEvent.State.SUBMITTED);
+
+        List<TaskStatusEvent> received = new ArrayList<>();
+        int[] signals = new int[1];
+        subscription.onEvent(() -> {
+            signals[0]++;
+            for (TaskStatusEvent event = subscription.poll(); event != null; event = subscription.poll()) {
+                received.add(event);
+            }
+        });
+        // Called at once for the event already buffered
+        assertEquals(1, signals[0]);
+
+        stream.publish(task, TaskStatusEvent.State.WORKING);
+        task.fail("declined");
+        stream.publish(task, TaskStatusEvent.State.FAILED);
+        assertEquals(3, signals[0]);
+        assertEquals(3, received.size());
+        assertTrue(subscription.isFinished());
+        assertNull(subscription.poll());
+
+        subscription.close();
+        assertEquals(4, signals[0]);
+    }
+
+    private EnhancedTask task(String id) {
+        EnhancedTask task = new EnhancedTask();
+        task.setId(id);
+        return task;
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.vishalmysore.ap2java.client;
+
+import io.github.vishalmysore.ap2java.domain.EnhancedTask;
+import io.github.vishalmysore.ap2java.domain.PaymentResponse;
+import io.github.vishalmysore.ap2java.domain.PaymentStatus;
+import io.github.vishalmysore.ap2java.util.ManualClock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the TaskRegistry class.
+ */
+public class TaskRegistryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testTasksExpireAfterTtl() {
+        ManualClock clock = new ManualClock(Instant.parse("2025-01-01T00:00:00Z"));
+        TaskRegistry registry = new TaskRegistry(100, Duration.ofMinutes(1), null, clock);
+        registry.register(task("task-1"));
+
+        assertNotNull(registry.get("task-1"));
+
+        clock.advance(Duration.ofSeconds(61));
+        assertNull(registry.get("task-1"));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void testOldestTasksEvictedWhenFull() {
+        TaskRegistry registry = new TaskRegistry(2, Duration.ofMinutes(1));
+        registry.register(task("task-1"));
+        registry.register(task("task-2"));
+        registry.register(task("task-3"));
+
+        assertEquals(2, registry.size());
+        assertNull(registry.get("task-1"));
+        assertNotNull(registry.get("task-2"));
+        assertNotNull(registry.get("task-3"));
+    }
+
+    @Test
+    void testJournalReplay() throws Exception {
+        Path journal = tempDir.resolve("tasks.journal");
+        try (TaskRegistry registry = new TaskRegistry(100, Duration.ofMinutes(10), journal)) {
+            EnhancedTask completed = task("task-1");
+            EnhancedTask failed = task("task-2");
+            EnhancedTask removed = task("task-3");
+            EnhancedTask running = task("task-4");
+            registry.register(completed);
+            registry.register(failed);
+            registry.register(removed);
+            registry.register(running);
+
+            completed.complete(PaymentResponse.builder()
+                    .paymentId("payment-1")
+                    .status(PaymentStatus.COMPLETED)
+                    .createdAt(Instant.parse("2025-01-01T00:00:00Z"))
+                    .build());
+            failed.fail("RATE_LIMITED", "Rate limit exceeded", Collections.singletonMap("method", "createPayment"));
+            registry.remove("task-3");
+        }
+
+        try (TaskRegistry replayed = new TaskRegistry(100, Duration.ofMinutes(10), journal)) {
+            assertEquals(3, replayed.size());
+
+            EnhancedTask completed = replayed.get("task-1");
+            assertTrue(completed.isCompleted());
+            assertEquals("payment-1", completed.getResult().getPaymentId());
+            assertEquals(Instant.parse("2025-01-01T00:00:00Z"), completed.getResult().getCreatedAt());
+
+            EnhancedTask failed = replayed.get("task-2");
+            assertEquals("RATE_LIMITED", failed.getErrorCode());
+            assertEquals("createPayment", failed.getErrorData().get("method"));
+
+            assertNull(replayed.get("task-3"));
+
+            EnhancedTask interrupted = replayed.get("task-4");
+            assertTrue(interrupted.isCompleted());
+            assertNotNull(interrupted.getError());
+        }
+    }
+
+    @Test
+    void testJournalAppendsChanges() throws Exception {
+        Path journal = tempDir.resolve("tasks.journal");
+        try (TaskRegistry registry = new TaskRegistry(100, Duration.ofMinutes(10), journal)) {
+            registry.register(task("task-1"));
+            long sizeAfterFirst = Files.size(journal);
+            registry.register(task("task-2"));
+
+            // The second task adds one line; nothing already written is rewritten
+            assertTrue(Files.size(journal) > sizeAfterFirst);
+            assertEquals(2, Files.readAllLines(journal).size());
+        }
+    }
+
+    private EnhancedTask task(String id) {
+        EnhancedTask task = new EnhancedTask();
+        task.setId(id);
+        return task;
+    }
+}
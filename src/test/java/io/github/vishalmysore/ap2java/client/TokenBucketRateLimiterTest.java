@@ -0,0 +1,119 @@
+package io.github.vishalmysore.ap2java.client;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the TokenBucketRateLimiter class.
+ */
+public class TokenBucketRateLimiterTest {
+
+    private AtomicLong nanos;
+    private TokenBucketRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        nanos = new AtomicLong();
+        limiter = new TokenBucketRateLimiter(
+                new TokenBucketRateLimiter.Limit(2, 1),
+                Collections.singletonMap("checkPaymentStatus", new TokenBucketRateLimiter.Limit(5, 10)),
+                1000, 4, nanos::get);
+    }
+
+    @Test
+    void testBurstThenThrottle() {
+        assertEquals(0, limiter.tryAcquire("agent-1", "createPayment"));
+        assertEquals(0, limiter.tryAcquire("agent-1", "createPayment"));
+
+        long retryAfter = limiter.tryAcquire("agent-1", "createPayment");
+        assertEquals(1000, retryAfter);
+    }
+
+    @Test
+    void testLazyRefill() {
+        limiter.tryAcquire("agent-1", "createPayment");
+        limiter.tryAcquire("agent-1", "createPayment");
+        assertTrue(limiter.tryAcquire("agent-1", "createPayment") > 0);
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        assertEquals(0, limiter.tryAcquire("agent-1", "createPayment"));
+    }
+
+    @Test
+    void testKeyedByAgentAndMethod() {
+        limiter.tryAcquire("agent-1", "createPayment");
+        limiter.tryAcquire("agent-1", "createPayment");
+
+        assertTrue(limiter.tryAcquire("agent-1", "createPayment") > 0);
+        assertEquals(0, limiter.tryAcquire("agent-2", "createPayment"));
+        assertEquals(0, limiter.tryAcquire("agent-1", "capturePayment"));
+    }
+
+    @Test
+    void testMethodOverride() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("agent-1", "checkPaymentStatus"));
+        }
+        assertEquals(100, limiter.tryAcquire("agent-1", "checkPaymentStatus"));
+    }
+
+    @Test
+    void testTrackingStateIsBounded() {
+        for (int i = 0; i < 10_000; i++) {
+            limiter.tryAcquire("agent-" + i, "createPayment");
+        }
+        assertTrue(limiter.getTrackedKeyCount() <= 1000);
+    }
+
+    /**
+     * Contention benchmark: 100k distinct agents hammering the limiter from several threads.
+     * Runs with {@code -Pbenchmark}.
+     */
+    @Test
+    @Tag("benchmark")
+    void testContentionWithManyAgents() throws Exception {
+        int agents = 100_000;
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        TokenBucketRateLimiter shared = new TokenBucketRateLimiter(
+                new TokenBucketRateLimiter.Limit(10, 10), 50_000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            results.add(executor.submit(() -> {
+                long permitted = 0;
+                for (int i = offset; i < agents; i += threads) {
+                    if (shared.tryAcquire("agent-" + i, "createPayment") == 0) {
+                        permitted++;
+                    }
+                }
+                return permitted;
+            }));
+        }
+        long permitted = 0;
+        for (Future<Long> result : results) {
+            permitted += result.get(30, TimeUnit.SECONDS);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        executor.shutdown();
+
+        System.out.printf("Rate limiter: %d agents on %d threads in %d ms (%.0f ns/op)%n",
+                agents, threads, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), (double) elapsedNanos / agents);
+        assertEquals(agents, permitted);
+        assertTrue(shared.getTrackedKeyCount() <= 50_000);
+    }
+}
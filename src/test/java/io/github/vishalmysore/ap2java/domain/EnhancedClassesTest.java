@@ -5,9 +5,13 @@ import static org.junit.jupiter.api.Assertions.*;
 import io.github.vishalmysore.a2a.domain.Capabilities;
 import org.junit.jupiter.api.Test;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class EnhancedClassesTest {
 
@@ -104,4 +108,42 @@ public class EnhancedClassesTest {
         assertSame(paymentResponse, task.getResult());
         assertEquals(PaymentStatus.COMPLETED, task.getResult().getStatus());
     }
-}
\ No newline at end of file
+    
+    @Test
+    void testEnhancedTaskCompletion() throws InterruptedException {
+        EnhancedTask task = new EnhancedTask();
+        AtomicReference<EnhancedTask> notified = new AtomicReference<>();
+        task.onComplete(notified::set);
+        
+        assertFalse(task.await(10, TimeUnit.MILLISECONDS));
+        assertNull(notified.get());
+        
+        PaymentResponse paymentResponse = PaymentResponse.builder()
+                .paymentId("payment-123")
+                .status(PaymentStatus.CREATED)
+                .build();
+        CompletableFuture.runAsync(() -> task.complete(paymentResponse));
+        
+        assertSame(task, task.await());
+        assertTrue(task.isCompleted());
+        assertSame(paymentResponse, task.getResult());
+        assertSame(task, notified.get());
+        assertFalse(task.fail("too late"));
+        assertNull(task.getError());
+    }
+    
+    @Test
+    void testEnhancedTaskFailure() {
+        EnhancedTask task = new EnhancedTask();
+        CompletableFuture<EnhancedTask> completion = task.getCompletion();
+        
+        task.fail("RATE_LIMITED", "Rate limit exceeded", Collections.singletonMap("retryAfterMillis", 100L));
+        
+        assertTrue(completion.isDone());
+        EnhancedTask completed = completion.join();
+        assertEquals("RATE_LIMITED", completed.getErrorCode());
+        assertEquals("Rate limit exceeded", completed.getError());
+        assertEquals(100L, completed.getErrorData().get("retryAfterMillis"));
+        assertNull(completed.getResult());
+    }
+}
@@ -135,6 +135,15 @@ public class CartMandateTest {
         assertEquals(mockCredential, cartMandate.getCredential());
     }
     
+    @Test
+    void testNewMandateIsValidAtOnce() {
+        for (int i = 0; i < 1000; i++) {
+            CartMandate fresh = new CartMandate("cart-" + i, TEST_REQUESTING_AGENT_ID, TEST_RECEIVING_AGENT_ID,
+                    TEST_PARENT_MANDATE_ID, testItems, TEST_CURRENCY_CODE, Instant.now().plusSeconds(60));
+            assertTrue(fresh.isValid(), "A new cart mandate should be valid with the default clock");
+        }
+    }
+    
     @Test
     void testIsValid() {
         // Ensure created time is set to a point well in the past to ensure validity
@@ -0,0 +1,203 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import io.github.vishalmysore.ap2java.domain.PaymentRequest;
+import io.github.vishalmysore.ap2java.security.SignatureService;
+import io.github.vishalmysore.ap2java.util.ManualClock;
+import io.github.vishalmysore.ap2java.util.SymbolTable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for the verification result cache of DefaultMandateVerifier.
+ */
+public class DefaultMandateVerifierCacheTest {
+
+    private ManualClock clock;
+    private CountingVerifier verifier;
+    private IntentMandate mandate;
+    private PaymentRequest request;
+
+    @BeforeEach
+    void setUp() {
+        clock = new ManualClock(Instant.now());
+        verifier = new CountingVerifier(100, clock, true);
+        mandate = new IntentMandate("intent-123", "agent-456", "merchant-789", new BigDecimal("200.00"), false);
+        request = PaymentRequest.builder()
+                .requestingAgentId("agent-456")
+                .receivingAgentId("merchant-789")
+                .amount(new BigDecimal("150.00"))
+                .currencyCode("USD")
+                .build();
+    }
+
+    @Test
+    void testSignatureCheckedOncePerMandate() {
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(verifier.verifyIntentMandate(mandate, request));
+        }
+
+        assertEquals(1, verifier.signatureChecks.get());
+    }
+
+    @Test
+    void testRequestChecksStillRunOnCacheHit() {
+        assertTrue(verifier.verifyIntentMandate(mandate, request));
+
+        request.setAmount(new BigDecimal("250.00"));
+        assertFalse(verifier.verifyIntentMandate(mandate, request));
+        request.setReceivingAgentId("other-merchant");
+        request.setAmount(new BigDecimal("150.00"));
+        assertFalse(verifier.verifyIntentMandate(mandate, request));
+
+        assertEquals(1, verifier.signatureChecks.get());
+    }
+
+    @Test
+    void testChangedMandateIsVerifiedAgain() {
+        verifier.verifyIntentMandate(mandate, request);
+
+        mandate.setMaxAmountPerPayment(new BigDecimal("500.00"));
+        assertTrue(verifier.verifyIntentMandate(mandate, request));
+        // Same amount with a different scale is the same content
+        mandate.setMaxAmountPerPayment(new BigDecimal("500"));
+        assertTrue(verifier.verifyIntentMandate(mandate, request));
+
+        assertEquals(2, verifier.signatureChecks.get());
+    }
+
+    @Test
+    void testInvalidatedMandateIsVerifiedAgain() {
+        verifier.verifyIntentMandate(mandate, request);
+
+        verifier.invalidateMandate("intent-123");
+        verifier.verifyIntentMandate(mandate, request);
+
+        assertEquals(2, verifier.signatureChecks.get());
+    }
+
+    @Test
+    void testCachedResultNotTrustedPastExpiry() {
+        mandate.setExpiresAt(clock.instant().plus(Duration.ofHours(1)));
+        verifier.verifyIntentMandate(mandate, request);
+
+        clock.advance(Duration.ofMinutes(59));
+        verifier.verifyIntentMandate(mandate, request);
+        assertEquals(1, verifier.signatureChecks.get());
+
+        clock.advance(Duration.ofMinutes(2));
+        verifier.verifyIntentMandate(mandate, request);
+        assertEquals(2, verifier.signatureChecks.get());
+    }
+
+    @Test
+    void testFailedVerificationIsNotCached() {
+        CountingVerifier failing = new CountingVerifier(100, clock, false);
+
+        assertFalse(failing.verifyIntentMandate(mandate, request));
+        assertFalse(failing.verifyIntentMandate(mandate, request));
+
+        assertEquals(2, failing.signatureChecks.get());
+    }
+
+    @Test
+    void testCacheIsBounded() {
+        CountingVerifier small = new CountingVerifier(2, clock, true);
+        for (int i = 0; i < 3; i++) {
+            mandate.setId("intent-" + i);
+            small.verifyIntentMandate(mandate, request);
+        }
+
+        // The third mandate did not fit, so it is verified again
+        small.verifyIntentMandate(mandate, request);
+        mandate.setId("intent-0");
+        small.verifyIntentMandate(mandate, request);
+
+        assertEquals(4, small.signatureChecks.get());
+    }
+
+    @Test
+    void testPolicyCompiledOncePerMandate() {
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(verifier.verifyIntentMandate(mandate, request));
+        }
+        assertEquals(1, verifier.getCachedPolicyCount());
+
+        // A changed limit is compiled into a new policy
+        mandate.setMaxAmountPerPayment(new BigDecimal("100.00"));
+        assertFalse(verifier.verifyIntentMandate(mandate, request));
+        mandate.setMaxAmountPerPayment(new BigDecimal("200.00"));
+        assertTrue(verifier.verifyIntentMandate(mandate, request));
+
+        verifier.invalidateMandate("intent-123");
+        assertEquals(0, verifier.getCachedPolicyCount());
+    }
+
+    @Test
+    void testPolicyIsReusedUntilTheMandateOrCurrencyChanges() {
+        IntentPolicyCache cache = new IntentPolicyCache(2);
+        long now = clock.millis();
+        IntentPolicy usd = cache.get(mandate, mandate.signingDigest(), "USD", now);
+
+        assertSame(usd, cache.get(mandate, mandate.signingDigest(), "USD", now));
+        IntentPolicy jpy = cache.get(mandate, mandate.signingDigest(), "JPY", now);
+        assertNotSame(usd, jpy);
+        assertEquals(0, jpy.getScale());
+        mandate.setReceivingAgentId("other-merchant");
+        assertNotSame(jpy, cache.get(mandate, mandate.signingDigest(), "JPY", now));
+        assertNull(cache.get(mandate, mandate.signingDigest(), "XYZ", now));
+    }
+
+    @Test
+    void testPoliciesDoNotShareSymbolTables() {
+        IntentPolicyCache cache = new IntentPolicyCache(2);
+        IntentPolicy first = cache.get(mandate, mandate.signingDigest(), "USD", clock.millis());
+        IntentMandate other = new IntentMandate("intent-456", "agent-456", "merchant-999",
+                new BigDecimal("200.00"), false);
+        IntentPolicy second = cache.get(other, other.signingDigest(), "USD", clock.millis());
+
+        // Each policy only knows its own merchant, so evicted policies take their symbols along
+        assertEquals(0, first.getMerchants().idOf("merchant-789"));
+        assertEquals(SymbolTable.NOT_FOUND, first.getMerchants().idOf("merchant-999"));
+        assertEquals(0, second.getMerchants().idOf("merchant-999"));
+        assertTrue(second.permits("merchant-999", new BigDecimal("200.00"), null));
+        assertFalse(second.permits("merchant-789", new BigDecimal("200.00"), null));
+    }
+
+    @Test
+    void testUnknownCurrencyIsCheckedAgainstTheMandate() {
+        request.setCurrencyCode("XYZ");
+        assertTrue(verifier.verifyIntentMandate(mandate, request));
+        request.setAmount(new BigDecimal("250.00"));
+        assertFalse(verifier.verifyIntentMandate(mandate, request));
+        assertEquals(0, verifier.getCachedPolicyCount());
+    }
+
+    /**
+     * Counts signature checks instead of calling the signature service, which cannot
+     * verify mandates directly.
+     */
+    private static class CountingVerifier extends DefaultMandateVerifier {
+        private final AtomicInteger signatureChecks = new AtomicInteger();
+        private final boolean signatureValid;
+
+        CountingVerifier(int maxCachedMandates, Clock clock, boolean signatureValid) {
+            super(mock(SignatureService.class), maxCachedMandates, clock);
+            this.signatureValid = signatureValid;
+        }
+
+        @Override
+        public boolean verifySignature(Object mandate) {
+            signatureChecks.incrementAndGet();
+            return signatureValid;
+        }
+    }
+}
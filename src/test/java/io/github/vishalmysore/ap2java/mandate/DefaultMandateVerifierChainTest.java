@@ -0,0 +1,208 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import io.github.vishalmysore.ap2java.domain.PaymentRequest;
+import io.github.vishalmysore.ap2java.security.SignatureService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for verifying a whole mandate chain with DefaultMandateVerifier.
+ */
+public class DefaultMandateVerifierChainTest {
+
+    private static final long SIGNATURE_MILLIS = 200;
+
+    private ExecutorService pool;
+    private IntentMandate intentMandate;
+    private CartMandate cartMandate;
+    private PaymentMandate paymentMandate;
+    private PaymentRequest request;
+
+    @BeforeEach
+    void setUp() {
+        pool = Executors.newFixedThreadPool(3);
+
+        intentMandate = new IntentMandate("intent-123", "agent-456", "merchant-789", new BigDecimal("200.00"), false);
+
+        cartMandate = new CartMandate();
+        cartMandate.setId("cart-456");
+        cartMandate.setRequestingAgentId("agent-456");
+        cartMandate.setReceivingAgentId("merchant-789");
+        cartMandate.setIntentMandateId("intent-123");
+        cartMandate.setAmount(new BigDecimal("150.00"));
+        cartMandate.setCurrencyCode("USD");
+        cartMandate.setCreatedAt(Instant.now());
+        cartMandate.setExpiresAt(Instant.now().plusSeconds(3600));
+
+        Map<String, Object> paymentDetails = new HashMap<>();
+        paymentDetails.put("paymentMethodId", "card-123");
+        paymentMandate = new PaymentMandate();
+        paymentMandate.setId("payment-789");
+        paymentMandate.setRequestingAgentId("agent-456");
+        paymentMandate.setReceivingAgentId("merchant-789");
+        paymentMandate.setAmount(new BigDecimal("150.00"));
+        paymentMandate.setCurrencyCode("USD");
+        paymentMandate.setParentMandateId("cart-456");
+        paymentMandate.setPaymentDetails(paymentDetails);
+        paymentMandate.setCreatedAt(Instant.now());
+        paymentMandate.setExpiresAt(Instant.now().plusSeconds(3600));
+
+        request = PaymentRequest.builder()
+                .requestingAgentId("agent-456")
+                .receivingAgentId("merchant-789")
+                .amount(new BigDecimal("150.00"))
+                .currencyCode("USD")
+                .paymentMethod("card-123")
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void testSignaturesCheckedInParallel() {
+        SlowVerifier verifier = new SlowVerifier(pool, null);
+
+        long start = System.nanoTime();
+        assertTrue(verifier.verifyChain(intentMandate, cartMandate, paymentMandate, request));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(3, verifier.signatureChecks.get());
+        assertTrue(elapsedMillis < 3 * SIGNATURE_MILLIS,
+                "Chain took " + elapsedMillis + "ms, signatures were not checked in parallel");
+    }
+
+    @Test
+    void testStructuralFailureSkipsSignatures() {
+        SlowVerifier verifier = new SlowVerifier(pool, null);
+
+        cartMandate.setIntentMandateId("other-intent");
+        assertFalse(verifier.verifyChain(intentMandate, cartMandate, paymentMandate, request));
+        cartMandate.setIntentMandateId("intent-123");
+        paymentMandate.setCurrencyCode("EUR");
+        assertFalse(verifier.verifyChain(intentMandate, cartMandate, paymentMandate, request));
+        paymentMandate.setCurrencyCode("USD");
+        request.setAmount(new BigDecimal("250.00"));
+        assertFalse(verifier.verifyChain(intentMandate, cartMandate, paymentMandate, request));
+
+        assertEquals(0, verifier.signatureChecks.get());
+    }
+
+    @Test
+    void testInvalidSignatureCancelsRemainingChecks() throws InterruptedException {
+        SlowVerifier verifier = new SlowVerifier(pool, cartMandate);
+
+        long start = System.nanoTime();
+        assertFalse(verifier.verifyChain(intentMandate, cartMandate, paymentMandate, request));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMillis < SIGNATURE_MILLIS,
+                "Chain took " + elapsedMillis + "ms, it did not stop at the invalid signature");
+        assertTrue(verifier.slowChecksRunning, "The slow signature checks never started");
+        assertTrue(verifier.interrupted.await(1, TimeUnit.SECONDS),
+                "Slow signature checks were not interrupted");
+    }
+
+    @Test
+    void testCachedIntentMandateSkipsSignature() {
+        SlowVerifier verifier = new SlowVerifier(pool, null);
+
+        assertTrue(verifier.verifyChain(intentMandate, cartMandate, paymentMandate, request));
+        assertTrue(verifier.verifyChain(intentMandate, cartMandate, paymentMandate, request));
+
+        assertEquals(5, verifier.signatureChecks.get());
+    }
+
+    @Test
+    void testDefaultChainVerifiesSequentially() {
+        AtomicInteger calls = new AtomicInteger();
+        DefaultMandateVerifier delegate = new DefaultMandateVerifier(mock(SignatureService.class)) {
+            @Override
+            public boolean verifySignature(Object mandate) {
+                calls.incrementAndGet();
+                return true;
+            }
+        };
+        // Implements only the single-mandate checks, so verifyChain is the interface default
+        MandateVerifier verifier = new MandateVerifier() {
+            @Override
+            public boolean verifyIntentMandate(IntentMandate mandate, PaymentRequest paymentRequest) {
+                return delegate.verifyIntentMandate(mandate, paymentRequest);
+            }
+
+            @Override
+            public boolean verifyCartMandate(CartMandate cart, IntentMandate intent, PaymentRequest paymentRequest) {
+                return delegate.verifyCartMandate(cart, intent, paymentRequest);
+            }
+
+            @Override
+            public boolean verifyPaymentMandate(PaymentMandate payment, CartMandate cart,
+                                                PaymentRequest paymentRequest) {
+                return delegate.verifyPaymentMandate(payment, cart, paymentRequest);
+            }
+
+            @Override
+            public boolean verifySignature(Object mandate) {
+                return delegate.verifySignature(mandate);
+            }
+        };
+
+        assertTrue(verifier.verifyChain(intentMandate, cartMandate, paymentMandate, request));
+        assertEquals(3, calls.get());
+
+        paymentMandate.setParentMandateId("other-cart");
+        assertFalse(verifier.verifyChain(intentMandate, cartMandate, paymentMandate, request));
+    }
+
+    /**
+     * Takes a fixed time to check each signature, except that the signature of one chosen
+     * mandate is invalid and fails as soon as the other checks have started.
+     */
+    private static class SlowVerifier extends DefaultMandateVerifier {
+        private final AtomicInteger signatureChecks = new AtomicInteger();
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+        private final CountDownLatch slowChecksStarted = new CountDownLatch(2);
+        private final Object invalidMandate;
+        private volatile boolean slowChecksRunning;
+
+        SlowVerifier(ExecutorService pool, Object invalidMandate) {
+            super(mock(SignatureService.class), 100, pool);
+            this.invalidMandate = invalidMandate;
+        }
+
+        @Override
+        public boolean verifySignature(Object mandate) {
+            signatureChecks.incrementAndGet();
+            try {
+                if (mandate == invalidMandate) {
+                    // Fail once the other checks are running, so that they have to be interrupted.
+                    // On a single core the pool threads may take a while to be scheduled.
+                    slowChecksRunning = slowChecksStarted.await(5, TimeUnit.SECONDS);
+                    return false;
+                }
+                slowChecksStarted.countDown();
+                Thread.sleep(SIGNATURE_MILLIS);
+                return true;
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import io.github.vishalmysore.ap2java.domain.PaymentRequest;
+import io.github.vishalmysore.ap2java.security.SignatureService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for the structured verification outcomes of DefaultMandateVerifier.
+ */
+public class DefaultMandateVerifierResultTest {
+
+    private DefaultMandateVerifier verifier;
+    private IntentMandate intentMandate;
+    private CartMandate cartMandate;
+    private PaymentMandate paymentMandate;
+    private PaymentRequest request;
+
+    @BeforeEach
+    void setUp() {
+        verifier = new TestDefaultMandateVerifier(mock(SignatureService.class));
+
+        intentMandate = new IntentMandate("intent-123", "agent-456", "merchant-789", new BigDecimal("200.00"), false);
+
+        cartMandate = new CartMandate();
+        cartMandate.setId("cart-456");
+        cartMandate.setReceivingAgentId("merchant-789");
+        cartMandate.setIntentMandateId("intent-123");
+        cartMandate.setAmount(new BigDecimal("150.00"));
+        cartMandate.setCurrencyCode("USD");
+        cartMandate.setExpiresAt(Instant.now().plusSeconds(3600));
+
+        Map<String, Object> paymentDetails = new HashMap<>();
+        paymentDetails.put("paymentMethodId", "card-123");
+        paymentMandate = new PaymentMandate();
+        paymentMandate.setId("payment-789");
+        paymentMandate.setAmount(new BigDecimal("150.00"));
+        paymentMandate.setCurrencyCode("USD");
+        paymentMandate.setParentMandateId("cart-456");
+        paymentMandate.setPaymentDetails(paymentDetails);
+        paymentMandate.setExpiresAt(Instant.now().plusSeconds(3600));
+
+        request = PaymentRequest.builder()
+                .requestingAgentId("agent-456")
+                .receivingAgentId("merchant-789")
+                .amount(new BigDecimal("150.00"))
+                .currencyCode("USD")
+                .paymentMethod("card-123")
+                .build();
+    }
+
+    @Test
+    void testResultsAreShared() {
+        assertSame(VerificationResult.VALID, VerificationResult.of(VerificationResult.Reason.VALID));
+        assertSame(VerificationResult.of(VerificationResult.Reason.EXPIRED),
+                VerificationResult.of(VerificationResult.Reason.EXPIRED));
+        assertTrue(VerificationResult.VALID.isValid());
+        assertFalse(VerificationResult.of(VerificationResult.Reason.EXPIRED).isValid());
+    }
+
+    @Test
+    void testReasonCodes() {
+        assertSame(VerificationResult.VALID, verifier.checkChain(intentMandate, cartMandate, paymentMandate, request));
+
+        request.setCurrencyCode("EUR");
+        assertEquals(VerificationResult.Reason.CURRENCY_MISMATCH,
+                verifier.checkCartMandate(cartMandate, intentMandate, request).getReason());
+        request.setCurrencyCode("USD");
+
+        request.setPaymentMethod("card-999");
+        assertEquals(VerificationResult.Reason.PAYMENT_METHOD_MISMATCH,
+                verifier.checkPaymentMandate(paymentMandate, cartMandate, request).getReason());
+        request.setPaymentMethod("card-123");
+
+        cartMandate.setIntentMandateId("other-intent");
+        assertEquals(VerificationResult.Reason.MANDATE_LINK_MISMATCH,
+                verifier.checkChain(intentMandate, cartMandate, paymentMandate, request).getReason());
+        cartMandate.setIntentMandateId("intent-123");
+
+        intentMandate.setMaxAmountPerPayment(new BigDecimal("100.00"));
+        assertEquals(VerificationResult.Reason.NOT_PERMITTED,
+                verifier.checkIntentMandate(intentMandate, request).getReason());
+
+        paymentMandate.setExpiresAt(Instant.now().minusSeconds(1));
+        assertEquals(VerificationResult.Reason.EXPIRED,
+                verifier.checkChain(intentMandate, cartMandate, paymentMandate, request).getReason());
+    }
+
+    @Test
+    void testSignatureFailureReason() {
+        DefaultMandateVerifier failing = new DefaultMandateVerifier(mock(SignatureService.class)) {
+            @Override
+            public boolean verifySignature(Object mandate) {
+                return false;
+            }
+        };
+
+        assertEquals(VerificationResult.Reason.SIGNATURE_INVALID,
+                failing.checkIntentMandate(intentMandate, request).getReason());
+        assertEquals(VerificationResult.Reason.SIGNATURE_INVALID,
+                failing.checkChain(intentMandate, cartMandate, paymentMandate, request).getReason());
+    }
+
+    @Test
+    void testOutcomesAreCounted() {
+        verifier.verifyCartMandate(cartMandate, intentMandate, request);
+        request.setAmount(new BigDecimal("175.00"));
+        for (int i = 0; i < 5; i++) {
+            assertFalse(verifier.verifyCartMandate(cartMandate, intentMandate, request));
+        }
+
+        VerificationStats stats = verifier.getStats();
+        assertEquals(1, stats.getCount(VerificationResult.Reason.VALID));
+        assertEquals(5, stats.getCount(VerificationResult.Reason.AMOUNT_MISMATCH));
+        assertEquals(5, stats.getRejectionCount());
+        assertEquals(5L, stats.snapshot().get(VerificationResult.Reason.AMOUNT_MISMATCH));
+    }
+
+    @Test
+    void testRejectionLoggingIsOptIn() {
+        Logger logger = mock(Logger.class);
+        RejectionLog log = new RejectionLog(logger, System::nanoTime);
+
+        log.reject(VerificationResult.Reason.EXPIRED, "cart-456", null, null);
+
+        verify(logger, never()).warn(anyString(), any(Object[].class));
+        assertEquals(0, log.getSuppressedCount());
+    }
+
+    @Test
+    void testRejectionLoggingIsRateLimited() {
+        Logger logger = mock(Logger.class);
+        AtomicLong nanoTime = new AtomicLong();
+        RejectionLog log = new RejectionLog(logger, nanoTime::get);
+        log.setMaxPerSecond(3);
+
+        for (int i = 0; i < 10; i++) {
+            log.reject(VerificationResult.Reason.AMOUNT_MISMATCH, "cart-" + i, 1, 2);
+        }
+        verify(logger, times(3)).warn(anyString(), any(Object[].class));
+        assertEquals(7, log.getSuppressedCount());
+
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        log.reject(VerificationResult.Reason.AMOUNT_MISMATCH, "cart-10", 1, 2);
+        verify(logger).warn(anyString(), eq(7L));
+        verify(logger, times(4)).warn(anyString(), any(Object[].class));
+        assertEquals(0, log.getSuppressedCount());
+    }
+
+    @Test
+    void testDefaultCheckWithoutReason() {
+        MandateVerifier booleanOnly = new MandateVerifier() {
+            @Override
+            public boolean verifyIntentMandate(IntentMandate mandate, PaymentRequest paymentRequest) {
+                return false;
+            }
+
+            @Override
+            public boolean verifyCartMandate(CartMandate cart, IntentMandate intent, PaymentRequest paymentRequest) {
+                return true;
+            }
+
+            @Override
+            public boolean verifyPaymentMandate(PaymentMandate payment, CartMandate cart,
+                                                PaymentRequest paymentRequest) {
+                return true;
+            }
+
+            @Override
+            public boolean verifySignature(Object mandate) {
+                return true;
+            }
+        };
+
+        assertEquals(VerificationResult.Reason.UNSPECIFIED,
+                booleanOnly.checkIntentMandate(intentMandate, request).getReason());
+        assertSame(VerificationResult.VALID, booleanOnly.checkCartMandate(cartMandate, intentMandate, request));
+    }
+}
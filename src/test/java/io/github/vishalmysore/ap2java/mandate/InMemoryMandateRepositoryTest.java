@@ -0,0 +1,176 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import io.github.vishalmysore.ap2java.util.ManualClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the InMemoryMandateRepository class.
+ */
+public class InMemoryMandateRepositoryTest {
+
+    private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+
+    private ManualClock clock;
+    private InMemoryMandateRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        clock = new ManualClock(NOW);
+        repository = new InMemoryMandateRepository(clock);
+    }
+
+    private IntentMandate intent(String id, String merchantId, Duration validFor) {
+        IntentMandate mandate = new IntentMandate(id, "agent-1", merchantId, new BigDecimal("100.00"), false);
+        mandate.setCreatedAt(NOW.minusSeconds(60));
+        mandate.setExpiresAt(NOW.plus(validFor));
+        return mandate;
+    }
+
+    @Test
+    void testFindsMandateThatExpiresLast() {
+        repository.storeIntentMandate(intent("intent-1", "merchant-1", Duration.ofHours(1)));
+        repository.storeIntentMandate(intent("intent-2", "merchant-1", Duration.ofHours(3)));
+        repository.storeIntentMandate(intent("intent-3", "merchant-1", Duration.ofHours(2)));
+
+        assertEquals("intent-2", repository.findActiveIntentMandateForAgent("agent-1", "merchant-1").getId());
+        assertNull(repository.findActiveIntentMandateForAgent("agent-1", "merchant-2"));
+        assertNull(repository.findActiveIntentMandateForAgent("agent-2", "merchant-1"));
+    }
+
+    @Test
+    void testSkipsExpiredMandates() {
+        repository.storeIntentMandate(intent("intent-1", "merchant-1", Duration.ofHours(1)));
+        repository.storeIntentMandate(intent("intent-2", "merchant-1", Duration.ofHours(3)));
+
+        clock.advance(Duration.ofHours(2));
+        assertEquals("intent-2", repository.findActiveIntentMandateForAgent("agent-1", "merchant-1").getId());
+        clock.advance(Duration.ofHours(2));
+        assertNull(repository.findActiveIntentMandateForAgent("agent-1", "merchant-1"));
+    }
+
+    @Test
+    void testSkipsMandatesNotYetValid() {
+        IntentMandate future = intent("intent-1", "merchant-1", Duration.ofHours(3));
+        future.setCreatedAt(NOW.plusSeconds(60));
+        repository.storeIntentMandate(future);
+        repository.storeIntentMandate(intent("intent-2", "merchant-1", Duration.ofHours(1)));
+
+        assertEquals("intent-2", repository.findActiveIntentMandateForAgent("agent-1", "merchant-1").getId());
+    }
+
+    @Test
+    void testMandateIsActiveFromTheInstantItIsCreated() {
+        IntentMandate mandate = intent("intent-1", "merchant-1", Duration.ofHours(1));
+        mandate.setCreatedAt(NOW);
+        repository.storeIntentMandate(mandate);
+
+        assertEquals("intent-1", repository.findActiveIntentMandateForAgent("agent-1", "merchant-1").getId());
+    }
+
+    @Test
+    void testStoredMandateIsActiveAtOnceWithDefaultClock() {
+        InMemoryMandateRepository systemRepository = new InMemoryMandateRepository();
+        systemRepository.storeIntentMandate(
+                new IntentMandate("intent-1", "agent-1", "merchant-1", new BigDecimal("100.00"), false));
+
+        assertEquals("intent-1", systemRepository.findActiveIntentMandateForAgent("agent-1", "merchant-1").getId());
+    }
+
+    @Test
+    void testMandateWithoutMerchantMatchesAnyMerchant() {
+        repository.storeIntentMandate(intent("intent-any", null, Duration.ofHours(2)));
+        repository.storeIntentMandate(intent("intent-1", "merchant-1", Duration.ofHours(1)));
+
+        assertEquals("intent-any", repository.findActiveIntentMandateForAgent("agent-1", "merchant-1").getId());
+        assertEquals("intent-any", repository.findActiveIntentMandateForAgent("agent-1", "merchant-2").getId());
+        assertEquals("intent-any", repository.findActiveIntentMandateForAgent("agent-1", null).getId());
+    }
+
+    @Test
+    void testStoringAgainReindexes() {
+        IntentMandate mandate = intent("intent-1", "merchant-1", Duration.ofHours(1));
+        repository.storeIntentMandate(mandate);
+        repository.storeIntentMandate(intent("intent-2", "merchant-1", Duration.ofHours(2)));
+
+        IntentMandate replacement = intent("intent-1", "merchant-1", Duration.ofHours(5));
+        repository.storeIntentMandate(replacement);
+
+        assertSame(replacement, repository.findActiveIntentMandateForAgent("agent-1", "merchant-1"));
+        assertSame(replacement, repository.findIntentMandate("intent-1"));
+    }
+
+    @Test
+    void testRevokedMandateIsNotActive() {
+        repository.storeIntentMandate(intent("intent-1", "merchant-1", Duration.ofHours(1)));
+        repository.storeIntentMandate(intent("intent-2", "merchant-1", Duration.ofHours(2)));
+
+        assertTrue(repository.revokeMandate("intent-2", "lost device"));
+        assertFalse(repository.revokeMandate("intent-2", "lost device"));
+        assertFalse(repository.revokeMandate("unknown", "lost device"));
+
+        assertEquals("intent-1", repository.findActiveIntentMandateForAgent("agent-1", "merchant-1").getId());
+        assertNotNull(repository.findIntentMandate("intent-2"));
+        assertTrue(repository.isRevoked("intent-2"));
+
+        // Storing a revoked mandate again does not reinstate it
+        repository.storeIntentMandate(intent("intent-2", "merchant-1", Duration.ofHours(2)));
+        assertEquals("intent-1", repository.findActiveIntentMandateForAgent("agent-1", "merchant-1").getId());
+    }
+
+    @Test
+    void testFindsMandateChainForPayment() {
+        IntentMandate intentMandate = intent("intent-1", "merchant-1", Duration.ofHours(1));
+        CartMandate cartMandate = new CartMandate("intent-1", "cart-1", "user-1", new BigDecimal("50.00"));
+        cartMandate.setId("cart-mandate-1");
+        PaymentMandate paymentMandate = new PaymentMandate("cart-mandate-1", "card", "user-1", new BigDecimal("50.00"));
+        paymentMandate.setId("payment-mandate-1");
+        paymentMandate.setParentMandateId("cart-mandate-1");
+        paymentMandate.setPaymentReference("payment-1");
+        repository.storeIntentMandate(intentMandate);
+        repository.storeCartMandate(cartMandate);
+        repository.storePaymentMandate(paymentMandate);
+
+        assertSame(paymentMandate, repository.findPaymentMandate("payment-mandate-1"));
+        assertSame(cartMandate, repository.findCartMandate("cart-mandate-1"));
+        assertSame(paymentMandate, repository.findPaymentMandateForPayment("payment-1"));
+        assertSame(cartMandate, repository.findCartMandateForPayment("payment-1"));
+        assertSame(intentMandate, repository.findIntentMandateForPayment("payment-1"));
+        assertNull(repository.findIntentMandateForPayment("payment-2"));
+        assertEquals(3, repository.size());
+    }
+
+    @Test
+    void testRequiresId() {
+        assertThrows(IllegalArgumentException.class, () -> repository.storeCartMandate(new CartMandate()));
+    }
+
+    @Test
+    void testConcurrentStoresAndLookups() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(1000);
+        for (int i = 0; i < 1000; i++) {
+            int n = i;
+            executor.execute(() -> {
+                repository.storeIntentMandate(intent("intent-" + n, "merchant-" + (n % 10), Duration.ofMinutes(n + 1)));
+                repository.findActiveIntentMandateForAgent("agent-1", "merchant-" + (n % 10));
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals("intent-999", repository.findActiveIntentMandateForAgent("agent-1", null).getId());
+        assertEquals("intent-993", repository.findActiveIntentMandateForAgent("agent-1", "merchant-3").getId());
+    }
+}
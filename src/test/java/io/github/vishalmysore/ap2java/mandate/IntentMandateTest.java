@@ -1,10 +1,12 @@
 package io.github.vishalmysore.ap2java.mandate;
 
 import io.github.vishalmysore.ap2java.credentials.VerifiableCredential;
+import io.github.vishalmysore.ap2java.util.ManualClock;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
@@ -63,6 +65,7 @@ public class IntentMandateTest {
         assertEquals(userId, simpleMnadate.getUserId());
         assertEquals(category, simpleMnadate.getCategory());
         assertEquals(maxAmount, simpleMnadate.getMaxAmount());
+        assertTrue(simpleMnadate.getAllowedCategories().isEmpty());
     }
     
     @Test
@@ -115,6 +118,32 @@ public class IntentMandateTest {
         assertTrue(mandate.isExpired());
     }
     
+    @Test
+    void testExpiryFollowsClock() {
+        ManualClock clock = new ManualClock(Instant.parse("2025-01-01T00:00:00Z"));
+        mandate.setCreatedAt(clock.instant());
+        mandate.setExpiresAt(clock.instant().plusSeconds(60));
+        
+        assertTrue(mandate.isValid(clock), "Mandate should be valid from the instant it is created");
+        clock.setInstant(mandate.getCreatedAt().minusMillis(1));
+        assertFalse(mandate.isValid(clock));
+        
+        clock.setInstant(mandate.getExpiresAt());
+        assertFalse(mandate.isExpired(clock), "Mandate should still be unexpired at its expiry instant");
+        assertFalse(mandate.isValid(clock));
+        clock.advance(Duration.ofMillis(1));
+        assertTrue(mandate.isExpired(clock));
+    }
+    
+    @Test
+    void testNewMandateIsValidAtOnce() {
+        for (int i = 0; i < 1000; i++) {
+            IntentMandate fresh = new IntentMandate("intent-" + i, TEST_REQUESTING_AGENT_ID,
+                    TEST_RECEIVING_AGENT_ID, new BigDecimal("100.00"), false);
+            assertTrue(fresh.isValid(), "A new mandate should be valid with the default clock");
+        }
+    }
+    
     @Test
     void testPermits() {
         // Test with matching merchant and amount within limit
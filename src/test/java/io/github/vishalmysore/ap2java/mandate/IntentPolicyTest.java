@@ -0,0 +1,185 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import io.github.vishalmysore.ap2java.util.SymbolTable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for IntentPolicy and IntentPolicyCompiler.
+ */
+public class IntentPolicyTest {
+
+    private static final List<String> MERCHANTS = Arrays.asList("merchant-789", "merchant-790", "merchant-791");
+    private static final List<String> CATEGORIES = Arrays.asList("books", "travel", "groceries", "electronics", null);
+
+    private IntentPolicyCompiler compiler;
+    private IntentMandate mandate;
+
+    @BeforeEach
+    void setUp() {
+        compiler = new IntentPolicyCompiler();
+        mandate = new IntentMandate("intent-123", "agent-456", "merchant-789", new BigDecimal("100.00"), false);
+        mandate.setAllowedCategories(Arrays.asList("books", "travel"));
+    }
+
+    @Test
+    void testPermits() {
+        IntentPolicy policy = compiler.compile(mandate, "USD");
+
+        assertEquals(10000, policy.getMaxAmountMinor());
+        assertTrue(policy.permits("merchant-789", 10000, "books"));
+        assertTrue(policy.permits("merchant-789", 500, null));
+        assertFalse(policy.permits("merchant-789", 10001, "books"));
+        assertFalse(policy.permits("merchant-790", 500, "books"));
+        assertFalse(policy.permits("merchant-789", 500, "groceries"));
+        assertFalse(policy.permits("merchant-789", 500, "never-seen"));
+    }
+
+    @Test
+    void testPermitsWithIds() {
+        IntentPolicy policy = compiler.compile(mandate, "USD");
+        int merchant = compiler.merchantId("merchant-789");
+        int travel = compiler.categoryId("travel");
+
+        assertTrue(policy.permits(merchant, 2500, travel));
+        assertTrue(policy.permits(merchant, 2500, IntentPolicy.NO_CATEGORY));
+        assertFalse(policy.permits(SymbolTable.NOT_FOUND, 2500, travel));
+        assertFalse(policy.permits(merchant, 2500, IntentPolicy.UNKNOWN_CATEGORY));
+    }
+
+    @Test
+    void testOpenPolicy() {
+        IntentMandate open = new IntentMandate();
+        IntentPolicy policy = compiler.compile(open, "USD");
+
+        assertTrue(policy.permits("any-merchant", Long.MAX_VALUE, "anything"));
+    }
+
+    @Test
+    void testMinorUnitsFollowCurrency() {
+        mandate.setMaxAmountPerPayment(new BigDecimal("1000"));
+
+        assertEquals(1000, compiler.compile(mandate, "JPY").getMaxAmountMinor());
+        assertEquals(1000000, compiler.compile(mandate, "BHD").getMaxAmountMinor());
+    }
+
+    @Test
+    void testRoundingNeverLoosensLimit() {
+        mandate.setMaxAmountPerPayment(new BigDecimal("100.009"));
+        IntentPolicy policy = compiler.compile(mandate, "USD");
+
+        assertEquals(10000, policy.getMaxAmountMinor());
+        assertFalse(policy.permits("merchant-789", new BigDecimal("100.001"), null));
+        assertEquals(Long.MAX_VALUE, policy.toMinorUnits(new BigDecimal("1e30")));
+    }
+
+    @Test
+    void testMatchesIntentMandatePermits() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            IntentMandate candidate = new IntentMandate("intent-" + i, "agent-456",
+                    random.nextInt(4) == 0 ? null : MERCHANTS.get(random.nextInt(MERCHANTS.size())),
+                    random.nextInt(4) == 0 ? null : BigDecimal.valueOf(random.nextInt(20000), 2), false);
+            candidate.setAllowedCategories(random.nextBoolean()
+                    ? List.of() : List.of(CATEGORIES.get(random.nextInt(4)), CATEGORIES.get(random.nextInt(4))));
+            IntentPolicy policy = compiler.compile(candidate, "USD");
+
+            String merchant = MERCHANTS.get(random.nextInt(MERCHANTS.size()));
+            BigDecimal amount = BigDecimal.valueOf(random.nextInt(20000), 2);
+            String category = CATEGORIES.get(random.nextInt(CATEGORIES.size()));
+            assertEquals(candidate.permits(merchant, amount, category), policy.permits(merchant, amount, category),
+                    "Mismatch for " + candidate + " and " + merchant + ", " + amount + ", " + category);
+        }
+    }
+
+    @Test
+    void testEvaluationDoesNotAllocate() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocation.isThreadAllocatedMemorySupported() && allocation.isThreadAllocatedMemoryEnabled());
+
+        IntentPolicy policy = compiler.compile(mandate, "USD");
+        BigDecimal[] amounts = new BigDecimal[64];
+        for (int i = 0; i < amounts.length; i++) {
+            // Amounts as payment requests carry them, at various scales
+            amounts[i] = BigDecimal.valueOf(i * 317, i % 3);
+        }
+        int permitted = 0;
+        // Warm up so the measurement does not include class loading or compilation
+        for (int i = 0; i < 100_000; i++) {
+            permitted += evaluate(policy, amounts, i);
+        }
+
+        long before = allocation.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 100_000; i++) {
+            permitted += evaluate(policy, amounts, i);
+        }
+        long allocated = allocation.getCurrentThreadAllocatedBytes() - before;
+
+        assertTrue(permitted > 0);
+        // Allow for the measurement calls themselves, far below one object per evaluation
+        assertTrue(allocated < 4096, "Evaluation allocated " + allocated + " bytes");
+    }
+
+    private static int evaluate(IntentPolicy policy, BigDecimal[] amounts, int i) {
+        String category = (i & 1) == 0 ? "books" : "groceries";
+        return (policy.permits("merchant-789", i % 20000, category) ? 1 : 0)
+                + (policy.permits("merchant-789", amounts[i & 63], category) ? 1 : 0);
+    }
+
+    /**
+     * Compares the compiled policy with IntentMandate.permits. JMH is not part of the build,
+     * so this is a plain timing loop; it prints the results and only asserts that both paths
+     * agree. Runs with {@code -Pbenchmark}.
+     */
+    @Test
+    @Tag("benchmark")
+    void testBenchmarkAgainstIntentMandatePermits() {
+        mandate.setAllowedCategories(Arrays.asList("books", "travel", "groceries", "electronics", "music", "games"));
+        IntentPolicy policy = compiler.compile(mandate, "USD");
+        BigDecimal[] amounts = new BigDecimal[64];
+        long[] minorAmounts = new long[amounts.length];
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = BigDecimal.valueOf(i * 250, 2);
+            minorAmounts[i] = policy.toMinorUnits(amounts[i]);
+        }
+        int merchant = compiler.merchantId("merchant-789");
+        int games = compiler.categoryId("games");
+
+        int iterations = 500_000;
+        long mandateNanos = Long.MAX_VALUE;
+        long policyNanos = Long.MAX_VALUE;
+        int mandatePermitted = 0;
+        int policyPermitted = 0;
+        for (int round = 0; round < 5; round++) {
+            mandatePermitted = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                mandatePermitted += mandate.permits("merchant-789", amounts[i & 63], "games") ? 1 : 0;
+            }
+            mandateNanos = Math.min(mandateNanos, System.nanoTime() - start);
+
+            policyPermitted = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                policyPermitted += policy.permits(merchant, minorAmounts[i & 63], games) ? 1 : 0;
+            }
+            policyNanos = Math.min(policyNanos, System.nanoTime() - start);
+        }
+
+        System.out.printf("IntentMandate.permits: %.1f ns/op, IntentPolicy.permits: %.1f ns/op%n",
+                (double) mandateNanos / iterations, (double) policyNanos / iterations);
+        assertEquals(mandatePermitted, policyPermitted);
+    }
+}
@@ -0,0 +1,238 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import io.github.vishalmysore.ap2java.domain.PaymentRequest;
+import io.github.vishalmysore.ap2java.security.SignatureService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for the mandate constraint language.
+ */
+public class MandateConstraintsTest {
+
+    // A Wednesday
+    private static final Instant NOON_UTC = Instant.parse("2025-01-15T12:00:00Z");
+
+    private PaymentRequest request;
+    private CartMandate cart;
+
+    @BeforeEach
+    void setUp() {
+        request = PaymentRequest.builder()
+                .requestingAgentId("agent-456")
+                .receivingAgentId("merchant-789")
+                .amount(new BigDecimal("150.00"))
+                .currencyCode("USD")
+                .build();
+
+        List<CartMandate.CartItem> items = new ArrayList<>();
+        items.add(new CartMandate.CartItem("sku-1", "Book", new BigDecimal("25.00"), 2));
+        items.add(new CartMandate.CartItem("sku-2", "Lamp", new BigDecimal("100.00"), 1));
+        cart = new CartMandate();
+        cart.setItems(items);
+    }
+
+    @Test
+    void testTimeOfDay() {
+        MandateConstraints office = MandateConstraints.parse("time between 09:00 and 17:30");
+        assertTrue(office.permits(request, null, null, NOON_UTC));
+        assertFalse(office.permits(request, null, null, Instant.parse("2025-01-15T17:30:00Z")));
+        assertFalse(office.permits(request, null, null, Instant.parse("2025-01-15T08:59:59Z")));
+
+        MandateConstraints night = MandateConstraints.parse("time between 22:00 and 06:00");
+        assertTrue(night.permits(request, null, null, Instant.parse("2025-01-15T23:00:00Z")));
+        assertTrue(night.permits(request, null, null, Instant.parse("2025-01-15T05:00:00Z")));
+        assertFalse(night.permits(request, null, null, NOON_UTC));
+    }
+
+    @Test
+    void testTimeZones() {
+        // 12:00 UTC is 21:00 in Tokyo and 07:00 in New York in January
+        assertFalse(MandateConstraints.parse("time between 09:00 and 17:00 zone Asia/Tokyo")
+                .permits(request, null, null, NOON_UTC));
+        assertFalse(MandateConstraints.parse("time between 09:00 and 17:00 zone America/New_York")
+                .permits(request, null, null, NOON_UTC));
+        assertTrue(MandateConstraints.parse("time between 06:00 and 08:00 zone -05:00")
+                .permits(request, null, null, NOON_UTC));
+    }
+
+    @Test
+    void testDayOfWeek() {
+        assertTrue(MandateConstraints.parse("day in MON,TUE,WED").permits(request, null, null, NOON_UTC));
+        assertFalse(MandateConstraints.parse("day in sat, sun").permits(request, null, null, NOON_UTC));
+        // Already Thursday in Auckland
+        assertTrue(MandateConstraints.parse("day in THURSDAY zone Pacific/Auckland")
+                .permits(request, null, null, NOON_UTC));
+    }
+
+    @Test
+    void testPerCurrencyLimits() {
+        MandateConstraints limits = MandateConstraints.parse("amount <= 100.00 EUR; amount <= 200 USD; currency in USD,EUR");
+
+        assertTrue(limits.permits(request, null, null, NOON_UTC));
+        request.setCurrencyCode("EUR");
+        assertEquals("amount <= 100.00 EUR", limits.firstViolation(request, null, null, NOON_UTC));
+        request.setCurrencyCode("GBP");
+        assertEquals("currency in USD,EUR", limits.firstViolation(request, null, null, NOON_UTC));
+    }
+
+    @Test
+    void testMerchantAndCategory() {
+        MandateConstraints constraints = MandateConstraints.parse(
+                "merchant not in merchant-bad\ncategory in books,travel");
+
+        assertTrue(constraints.permits(request, null, "books", NOON_UTC));
+        assertTrue(constraints.permits(request, null, null, NOON_UTC));
+        assertFalse(constraints.permits(request, null, "gambling", NOON_UTC));
+        request.setReceivingAgentId("merchant-bad");
+        assertFalse(constraints.permits(request, null, "books", NOON_UTC));
+    }
+
+    @Test
+    void testCartItemRules() {
+        assertTrue(MandateConstraints.parse("items <= 2; item.quantity <= 2; item.price <= 100")
+                .permits(request, cart, null, NOON_UTC));
+        assertFalse(MandateConstraints.parse("items <= 1").permits(request, cart, null, NOON_UTC));
+        assertFalse(MandateConstraints.parse("item.quantity <= 1").permits(request, cart, null, NOON_UTC));
+        assertFalse(MandateConstraints.parse("item.price <= 99.99").permits(request, cart, null, NOON_UTC));
+        assertFalse(MandateConstraints.parse("item.id not in sku-2").permits(request, cart, null, NOON_UTC));
+        assertTrue(MandateConstraints.parse("item.id in sku-1, sku-2").permits(request, cart, null, NOON_UTC));
+
+        // Without a cart the item rules do not apply
+        assertTrue(MandateConstraints.parse("items <= 1; item.id not in sku-2").permits(request, null, null, NOON_UTC));
+    }
+
+    @Test
+    void testRulesOrderedByCost() {
+        MandateConstraints constraints = MandateConstraints.parse(String.join("\n",
+                "# Office hours only",
+                "item.price <= 100",
+                "time between 09:00 and 17:00 zone Europe/Berlin",
+                "amount <= 500",
+                "",
+                "currency in USD"));
+
+        assertEquals(Arrays.asList("currency in USD", "amount <= 500",
+                "time between 09:00 and 17:00 zone Europe/Berlin", "item.price <= 100"), constraints.getRules());
+    }
+
+    @Test
+    void testInvalidRules() {
+        for (String invalid : Arrays.asList("colour in red", "amount <> 5", "amount <= lots",
+                "time between 9am and 5pm", "time between 09:00 and 17:00 zone Mars/Olympus",
+                "day in FUNDAY", "merchant", "items >= 3")) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> MandateConstraints.parse(invalid), invalid);
+            assertTrue(e.getMessage().contains(invalid), e.getMessage());
+        }
+    }
+
+    @Test
+    void testVerifierEnforcesConstraints() {
+        DefaultMandateVerifier verifier = new TestDefaultMandateVerifier(mock(SignatureService.class));
+        IntentMandate intent = new IntentMandate("intent-123", "agent-456", "merchant-789", new BigDecimal("200.00"), false);
+        cart.setId("cart-456");
+        cart.setReceivingAgentId("merchant-789");
+        cart.setIntentMandateId("intent-123");
+        cart.setAmount(new BigDecimal("150.00"));
+        cart.setCurrencyCode("USD");
+        cart.setExpiresAt(Instant.now().plusSeconds(3600));
+
+        intent.setConstraints("currency in USD; item.price <= 50");
+        assertTrue(verifier.verifyIntentMandate(intent, request));
+        assertEquals(VerificationResult.Reason.CONSTRAINT_VIOLATED,
+                verifier.checkCartMandate(cart, intent, request).getReason());
+
+        intent.setConstraints("currency in EUR");
+        assertEquals(VerificationResult.Reason.CONSTRAINT_VIOLATED,
+                verifier.checkIntentMandate(intent, request).getReason());
+        assertThrows(IllegalArgumentException.class, () -> intent.setConstraints("currency is EUR"));
+    }
+
+    @Test
+    void testVerifierEnforcesCategoryRules() {
+        DefaultMandateVerifier verifier = new TestDefaultMandateVerifier(mock(SignatureService.class));
+        IntentMandate intent = new IntentMandate("intent-123", "agent-456", "merchant-789", new BigDecimal("200.00"), false);
+        intent.setConstraints("category not in gambling");
+
+        request.setCategory("gambling");
+        assertEquals(VerificationResult.Reason.CONSTRAINT_VIOLATED,
+                verifier.checkIntentMandate(intent, request).getReason());
+        request.setCategory("books");
+        assertTrue(verifier.checkIntentMandate(intent, request).isValid());
+        // A payment of unknown category cannot be shown to satisfy the rule
+        request.setCategory(null);
+        assertEquals(VerificationResult.Reason.CONSTRAINT_VIOLATED,
+                verifier.checkIntentMandate(intent, request).getReason());
+
+        intent.setConstraints("currency in USD");
+        assertTrue(verifier.checkIntentMandate(intent, request).isValid());
+        // The request's category is also checked against the allowed categories
+        intent.setAllowedCategories(Arrays.asList("books"));
+        request.setCategory("travel");
+        assertEquals(VerificationResult.Reason.NOT_PERMITTED,
+                verifier.checkIntentMandate(intent, request).getReason());
+    }
+
+    /**
+     * Times 30 rules against one request and prints the cost per evaluation.
+     * Runs with {@code -Pbenchmark}.
+     */
+    @Test
+    @Tag("benchmark")
+    void testEvaluationSpeed() {
+        List<String> rules = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            rules.add("merchant not in blocked-" + i + ",other-" + i);
+            rules.add("amount <= " + (1000 + i) + " USD");
+        }
+        rules.add("currency in USD,EUR,GBP");
+        rules.add("category in books,travel,music");
+        rules.add("time between 06:00 and 23:00");
+        rules.add("time between 07:00 and 22:00 zone Europe/Berlin");
+        rules.add("day in MON,TUE,WED,THU,FRI");
+        rules.add("items <= 10");
+        rules.add("item.quantity <= 5");
+        rules.add("item.price <= 500");
+        rules.add("item.id not in sku-9,sku-10");
+        rules.add("amount >= 1");
+        MandateConstraints constraints = MandateConstraints.parse(String.join("\n", rules));
+        assertEquals(30, constraints.size());
+
+        int iterations = 200_000;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 15; round++) {
+            best = Math.min(best, timeEvaluations(constraints, iterations));
+        }
+
+        double nanosPerEvaluation = (double) best / iterations;
+        System.out.printf("MandateConstraints: 30 rules in %.1f ns/op%n", nanosPerEvaluation);
+        // Generous bound so slow build machines do not fail; typically far lower
+        assertTrue(nanosPerEvaluation < 10_000, "Evaluation took " + nanosPerEvaluation + " ns");
+    }
+
+    /**
+     * Times a batch of evaluations in its own method, so that it is compiled as a whole
+     * rather than replaced on the stack mid-loop.
+     */
+    private long timeEvaluations(MandateConstraints constraints, int iterations) {
+        int permitted = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            permitted += constraints.permits(request, cart, "books", NOON_UTC) ? 1 : 0;
+        }
+        long elapsed = System.nanoTime() - start;
+        assertEquals(iterations, permitted);
+        return elapsed;
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import io.github.vishalmysore.ap2java.credentials.VerifiableCredential;
+import io.github.vishalmysore.ap2java.security.DefaultSignatureService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for signing mandates with bound credentials.
+ */
+public class MandateCredentialTest {
+
+    private DefaultSignatureService signatureService;
+    private DefaultMandateVerifier verifier;
+    private IntentMandate intent;
+
+    @BeforeEach
+    void setUp() {
+        signatureService = new DefaultSignatureService();
+        signatureService.generateKeyPair("user-key");
+        verifier = new DefaultMandateVerifier(signatureService);
+        intent = new IntentMandate("intent-123", "agent-456", "merchant-789", new BigDecimal("200.00"), false);
+    }
+
+    @Test
+    void testSignedMandatesVerify() {
+        CartMandate cart = new CartMandate();
+        cart.setId("cart-456");
+        cart.setAmount(new BigDecimal("150.00"));
+        Map<String, Object> details = new HashMap<>();
+        details.put("paymentMethodId", "card-123");
+        PaymentMandate payment = new PaymentMandate("payment-789", "agent-456", "merchant-789", "ref-1",
+                new BigDecimal("150.00"), "USD", "cart-456", details, Instant.now().plusSeconds(3600));
+
+        for (SignableMandate mandate : new SignableMandate[] {intent, cart, payment}) {
+            VerifiableCredential credential = MandateCredential.sign(mandate, "did:example:user", signatureService, "user-key");
+
+            assertSame(credential, mandate.getCredential());
+            assertEquals(mandate.getId(), credential.getSubject().getId());
+            assertEquals(mandate.signingDigest(), credential.getSubject().getClaim(MandateCredential.MANDATE_DIGEST_CLAIM));
+            assertTrue(verifier.verifySignature(mandate), mandate.mandateType());
+        }
+    }
+
+    @Test
+    void testSimplifiedIntentMandateCanBeSigned() {
+        IntentMandate simple = new IntentMandate("user-1", "books", 10);
+        simple.setId("intent-1");
+
+        assertEquals(simple.signingDigest(), simple.signingDigest());
+        MandateCredential.sign(simple, "did:example:user", signatureService, "user-key");
+        assertTrue(verifier.verifySignature(simple));
+    }
+
+    @Test
+    void testChangedMandateNoLongerVerifies() {
+        MandateCredential.sign(intent, "did:example:user", signatureService, "user-key");
+
+        intent.setMaxAmountPerPayment(new BigDecimal("2000.00"));
+
+        assertFalse(MandateCredential.isBoundTo(intent.getCredential(), intent));
+        assertFalse(verifier.verifySignature(intent));
+    }
+
+    @Test
+    void testCredentialCannotBeMovedToAnotherMandate() {
+        VerifiableCredential credential = MandateCredential.sign(intent, "did:example:user", signatureService, "user-key");
+        IntentMandate other = new IntentMandate("intent-999", "agent-456", "merchant-789", new BigDecimal("200.00"), false);
+
+        other.setCredential(credential);
+
+        assertFalse(verifier.verifySignature(other));
+    }
+
+    @Test
+    void testForgedBindingFailsSignatureCheck() {
+        VerifiableCredential credential = MandateCredential.sign(intent, "did:example:user", signatureService, "user-key");
+        intent.setMaxAmountPerPayment(new BigDecimal("2000.00"));
+
+        // Pointing the claim at the new content breaks the credential signature instead
+        credential.getSubject().addClaim(MandateCredential.MANDATE_DIGEST_CLAIM, intent.signingDigest());
+
+        assertTrue(MandateCredential.isBoundTo(credential, intent));
+        assertFalse(verifier.verifySignature(intent));
+    }
+
+    @Test
+    void testUnsignedAndUnknownMandatesFail() {
+        assertFalse(verifier.verifySignature(intent));
+        assertFalse(verifier.verifySignature(new Object()));
+        assertFalse(verifier.verifySignature(null));
+    }
+}
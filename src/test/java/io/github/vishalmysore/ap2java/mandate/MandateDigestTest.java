@@ -0,0 +1,183 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import io.github.vishalmysore.ap2java.util.CanonicalJson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the canonical serialization of mandates and their cached signing digests.
+ */
+public class MandateDigestTest {
+
+    private static final Instant CREATED = Instant.parse("2025-01-01T00:00:00Z");
+
+    private CartMandate cart;
+
+    @BeforeEach
+    void setUp() {
+        List<CartMandate.CartItem> items = new ArrayList<>();
+        items.add(new CartMandate.CartItem("sku-1", "Book \"Dune\"", new BigDecimal("25.00"), 2));
+        cart = new CartMandate("cart-456", "agent-456", "merchant-789", "intent-123", items, "USD",
+                CREATED.plusSeconds(3600));
+        cart.setCreatedAt(CREATED);
+    }
+
+    @Test
+    void testCanonicalForm() {
+        String json = new String(cart.canonicalBytes(), StandardCharsets.UTF_8);
+
+        assertEquals("{\"amount\":\"50\",\"createdAt\":\"2025-01-01T00:00:00Z\",\"currencyCode\":\"USD\","
+                + "\"expiresAt\":\"2025-01-01T01:00:00Z\",\"id\":\"cart-456\",\"intentMandateId\":\"intent-123\","
+                + "\"items\":[{\"description\":\"Book \\\"Dune\\\"\",\"id\":\"sku-1\",\"price\":\"25\",\"quantity\":2}],"
+                + "\"mandateType\":\"CartMandate\",\"receivingAgentId\":\"merchant-789\","
+                + "\"requestingAgentId\":\"agent-456\"}", json);
+    }
+
+    @Test
+    void testMemberOrderDoesNotMatter() {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("paymentMethodId", "card-123");
+        details.put("cardBrand", "visa");
+        PaymentMandate first = payment(details);
+
+        Map<String, Object> reversed = new LinkedHashMap<>();
+        reversed.put("cardBrand", "visa");
+        reversed.put("paymentMethodId", "card-123");
+        PaymentMandate second = payment(reversed);
+
+        assertArrayEquals(first.canonicalBytes(), second.canonicalBytes());
+        assertEquals(first.signingDigest(), second.signingDigest());
+    }
+
+    @Test
+    void testEqualAmountsShareDigest() {
+        IntentMandate mandate = intent(new BigDecimal("100.00"));
+        IntentMandate sameAmount = intent(new BigDecimal("100"));
+
+        assertEquals(mandate.signingDigest(), sameAmount.signingDigest());
+        assertNotEquals(mandate.signingDigest(), intent(new BigDecimal("100.01")).signingDigest());
+    }
+
+    @Test
+    void testMandateTypesNeverShareDigest() {
+        CartMandate emptyCart = new CartMandate();
+        PaymentMandate emptyPayment = new PaymentMandate();
+
+        assertNotEquals(emptyCart.signingDigest(), emptyPayment.signingDigest());
+    }
+
+    @Test
+    void testDigestIsCachedUntilSetterChangesContent() {
+        String digest = cart.signingDigest();
+        assertSame(digest, cart.signingDigest());
+
+        cart.setCredential(null);
+        assertSame(digest, cart.signingDigest());
+
+        cart.setAmount(new BigDecimal("49.99"));
+        String changed = cart.signingDigest();
+        assertNotEquals(digest, changed);
+
+        cart.setUserId("user-1");
+        assertNotEquals(changed, cart.signingDigest());
+    }
+
+    @Test
+    void testInPlaceEditChangesDigest() {
+        List<CartMandate.CartItem> items = cart.getItems();
+        String digest = cart.signingDigest();
+
+        items.add(new CartMandate.CartItem("sku-2", "Lamp", BigDecimal.TEN, 1));
+        assertSame(items, cart.getItems(), "Taking the digest should not replace the item list");
+        assertNotEquals(digest, cart.signingDigest());
+    }
+
+    @Test
+    void testPaymentDetailsEditChangesDigest() {
+        PaymentMandate payment = new PaymentMandate("payment-1", "agent-456", "merchant-789", "order-1",
+                new BigDecimal("50.00"), "USD", "cart-456", new HashMap<>(), CREATED.plusSeconds(600));
+        String digest = payment.signingDigest();
+
+        payment.getPaymentDetails().put("cardLast4", "4242");
+        assertNotEquals(digest, payment.signingDigest());
+    }
+
+    @Test
+    void testDigestOfMandateWithoutPaymentDetails() {
+        PaymentMandate payment = new PaymentMandate("cart-456", "card", "user-1", new BigDecimal("50.00"));
+
+        assertNotNull(payment.signingDigest());
+        assertTrue(payment.getPaymentDetails().isEmpty());
+    }
+
+    @Test
+    void testStringEscaping() {
+        Map<String, Object> members = new HashMap<>();
+        members.put("text", "tab\tline\nquote\" slash\\ bell\u0007 euro€");
+
+        assertEquals("{\"text\":\"tab\\tline\\nquote\\\" slash\\\\ bell\\u0007 euro€\"}",
+                new String(CanonicalJson.serialize(members), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testNumberFormatting() {
+        assertEquals("0", CanonicalJson.formatNumber(-0.0));
+        assertEquals("100", CanonicalJson.formatNumber(100.0));
+        assertEquals("-1.5", CanonicalJson.formatNumber(-1.5));
+        assertEquals("0.000001", CanonicalJson.formatNumber(1e-6));
+        assertEquals("1e-7", CanonicalJson.formatNumber(1e-7));
+        assertEquals("100000000000000000000", CanonicalJson.formatNumber(1e20));
+        assertEquals("1e+21", CanonicalJson.formatNumber(1e21));
+        assertEquals("1.2345e+25", CanonicalJson.formatNumber(1.2345e25));
+        assertThrows(IllegalArgumentException.class, () -> CanonicalJson.formatNumber(Double.NaN));
+    }
+
+    @Test
+    void testValueSerializationKeepsJsonTypes() {
+        assertEquals("\"100\"", new String(CanonicalJson.serializeValue("100"), StandardCharsets.UTF_8));
+        assertEquals("100", new String(CanonicalJson.serializeValue(100), StandardCharsets.UTF_8));
+        assertEquals("100", new String(CanonicalJson.serializeValue(new BigDecimal("100.00")), StandardCharsets.UTF_8));
+        assertEquals("-0.5", new String(CanonicalJson.serializeValue(-0.5), StandardCharsets.UTF_8));
+        assertEquals("null", new String(CanonicalJson.serializeValue(null), StandardCharsets.UTF_8));
+        assertEquals(CanonicalJson.formatNumber(1.2345e25), CanonicalJson.formatNumber(new BigDecimal("1.2345E+25")));
+        assertEquals("1e+21", new String(CanonicalJson.serializeValue(new BigDecimal("1e21").toBigInteger()),
+                StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testMembersSortedByCodeUnits() {
+        Map<String, Object> members = new HashMap<>();
+        members.put("b", 1);
+        members.put("a", Arrays.asList(true, null));
+        members.put("B", 2L);
+
+        assertEquals("{\"B\":2,\"a\":[true,null],\"b\":1}",
+                new String(CanonicalJson.serialize(members), StandardCharsets.UTF_8));
+    }
+
+    private IntentMandate intent(BigDecimal maxAmount) {
+        IntentMandate mandate = new IntentMandate("intent-123", "agent-456", "merchant-789", maxAmount, false);
+        mandate.setCreatedAt(CREATED);
+        mandate.setExpiresAt(CREATED.plusSeconds(3600));
+        return mandate;
+    }
+
+    private PaymentMandate payment(Map<String, Object> details) {
+        PaymentMandate mandate = new PaymentMandate("payment-789", "agent-456", "merchant-789", "ref-1",
+                new BigDecimal("50.00"), "USD", "cart-456", details, CREATED.plusSeconds(3600));
+        mandate.setCreatedAt(CREATED);
+        return mandate;
+    }
+}
@@ -0,0 +1,175 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import io.github.vishalmysore.ap2java.util.ManualClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the MandateExpirySweeper class.
+ */
+public class MandateExpirySweeperTest {
+
+    private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+
+    private ManualClock clock;
+    private InMemoryMandateRepository store;
+    private MandateExpirySweeper sweeper;
+    private MandateRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        clock = new ManualClock(NOW);
+        store = new InMemoryMandateRepository(clock);
+        sweeper = new MandateExpirySweeper(store::removeMandate, clock, Duration.ofSeconds(1));
+        repository = sweeper.tracking(store);
+    }
+
+    private IntentMandate intent(String id, Duration validFor) {
+        IntentMandate mandate = new IntentMandate(id, "agent-1", "merchant-1", new BigDecimal("100.00"), false);
+        mandate.setCreatedAt(NOW.minusSeconds(60));
+        mandate.setExpiresAt(NOW.plus(validFor));
+        return mandate;
+    }
+
+    private CartMandate cart(String id, Duration validFor) {
+        return new CartMandate(id, "agent-1", "merchant-1", "intent-1",
+                Collections.singletonList(new CartMandate.CartItem("item-1", "Book", new BigDecimal("12.50"), 1)),
+                "USD", NOW.plus(validFor));
+    }
+
+    private PaymentMandate payment(String id, String paymentReference, Duration validFor) {
+        return new PaymentMandate(id, "agent-1", "merchant-1", paymentReference, new BigDecimal("12.50"),
+                "USD", "cart-1", Collections.emptyMap(), NOW.plus(validFor));
+    }
+
+    @Test
+    void testRemovesMandatesWhenTheyExpire() {
+        repository.storeIntentMandate(intent("intent-1", Duration.ofMinutes(10)));
+        repository.storeCartMandate(cart("cart-1", Duration.ofMinutes(5)));
+        repository.storePaymentMandate(payment("payment-mandate-1", "payment-1", Duration.ofMinutes(5)));
+        assertEquals(3, sweeper.getScheduledCount());
+
+        clock.advance(Duration.ofMinutes(4));
+        assertEquals(0, sweeper.sweep());
+        assertNotNull(repository.findCartMandate("cart-1"));
+
+        clock.advance(Duration.ofMinutes(2));
+        assertEquals(2, sweeper.sweep());
+        assertNull(repository.findCartMandate("cart-1"));
+        assertNull(repository.findPaymentMandate("payment-mandate-1"));
+        assertNull(repository.findPaymentMandateForPayment("payment-1"));
+        assertEquals("intent-1", repository.findActiveIntentMandateForAgent("agent-1", "merchant-1").getId());
+
+        clock.advance(Duration.ofMinutes(5));
+        assertEquals(1, sweeper.sweep());
+        assertNull(store.findIntentMandate("intent-1"));
+        assertEquals(0, store.size());
+        assertEquals(0, sweeper.getScheduledCount());
+    }
+
+    @Test
+    void testStoringAgainReschedules() {
+        repository.storeIntentMandate(intent("intent-1", Duration.ofMinutes(5)));
+        repository.storeIntentMandate(intent("intent-1", Duration.ofMinutes(30)));
+
+        clock.advance(Duration.ofMinutes(10));
+        assertEquals(0, sweeper.sweep());
+        assertNotNull(store.findIntentMandate("intent-1"));
+
+        IntentMandate noExpiry = intent("intent-1", Duration.ZERO);
+        noExpiry.setExpiresAt(null);
+        repository.storeIntentMandate(noExpiry);
+        assertEquals(0, sweeper.getScheduledCount());
+    }
+
+    @Test
+    void testRemovalCancelsExpiry() {
+        repository.storeCartMandate(cart("cart-1", Duration.ofMinutes(5)));
+        assertTrue(repository.removeMandate("cart-1"));
+        assertFalse(repository.removeMandate("cart-1"));
+        assertEquals(0, sweeper.getScheduledCount());
+    }
+
+    @Test
+    void testRevokedMandateStaysRevokedAfterRemoval() {
+        repository.storeIntentMandate(intent("intent-1", Duration.ofMinutes(5)));
+        assertTrue(repository.revokeMandate("intent-1", "lost device"));
+
+        clock.advance(Duration.ofMinutes(6));
+        sweeper.sweep();
+        assertNull(store.findIntentMandate("intent-1"));
+        assertTrue(store.isRevoked("intent-1"));
+    }
+
+    @Test
+    void testArchivingHandlerAndFailures() {
+        List<String> archived = new ArrayList<>();
+        MandateExpirySweeper archiver = new MandateExpirySweeper(mandateId -> {
+            if (mandateId.equals("cart-bad")) {
+                throw new IllegalStateException("Archive unavailable");
+            }
+            archived.add(mandateId);
+        }, clock, Duration.ofSeconds(1));
+        archiver.schedule(cart("cart-bad", Duration.ofMinutes(1)));
+        archiver.schedule(cart("cart-1", Duration.ofMinutes(1)));
+        assertFalse(archiver.schedule(new CartMandate()));
+
+        clock.advance(Duration.ofMinutes(2));
+        assertEquals(2, archiver.sweep());
+        assertEquals(List.of("cart-1"), archived);
+    }
+
+    @Test
+    void testBackgroundSweeps() throws InterruptedException {
+        List<String> expired = Collections.synchronizedList(new ArrayList<>());
+        try (MandateExpirySweeper background = new MandateExpirySweeper(expired::add, clock, Duration.ofMillis(5))) {
+            background.start();
+            background.start();
+            background.schedule(cart("cart-1", Duration.ofSeconds(1)));
+            clock.advance(Duration.ofSeconds(2));
+            for (int i = 0; i < 200 && expired.isEmpty(); i++) {
+                Thread.sleep(10);
+            }
+        }
+        assertEquals(List.of("cart-1"), expired);
+    }
+
+    @Test
+    void testSweepsSegmentFileRepository(@TempDir Path tempDir) {
+        try (SegmentFileMandateRepository segments = new SegmentFileMandateRepository(tempDir, clock, 1 << 20, 0)) {
+            MandateExpirySweeper segmentSweeper = new MandateExpirySweeper(segments::removeMandate, clock,
+                    Duration.ofSeconds(1));
+            MandateRepository tracked = segmentSweeper.tracking(segments);
+            tracked.storeIntentMandate(intent("intent-1", Duration.ofMinutes(5)));
+            tracked.storePaymentMandate(payment("payment-mandate-1", "payment-1", Duration.ofMinutes(5)));
+            tracked.storeCartMandate(cart("cart-1", Duration.ofMinutes(30)));
+
+            clock.advance(Duration.ofMinutes(10));
+            assertEquals(2, segmentSweeper.sweep());
+            assertNull(segments.findIntentMandate("intent-1"));
+            assertNull(segments.findPaymentMandateForPayment("payment-1"));
+            assertFalse(segments.removeMandate("intent-1"));
+        }
+
+        try (SegmentFileMandateRepository segments = new SegmentFileMandateRepository(tempDir, clock, 1 << 20, 0)) {
+            assertNull(segments.findIntentMandate("intent-1"));
+            assertNull(segments.findPaymentMandate("payment-mandate-1"));
+            assertNotNull(segments.findCartMandate("cart-1"));
+
+            // Storing a removed mandate again brings it back
+            segments.storeIntentMandate(intent("intent-1", Duration.ofMinutes(30)));
+            assertEquals("intent-1", segments.findActiveIntentMandateForAgent("agent-1", "merchant-1").getId());
+        }
+    }
+}
@@ -113,6 +113,16 @@ public class PaymentMandateTest {
         assertEquals(mockCredential, paymentMandate.getCredential());
     }
     
+    @Test
+    void testNewMandateIsValidAtOnce() {
+        for (int i = 0; i < 1000; i++) {
+            PaymentMandate fresh = new PaymentMandate("payment-" + i, TEST_REQUESTING_AGENT_ID,
+                    TEST_RECEIVING_AGENT_ID, TEST_PAYMENT_REFERENCE, TEST_AMOUNT, TEST_CURRENCY_CODE,
+                    TEST_PARENT_MANDATE_ID, testPaymentDetails, Instant.now().plusSeconds(60));
+            assertTrue(fresh.isValid(), "A new payment mandate should be valid with the default clock");
+        }
+    }
+    
     @Test
     void testIsValid() {
         // Ensure created time is set to a point well in the past to ensure validity
@@ -0,0 +1,182 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import io.github.vishalmysore.ap2java.domain.PaymentRequest;
+import io.github.vishalmysore.ap2java.security.SignatureService;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for RevocationIndex and its use by DefaultMandateVerifier.
+ */
+public class RevocationIndexTest {
+
+    @Test
+    void testRevoke() {
+        RevocationIndex index = new RevocationIndex();
+
+        assertFalse(index.isRevoked("intent-123"));
+        assertTrue(index.revoke("intent-123"));
+        assertFalse(index.revoke("intent-123"));
+        assertTrue(index.isRevoked("intent-123"));
+        assertFalse(index.isRevoked("intent-124"));
+        assertFalse(index.isRevoked(null));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void testLoadedRevocations() {
+        RevocationIndex index = RevocationIndex.of(Arrays.asList("cart-1", "cart-2"));
+
+        assertTrue(index.isRevoked("cart-1"));
+        assertTrue(index.isRevoked("cart-2"));
+        assertFalse(index.isRevoked("cart-3"));
+    }
+
+    @Test
+    void testGrowsPastExpectedSize() {
+        RevocationIndex index = new RevocationIndex(10, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            index.revoke("mandate-" + i);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(index.isRevoked("mandate-" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 1000; i < 11000; i++) {
+            falsePositives += index.isRevoked("mandate-" + i) ? 1 : 0;
+        }
+        // The exact set confirms every filter hit
+        assertEquals(0, falsePositives);
+        assertEquals(1000, index.size());
+    }
+
+    @Test
+    void testConcurrentRevocations() throws InterruptedException {
+        RevocationIndex index = new RevocationIndex(16, 0.01);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t * 500;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    index.revoke("mandate-" + (offset + i));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 0; i < 2000; i++) {
+            assertTrue(index.isRevoked("mandate-" + i), "mandate-" + i);
+        }
+    }
+
+    @Test
+    void testRevocationVisibleAtOnceWhileFilterGrows() throws InterruptedException {
+        RevocationIndex index = new RevocationIndex(10_000, 0.01);
+        ConcurrentLinkedQueue<String> returned = new ConcurrentLinkedQueue<>();
+        AtomicInteger running = new AtomicInteger(2);
+        AtomicInteger missed = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            int offset = t * 100_000;
+            threads.add(new Thread(() -> {
+                // Each rebuild re-reads every revocation, so it runs long enough to overlap others
+                for (int i = 0; i < 100_000; i++) {
+                    String mandateId = "mandate-" + (offset + i);
+                    index.revoke(mandateId);
+                    returned.add(mandateId);
+                }
+                running.decrementAndGet();
+            }));
+        }
+        threads.add(new Thread(() -> {
+            while (running.get() > 0 || !returned.isEmpty()) {
+                String mandateId = returned.poll();
+                if (mandateId != null && !index.isRevoked(mandateId)) {
+                    missed.incrementAndGet();
+                }
+            }
+        }));
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, missed.get(), "Revocations not visible after revoke() returned");
+    }
+
+    @Test
+    void testTrackingRepositoryRecordsRevocations() {
+        MandateRepository storage = mock(MandateRepository.class);
+        when(storage.revokeMandate("intent-123", "lost card")).thenReturn(true);
+        when(storage.revokeMandate("intent-404", "unknown")).thenReturn(false);
+        RevocationIndex index = new RevocationIndex();
+        MandateRepository repository = index.tracking(storage);
+
+        assertTrue(repository.revokeMandate("intent-123", "lost card"));
+        assertFalse(repository.revokeMandate("intent-404", "unknown"));
+        repository.findCartMandate("cart-456");
+
+        assertTrue(index.isRevoked("intent-123"));
+        assertFalse(index.isRevoked("intent-404"));
+        verify(storage).findCartMandate("cart-456");
+    }
+
+    @Test
+    void testVerifierRejectsRevokedMandateBeforeSignatureWork() {
+        AtomicInteger signatureChecks = new AtomicInteger();
+        DefaultMandateVerifier verifier = new DefaultMandateVerifier(mock(SignatureService.class)) {
+            @Override
+            public boolean verifySignature(Object mandate) {
+                signatureChecks.incrementAndGet();
+                return true;
+            }
+        };
+        RevocationIndex index = new RevocationIndex();
+        verifier.setRevocationIndex(index);
+
+        IntentMandate intent = new IntentMandate("intent-123", "agent-456", "merchant-789", new BigDecimal("200.00"), false);
+        CartMandate cart = new CartMandate();
+        cart.setId("cart-456");
+        cart.setIntentMandateId("intent-123");
+        cart.setReceivingAgentId("merchant-789");
+        cart.setAmount(new BigDecimal("150.00"));
+        cart.setCurrencyCode("USD");
+        cart.setExpiresAt(Instant.now().plusSeconds(3600));
+        PaymentRequest request = PaymentRequest.builder()
+                .requestingAgentId("agent-456")
+                .receivingAgentId("merchant-789")
+                .amount(new BigDecimal("150.00"))
+                .currencyCode("USD")
+                .build();
+
+        // Cache a successful verification, then revoke
+        assertTrue(verifier.checkIntentMandate(intent, request).isValid());
+        assertEquals(1, signatureChecks.get());
+        index.revoke("intent-123");
+        index.revoke("cart-456");
+
+        assertEquals(VerificationResult.Reason.REVOKED, verifier.checkIntentMandate(intent, request).getReason());
+        assertEquals(VerificationResult.Reason.REVOKED, verifier.checkCartMandate(cart, intent, request).getReason());
+        assertEquals(VerificationResult.Reason.REVOKED,
+                verifier.checkChain(intent, cart, new PaymentMandate(), request).getReason());
+        assertEquals(1, signatureChecks.get());
+        assertEquals(3, verifier.getStats().getCount(VerificationResult.Reason.REVOKED));
+    }
+}
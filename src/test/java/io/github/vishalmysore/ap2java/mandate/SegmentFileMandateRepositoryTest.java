@@ -0,0 +1,364 @@
+package io.github.vishalmysore.ap2java.mandate;
+
+import io.github.vishalmysore.ap2java.util.ManualClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the SegmentFileMandateRepository class.
+ */
+public class SegmentFileMandateRepositoryTest {
+
+    private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+
+    @TempDir
+    Path tempDir;
+
+    private ManualClock clock;
+
+    @BeforeEach
+    void setUp() {
+        clock = new ManualClock(NOW);
+    }
+
+    private SegmentFileMandateRepository open() {
+        return new SegmentFileMandateRepository(tempDir, clock, 1 << 20, 0);
+    }
+
+    private IntentMandate intent(String id, String merchantId, Duration validFor) {
+        IntentMandate mandate = new IntentMandate(id, "agent-1", merchantId, new BigDecimal("100.00"), false);
+        mandate.setCreatedAt(NOW.minusSeconds(60));
+        mandate.setExpiresAt(NOW.plus(validFor));
+        return mandate;
+    }
+
+    @Test
+    void testMandateIsActiveFromTheInstantItIsCreated() {
+        IntentMandate mandate = intent("intent-1", "merchant-1", Duration.ofHours(1));
+        mandate.setCreatedAt(NOW);
+        try (SegmentFileMandateRepository repository = open()) {
+            repository.storeIntentMandate(mandate);
+            assertEquals("intent-1", repository.findActiveIntentMandateForAgent("agent-1", "merchant-1").getId());
+        }
+    }
+
+    @Test
+    void testCachedMandateIsNotSharedWithCallers() {
+        CartMandate cartMandate = new CartMandate("cart-mandate-1", "agent-1", "merchant-1", "intent-1",
+                Collections.singletonList(new CartMandate.CartItem("item-1", "Book", new BigDecimal("12.50"), 2)),
+                "USD", NOW.plusSeconds(600));
+        try (SegmentFileMandateRepository repository =
+                     new SegmentFileMandateRepository(tempDir, clock, 1 << 20, 100)) {
+            repository.storeIntentMandate(intent("intent-1", "merchant-1", Duration.ofHours(1)));
+            repository.storeCartMandate(cartMandate);
+
+            CartMandate first = repository.findCartMandate("cart-mandate-1");
+            first.setCurrencyCode("EUR");
+            first.setIntentMandateId("intent-2");
+            CartMandate second = repository.findCartMandate("cart-mandate-1");
+            assertNotSame(first, second);
+            assertEquals("USD", second.getCurrencyCode());
+            assertEquals("intent-1", second.getIntentMandateId());
+
+            IntentMandate active = repository.findActiveIntentMandateForAgent("agent-1", "merchant-1");
+            active.setMaxAmountPerPayment(new BigDecimal("1000000.00"));
+            assertEquals(new BigDecimal("100.00"),
+                    repository.findActiveIntentMandateForAgent("agent-1", "merchant-1").getMaxAmountPerPayment());
+        }
+    }
+
+    @Test
+    void testMandatesSurviveReopen() {
+        IntentMandate intentMandate = intent("intent-1", "merchant-1", Duration.ofHours(1));
+        intentMandate.setAllowedCategories(Arrays.asList("books", "music"));
+        intentMandate.setMaxTotalAmount(new BigDecimal("250.00"));
+        intentMandate.setBudgetWindow(Duration.ofDays(1));
+        intentMandate.setConstraints("time between 09:00 and 17:30");
+        intentMandate.setCredential(new MandateCredential(intentMandate, "user-1", NOW));
+        CartMandate cartMandate = new CartMandate("cart-mandate-1", "agent-1", "merchant-1", "intent-1",
+                Collections.singletonList(new CartMandate.CartItem("item-1", "Book", new BigDecimal("12.50"), 2)),
+                "USD", NOW.plusSeconds(600));
+        PaymentMandate paymentMandate = new PaymentMandate("payment-mandate-1", "agent-1", "merchant-1",
+                "payment-1", new BigDecimal("25.00"), "USD", "cart-mandate-1",
+                Collections.singletonMap("last4", "4242"), NOW.plusSeconds(600));
+
+        try (SegmentFileMandateRepository repository = open()) {
+            repository.storeIntentMandate(intentMandate);
+            repository.storeCartMandate(cartMandate);
+            repository.storePaymentMandate(paymentMandate);
+        }
+
+        try (SegmentFileMandateRepository repository = open()) {
+            IntentMandate loadedIntent = repository.findIntentMandate("intent-1");
+            assertEquals(intentMandate.signingDigest(), loadedIntent.signingDigest());
+            assertEquals(new BigDecimal("250.00"), loadedIntent.getMaxTotalAmount());
+            assertEquals(Duration.ofDays(1), loadedIntent.getBudgetWindow());
+            assertEquals(Arrays.asList("books", "music"), loadedIntent.getAllowedCategories());
+            assertTrue(MandateCredential.isBoundTo(loadedIntent.getCredential(), loadedIntent));
+
+            CartMandate loadedCart = repository.findCartMandate("cart-mandate-1");
+            assertEquals(cartMandate.signingDigest(), loadedCart.signingDigest());
+            assertEquals(new BigDecimal("25.00"), loadedCart.getAmount());
+
+            PaymentMandate loadedPayment = repository.findPaymentMandate("payment-mandate-1");
+            assertEquals(paymentMandate.signingDigest(), loadedPayment.signingDigest());
+
+            assertEquals("payment-mandate-1", repository.findPaymentMandateForPayment("payment-1").getId());
+            assertEquals("cart-mandate-1", repository.findCartMandateForPayment("payment-1").getId());
+            assertEquals("intent-1", repository.findIntentMandateForPayment("payment-1").getId());
+            assertNull(repository.findCartMandate("intent-1"));
+            assertNull(repository.findPaymentMandateForPayment("payment-2"));
+        }
+    }
+
+    @Test
+    void testFindsActiveIntentMandate() {
+        try (SegmentFileMandateRepository repository = open()) {
+            repository.storeIntentMandate(intent("intent-1", "merchant-1", Duration.ofHours(1)));
+            repository.storeIntentMandate(intent("intent-2", "merchant-1", Duration.ofHours(3)));
+            repository.storeIntentMandate(intent("intent-3", null, Duration.ofHours(2)));
+            repository.storeIntentMandate(intent("intent-4", "merchant-2", Duration.ofHours(4)));
+
+            assertEquals("intent-2", repository.findActiveIntentMandateForAgent("agent-1", "merchant-1").getId());
+            assertEquals("intent-3", repository.findActiveIntentMandateForAgent("agent-1", "merchant-3").getId());
+            assertEquals("intent-4", repository.findActiveIntentMandateForAgent("agent-1", null).getId());
+            assertNull(repository.findActiveIntentMandateForAgent("agent-2", null));
+
+            clock.advance(Duration.ofMinutes(150));
+            assertNull(repository.findActiveIntentMandateForAgent("agent-1", "merchant-3"));
+            assertEquals("intent-2", repository.findActiveIntentMandateForAgent("agent-1", "merchant-1").getId());
+        }
+    }
+
+    @Test
+    void testStoringAgainReplacesMandate() {
+        try (SegmentFileMandateRepository repository = open()) {
+            repository.storeIntentMandate(intent("intent-1", "merchant-1", Duration.ofHours(3)));
+            repository.storeIntentMandate(intent("intent-2", "merchant-1", Duration.ofHours(2)));
+            // Shorten intent-1, so intent-2 now expires last
+            repository.storeIntentMandate(intent("intent-1", "merchant-1", Duration.ofHours(1)));
+
+            assertEquals("intent-2", repository.findActiveIntentMandateForAgent("agent-1", "merchant-1").getId());
+            assertEquals(NOW.plus(Duration.ofHours(1)), repository.findIntentMandate("intent-1").getExpiresAt());
+        }
+    }
+
+    @Test
+    void testRevocationSurvivesReopen() {
+        try (SegmentFileMandateRepository repository = open()) {
+            repository.storeIntentMandate(intent("intent-1", "merchant-1", Duration.ofHours(1)));
+            repository.storeIntentMandate(intent("intent-2", "merchant-1", Duration.ofHours(2)));
+
+            assertTrue(repository.revokeMandate("intent-2", "lost device"));
+            assertFalse(repository.revokeMandate("intent-2", "lost device"));
+            assertFalse(repository.revokeMandate("unknown", "lost device"));
+        }
+
+        try (SegmentFileMandateRepository repository = open()) {
+            assertTrue(repository.isRevoked("intent-2"));
+            assertFalse(repository.isRevoked("intent-1"));
+            assertNotNull(repository.findIntentMandate("intent-2"));
+            assertEquals("intent-1", repository.findActiveIntentMandateForAgent("agent-1", "merchant-1").getId());
+        }
+    }
+
+    @Test
+    void testRollsSegmentsAndGrowsIndex() throws IOException {
+        try (SegmentFileMandateRepository repository =
+                     new SegmentFileMandateRepository(tempDir, clock, 4096, 0, 4)) {
+            for (int i = 0; i < 200; i++) {
+                repository.storeIntentMandate(intent("intent-" + i, "merchant-" + (i % 5), Duration.ofMinutes(i + 1)));
+            }
+        }
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertTrue(files.filter(path -> path.toString().endsWith(".seg")).count() > 1);
+        }
+
+        try (SegmentFileMandateRepository repository = open()) {
+            for (int i = 0; i < 200; i++) {
+                assertEquals("intent-" + i, repository.findIntentMandate("intent-" + i).getId());
+            }
+            assertEquals("intent-199", repository.findActiveIntentMandateForAgent("agent-1", null).getId());
+            assertEquals("intent-197", repository.findActiveIntentMandateForAgent("agent-1", "merchant-2").getId());
+        }
+    }
+
+    @Test
+    void testRebuildsMissingIndex() throws IOException {
+        try (SegmentFileMandateRepository repository = open()) {
+            repository.storeIntentMandate(intent("intent-1", "merchant-1", Duration.ofHours(1)));
+            repository.revokeMandate("intent-1", "test");
+        }
+        Files.delete(tempDir.resolve("mandates.idx"));
+
+        try (SegmentFileMandateRepository repository = open()) {
+            assertNotNull(repository.findIntentMandate("intent-1"));
+            assertTrue(repository.isRevoked("intent-1"));
+        }
+    }
+
+    @Test
+    void testReplaysRecordsAfterCheckpoint() throws IOException {
+        try (SegmentFileMandateRepository repository = open()) {
+            repository.storeIntentMandate(intent("intent-1", "merchant-1", Duration.ofHours(1)));
+            repository.storeIntentMandate(intent("intent-2", "merchant-1", Duration.ofHours(2)));
+        }
+        // As if the process died after appending the records but before moving the checkpoint
+        MappedHashIndex index = MappedHashIndex.open(tempDir.resolve("mandates.idx"));
+        index.setCheckpoint(0);
+        index.force();
+
+        try (SegmentFileMandateRepository repository = open()) {
+            assertEquals("intent-2", repository.findActiveIntentMandateForAgent("agent-1", "merchant-1").getId());
+            repository.storeIntentMandate(intent("intent-3", "merchant-1", Duration.ofHours(3)));
+        }
+        try (SegmentFileMandateRepository repository = open()) {
+            assertEquals("intent-3", repository.findActiveIntentMandateForAgent("agent-1", "merchant-1").getId());
+            assertNotNull(repository.findIntentMandate("intent-1"));
+        }
+    }
+
+    private SegmentFileMandateRepository openSmall() {
+        return new SegmentFileMandateRepository(tempDir, clock, 4096, 16, 4);
+    }
+
+    private long countFiles(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.filter(path -> path.toString().endsWith(suffix)).count();
+        }
+    }
+
+    /**
+     * Stores 20 Intent Mandates and two versions of a Payment Mandate, then supersedes,
+     * removes and revokes some of them, leaving 18 records that a compaction drops.
+     */
+    private void storeAndChurn(SegmentFileMandateRepository repository) {
+        for (int i = 0; i < 20; i++) {
+            repository.storeIntentMandate(intent("intent-" + i, "merchant-1", Duration.ofHours(1)));
+        }
+        for (int i = 0; i < 5; i++) {
+            repository.storeIntentMandate(intent("intent-" + i, "merchant-1", Duration.ofHours(10 + i)));
+        }
+        for (int i = 5; i < 10; i++) {
+            assertTrue(repository.removeMandate("intent-" + i));
+        }
+        assertTrue(repository.revokeMandate("intent-10", "lost device"));
+        assertTrue(repository.revokeMandate("intent-11", "lost device"));
+        assertTrue(repository.removeMandate("intent-11"));
+        repository.storePaymentMandate(new PaymentMandate("payment-mandate-1", "agent-1", "merchant-1",
+                "payment-1", new BigDecimal("25.00"), "USD", "cart-mandate-1", Collections.emptyMap(),
+                NOW.plusSeconds(600)));
+        repository.storePaymentMandate(new PaymentMandate("payment-mandate-1", "agent-1", "merchant-1",
+                "payment-2", new BigDecimal("25.00"), "USD", "cart-mandate-1", Collections.emptyMap(),
+                NOW.plusSeconds(600)));
+    }
+
+    private void assertChurnedState(SegmentFileMandateRepository repository) {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(NOW.plus(Duration.ofHours(10 + i)),
+                    repository.findIntentMandate("intent-" + i).getExpiresAt());
+        }
+        for (int i = 5; i < 10; i++) {
+            assertNull(repository.findIntentMandate("intent-" + i));
+        }
+        assertNotNull(repository.findIntentMandate("intent-10"));
+        assertTrue(repository.isRevoked("intent-10"));
+        assertNull(repository.findIntentMandate("intent-11"));
+        assertTrue(repository.isRevoked("intent-11"));
+        assertNotNull(repository.findIntentMandate("intent-19"));
+        assertNull(repository.findPaymentMandateForPayment("payment-1"));
+        assertEquals("payment-mandate-1", repository.findPaymentMandateForPayment("payment-2").getId());
+        assertEquals("intent-4", repository.findActiveIntentMandateForAgent("agent-1", "merchant-1").getId());
+    }
+
+    @Test
+    void testCompactionDropsRemovedAndSupersededRecords() throws IOException {
+        try (SegmentFileMandateRepository repository = openSmall()) {
+            storeAndChurn(repository);
+            long segmentsBefore = countFiles(".seg");
+
+            assertEquals(18, repository.compact());
+            assertChurnedState(repository);
+            assertTrue(countFiles(".seg") < segmentsBefore);
+            assertEquals(0, countFiles(".compact"));
+            assertFalse(Files.exists(tempDir.resolve("mandates-00000000.seg")));
+
+            // The rewritten agent chain is followed past a removed mandate
+            assertTrue(repository.removeMandate("intent-4"));
+            assertEquals("intent-3", repository.findActiveIntentMandateForAgent("agent-1", "merchant-1").getId());
+            repository.storeIntentMandate(intent("intent-20", "merchant-1", Duration.ofHours(20)));
+            assertEquals(2, repository.compact());
+        }
+
+        try (SegmentFileMandateRepository repository = openSmall()) {
+            assertNull(repository.findIntentMandate("intent-4"));
+            assertEquals("intent-20", repository.findActiveIntentMandateForAgent("agent-1", "merchant-1").getId());
+            assertTrue(repository.isRevoked("intent-11"));
+            assertEquals(0, repository.compact());
+        }
+    }
+
+    @Test
+    void testUncommittedCompactionIsDiscarded() throws IOException {
+        try (SegmentFileMandateRepository repository = openSmall()) {
+            storeAndChurn(repository);
+        }
+        // As if the process died while writing the rewritten files
+        Files.write(tempDir.resolve("mandates.idx.compact"), new byte[64]);
+        Files.write(tempDir.resolve("mandates-00000099.seg.compact"), new byte[4096]);
+
+        try (SegmentFileMandateRepository repository = openSmall()) {
+            assertEquals(0, countFiles(".compact"));
+            assertChurnedState(repository);
+        }
+    }
+
+    @Test
+    void testCommittedCompactionIsFinishedOnOpen() throws IOException {
+        byte[] firstSegment;
+        try (SegmentFileMandateRepository repository = openSmall()) {
+            storeAndChurn(repository);
+            repository.flush();
+            firstSegment = Files.readAllBytes(tempDir.resolve("mandates-00000000.seg"));
+            repository.compact();
+        }
+        // As if the process died after the index was renamed, with the rewritten segments renamed
+        // from the last down to all but the first, and an old segment not yet deleted
+        Path rewritten;
+        try (Stream<Path> files = Files.list(tempDir)) {
+            rewritten = files.filter(path -> path.toString().endsWith(".seg")).min(Path::compareTo).orElseThrow();
+        }
+        Files.move(rewritten, rewritten.resolveSibling(rewritten.getFileName() + ".compact"));
+        Files.write(tempDir.resolve("mandates-00000000.seg"), firstSegment);
+
+        try (SegmentFileMandateRepository repository = openSmall()) {
+            assertEquals(0, countFiles(".compact"));
+            assertFalse(Files.exists(tempDir.resolve("mandates-00000000.seg")));
+            assertChurnedState(repository);
+        }
+    }
+
+    @Test
+    void testClosedRepositoryRejectsWrites() {
+        SegmentFileMandateRepository repository = open();
+        repository.storeIntentMandate(intent("intent-1", "merchant-1", Duration.ofHours(1)));
+        repository.close();
+
+        assertThrows(IllegalStateException.class,
+                () -> repository.storeIntentMandate(intent("intent-2", "merchant-1", Duration.ofHours(1))));
+        assertNotNull(repository.findIntentMandate("intent-1"));
+    }
+}
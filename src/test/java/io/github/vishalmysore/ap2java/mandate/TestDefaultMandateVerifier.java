@@ -3,8 +3,8 @@ package io.github.vishalmysore.ap2java.mandate;
 import io.github.vishalmysore.ap2java.security.SignatureService;
 
 /**
- * A test implementation of DefaultMandateVerifier that works around the
- * casting issue in the verifySignature method for testing purposes.
+ * A test implementation of DefaultMandateVerifier that accepts every signature,
+ * so that tests can use unsigned mandates.
  */
 public class TestDefaultMandateVerifier extends DefaultMandateVerifier {
     
@@ -18,7 +18,7 @@ public class TestDefaultMandateVerifier extends DefaultMandateVerifier {
     }
     
     /**
-     * Override the verifySignature method to avoid the casting issue
+     * Override the verifySignature method so that mandates need no credential
      * in the test environment.
      * 
      * @param mandate The mandate to verify
@@ -4,14 +4,27 @@ import io.github.vishalmysore.ap2java.domain.Payment;
 import io.github.vishalmysore.ap2java.domain.PaymentRequest;
 import io.github.vishalmysore.ap2java.domain.PaymentResponse;
 import io.github.vishalmysore.ap2java.domain.PaymentStatus;
+import io.github.vishalmysore.ap2java.mandate.IntentMandate;
+import io.github.vishalmysore.ap2java.mandate.MandateRepository;
+import io.github.vishalmysore.ap2java.util.ManualClock;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * Tests for the SamplePaymentProcessor class.
@@ -45,6 +58,20 @@ public class SamplePaymentProcessorTest {
         assertNotNull(response.getAuthUrl());
     }
     
+    @Test
+    void testTransitionsUseClock() throws ExecutionException, InterruptedException {
+        ManualClock clock = new ManualClock(Instant.parse("2025-01-01T00:00:00Z"));
+        SamplePaymentProcessor processor = new SamplePaymentProcessor(null, clock);
+        
+        PaymentResponse created = processor.createPayment(testPaymentRequest).get();
+        assertEquals(clock.instant(), created.getCreatedAt());
+        
+        clock.advance(Duration.ofMinutes(5));
+        PaymentResponse authorized = processor.authorizePayment(created.getPaymentId(), "token").get();
+        assertEquals(Instant.parse("2025-01-01T00:00:00Z"), authorized.getCreatedAt());
+        assertEquals(Instant.parse("2025-01-01T00:05:00Z"), authorized.getUpdatedAt());
+    }
+    
     @Test
     void testAuthorizePayment() throws ExecutionException, InterruptedException {
         PaymentResponse createResponse = paymentProcessor.createPayment(testPaymentRequest).get();
@@ -127,4 +154,68 @@ public class SamplePaymentProcessorTest {
         assertEquals(PaymentStatus.FAILED, response.getStatus());
         assertEquals("PAYMENT_NOT_FOUND", response.getErrorCode());
     }
-}
\ No newline at end of file
+    
+    @Test
+    void testVelocityLimitRejectsPayment() throws ExecutionException, InterruptedException {
+        VelocityEngine velocityEngine = new VelocityEngine(Collections.singletonList(
+                VelocityRule.maxPayments("max-1-per-minute", 1, Duration.ofMinutes(1))));
+        SamplePaymentProcessor limitedProcessor = new SamplePaymentProcessor(velocityEngine);
+        
+        PaymentResponse first = limitedProcessor.createPayment(testPaymentRequest).get();
+        PaymentResponse second = limitedProcessor.createPayment(testPaymentRequest).get();
+        
+        assertEquals(PaymentStatus.CREATED, first.getStatus());
+        assertEquals(PaymentStatus.FAILED, second.getStatus());
+        assertEquals("VELOCITY_LIMIT_EXCEEDED", second.getErrorCode());
+        assertEquals("max-1-per-minute", second.getProcessorData().get("velocityRule"));
+    }
+    
+    @Test
+    void testBudgetReservedAtAuthorization() throws ExecutionException, InterruptedException {
+        IntentMandate mandate = new IntentMandate("intent-1", "test-agent-1", "test-agent-2",
+                new BigDecimal("100.00"), false);
+        mandate.setMaxTotalAmount(new BigDecimal("80.00"));
+        MandateRepository repository = mock(MandateRepository.class);
+        when(repository.findIntentMandateForPayment(anyString())).thenReturn(mandate);
+        SpendBudgetTracker tracker = new SpendBudgetTracker();
+        SamplePaymentProcessor budgetedProcessor = new SamplePaymentProcessor(
+                null, Clock.systemUTC(), tracker, repository);
+        
+        String first = budgetedProcessor.createPayment(testPaymentRequest).get().getPaymentId();
+        String second = budgetedProcessor.createPayment(testPaymentRequest).get().getPaymentId();
+        assertEquals(PaymentStatus.AUTHORIZED, budgetedProcessor.authorizePayment(first, "token").get().getStatus());
+        assertEquals("BUDGET_EXCEEDED", budgetedProcessor.authorizePayment(second, "token").get().getErrorCode());
+        
+        budgetedProcessor.cancelPayment(first).get();
+        assertEquals(PaymentStatus.AUTHORIZED, budgetedProcessor.authorizePayment(second, "token").get().getStatus());
+        budgetedProcessor.capturePayment(second).get();
+        assertEquals(5000, tracker.getCommittedMinor("intent-1"));
+    }
+    
+    @Test
+    void testConcurrentAuthorizationsReserveOnce() throws ExecutionException, InterruptedException {
+        IntentMandate mandate = new IntentMandate("intent-1", "test-agent-1", "test-agent-2",
+                new BigDecimal("100.00"), false);
+        mandate.setMaxTotalAmount(new BigDecimal("1000.00"));
+        MandateRepository repository = mock(MandateRepository.class);
+        when(repository.findIntentMandateForPayment(anyString())).thenReturn(mandate);
+        SpendBudgetTracker tracker = new SpendBudgetTracker();
+        SamplePaymentProcessor budgetedProcessor = new SamplePaymentProcessor(
+                null, Clock.systemUTC(), tracker, repository);
+        String paymentId = budgetedProcessor.createPayment(testPaymentRequest).get().getPaymentId();
+        
+        for (int round = 0; round < 50; round++) {
+            List<CompletableFuture<PaymentResponse>> authorizations = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                authorizations.add(budgetedProcessor.authorizePayment(paymentId, "token"));
+            }
+            for (CompletableFuture<PaymentResponse> authorization : authorizations) {
+                assertEquals(PaymentStatus.AUTHORIZED, authorization.get().getStatus());
+            }
+            assertEquals(5000, tracker.getUsedMinor("intent-1"), "The payment should be held once");
+            
+            budgetedProcessor.cancelPayment(paymentId).get();
+            assertEquals(0, tracker.getUsedMinor("intent-1"), "Cancelling should release the whole hold");
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.vishalmysore.ap2java.payment;
+
+import io.github.vishalmysore.ap2java.mandate.IntentMandate;
+import io.github.vishalmysore.ap2java.util.ManualClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the SpendBudgetTracker class.
+ */
+public class SpendBudgetTrackerTest {
+
+    private ManualClock clock;
+    private SpendBudgetTracker tracker;
+    private IntentMandate mandate;
+
+    @BeforeEach
+    void setUp() {
+        clock = new ManualClock(Instant.parse("2025-01-01T00:00:00Z"));
+        tracker = new SpendBudgetTracker(clock);
+        mandate = new IntentMandate("intent-1", "agent-1", "merchant-1", new BigDecimal("100.00"), false);
+        mandate.setMaxTotalAmount(new BigDecimal("250.00"));
+    }
+
+    @Test
+    void testLifetimeLimit() {
+        assertNotNull(tracker.reserve(mandate, new BigDecimal("100.00"), "USD"));
+        assertNotNull(tracker.reserve(mandate, new BigDecimal("100.00"), "USD"));
+        assertNull(tracker.reserve(mandate, new BigDecimal("50.01"), "USD"));
+        assertNotNull(tracker.reserve(mandate, new BigDecimal("50.00"), "USD"));
+
+        assertEquals(25000, tracker.getUsedMinor("intent-1"));
+        assertEquals(0, tracker.getRemainingMinor("intent-1"));
+    }
+
+    @Test
+    void testReleaseReturnsBudget() {
+        SpendBudgetTracker.Reservation reservation = tracker.reserve(mandate, new BigDecimal("200.00"), "USD");
+        assertNull(tracker.reserve(mandate, new BigDecimal("100.00"), "USD"));
+
+        assertTrue(reservation.release());
+        assertFalse(reservation.release());
+        assertFalse(reservation.commit());
+        assertEquals(0, tracker.getUsedMinor("intent-1"));
+        assertNotNull(tracker.reserve(mandate, new BigDecimal("100.00"), "USD"));
+    }
+
+    @Test
+    void testCommitKeepsBudget() {
+        SpendBudgetTracker.Reservation reservation = tracker.reserve(mandate, new BigDecimal("200.00"), "USD");
+
+        assertTrue(reservation.commit());
+        assertFalse(reservation.commit());
+        assertFalse(reservation.release());
+        assertEquals(20000, tracker.getCommittedMinor("intent-1"));
+        assertEquals(20000, tracker.getUsedMinor("intent-1"));
+    }
+
+    @Test
+    void testRoundsAgainstTheMandate() {
+        mandate.setMaxTotalAmount(new BigDecimal("1.009"));
+        assertNull(tracker.reserve(mandate, new BigDecimal("1.001"), "USD"));
+        assertEquals(100, tracker.reserve(mandate, new BigDecimal("0.999"), "USD").getAmountMinor());
+    }
+
+    @Test
+    void testCurrencyFixedByFirstReservation() {
+        assertNotNull(tracker.reserve(mandate, BigDecimal.ONE, "USD"));
+        assertNull(tracker.reserve(mandate, BigDecimal.ONE, "EUR"));
+    }
+
+    @Test
+    void testUntrackedWithoutTotalLimit() {
+        mandate.setMaxTotalAmount(null);
+        SpendBudgetTracker.Reservation reservation = tracker.reserve(mandate, new BigDecimal("1000000"), "USD");
+
+        assertNotNull(reservation);
+        assertTrue(reservation.commit());
+        assertEquals(0, tracker.getTrackedMandateCount());
+    }
+
+    @Test
+    void testWindowSlides() {
+        mandate.setBudgetWindow(Duration.ofHours(1));
+        assertTrue(tracker.reserve(mandate, new BigDecimal("250.00"), "USD").commit());
+        assertNull(tracker.reserve(mandate, new BigDecimal("0.01"), "USD"));
+
+        clock.advance(Duration.ofMinutes(61));
+        assertNotNull(tracker.reserve(mandate, new BigDecimal("250.00"), "USD"));
+        assertEquals(25000, tracker.getCommittedMinor("intent-1"));
+    }
+
+    @Test
+    void testWindowedRelease() {
+        mandate.setBudgetWindow(Duration.ofHours(1));
+        SpendBudgetTracker.Reservation reservation = tracker.reserve(mandate, new BigDecimal("250.00"), "USD");
+
+        clock.advance(Duration.ofMinutes(10));
+        reservation.release();
+        assertEquals(0, tracker.getUsedMinor("intent-1"));
+    }
+
+    @Test
+    void testConcurrentReservationsNeverOverspend() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger accepted = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1000);
+        for (int i = 0; i < 1000; i++) {
+            executor.execute(() -> {
+                SpendBudgetTracker.Reservation reservation = tracker.reserve(mandate, BigDecimal.ONE, "USD");
+                if (reservation != null) {
+                    accepted.incrementAndGet();
+                    reservation.commit();
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(250, accepted.get());
+        assertEquals(25000, tracker.getCommittedMinor("intent-1"));
+    }
+}
@@ -0,0 +1,143 @@
+package io.github.vishalmysore.ap2java.payment;
+
+import io.github.vishalmysore.ap2java.util.ManualClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the VelocityEngine class.
+ */
+public class VelocityEngineTest {
+
+    private ManualClock clock;
+    private VelocityRule countRule;
+    private VelocityRule amountRule;
+    private VelocityEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        clock = new ManualClock(Instant.parse("2025-01-01T00:00:00Z"));
+        countRule = VelocityRule.maxPayments("max-3-per-minute", 3, Duration.ofMinutes(1));
+        amountRule = VelocityRule.maxAmount("max-500-per-minute", new BigDecimal("500.00"), Duration.ofMinutes(1));
+        engine = new VelocityEngine(Arrays.asList(countRule, amountRule), Duration.ofMinutes(5), clock);
+    }
+
+    @Test
+    void testCountRuleTrips() {
+        for (int i = 0; i < 3; i++) {
+            assertNull(engine.tryAcquire("agent-1", new BigDecimal("10.00"), "USD"));
+        }
+        assertSame(countRule, engine.tryAcquire("agent-1", new BigDecimal("10.00"), "USD"));
+
+        // Other agents are tracked independently
+        assertNull(engine.tryAcquire("agent-2", new BigDecimal("10.00"), "USD"));
+    }
+
+    @Test
+    void testAmountRuleTrips() {
+        assertNull(engine.tryAcquire("agent-1", new BigDecimal("400.00"), "USD"));
+        assertSame(amountRule, engine.tryAcquire("agent-1", new BigDecimal("100.01"), "USD"));
+
+        // The rejected payment was not counted, so a smaller one still fits
+        assertNull(engine.tryAcquire("agent-1", new BigDecimal("100.00"), "USD"));
+    }
+
+    @Test
+    void testAmountsSummedPerCurrency() {
+        assertNull(engine.tryAcquire("agent-1", new BigDecimal("400.00"), "USD"));
+        assertNull(engine.tryAcquire("agent-1", new BigDecimal("400.00"), "EUR"));
+        assertSame(amountRule, engine.tryAcquire("agent-1", new BigDecimal("100.01"), "EUR"));
+
+        // Count rules still span currencies
+        assertNull(engine.tryAcquire("agent-1", new BigDecimal("1.00"), "GBP"));
+        assertSame(countRule, engine.tryAcquire("agent-1", new BigDecimal("1.00"), "JPY"));
+    }
+
+    @Test
+    void testAmountsScaledByCurrencyFractionDigits() {
+        VelocityEngine amountEngine = new VelocityEngine(
+                Arrays.asList(amountRule), Duration.ofMinutes(5), clock);
+
+        // JPY has no minor units, so 500 yen is the whole limit rather than 5.00
+        assertNull(amountEngine.tryAcquire("agent-1", new BigDecimal("500"), "JPY"));
+        assertSame(amountRule, amountEngine.tryAcquire("agent-1", BigDecimal.ONE, "JPY"));
+
+        // KWD has three minor-unit digits
+        assertNull(amountEngine.tryAcquire("agent-2", new BigDecimal("499.999"), "KWD"));
+        assertSame(amountRule, amountEngine.tryAcquire("agent-2", new BigDecimal("0.002"), "KWD"));
+        assertNull(amountEngine.tryAcquire("agent-2", new BigDecimal("0.001"), "KWD"));
+
+        assertEquals(50_000, VelocityEngine.toMinorUnits(new BigDecimal("500"), 2));
+        assertEquals(500, VelocityEngine.toMinorUnits(new BigDecimal("500"), 0));
+    }
+
+    @Test
+    void testUnknownCurrencyRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.tryAcquire("agent-1", BigDecimal.ONE, "ZZZ"));
+    }
+
+    @Test
+    void testWindowSlides() {
+        for (int i = 0; i < 3; i++) {
+            assertNull(engine.tryAcquire("agent-1", BigDecimal.ONE, "USD"));
+        }
+        assertNotNull(engine.tryAcquire("agent-1", BigDecimal.ONE, "USD"));
+
+        clock.advance(Duration.ofSeconds(61));
+        assertNull(engine.tryAcquire("agent-1", BigDecimal.ONE, "USD"));
+    }
+
+    @Test
+    void testIdleAgentsEvicted() {
+        engine.tryAcquire("agent-1", BigDecimal.ONE, "USD");
+        engine.tryAcquire("agent-2", BigDecimal.ONE, "USD");
+        assertEquals(2, engine.getTrackedAgentCount());
+
+        clock.advance(Duration.ofMinutes(6));
+        engine.tryAcquire("agent-3", BigDecimal.ONE, "USD");
+
+        assertEquals(1, engine.getTrackedAgentCount());
+    }
+
+    @Test
+    void testConcurrentAcquireNeverExceedsLimit() throws InterruptedException {
+        VelocityEngine concurrentEngine = new VelocityEngine(
+                Arrays.asList(VelocityRule.maxPayments("max-100", 100, Duration.ofMinutes(1))),
+                Duration.ofMinutes(5), clock);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger accepted = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1000);
+        for (int i = 0; i < 1000; i++) {
+            executor.execute(() -> {
+                if (concurrentEngine.tryAcquire("agent-1", BigDecimal.ONE, "USD") == null) {
+                    accepted.incrementAndGet();
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertTrue(accepted.get() <= 100);
+        assertTrue(accepted.get() > 0);
+    }
+
+    @Test
+    void testUntrackedWithoutAgentId() {
+        assertNull(engine.tryAcquire(null, new BigDecimal("1000.00"), "USD"));
+        assertEquals(0, engine.getTrackedAgentCount());
+    }
+}
@@ -0,0 +1,186 @@
+package io.github.vishalmysore.ap2java.security;
+
+import io.github.vishalmysore.ap2java.credentials.CredentialProof;
+import io.github.vishalmysore.ap2java.credentials.CredentialSubject;
+import io.github.vishalmysore.ap2java.credentials.VerifiableCredential;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.security.KeyPair;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for DefaultSignatureService.
+ */
+public class DefaultSignatureServiceTest {
+
+    private ExecutorService pool;
+    private DefaultSignatureService service;
+
+    @BeforeEach
+    void setUp() {
+        pool = Executors.newFixedThreadPool(4);
+        service = new DefaultSignatureService(pool, 4);
+        service.generateKeyPair("key-1");
+        service.generateKeyPair("key-2");
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void testSignAndVerify() {
+        VerifiableCredential credential = service.signCredential(credential("cred-1", 100), "key-1");
+
+        assertNotNull(credential.getProof().getSignature());
+        assertEquals(DefaultSignatureService.PROOF_TYPE, credential.getProof().getType());
+        assertEquals("key-1", credential.getProof().getVerificationMethod());
+        assertTrue(service.verifyCredential(credential));
+    }
+
+    @Test
+    void testTamperedCredentialFails() {
+        VerifiableCredential credential = service.signCredential(credential("cred-1", 100), "key-1");
+
+        credential.getSubject().addClaim("amount", 1000);
+
+        assertFalse(service.verifyCredential(credential));
+    }
+
+    @Test
+    void testClaimTypeIsSigned() {
+        VerifiableCredential credential = service.signCredential(credential("cred-1", "100"), "key-1");
+
+        credential.getSubject().addClaim("amount", 100);
+
+        assertFalse(service.verifyCredential(credential));
+    }
+
+    @Test
+    void testClaimsVerifyAfterJsonRoundTrip() {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("method", "card");
+        details.put("limits", List.of(1, 2));
+        details.put("fee", new BigDecimal("1.50"));
+        VerifiableCredential credential = credential("cred-1", new BigDecimal("25.50"));
+        credential.getSubject().addClaim("details", details);
+        service.signCredential(credential, "key-1");
+
+        // As parsed back from JSON: other number types and another member order
+        Map<String, Object> parsed = new TreeMap<>(Comparator.reverseOrder());
+        parsed.put("method", "card");
+        parsed.put("limits", List.of(1L, 2L));
+        parsed.put("fee", 1.5);
+        credential.getSubject().addClaim("details", parsed);
+        credential.getSubject().addClaim("amount", 25.5);
+
+        assertTrue(service.verifyCredential(credential));
+    }
+
+    @Test
+    void testProofFromCreateProofIsUsed() {
+        VerifiableCredential credential = credential("cred-1", 100);
+        credential.setProof(service.createProof("key-1", "did:example:merchant#key-1", "authentication"));
+
+        service.signCredential(credential, "key-1");
+
+        assertEquals("did:example:merchant#key-1", credential.getProof().getVerificationMethod());
+        assertEquals("authentication", credential.getProof().getProofPurpose());
+        assertTrue(service.verifyCredential(credential));
+    }
+
+    @Test
+    void testUnknownOrMissingKeyFails() {
+        VerifiableCredential unsigned = credential("cred-1", 100);
+        VerifiableCredential unknownKey = credential("cred-2", 100);
+        unknownKey.setProof(new CredentialProof(DefaultSignatureService.PROOF_TYPE, Instant.now(),
+                "did:example:other#key-1", "assertionMethod", "c2lnbmF0dXJl"));
+
+        assertFalse(service.verifyCredential(unsigned));
+        assertFalse(service.verifyCredential(unknownKey));
+        assertThrows(IllegalArgumentException.class, () -> service.signCredential(unsigned, "missing-key"));
+    }
+
+    @Test
+    void testRegisteredPublicKeyVerifies() {
+        DefaultSignatureService issuer = new DefaultSignatureService();
+        KeyPair keyPair = issuer.generateKeyPair("issuer-key");
+        VerifiableCredential credential = issuer.signCredential(credential("cred-1", 100), "issuer-key");
+
+        assertFalse(service.verifyCredential(credential));
+        service.registerPublicKey("issuer-key", keyPair.getPublic());
+        assertTrue(service.verifyCredential(credential));
+    }
+
+    @Test
+    void testBatchResultBitmap() {
+        List<VerifiableCredential> credentials = new ArrayList<>();
+        BitSet expected = new BitSet();
+        for (int i = 0; i < 600; i++) {
+            VerifiableCredential credential = service.signCredential(credential("cred-" + i, i), i % 2 == 0 ? "key-1" : "key-2");
+            if (i % 7 == 0) {
+                credential.getSubject().addClaim("amount", -1);
+            } else if (i % 11 == 0) {
+                credential.setProof(new CredentialProof(credential.getProof().getType(), credential.getProof().getCreated(),
+                        credential.getProof().getVerificationMethod(), credential.getProof().getProofPurpose(), "not*base64"));
+            } else {
+                expected.set(i);
+            }
+            credentials.add(credential);
+        }
+        credentials.add(null);
+        credentials.add(credential("unsigned", 1));
+
+        BitSet results = service.verifyCredentials(credentials);
+
+        assertEquals(expected, results);
+        BitSet sequential = new BitSet();
+        for (int i = 0; i < credentials.size(); i++) {
+            if (service.verifyCredential(credentials.get(i))) {
+                sequential.set(i);
+            }
+        }
+        assertEquals(sequential, results);
+    }
+
+    @Test
+    void testSmallBatchVerifiedInline() {
+        List<VerifiableCredential> credentials = List.of(
+                service.signCredential(credential("cred-1", 1), "key-1"),
+                credential("cred-2", 2),
+                service.signCredential(credential("cred-3", 3), "key-2"));
+
+        BitSet results = service.verifyCredentials(credentials);
+
+        assertEquals(BitSet.valueOf(new long[] {0b101}), results);
+    }
+
+    private static VerifiableCredential credential(String id, Object amount) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("amount", amount);
+        claims.put("merchant", "merchant-789");
+        return new TestCredential(id, new CredentialSubject("did:example:agent-456", claims));
+    }
+
+    private static class TestCredential extends VerifiableCredential {
+        TestCredential(String id, CredentialSubject subject) {
+            super(id, "did:example:issuer", "MandateCredential", Instant.parse("2025-01-01T00:00:00Z"), subject, null);
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package io.github.vishalmysore.ap2java.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.vishalmysore.ap2java.client.AP2Client;
+import io.github.vishalmysore.ap2java.client.MessageDeduplicator;
+import io.github.vishalmysore.ap2java.client.MethodHandler;
+import io.github.vishalmysore.ap2java.client.TaskEventStream;
+import io.github.vishalmysore.ap2java.client.TaskRegistry;
+import io.github.vishalmysore.ap2java.domain.EnhancedCapabilities;
+import io.github.vishalmysore.ap2java.domain.PaymentEnabledAgentCard;
+import io.github.vishalmysore.ap2java.domain.PaymentResponse;
+import io.github.vishalmysore.ap2java.domain.PaymentStatus;
+import io.github.vishalmysore.ap2java.payment.SamplePaymentProcessor;
+import okhttp3.ConnectionPool;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the AP2HttpServer class, including a local load test that runs with
+ * {@code -Pbenchmark}.
+ */
+public class AP2HttpServerTest {
+
+    private static final MediaType JSON = MediaType.get("application/json");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private PaymentEnabledAgentCard agentCard;
+    private AP2Client client;
+    private AP2HttpServer server;
+    private OkHttpClient httpClient;
+    private String baseUrl;
+
+    @BeforeEach
+    void setUp() {
+        agentCard = new PaymentEnabledAgentCard();
+        agentCard.setName("Payment Agent");
+        EnhancedCapabilities capabilities = new EnhancedCapabilities();
+        capabilities.setStreaming(true);
+        agentCard.setCapabilities(capabilities);
+
+        client = new AP2Client(new SamplePaymentProcessor(), agentCard);
+        server = new AP2HttpServer(client, new InetSocketAddress("127.0.0.1", 0), 8, Duration.ofSeconds(5));
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getPort();
+        httpClient = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(128, 1, TimeUnit.MINUTES))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    @Test
+    void testCreateAndCheckPayment() throws IOException {
+        JsonNode created = call("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"createPayment\","
+                + "\"params\":{\"amount\":25.50,\"currencyCode\":\"USD\",\"requestingAgentId\":\"agent-1\"}}");
+
+        assertEquals(1, created.get("id").asInt());
+        String paymentId = created.path("result").path("paymentId").asText();
+        assertFalse(paymentId.isEmpty());
+        assertEquals("CREATED", created.path("result").path("status").asText());
+
+        JsonNode status = call("{\"jsonrpc\":\"2.0\",\"id\":\"status-1\",\"method\":\"checkPaymentStatus\","
+                + "\"params\":{\"paymentId\":\"" + paymentId + "\"}}");
+
+        assertEquals("status-1", status.get("id").asText());
+        assertEquals(paymentId, status.path("result").path("paymentId").asText());
+        assertTrue(status.path("result").path("createdAt").isTextual());
+    }
+
+    @Test
+    void testTaskIdsAreAssignedByTheServer() throws IOException {
+        AP2Client deduplicating = new AP2Client(new SamplePaymentProcessor(), agentCard, null,
+                new TaskRegistry(100, Duration.ofMinutes(5)),
+                new MessageDeduplicator(Duration.ofMinutes(5), 1000, 1000, 0.01));
+        AP2HttpServer shared = new AP2HttpServer(deduplicating, new InetSocketAddress("127.0.0.1", 0), 2,
+                Duration.ofSeconds(5));
+        shared.start();
+        baseUrl = "http://127.0.0.1:" + shared.getPort();
+        try {
+            // Two unrelated clients that both number their calls from 1
+            JsonNode first = call("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"createPayment\","
+                    + "\"params\":{\"amount\":10,\"currencyCode\":\"USD\",\"requestingAgentId\":\"agent-1\"}}");
+            JsonNode second = call("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"createPayment\","
+                    + "\"params\":{\"amount\":20,\"currencyCode\":\"USD\",\"requestingAgentId\":\"agent-2\"}}");
+
+            assertEquals(1, second.get("id").asInt());
+            assertTrue(second.path("error").isMissingNode(), second.toString());
+            assertNotEquals(first.path("result").path("paymentId").asText(),
+                    second.path("result").path("paymentId").asText());
+            String taskId = second.path("result").path("taskId").asText();
+            assertNotEquals(first.path("result").path("taskId").asText(), taskId);
+            assertSame(PaymentStatus.CREATED, deduplicating.getTask(taskId).getResult().getStatus());
+        } finally {
+            shared.close();
+        }
+    }
+
+    @Test
+    void testErrors() throws IOException {
+        assertEquals(-32700, call("{not json").path("error").path("code").asInt());
+        assertEquals(-32600, call("{\"id\":1,\"method\":\"checkPaymentStatus\"}").path("error").path("code").asInt());
+        assertEquals(-32601, call("{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"unknown\"}")
+                .path("error").path("code").asInt());
+        assertEquals(-32602, call("{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"checkPaymentStatus\",\"params\":[1]}")
+                .path("error").path("code").asInt());
+        assertEquals(-32600, call("[]").path("error").path("code").asInt());
+    }
+
+    @Test
+    void testBatch() throws IOException {
+        JsonNode responses = call("["
+                + "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"checkPaymentStatus\",\"params\":{\"paymentId\":\"p-1\"}},"
+                + "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"unknown\"},"
+                + "{\"jsonrpc\":\"2.0\",\"method\":\"checkPaymentStatus\",\"params\":{\"paymentId\":\"p-2\"}},"
+                + "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"checkPaymentStatus\",\"params\":{\"paymentId\":\"p-3\"}}"
+                + "]");
+
+        assertEquals(3, responses.size());
+        assertEquals("p-1", responses.get(0).path("result").path("paymentId").asText());
+        assertEquals(-32601, responses.get(1).path("error").path("code").asInt());
+        assertEquals("p-3", responses.get(2).path("result").path("paymentId").asText());
+    }
+
+    @Test
+    void testNotificationIsNotAnswered() throws IOException {
+        Request request = post("{\"jsonrpc\":\"2.0\",\"method\":\"checkPaymentStatus\",\"params\":{\"paymentId\":\"p-1\"}}");
+        try (Response response = httpClient.newCall(request).execute()) {
+            assertEquals(204, response.code());
+        }
+    }
+
+    @Test
+    void testAgentCard() throws IOException {
+        Request request = new Request.Builder().url(baseUrl + AP2HttpServer.AGENT_CARD_PATH).build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            assertEquals(200, response.code());
+            assertEquals("Payment Agent", MAPPER.readTree(response.body().string()).path("name").asText());
+        }
+    }
+
+    @Test
+    void testAgentCardRevalidation() throws IOException {
+        Request request = new Request.Builder().url(baseUrl + AP2HttpServer.AGENT_CARD_PATH).build();
+        String etag;
+        try (Response response = httpClient.newCall(request).execute()) {
+            etag = response.header("ETag");
+            assertNotNull(etag);
+            assertTrue(etag.startsWith("\""));
+            assertEquals("max-age=" + AP2HttpServer.AGENT_CARD_MAX_AGE_SECONDS, response.header("Cache-Control"));
+        }
+
+        Request conditional = request.newBuilder().header("If-None-Match", etag).build();
+        try (Response response = httpClient.newCall(conditional).execute()) {
+            assertEquals(304, response.code());
+            assertEquals(etag, response.header("ETag"));
+        }
+
+        client.getAgentCard().setName("Renamed Agent");
+        server.refreshAgentCard();
+        try (Response response = httpClient.newCall(conditional).execute()) {
+            assertEquals(200, response.code());
+            assertNotEquals(etag, response.header("ETag"));
+            assertEquals("Renamed Agent", MAPPER.readTree(response.body().string()).path("name").asText());
+        }
+    }
+
+    @Test
+    void testAgentCardGzip() throws IOException {
+        Request request = new Request.Builder().url(baseUrl + AP2HttpServer.AGENT_CARD_PATH)
+                .header("Accept-Encoding", "gzip")
+                .build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            assertEquals("gzip", response.header("Content-Encoding"));
+            try (InputStream in = new GZIPInputStream(response.body().byteStream())) {
+                assertEquals("Payment Agent", MAPPER.readTree(in).path("name").asText());
+            }
+        }
+
+        Request identity = request.newBuilder().header("Accept-Encoding", "gzip;q=0, identity").build();
+        try (Response response = httpClient.newCall(identity).execute()) {
+            assertNull(response.header("Content-Encoding"));
+        }
+    }
+
+    @Test
+    void testAgentCardEncodingsHaveDistinctEtags() throws IOException {
+        Request gzip = new Request.Builder().url(baseUrl + AP2HttpServer.AGENT_CARD_PATH)
+                .header("Accept-Encoding", "gzip")
+                .build();
+        Request identity = gzip.newBuilder().header("Accept-Encoding", "identity").build();
+        String gzipEtag;
+        String identityEtag;
+        try (Response response = httpClient.newCall(gzip).execute()) {
+            gzipEtag = response.header("ETag");
+        }
+        try (Response response = httpClient.newCall(identity).execute()) {
+            identityEtag = response.header("ETag");
+        }
+        assertNotEquals(identityEtag, gzipEtag);
+        assertTrue(gzipEtag.endsWith("-gzip\""));
+
+        // A cached copy in either encoding revalidates, answered with the negotiated ETag
+        try (Response response = httpClient.newCall(
+                identity.newBuilder().header("If-None-Match", gzipEtag).build()).execute()) {
+            assertEquals(304, response.code());
+            assertEquals(identityEtag, response.header("ETag"));
+        }
+        try (Response response = httpClient.newCall(
+                gzip.newBuilder().header("If-None-Match", identityEtag).build()).execute()) {
+            assertEquals(304, response.code());
+            assertEquals(gzipEtag, response.header("ETag"));
+        }
+    }
+
+    @Test
+    void testTaskEventStream() throws Exception {
+        CompletableFuture<PaymentResponse> payment = new CompletableFuture<>();
+        PendingCall created = callPending(payment);
+        String taskId = created.taskId;
+
+        Request request = new Request.Builder().url(baseUrl + "/tasks/" + taskId + "/events").build();
+        OkHttpClient streamingClient = httpClient.newBuilder().readTimeout(5, TimeUnit.SECONDS).build();
+        try (Response response = streamingClient.newCall(request).execute()) {
+            assertEquals(200, response.code());
+            assertEquals("text/event-stream", response.header("Content-Type"));
+
+            payment.complete(PaymentResponse.builder().paymentId("p-1").status(PaymentStatus.CREATED).build());
+
+            // The stream ends once the task reaches a terminal state
+            String events = response.body().string();
+            assertTrue(events.contains("\"state\":\"COMPLETED\""));
+            assertTrue(events.contains("\"taskId\":\"" + taskId + "\""));
+        }
+        assertEquals(taskId, created.response.get(5, TimeUnit.SECONDS).path("result").path("taskId").asText());
+    }
+
+    @Test
+    void testStreamsShareABoundedPool() throws Exception {
+        OkHttpClient streamingClient = httpClient.newBuilder().readTimeout(5, TimeUnit.SECONDS).build();
+        CompletableFuture<PaymentResponse> payment = new CompletableFuture<>();
+        PendingCall created = callPending(payment);
+        List<Response> responses = new ArrayList<>();
+        try {
+            for (int i = 0; i < 32; i++) {
+                String taskId = i == 7 ? created.taskId : "task-" + i;
+                Request request = new Request.Builder().url(baseUrl + "/tasks/" + taskId + "/events").build();
+                Response response = streamingClient.newCall(request).execute();
+                responses.add(response);
+                assertEquals(200, response.code());
+            }
+            assertEquals(32, server.getOpenStreamCount());
+            long streamThreads = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getName().startsWith("ap2-http-stream-"))
+                    .count();
+            // Open streams do not park a thread each
+            assertTrue(streamThreads <= 8, "Stream threads: " + streamThreads);
+
+            payment.complete(PaymentResponse.builder().paymentId("p-7").status(PaymentStatus.CREATED).build());
+            assertTrue(responses.get(7).body().string().contains("\"state\":\"COMPLETED\""));
+            created.response.join();
+        } finally {
+            responses.forEach(Response::close);
+        }
+    }
+
+    @Test
+    void testStreamLimit() throws IOException {
+        AP2HttpServer limited = new AP2HttpServer(client, new InetSocketAddress("127.0.0.1", 0), 2,
+                Duration.ofSeconds(5), 1);
+        limited.start();
+        String limitedUrl = "http://127.0.0.1:" + limited.getPort();
+        try (Response first = httpClient.newCall(new Request.Builder()
+                .url(limitedUrl + "/tasks/task-1/events").build()).execute()) {
+            assertEquals(200, first.code());
+
+            try (Response second = httpClient.newCall(new Request.Builder()
+                    .url(limitedUrl + "/tasks/task-2/events").build()).execute()) {
+                assertEquals(503, second.code());
+                assertNotNull(second.header("Retry-After"));
+            }
+        } finally {
+            limited.close();
+        }
+        assertEquals(0, limited.getOpenStreamCount());
+    }
+
+    @Test
+    void testKeepAlive() throws IOException {
+        for (int i = 0; i < 20; i++) {
+            call("{\"jsonrpc\":\"2.0\",\"id\":" + i + ",\"method\":\"checkPaymentStatus\","
+                    + "\"params\":{\"paymentId\":\"p-" + i + "\"}}");
+        }
+
+        assertEquals(1, httpClient.connectionPool().connectionCount());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void testLoad() throws Exception {
+        int concurrency = 64;
+        int requestsPerClient = 50;
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        List<Future<List<Long>>> results = new ArrayList<>();
+        try {
+            for (int c = 0; c < concurrency; c++) {
+                int client = c;
+                results.add(clients.submit(() -> {
+                    List<Long> latencies = new ArrayList<>(requestsPerClient);
+                    for (int i = 0; i < requestsPerClient; i++) {
+                        String id = client + "-" + i;
+                        long start = System.nanoTime();
+                        JsonNode response = call("{\"jsonrpc\":\"2.0\",\"id\":\"" + id
+                                + "\",\"method\":\"checkPaymentStatus\",\"params\":{\"paymentId\":\"" + id + "\"}}");
+                        latencies.add(System.nanoTime() - start);
+                        assertEquals(id, response.path("result").path("paymentId").asText());
+                    }
+                    return latencies;
+                }));
+            }
+
+            List<Long> latencies = new ArrayList<>(concurrency * requestsPerClient);
+            for (Future<List<Long>> result : results) {
+                latencies.addAll(result.get(60, TimeUnit.SECONDS));
+            }
+            Collections.sort(latencies);
+            double p50 = latencies.get(latencies.size() / 2) / 1_000_000.0;
+            double p99 = latencies.get(latencies.size() * 99 / 100) / 1_000_000.0;
+            System.out.printf("AP2HttpServer load: %d requests, %d concurrent clients, p50 %.2f ms, p99 %.2f ms%n",
+                    latencies.size(), concurrency, p50, p99);
+
+            assertEquals(concurrency * requestsPerClient, latencies.size());
+            assertTrue(httpClient.connectionPool().connectionCount() <= concurrency);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private JsonNode call(String body) throws IOException {
+        try (Response response = httpClient.newCall(post(body)).execute()) {
+            assertEquals(200, response.code());
+            return MAPPER.readTree(response.body().string());
+        }
+    }
+
+    /**
+     * Sends a call whose payment completes only when the test completes the given future,
+     * and waits until the server has created its task.
+     */
+    private PendingCall callPending(CompletableFuture<PaymentResponse> payment) throws InterruptedException {
+        client.registerMethod(MethodHandler.of("pendingPayment", message -> message, message -> payment));
+        TaskEventStream.Subscription everything = client.subscribeAll();
+        PendingCall pending = new PendingCall();
+        pending.response = CompletableFuture.supplyAsync(() -> {
+            try {
+                return call("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"pendingPayment\"}");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        // The task ID is only known to the server until the call completes
+        pending.taskId = everything.poll(5, TimeUnit.SECONDS).getTaskId();
+        everything.close();
+        return pending;
+    }
+
+    private Request post(String body) {
+        return new Request.Builder().url(baseUrl + "/").post(RequestBody.create(body, JSON)).build();
+    }
+
+    private static class PendingCall {
+        private String taskId;
+        private CompletableFuture<JsonNode> response;
+    }
+}
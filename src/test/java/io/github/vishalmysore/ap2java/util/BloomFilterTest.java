@@ -0,0 +1,58 @@
+package io.github.vishalmysore.ap2java.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the BloomFilter class.
+ */
+public class BloomFilterTest {
+
+    @Test
+    void testNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("msg-" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("msg-" + i));
+        }
+        assertFalse(filter.put("msg-42"));
+    }
+
+    @Test
+    void testFalsePositiveRate() {
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.put("msg-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, "False positives: " + falsePositives);
+        // Roughly 9.6 bits per element at a 1% rate
+        assertTrue(filter.getBitCount() < 100_000 * 10 + 64);
+        assertEquals(7, filter.getHashCount());
+    }
+
+    @Test
+    void testClear() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        filter.put("msg-1");
+
+        filter.clear();
+
+        assertFalse(filter.mightContain("msg-1"));
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1.0));
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.vishalmysore.ap2java.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class CachedClockTest {
+
+    private static final Instant START = Instant.parse("2025-01-01T00:00:00Z");
+
+    @Test
+    void testReturnsCachedTimeUntilTick() {
+        ManualClock source = new ManualClock(START);
+        try (CachedClock clock = new CachedClock(source, Duration.ofHours(1))) {
+            source.advance(Duration.ofSeconds(5));
+            assertEquals(START, clock.instant());
+            assertEquals(START.toEpochMilli(), clock.millis());
+
+            clock.tick();
+            assertEquals(START.plusSeconds(5), clock.instant());
+            assertEquals(START.plusSeconds(5).toEpochMilli(), clock.millis());
+        }
+    }
+
+    @Test
+    void testTicksInBackground() throws InterruptedException {
+        ManualClock source = new ManualClock(START);
+        try (CachedClock clock = new CachedClock(source, Duration.ofMillis(1))) {
+            source.advance(Duration.ofSeconds(5));
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (!clock.instant().equals(source.instant()) && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(source.instant(), clock.instant());
+        }
+    }
+
+    @Test
+    void testSharedClockFollowsSystemTime() {
+        CachedClock clock = CachedClock.systemUTC();
+
+        assertSame(clock, CachedClock.systemUTC());
+        assertTrue(Math.abs(System.currentTimeMillis() - clock.millis()) < 1000);
+        assertThrows(IllegalStateException.class, clock::close);
+    }
+
+    @Test
+    void testWithZoneSharesCachedTime() {
+        ManualClock source = new ManualClock(START);
+        try (CachedClock clock = new CachedClock(source, Duration.ofHours(1))) {
+            Clock tokyo = clock.withZone(ZoneId.of("Asia/Tokyo"));
+            assertEquals(ZoneId.of("Asia/Tokyo"), tokyo.getZone());
+            assertSame(clock, clock.withZone(source.getZone()));
+
+            source.advance(Duration.ofSeconds(5));
+            clock.tick();
+            assertEquals(clock.instant(), tokyo.instant());
+        }
+    }
+
+    @Test
+    void testRejectsNonPositiveTick() {
+        assertThrows(IllegalArgumentException.class, () -> new CachedClock(Clock.systemUTC(), Duration.ZERO));
+    }
+
+    @Test
+    void testReadingDoesNotAllocate() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocation.isThreadAllocatedMemorySupported() && allocation.isThreadAllocatedMemoryEnabled());
+
+        CachedClock clock = CachedClock.systemUTC();
+        long sum = 0;
+        // Warm up so the measurement does not include class loading or compilation
+        for (int i = 0; i < 100_000; i++) {
+            sum += clock.millis() + clock.instant().getNano();
+        }
+
+        long before = allocation.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 100_000; i++) {
+            sum += clock.millis() + clock.instant().getNano();
+        }
+        long allocated = allocation.getCurrentThreadAllocatedBytes() - before;
+
+        assertTrue(sum > 0);
+        assertTrue(allocated < 4096, "Reading the clock allocated " + allocated + " bytes");
+    }
+}
@@ -0,0 +1,42 @@
+package io.github.vishalmysore.ap2java.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ManualClockTest {
+
+    private static final Instant START = Instant.parse("2025-01-01T00:00:00Z");
+
+    @Test
+    void testOnlyMovesWhenTold() {
+        ManualClock clock = new ManualClock(START);
+
+        assertEquals(START, clock.instant());
+        assertEquals(ZoneOffset.UTC, clock.getZone());
+        clock.advance(Duration.ofMinutes(1));
+        assertEquals(START.plusSeconds(60), clock.instant());
+        clock.advance(Duration.ofSeconds(-30));
+        assertEquals(START.plusSeconds(30).toEpochMilli(), clock.millis());
+        clock.setInstant(START);
+        assertEquals(START, clock.instant());
+    }
+
+    @Test
+    void testWithZoneSharesTime() {
+        ManualClock clock = new ManualClock(START);
+        Clock tokyo = clock.withZone(ZoneId.of("Asia/Tokyo"));
+
+        assertEquals(ZoneId.of("Asia/Tokyo"), tokyo.getZone());
+        clock.advance(Duration.ofHours(1));
+        assertEquals(START.plusSeconds(3600), tokyo.instant());
+        ((ManualClock) tokyo).advance(Duration.ofHours(1));
+        assertEquals(START.plusSeconds(7200), clock.instant());
+    }
+}
@@ -0,0 +1,59 @@
+package io.github.vishalmysore.ap2java.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SymbolTableTest {
+
+    @Test
+    void testInternAssignsDenseIds() {
+        SymbolTable table = new SymbolTable();
+
+        assertEquals(0, table.intern("books"));
+        assertEquals(1, table.intern("travel"));
+        assertEquals(0, table.intern(new String("books")));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    void testLookupDoesNotAdd() {
+        SymbolTable table = new SymbolTable();
+        table.intern("books");
+
+        assertEquals(0, table.idOf("books"));
+        assertEquals(SymbolTable.NOT_FOUND, table.idOf("travel"));
+        assertEquals(SymbolTable.NOT_FOUND, table.idOf(null));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void testConcurrentInternGivesOneIdPerSymbol() throws InterruptedException {
+        SymbolTable table = new SymbolTable();
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    ids.add(table.intern("symbol-" + i));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1000, table.size());
+        assertEquals(1000, ids.size());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(table.idOf("symbol-" + i) < 1000);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package io.github.vishalmysore.ap2java.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the TimingWheel class.
+ */
+public class TimingWheelTest {
+
+    @Test
+    void testExpiresAtFirstTickAfterDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 2, 0);
+        wheel.schedule("a", 250);
+        List<String> expired = new ArrayList<>();
+
+        assertEquals(0, wheel.advance(250, expired::add));
+        assertEquals(0, wheel.advance(299, expired::add));
+        assertEquals(1, wheel.advance(300, expired::add));
+        assertEquals(List.of("a"), expired);
+        assertFalse(wheel.isScheduled("a"));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testPastDeadlineExpiresOnNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 2, 1_000);
+        wheel.schedule("a", 500);
+        List<String> expired = new ArrayList<>();
+
+        assertEquals(1, wheel.advance(1_000, expired::add));
+        assertEquals(List.of("a"), expired);
+    }
+
+    @Test
+    void testCancel() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 2, 0);
+        wheel.schedule("a", 250);
+        wheel.schedule("b", 250);
+        wheel.advance(100, key -> fail("Nothing is due yet"));
+
+        assertTrue(wheel.cancel("a"));
+        assertFalse(wheel.cancel("a"));
+        assertFalse(wheel.cancel("c"));
+        List<String> expired = new ArrayList<>();
+        wheel.advance(1_000, expired::add);
+        assertEquals(List.of("b"), expired);
+    }
+
+    @Test
+    void testRescheduleReplacesDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 2, 0);
+        assertFalse(wheel.schedule("a", 250));
+        assertTrue(wheel.schedule("a", 650));
+        assertEquals(1, wheel.size());
+
+        assertEquals(0, wheel.advance(600, key -> fail("The first deadline was replaced")));
+        List<String> expired = new ArrayList<>();
+        assertEquals(1, wheel.advance(700, expired::add));
+        assertEquals(List.of("a"), expired);
+    }
+
+    @Test
+    void testLongDeadlinesCascadeThroughLevels() {
+        // 10 ms ticks, 4 slots, 3 levels: levels cover 4, 16 and 64 ticks
+        TimingWheel<Integer> wheel = new TimingWheel<>(10, 4, 3, 0);
+        for (int i = 0; i < 200; i++) {
+            wheel.schedule(i, i * 7L);
+        }
+        long[] expiredAt = new long[200];
+        for (long now = 0; now <= 1_500; now += 10) {
+            long time = now;
+            wheel.advance(now, key -> expiredAt[key] = time);
+        }
+        for (int i = 0; i < 200; i++) {
+            long deadline = i * 7L;
+            // Never early, at most one tick late
+            assertTrue(expiredAt[i] > deadline && expiredAt[i] <= deadline + 10,
+                    "Key " + i + " with deadline " + deadline + " expired at " + expiredAt[i]);
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testLargeJumpExpiresEverythingDue() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(1, 16, 2, 0);
+        for (int i = 0; i < 10_000; i++) {
+            wheel.schedule(i, i);
+        }
+        Set<Integer> expired = new HashSet<>();
+        assertEquals(5_000, wheel.advance(5_000, expired::add));
+        assertEquals(5_000, expired.size());
+        assertTrue(expired.contains(4_999));
+        assertFalse(expired.contains(5_000));
+        assertEquals(5_000, wheel.advance(20_000, expired::add));
+        assertEquals(10_000, expired.size());
+    }
+
+    @Test
+    void testConcurrentSchedulesAndAdvances() throws InterruptedException {
+        TimingWheel<Integer> wheel = new TimingWheel<>(1, 64, 3, 0);
+        Set<Integer> expired = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            executor.execute(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    int key = thread * 1_000 + i;
+                    if (i % 2 == 0) {
+                        wheel.schedule(key, i);
+                    } else {
+                        // Far enough out that no advance reaches it before it is cancelled
+                        wheel.schedule(key, 10_000 + i);
+                        assertTrue(wheel.cancel(key));
+                    }
+                    if (i % 100 == 0) {
+                        wheel.advance(i / 2, expired::add);
+                    }
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        wheel.advance(2_000, expired::add);
+
+        assertEquals(4_000, expired.size());
+        assertTrue(expired.stream().allMatch(key -> key % 2 == 0));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testRejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<String>(0, 8, 2, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<String>(10, 1, 2, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<String>(10, 8, 0, 0));
+    }
+}